@@ -0,0 +1,305 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+
+import org.kohsuke.github.GHRef;
+import org.kohsuke.github.GHRepository;
+import org.kohsuke.github.GitHubBuilder;
+import org.kohsuke.github.HttpConnector;
+import org.kohsuke.github.connector.GitHubConnector;
+import org.kohsuke.github.extras.HttpClientGitHubConnector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of the per-request latency of the GitHub API connectors. <br>
+ * The {@link java.net.HttpURLConnection} connector, the default connector and the {@link HttpClientConnector} send the
+ * same ref lookups to a local TLS stand-in of the GitHub API, from one thread then from concurrent threads, as done by
+ * paged ref scans and multi-target merges. The first request of new connectors, which includes the TLS handshake, is
+ * measured as well.
+ * @author Julb.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HttpClientConnectorBenchmark {
+
+    /**
+     * The keystore password of the stand-in server.
+     */
+    private static final char[] KEYSTORE_PASSWORD = "benchmark".toCharArray();
+
+    /**
+     * The response of the stand-in server to ref lookups.
+     */
+    private static final String REF_RESPONSE = "{\"ref\":\"refs/heads/main\","
+            + "\"object\":{\"sha\":\"7fd1a60b01f91b314f59955a4e4d4e80d8edf11d\",\"type\":\"commit\"}}";
+
+    /**
+     * The number of concurrent threads.
+     */
+    private static final int THREADS = 8;
+
+    /**
+     * The connector: <code>urlconnection</code>, <code>default</code> or <code>httpclient</code>.
+     */
+    @Param({"urlconnection", "default", "httpclient"})
+    public String connector;
+
+    /**
+     * The SSL context of the stand-in server and its clients.
+     */
+    private SSLContext sslContext;
+
+    /**
+     * The stand-in server.
+     */
+    private HttpsServer server;
+
+    /**
+     * The executor of the stand-in server.
+     */
+    private ExecutorService serverExecutor;
+
+    /**
+     * The repository, bound to a connector shared by the lookups.
+     */
+    private GHRepository ghRepository;
+
+    /**
+     * The repository, bound to a new connector on each iteration.
+     */
+    private GHRepository newGhRepository;
+
+    /**
+     * Starts the stand-in server, and binds the repository to the connector.
+     * @throws Exception if an error occurs.
+     */
+    @Setup
+    public void setUp() throws Exception {
+        // Small responses would otherwise wait for delayed acknowledgements.
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+
+        sslContext = sslContext();
+        SSLContext.setDefault(sslContext);
+        HttpsURLConnection.setDefaultSSLSocketFactory(sslContext.getSocketFactory());
+
+        server = HttpsServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setHttpsConfigurator(new HttpsConfigurator(sslContext));
+        serverExecutor = Executors.newFixedThreadPool(THREADS);
+        server.setExecutor(serverExecutor);
+        server.createContext("/", exchange -> {
+            try (exchange) {
+                var body = REF_RESPONSE.getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/json; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+            }
+        });
+        server.start();
+
+        ghRepository = repository(newConnector());
+    }
+
+    /**
+     * Binds a repository to a new connector, for the first request.
+     * @throws Exception if an error occurs.
+     */
+    @Setup(Level.Iteration)
+    public void setUpIteration() throws Exception {
+        newGhRepository = repository(newConnector());
+    }
+
+    /**
+     * Stops the stand-in server.
+     */
+    @TearDown
+    public void tearDown() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    /**
+     * Looks up a ref from a single thread.
+     * @return the ref.
+     * @throws IOException if an error occurs.
+     */
+    @Benchmark
+    public GHRef lookup() throws IOException {
+        return ghRepository.getRef("heads/main");
+    }
+
+    /**
+     * Looks up a ref from concurrent threads sharing the connector.
+     * @return the ref.
+     * @throws IOException if an error occurs.
+     */
+    @Benchmark
+    @Threads(THREADS)
+    public GHRef concurrentLookup() throws IOException {
+        return ghRepository.getRef("heads/main");
+    }
+
+    /**
+     * Looks up a ref with a new connector, TLS handshake included.
+     * @return the ref.
+     * @throws IOException if an error occurs.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 5)
+    @Measurement(iterations = 20)
+    public GHRef firstLookup() throws IOException {
+        return newGhRepository.getRef("heads/main");
+    }
+
+    // ------------------------------------------ Utility methods.
+
+    /**
+     * Creates a new connector of the benchmarked type.
+     * @return the connector.
+     */
+    private GitHubConnector newConnector() {
+        switch (connector) {
+            case "urlconnection":
+                return urlConnectionConnector();
+            case "default":
+                return new HttpClientGitHubConnector();
+            default:
+                // @formatter:off
+                var httpClient = HttpClient.newBuilder()
+                        .version(HttpClient.Version.HTTP_2)
+                        .sslContext(sslContext)
+                        .build();
+                // @formatter:on
+                return new HttpClientConnector(httpClient, Duration.ofSeconds(30));
+        }
+    }
+
+    /**
+     * Binds the repository of the stand-in server to the given connector.
+     * @param ghConnector the connector.
+     * @return the repository.
+     * @throws IOException if an error occurs.
+     */
+    private GHRepository repository(GitHubConnector ghConnector) throws IOException {
+        // @formatter:off
+        var ghApi = new GitHubBuilder()
+                .withEndpoint("https://127.0.0.1:" + server.getAddress().getPort())
+                .withAuthorizationProvider(() -> "token benchmark")
+                .withConnector(ghConnector)
+                .build();
+        // @formatter:on
+        var action = new MergeBranchGitHubAction();
+        action.setGhApi(ghApi);
+        return action.getRepositoryHandle("octocat", "Hello-World");
+    }
+
+    /**
+     * Creates the connector based on {@link java.net.HttpURLConnection}, used by the GitHub API client before Java 11.
+     * @return the connector.
+     */
+    @SuppressWarnings("deprecation")
+    private static GitHubConnector urlConnectionConnector() {
+        return new org.kohsuke.github.internal.GitHubConnectorHttpConnectorAdapter(HttpConnector.DEFAULT);
+    }
+
+    /**
+     * Creates the SSL context of the stand-in server and its clients, from a self-signed certificate. <br>
+     * The certificate is generated in a temporary keystore, deleted once loaded.
+     * @return the SSL context.
+     * @throws Exception if an error occurs.
+     */
+    private static SSLContext sslContext() throws Exception {
+        var directory = Files.createTempDirectory("connector-benchmark");
+        var keystore = directory.resolve("keystore.p12");
+        var keyStore = KeyStore.getInstance("PKCS12");
+        try {
+            var keytool = Path.of(System.getProperty("java.home"), "bin", "keytool").toString();
+            // @formatter:off
+            var process = new ProcessBuilder(
+                            keytool, "-genkeypair", "-keyalg", "EC", "-alias", "server", "-dname", "CN=localhost",
+                            "-ext", "SAN=ip:127.0.0.1", "-validity", "1", "-storetype", "PKCS12",
+                            "-keystore", keystore.toString(), "-storepass", new String(KEYSTORE_PASSWORD))
+                    .inheritIO()
+                    .start();
+            // @formatter:on
+            if (process.waitFor() != 0) {
+                throw new IOException("keytool failed.");
+            }
+
+            try (InputStream input = Files.newInputStream(keystore)) {
+                keyStore.load(input, KEYSTORE_PASSWORD);
+            }
+        } finally {
+            Files.deleteIfExists(keystore);
+            Files.delete(directory);
+        }
+
+        var keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagers.init(keyStore, KEYSTORE_PASSWORD);
+        var trustManagers = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagers.init(keyStore);
+
+        var sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(keyManagers.getKeyManagers(), trustManagers.getTrustManagers(), null);
+        return sslContext;
+    }
+}
@@ -0,0 +1,196 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of the lookups in a {@link RefIndex}, compared with the scan of the refs it replaces. <br>
+ * Synthetic repositories hold branches and tags; names are looked up in upper case, as a branch and as a tag, and
+ * branches are listed by prefix. Building the index is measured as well, since it is paid once per run.
+ * @author Julb.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RefIndexBenchmark {
+
+    /**
+     * The number of refs of the repository.
+     */
+    @Param({"1000", "100000", "1000000"})
+    public int refCount;
+
+    /**
+     * The ref names of the repository, in listing order.
+     */
+    private String[] refs;
+
+    /**
+     * The SHAs of the refs, in listing order.
+     */
+    private List<String> shas;
+
+    /**
+     * The object types of the refs, in listing order.
+     */
+    private List<String> types;
+
+    /**
+     * The index of the refs.
+     */
+    private RefIndex refIndex;
+
+    /**
+     * The names to look up: a branch in the middle, a tag near the end, and an absent name.
+     */
+    private String[] names;
+
+    /**
+     * The branch prefix to look up, shared by fifty branches.
+     */
+    private String prefix;
+
+    /**
+     * Builds the refs of the repository, its index and the names to look up.
+     */
+    @Setup
+    public void setUp() {
+        refs = new String[refCount];
+        shas = new ArrayList<>(refCount);
+        types = new ArrayList<>(refCount);
+        for (int i = 0; i < refCount; i++) {
+            refs[i] = ref(i);
+            shas.add(String.format("%040x", i));
+            types.add("commit");
+        }
+        refIndex = new RefIndex(null, List.of(refs), shas, types);
+        names = new String[] {
+            String.format("FEATURE/BRANCH-%07d", refCount / 2),
+            String.format("V%07d", refCount - 1),
+            "FEATURE/MISSING"
+        };
+        prefix = RefResolver.branchRef(String.format("FEATURE/BRANCH-%05d", refCount / 200));
+    }
+
+    /**
+     * Looks up the names in the index, by order of precedence.
+     * @return the number of names found.
+     * @throws IOException if an error occurs.
+     */
+    @Benchmark
+    public int indexLookup() throws IOException {
+        var found = 0;
+        for (String name : names) {
+            if (refIndex.get(RefResolver.branchRef(name)).isPresent()
+                    || refIndex.get(RefResolver.tagRef(name)).isPresent()) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Looks up the names by scanning the refs, as a reference point.
+     * @return the number of names found.
+     */
+    @Benchmark
+    public int scan() {
+        var found = 0;
+        for (String name : names) {
+            for (String ref : refs) {
+                if (RefResolver.matches(ref, name)) {
+                    found++;
+                    break;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Lists the branches starting with the prefix in the index.
+     * @return the number of branches found.
+     */
+    @Benchmark
+    public int indexPrefix() {
+        return refIndex.withPrefix(prefix).size();
+    }
+
+    /**
+     * Lists the branches starting with the prefix by scanning the refs, as a reference point.
+     * @return the number of branches found.
+     */
+    @Benchmark
+    public int scanPrefix() {
+        var found = 0;
+        for (String ref : refs) {
+            if (ref.regionMatches(true, 0, prefix, 0, prefix.length())) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Builds the index.
+     * @return the index.
+     */
+    @Benchmark
+    public RefIndex indexBuild() {
+        return new RefIndex(null, List.of(refs), shas, types);
+    }
+
+    // ------------------------------------------ Utility methods.
+
+    /**
+     * Gets the ref at the given index: every other ref is a tag, the others are branches.
+     * @param index the index.
+     * @return the ref.
+     */
+    private static String ref(int index) {
+        if (index % 2 == 1) {
+            return RefResolver.tagRef(String.format("v%07d", index));
+        }
+        return RefResolver.branchRef(String.format("feature/branch-%07d", index));
+    }
+}
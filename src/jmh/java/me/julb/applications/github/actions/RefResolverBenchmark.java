@@ -0,0 +1,180 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of the matching of a name against the refs of a repository, as done by {@link RefResolver} when direct
+ * probes miss. <br>
+ * Synthetic repositories mix branches, tags and pull request refs. The name to match differs from its ref by case, and
+ * sits at the start, middle or end of the refs, or is absent. Each scan is compared with the candidate list matching
+ * it replaced, which formats and lower-cases four candidates, then lower-cases each ref. <br>
+ * Run with the GC profiler for allocation rates: <code>./mvnw -P jmh verify</code>, or
+ * <code>-Djmh.benchmarks=RefResolverBenchmark</code> to run this benchmark only.
+ * @author Julb.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RefResolverBenchmark {
+
+    /**
+     * The number of refs of the repository.
+     */
+    @Param({"1000", "100000", "1000000"})
+    public int refCount;
+
+    /**
+     * The position of the matching ref: <code>start</code>, <code>middle</code>, <code>end</code> or
+     * <code>absent</code>.
+     */
+    @Param({"start", "middle", "end", "absent"})
+    public String position;
+
+    /**
+     * The refs of the repository.
+     */
+    private String[] refs;
+
+    /**
+     * The name to match.
+     */
+    private String name;
+
+    /**
+     * Builds the refs of the repository and the name to match.
+     */
+    @Setup
+    public void setUp() {
+        refs = new String[refCount];
+        for (int i = 0; i < refCount; i++) {
+            refs[i] = ref(i);
+        }
+
+        switch (position) {
+            case "start":
+                name = branchName(0);
+                break;
+            case "middle":
+                name = branchName(refCount / 2);
+                break;
+            case "end":
+                name = branchName(refCount - 1);
+                break;
+            default:
+                name = "Feature/Missing";
+                break;
+        }
+    }
+
+    /**
+     * Builds the refs probed directly for the name.
+     * @return the total length of the refs, not to let them be optimized away.
+     */
+    @Benchmark
+    public int candidates() {
+        return RefResolver.branchRef(name).length()
+                + RefResolver.tagRef(name).length()
+                + RefResolver.commitRef(name).length();
+    }
+
+    /**
+     * Scans the refs for the name, ignoring case.
+     * @return the index of the matching ref, or <code>-1</code> if none.
+     */
+    @Benchmark
+    public int scan() {
+        for (int i = 0; i < refs.length; i++) {
+            if (RefResolver.matches(refs[i], name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Scans the refs for the name with the candidate list matching, as a reference point.
+     * @return the index of the matching ref, or <code>-1</code> if none.
+     */
+    @Benchmark
+    public int scanWithCandidateList() {
+        var candidates = List.of(
+                String.format("refs/heads/%s", name).toLowerCase(Locale.ROOT),
+                String.format("refs/tags/%s", name).toLowerCase(Locale.ROOT),
+                String.format("refs/commits/%s", name).toLowerCase(Locale.ROOT),
+                name.toLowerCase(Locale.ROOT));
+        for (int i = 0; i < refs.length; i++) {
+            if (candidates.contains(refs[i].toLowerCase(Locale.ROOT))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // ------------------------------------------ Utility methods.
+
+    /**
+     * Gets the ref at the given index: every third ref is a tag and every third a pull request ref, the others are
+     * branches.
+     * @param index the index.
+     * @return the ref.
+     */
+    private static String ref(int index) {
+        switch (index % 3) {
+            case 1:
+                return String.format("refs/tags/v%d.%d.%d", index / 10000, index / 100 % 100, index % 100);
+            case 2:
+                return String.format("refs/pull/%d/head", index);
+            default:
+                return RefResolver.branchRef(String.format("feature/branch-%07d", index));
+        }
+    }
+
+    /**
+     * Gets the name matching the ref at the given index, or the nearest branch before it, in upper case.
+     * @param index the index.
+     * @return the branch name.
+     */
+    private static String branchName(int index) {
+        return String.format("FEATURE/BRANCH-%07d", index - index % 3);
+    }
+}
@@ -0,0 +1,67 @@
+#!/bin/sh
+#
+# Builds the startup-optimized runtime of the action:
+# - a JRE trimmed by jlink to the modules needed by the jar,
+# - the CDS archive of this JRE classes,
+# - the AppCDS archive of the action classes, dumped at the end of a training run against the fake GitHub API of the
+#   test classes.
+#
+# The archive is only used when the jar is launched from the same path, with the same JRE.
+#
+# Usage: build-runtime.sh <jar> <test-classes-dir> <output-dir>
+#
+set -eu
+
+JAR="$1"
+TEST_CLASSES="$2"
+OUTPUT_DIR="$3"
+FAKE_API_PORT="${FAKE_API_PORT:-18080}"
+JVM_ARGS="${JVM_ARGS:-}"
+
+mkdir -p "$OUTPUT_DIR"
+rm -rf "$OUTPUT_DIR/jre" "$OUTPUT_DIR/app.jsa"
+
+# Trimmed JRE, with the elliptic curves used by TLS handshakes with the GitHub API.
+# Resources are left uncompressed as decompression slows down class loading.
+MODULES=$(jdeps --ignore-missing-deps --print-module-deps --multi-release 17 "$JAR")
+jlink \
+    --add-modules "$MODULES,jdk.crypto.ec" \
+    --strip-debug \
+    --no-man-pages \
+    --no-header-files \
+    --output "$OUTPUT_DIR/jre"
+
+# CDS archive of the JRE classes, not generated by jlink on Java 17.
+"$OUTPUT_DIR/jre/bin/java" -Xshare:dump > /dev/null
+
+# Training run.
+java -cp "$JAR:$TEST_CLASSES" me.julb.applications.github.actions.FakeGitHubServer "$FAKE_API_PORT" &
+FAKE_API_PID=$!
+WORK_DIR=$(mktemp -d)
+trap 'kill $FAKE_API_PID 2> /dev/null || true; rm -rf "$WORK_DIR"' EXIT
+
+ATTEMPTS=0
+until curl -s -o /dev/null "http://127.0.0.1:$FAKE_API_PORT/"; do
+    ATTEMPTS=$((ATTEMPTS + 1))
+    if [ "$ATTEMPTS" -gt 100 ]; then
+        echo "fake GitHub API not started." >&2
+        exit 1
+    fi
+    sleep 0.2
+done
+
+# shellcheck disable=SC2086
+env \
+    GITHUB_API_URL="http://127.0.0.1:$FAKE_API_PORT" \
+    GITHUB_TOKEN=training \
+    GITHUB_REPOSITORY=octocat/Hello-World \
+    GITHUB_SHA=7fd1a60b01f91b314f59955a4e4d4e80d8edf11d \
+    GITHUB_OUTPUT="$WORK_DIR/output" \
+    INPUT_FROM=main \
+    INPUT_TO=develop \
+    "$OUTPUT_DIR/jre/bin/java" -XX:ArchiveClassesAtExit="$OUTPUT_DIR/app.jsa" $JVM_ARGS -jar "$JAR"
+
+if [ ! -f "$OUTPUT_DIR/app.jsa" ]; then
+    echo "AppCDS archive not generated." >&2
+    exit 1
+fi
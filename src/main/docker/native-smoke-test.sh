@@ -0,0 +1,85 @@
+#!/bin/sh
+#
+# Runs the native executable of the action against the fake GitHub API of the test classes, and checks that the
+# merge is requested and its SHA is reported. Then runs it twice with a response cache, and checks that the cached
+# responses are written and read back. Each run merges main into another branch of the fake repository.
+#
+# Usage: native-smoke-test.sh <executable> <jar> <test-classes-dir>
+#
+set -eu
+
+EXECUTABLE="$1"
+JAR="$2"
+TEST_CLASSES="$3"
+FAKE_API_PORT="${FAKE_API_PORT:-18080}"
+FAKE_API_URL="http://127.0.0.1:$FAKE_API_PORT"
+
+WORK_DIR=$(mktemp -d)
+REQUEST_LOG="$WORK_DIR/requests.log"
+java -cp "$JAR:$TEST_CLASSES" me.julb.applications.github.actions.FakeGitHubServer "$FAKE_API_PORT" "$REQUEST_LOG" &
+FAKE_API_PID=$!
+trap 'kill $FAKE_API_PID 2> /dev/null || true; rm -rf "$WORK_DIR"' EXIT
+
+ATTEMPTS=0
+until curl -s -o /dev/null "$FAKE_API_URL/"; do
+    ATTEMPTS=$((ATTEMPTS + 1))
+    if [ "$ATTEMPTS" -gt 100 ]; then
+        echo "fake GitHub API not started." >&2
+        exit 1
+    fi
+    sleep 0.2
+done
+: > "$REQUEST_LOG"
+
+# Merges main into the given branch, with the given extra environment.
+run_action() {
+    TO="$1"
+    shift
+    : > "$WORK_DIR/output"
+    env \
+        GITHUB_API_URL="$FAKE_API_URL" \
+        GITHUB_TOKEN=smoke-test \
+        GITHUB_REPOSITORY=octocat/Hello-World \
+        GITHUB_SHA=7fd1a60b01f91b314f59955a4e4d4e80d8edf11d \
+        GITHUB_OUTPUT="$WORK_DIR/output" \
+        INPUT_FROM=main \
+        INPUT_TO="$TO" \
+        "$@" \
+        "$EXECUTABLE" > "$WORK_DIR/stdout"
+}
+
+# Checks that the merge commit now at the head of the given branch is reported.
+check_merge_sha() {
+    MERGE_SHA=$(curl -s "$FAKE_API_URL/repos/octocat/Hello-World/git/refs/heads/$1" \
+        | sed -n 's/.*"sha":"\([0-9a-f]*\)".*/\1/p')
+    if [ -z "$MERGE_SHA" ] || ! cat "$WORK_DIR/stdout" "$WORK_DIR/output" 2> /dev/null | grep -q "$MERGE_SHA"; then
+        echo "$2" >&2
+        cat "$WORK_DIR/stdout" >&2
+        exit 1
+    fi
+}
+
+run_action develop
+
+if ! grep -q "POST /repos/octocat/Hello-World/merges" "$REQUEST_LOG"; then
+    echo "merge not requested." >&2
+    cat "$WORK_DIR/stdout" >&2
+    exit 1
+fi
+check_merge_sha develop "merge SHA not reported."
+CACHE_DIR="$WORK_DIR/cache"
+run_action release INPUT_CACHE-DIR="$CACHE_DIR"
+if ! ls "$CACHE_DIR"/*.json > /dev/null 2>&1; then
+    echo "responses not cached." >&2
+    cat "$WORK_DIR/stdout" >&2
+    exit 1
+fi
+: > "$REQUEST_LOG"
+run_action staging INPUT_CACHE-DIR="$CACHE_DIR"
+if ! grep -q " conditional$" "$REQUEST_LOG"; then
+    echo "cached responses not read." >&2
+    cat "$WORK_DIR/stdout" >&2
+    exit 1
+fi
+check_merge_sha staging "merge SHA not reported with cached responses."
+echo "native smoke test: ok."
@@ -0,0 +1,73 @@
+#!/bin/sh
+#
+# Compares the startup of the action between the default JRE and the startup-optimized runtime built by
+# build-runtime.sh. The measure is the time to first request: from the JVM launch to the first request received
+# by the fake GitHub API of the test classes. The median of the runs is reported, with the median of the total run time.
+#
+# Usage: startup-benchmark.sh <jar> <test-classes-dir> <runtime-dir> [runs]
+#
+set -eu
+
+JAR="$1"
+TEST_CLASSES="$2"
+RUNTIME_DIR="$3"
+RUNS="${4:-10}"
+FAKE_API_PORT="${FAKE_API_PORT:-18080}"
+JVM_ARGS="${JVM_ARGS:-}"
+
+WORK_DIR=$(mktemp -d)
+REQUEST_LOG="$WORK_DIR/requests.log"
+java -cp "$JAR:$TEST_CLASSES" me.julb.applications.github.actions.FakeGitHubServer "$FAKE_API_PORT" "$REQUEST_LOG" &
+FAKE_API_PID=$!
+trap 'kill $FAKE_API_PID 2> /dev/null || true; rm -rf "$WORK_DIR"' EXIT
+
+ATTEMPTS=0
+until curl -s -o /dev/null "http://127.0.0.1:$FAKE_API_PORT/"; do
+    ATTEMPTS=$((ATTEMPTS + 1))
+    if [ "$ATTEMPTS" -gt 100 ]; then
+        echo "fake GitHub API not started." >&2
+        exit 1
+    fi
+    sleep 0.2
+done
+
+now() {
+    date +%s%3N
+}
+
+median() {
+    sort -n | awk '{ values[NR] = $1 } END { print values[int((NR + 1) / 2)] }'
+}
+
+# Runs the action with the given java command, and prints the median time to first request and total time.
+benchmark() {
+    : > "$WORK_DIR/first-request"
+    : > "$WORK_DIR/total"
+    i=0
+    while [ "$i" -lt "$RUNS" ]; do
+        : > "$REQUEST_LOG"
+        start=$(now)
+        # shellcheck disable=SC2086
+        env \
+            GITHUB_API_URL="http://127.0.0.1:$FAKE_API_PORT" \
+            GITHUB_TOKEN=benchmark \
+            GITHUB_REPOSITORY=octocat/Hello-World \
+            GITHUB_SHA=7fd1a60b01f91b314f59955a4e4d4e80d8edf11d \
+            GITHUB_OUTPUT="$WORK_DIR/output" \
+            INPUT_FROM=main \
+            INPUT_TO=develop \
+            "$@" $JVM_ARGS -jar "$JAR" > /dev/null 2>&1 || true
+        end=$(now)
+        first=$(head -n 1 "$REQUEST_LOG" | cut -d ' ' -f 1)
+        echo $((first - start)) >> "$WORK_DIR/first-request"
+        echo $((end - start)) >> "$WORK_DIR/total"
+        i=$((i + 1))
+    done
+    echo "time to first request: $(median < "$WORK_DIR/first-request") ms, total: $(median < "$WORK_DIR/total") ms"
+}
+
+echo "default JRE ($RUNS runs)"
+benchmark java -Xshare:auto
+
+echo "trimmed JRE with AppCDS ($RUNS runs)"
+benchmark "$RUNTIME_DIR/jre/bin/java" -XX:SharedArchiveFile="$RUNTIME_DIR/app.jsa"
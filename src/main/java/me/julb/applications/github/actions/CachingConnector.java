@@ -0,0 +1,310 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+import org.kohsuke.github.connector.GitHubConnector;
+import org.kohsuke.github.connector.GitHubConnectorRequest;
+import org.kohsuke.github.connector.GitHubConnectorResponse;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * The GitHub API connector revalidating GET responses against a {@link ResponseCache}. <br>
+ * Cached responses are requested again with their entity tag in <code>If-None-Match</code>: a <code>304 Not
+ * Modified</code> answer, which does not count against the rate limit, is served from the cache. Entries are keyed by
+ * scope, URL and media type: as every cached response is revalidated with the token of the request, a response
+ * fetched by another token is only served if GitHub authorizes the request. <br>
+ * The cache is best effort: a cache that cannot be read or written falls back to plain requests.
+ * @author Julb.
+ */
+@RequiredArgsConstructor
+class CachingConnector implements GitHubConnector {
+
+    /**
+     * The HTTP status of a successful response.
+     */
+    private static final int HTTP_OK = 200;
+
+    /**
+     * The HTTP status of a response not modified since the cached one.
+     */
+    private static final int HTTP_NOT_MODIFIED = 304;
+
+    /**
+     * The headers of the network response not applicable to the decoded body of the cached one.
+     */
+    private static final List<String> BODY_ENCODING_HEADERS = List.of("Content-Encoding", "Content-Length");
+
+    /**
+     * The connector sending the requests.
+     */
+    @NonNull
+    private final GitHubConnector delegate;
+
+    /**
+     * The response cache.
+     */
+    @NonNull
+    private final ResponseCache responseCache;
+
+    /**
+     * The scope of the cached responses, such as the repository.
+     */
+    @NonNull
+    private final String scope;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public GitHubConnectorResponse send(GitHubConnectorRequest request) throws IOException {
+        if (!"GET".equals(request.method())) {
+            return delegate.send(request);
+        }
+
+        var key = cacheKey(scope, request);
+        var cachedEntry = getCachedEntry(key);
+        var response = delegate.send(cachedEntry.map(e -> conditional(request, e.getEtag())).orElse(request));
+
+        // Not modified: serve the cached body, with the up-to-date headers.
+        if (response.statusCode() == HTTP_NOT_MODIFIED && cachedEntry.isPresent()) {
+            try (response) {
+                var headers = new TreeMap<String, List<String>>(String.CASE_INSENSITIVE_ORDER);
+                headers.putAll(cachedEntry.get().getHeaders());
+                headers.putAll(cacheableHeaders(response.allHeaders()));
+                return new CachedResponse(request, headers, cachedEntry.get().getBody());
+            }
+        }
+
+        var etag = response.header("ETag");
+        if (response.statusCode() != HTTP_OK || etag == null) {
+            return response;
+        }
+
+        byte[] body;
+        try (response) {
+            body = response.bodyStream().readAllBytes();
+        }
+        var headers = cacheableHeaders(response.allHeaders());
+        try {
+            responseCache.put(key, new ResponseCache.Entry(etag, headers, body));
+        } catch (IOException e) {
+            // Served without caching.
+        }
+        return new CachedResponse(request, headers, body);
+    }
+
+    /**
+     * Gets the cached entry matching the given key.
+     * @param key the entry key.
+     * @return the cached entry, or <code>empty</code> if not cached or if the cache cannot be read.
+     */
+    private Optional<ResponseCache.Entry> getCachedEntry(String key) {
+        try {
+            return responseCache.get(key);
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Computes the cache key of the given request, from the given scope, and its URL and media type.
+     * @param scope the scope of the cached responses.
+     * @param request the request.
+     * @return the cache key.
+     */
+    static String cacheKey(@NonNull String scope, @NonNull GitHubConnectorRequest request) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            for (var part : new String[] {
+                scope,
+                request.url().toString(),
+                Optional.ofNullable(request.header("Accept")).orElse("")
+            }) {
+                digest.update(part.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '\n');
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Gets the headers of the given response that apply to its cached copy.
+     * @param headers the response headers.
+     * @return the headers to cache.
+     */
+    private static Map<String, List<String>> cacheableHeaders(Map<String, List<String>> headers) {
+        var cacheableHeaders = new TreeMap<String, List<String>>(String.CASE_INSENSITIVE_ORDER);
+        for (var header : headers.entrySet()) {
+            if (header.getKey() != null
+                    && BODY_ENCODING_HEADERS.stream().noneMatch(header.getKey()::equalsIgnoreCase)) {
+                cacheableHeaders.put(header.getKey(), header.getValue());
+            }
+        }
+        return cacheableHeaders;
+    }
+
+    /**
+     * Copies the given request, made conditional on the given entity tag.
+     * @param request the request.
+     * @param etag the entity tag of the cached response.
+     * @return the conditional request.
+     */
+    private static GitHubConnectorRequest conditional(GitHubConnectorRequest request, String etag) {
+        var headers = new TreeMap<String, List<String>>(String.CASE_INSENSITIVE_ORDER);
+        headers.putAll(request.allHeaders());
+        headers.put("If-None-Match", List.of(etag));
+        return new ConditionalRequest(request, headers);
+    }
+
+    /**
+     * A request with extra headers.
+     * @author Julb.
+     */
+    @RequiredArgsConstructor
+    private static class ConditionalRequest implements GitHubConnectorRequest {
+
+        /**
+         * The original request.
+         */
+        private final GitHubConnectorRequest request;
+
+        /**
+         * The request headers.
+         */
+        private final Map<String, List<String>> headers;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String method() {
+            return request.method();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Map<String, List<String>> allHeaders() {
+            return headers;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String header(String name) {
+            var values = headers.get(name);
+            return values == null ? null : String.join(",", values);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String contentType() {
+            return request.contentType();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public InputStream body() {
+            return request.body();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public URL url() {
+            return request.url();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean hasBody() {
+            return request.hasBody();
+        }
+    }
+
+    /**
+     * A successful response served from a body read in memory.
+     * @author Julb.
+     */
+    static class CachedResponse extends GitHubConnectorResponse {
+
+        /**
+         * The decoded response body.
+         */
+        private final byte[] body;
+
+        /**
+         * Default constructor.
+         * @param request the request.
+         * @param headers the response headers.
+         * @param body the decoded response body.
+         */
+        CachedResponse(GitHubConnectorRequest request, Map<String, List<String>> headers, byte[] body) {
+            super(request, HTTP_OK, headers);
+            this.body = body;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public InputStream bodyStream() {
+            return new ByteArrayInputStream(body);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void close() {
+            // Nothing to release.
+        }
+    }
+}
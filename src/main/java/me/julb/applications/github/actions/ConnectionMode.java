@@ -0,0 +1,81 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import java.util.Arrays;
+
+import lombok.NonNull;
+
+/**
+ * The way the action connects to the GitHub API and the repository. <br>
+ * @author Julb.
+ */
+enum ConnectionMode {
+
+    /**
+     * Checks the API URL and fetches the repository before any lookup.
+     */
+    EAGER("eager"),
+
+    /**
+     * Addresses the repository by name, without any request until the first lookup.
+     */
+    LAZY("lazy");
+
+    /**
+     * The mode name.
+     */
+    private String key;
+
+    /**
+     * Default constructor.
+     * @param key the mode name.
+     */
+    ConnectionMode(String key) {
+        this.key = key;
+    }
+
+    /**
+     * Getter for property key.
+     * @return Value of property key.
+     */
+    public String key() {
+        return key;
+    }
+
+    /**
+     * Gets the mode matching the given name.
+     * @param key the mode name.
+     * @return the mode matching the given name.
+     * @throws IllegalArgumentException if no mode matches the given name.
+     */
+    static ConnectionMode fromKey(@NonNull String key) {
+        // @formatter:off
+        return Arrays.stream(values())
+                .filter(v -> v.key.equalsIgnoreCase(key.trim()))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException(String.format("unknown connection: %s", key)));
+        // @formatter:on
+    }
+}
@@ -0,0 +1,427 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.kohsuke.github.HttpException;
+import org.kohsuke.github.connector.GitHubConnector;
+import org.kohsuke.github.connector.GitHubConnectorRequest;
+
+import me.julb.sdk.github.actions.kit.GitHubActionsKit;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+
+/**
+ * The backend resolving the repository, the source ref and the target branch with a single GraphQL query, then merging
+ * through the REST merges endpoint. <br>
+ * The merge goes through the connector of the API client, with its rate limit scheduling and metrics.
+ * The source ref is looked up with the same precedence as {@link RefResolver}: branch, tag, full ref then commit SHA.
+ * Annotated tags are peeled to the tagged commit.
+ * Lookups are exact: when a ref cannot be found, the caller is expected to fall back to the REST resolution.
+ * @author Julb.
+ */
+@RequiredArgsConstructor
+class GraphQLBackend {
+
+    /**
+     * The query resolving the repository, the source ref and the target branch.
+     */
+    // @formatter:off
+    static final String RESOLVE_QUERY = "query($owner: String!, $name: String!, $fromBranch: String!, "
+            + "$fromTag: String!, $from: String!, $to: String!) {"
+            + " repository(owner: $owner, name: $name) {"
+            + " id"
+            + " fromBranch: ref(qualifiedName: $fromBranch) { target { oid } }"
+            + " fromTag: ref(qualifiedName: $fromTag) { target { oid ... on Tag { target { oid } } } }"
+            + " fromRef: ref(qualifiedName: $from) { target { oid ... on Tag { target { oid } } } }"
+            + " fromCommit: object(expression: $from) { ... on Commit { oid } }"
+            + " to: ref(qualifiedName: $to) { target { oid } }"
+            + " } }";
+    // @formatter:on
+
+    /**
+     * The HTTP status returned by the merges endpoint when the merge commit is created.
+     */
+    private static final int HTTP_CREATED = 201;
+
+    /**
+     * The HTTP status returned by the merges endpoint when there is nothing to merge.
+     */
+    private static final int HTTP_NO_CONTENT = 204;
+
+    /**
+     * The HTTP status returned on success.
+     */
+    private static final int HTTP_OK = 200;
+
+    /**
+     * The JSON object mapper.
+     */
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /**
+     * The GitHub action kit.
+     */
+    @NonNull
+    private final GitHubActionsKit ghActionsKit;
+
+    /**
+     * The HTTP client.
+     */
+    @NonNull
+    private final HttpClient httpClient;
+
+    /**
+     * The connector of the GitHub API client.
+     */
+    @NonNull
+    private final GitHubConnector connector;
+
+    /**
+     * The GitHub REST API URL.
+     */
+    @NonNull
+    private final String apiUrl;
+
+    /**
+     * The GitHub token.
+     */
+    @NonNull
+    private final String token;
+
+    /**
+     * Resolves the repository, the source ref and the target branch with a single query.
+     * @param repository the repository, as <code>owner/name</code>.
+     * @param from the branch, tag, ref or commit name to merge.
+     * @param to the target branch name.
+     * @return the resolution.
+     * @throws IOException if an error occurs.
+     * @throws InterruptedException if the current thread is interrupted while waiting for the response.
+     */
+    Resolution resolve(@NonNull String repository, @NonNull String from, @NonNull String to)
+            throws IOException, InterruptedException {
+        var ownerAndName = repository.split("/", 2);
+        if (ownerAndName.length != 2) {
+            throw new IllegalArgumentException(String.format("invalid repository: %s", repository));
+        }
+
+        // Build query.
+        var body = OBJECT_MAPPER.createObjectNode();
+        body.put("query", RESOLVE_QUERY);
+        var variables = body.putObject("variables");
+        variables.put("owner", ownerAndName[0]);
+        variables.put("name", ownerAndName[1]);
+        variables.put("fromBranch", RefResolver.branchRef(from));
+        variables.put("fromTag", RefResolver.tagRef(from));
+        variables.put("from", from);
+        variables.put("to", RefResolver.branchRef(to));
+
+        // Send query.
+        var response = send(HttpRequest.newBuilder(graphQLUri())
+                .POST(HttpRequest.BodyPublishers.ofString(OBJECT_MAPPER.writeValueAsString(body))));
+        if (response.statusCode() != HTTP_OK) {
+            throw httpException(response);
+        }
+
+        var json = OBJECT_MAPPER.readTree(response.body());
+        if (json.hasNonNull("errors") && !json.path("data").hasNonNull("repository")) {
+            throw new IOException(String.format("graphql query failed: %s", json.get("errors")));
+        }
+
+        // Read resolution.
+        var repositoryJson = json.path("data").path("repository");
+        var fromBranchOid = oid(repositoryJson.path("fromBranch"));
+        var fromTagOid = oid(repositoryJson.path("fromTag"));
+        var fromRefOid = from.startsWith("refs/") ? oid(repositoryJson.path("fromRef")) : Optional.<String>empty();
+        var fromCommitOid = RefResolver.isCommitSha(from)
+                ? text(repositoryJson.path("fromCommit").path("oid"))
+                : Optional.<String>empty();
+
+        var fromRef = Optional.<String>empty();
+        var fromOid = Optional.<String>empty();
+        if (fromBranchOid.isPresent()) {
+            fromRef = Optional.of(RefResolver.branchRef(from));
+            fromOid = fromBranchOid;
+        } else if (fromTagOid.isPresent()) {
+            fromRef = Optional.of(RefResolver.tagRef(from));
+            fromOid = fromTagOid;
+        } else if (fromRefOid.isPresent()) {
+            fromRef = Optional.of(from);
+            fromOid = fromRefOid;
+        } else if (fromCommitOid.isPresent()) {
+            // Full OID: the given SHA may be abbreviated.
+            fromRef = fromCommitOid;
+            fromOid = fromCommitOid;
+        }
+        var resolution = new Resolution(
+                text(repositoryJson.path("id")), fromRef, fromOid, oid(repositoryJson.path("to")));
+        ghActionsKit.debug(String.format("graphql resolution: %s", resolution));
+        return resolution;
+    }
+
+    /**
+     * Merges the given head into the given target branch through the REST merges endpoint.
+     * @param repository the repository, as <code>owner/name</code>.
+     * @param to the target branch name.
+     * @param head the head to merge, as a ref or a commit SHA.
+     * @param message the merge commit message.
+     * @return the merge commit SHA if merged, <code>empty</code> if there was nothing to merge.
+     * @throws IOException if an error occurs, including {@link HttpException} on merge conflicts.
+     */
+    Optional<String> merge(
+            @NonNull String repository,
+            @NonNull String to,
+            @NonNull String head,
+            @NonNull Optional<String> message)
+            throws IOException {
+        var body = OBJECT_MAPPER.createObjectNode();
+        body.put("base", to);
+        body.put("head", head);
+        message.ifPresent(m -> body.put("commit_message", m));
+
+        var url = new URL(String.format("%s/repos/%s/merges", baseUrl(), repository));
+        try (var response = connector.send(new PostRequest(url, token, OBJECT_MAPPER.writeValueAsBytes(body)))) {
+            var responseBody = response.bodyStream() == null ? null : response.bodyStream().readAllBytes();
+            if (response.statusCode() == HTTP_CREATED) {
+                return Optional.of(OBJECT_MAPPER.readTree(responseBody).path("sha").asText());
+            } else if (response.statusCode() == HTTP_NO_CONTENT) {
+                return Optional.empty();
+            } else {
+                throw new HttpException(
+                        responseBody == null ? "" : new String(responseBody, StandardCharsets.UTF_8),
+                        response.statusCode(),
+                        String.valueOf(response.statusCode()),
+                        url.toString());
+            }
+        }
+    }
+
+    /**
+     * Gets the GraphQL endpoint URI from the REST API URL.
+     * @return the GraphQL endpoint URI.
+     */
+    URI graphQLUri() {
+        var baseUrl = baseUrl();
+        if (baseUrl.endsWith("/api/v3")) {
+            // GitHub Enterprise Server.
+            return URI.create(baseUrl.substring(0, baseUrl.length() - "/v3".length()) + "/graphql");
+        } else {
+            return URI.create(baseUrl + "/graphql");
+        }
+    }
+
+    // ------------------------------------------ Utility methods.
+
+    /**
+     * Gets the REST API URL without trailing slash.
+     * @return the REST API URL without trailing slash.
+     */
+    private String baseUrl() {
+        return apiUrl.replaceAll("/+$", "");
+    }
+
+    /**
+     * Sends the given request with the authentication headers.
+     * @param requestBuilder the request builder.
+     * @return the response.
+     * @throws IOException if an error occurs.
+     * @throws InterruptedException if the current thread is interrupted while waiting for the response.
+     */
+    private HttpResponse<String> send(HttpRequest.Builder requestBuilder) throws IOException, InterruptedException {
+        // @formatter:off
+        var request = requestBuilder
+                .header("Authorization", "token " + token)
+                .header("Accept", "application/vnd.github+json")
+                .header("Content-Type", "application/json")
+                .build();
+        // @formatter:on
+        return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * Builds the exception for the given unexpected response.
+     * @param response the response.
+     * @return the exception.
+     */
+    private static HttpException httpException(HttpResponse<String> response) {
+        return new HttpException(
+                response.body(),
+                response.statusCode(),
+                String.valueOf(response.statusCode()),
+                response.uri().toString());
+    }
+
+    /**
+     * Gets the commit OID targeted by the given ref, peeling annotated tags.
+     * @param ref the ref JSON node.
+     * @return the commit OID if the ref exists, <code>empty</code> otherwise.
+     */
+    private static Optional<String> oid(JsonNode ref) {
+        var target = ref.path("target");
+        return text(target.path("target").path("oid")).or(() -> text(target.path("oid")));
+    }
+
+    /**
+     * Gets the text of the given JSON node.
+     * @param node the JSON node.
+     * @return the text of the node if not missing or null, <code>empty</code> otherwise.
+     */
+    private static Optional<String> text(JsonNode node) {
+        return node.isTextual() ? Optional.of(node.asText()) : Optional.empty();
+    }
+
+    /**
+     * The result of the GraphQL resolution. <br>
+     * @author Julb.
+     */
+    @Value
+    static class Resolution {
+
+        /**
+         * The repository node ID, if found.
+         */
+        Optional<String> repositoryId;
+
+        /**
+         * The source ref, as the branch or tag ref or the full ref it was found as, or as the full commit OID, if
+         * found.
+         */
+        Optional<String> fromRef;
+
+        /**
+         * The commit OID of the source ref, if found.
+         */
+        Optional<String> fromOid;
+
+        /**
+         * The commit OID of the target branch head, if found.
+         */
+        Optional<String> toOid;
+    }
+
+    /**
+     * An authenticated POST request with a JSON body.
+     * @author Julb.
+     */
+    @RequiredArgsConstructor
+    private static class PostRequest implements GitHubConnectorRequest {
+
+        /**
+         * The request URL.
+         */
+        private final URL url;
+
+        /**
+         * The GitHub token.
+         */
+        private final String token;
+
+        /**
+         * The JSON body.
+         */
+        private final byte[] body;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String method() {
+            return "POST";
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Map<String, List<String>> allHeaders() {
+            return Map.of(
+                    "Authorization", List.of("token " + token),
+                    "Accept", List.of("application/vnd.github+json"),
+                    "Content-Type", List.of(contentType()));
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String header(String name) {
+            // @formatter:off
+            return allHeaders().entrySet().stream()
+                    .filter(header -> header.getKey().equalsIgnoreCase(name))
+                    .map(header -> String.join(",", header.getValue()))
+                    .findFirst()
+                    .orElse(null);
+            // @formatter:on
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String contentType() {
+            return "application/json";
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public InputStream body() {
+            return new ByteArrayInputStream(body);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public URL url() {
+            return url;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean hasBody() {
+            return true;
+        }
+    }
+}
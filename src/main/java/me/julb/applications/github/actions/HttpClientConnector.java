@@ -0,0 +1,160 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URISyntaxException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+import org.kohsuke.github.connector.GitHubConnector;
+import org.kohsuke.github.connector.GitHubConnectorRequest;
+import org.kohsuke.github.connector.GitHubConnectorResponse;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * The GitHub API connector sending requests through a shared {@link HttpClient}. <br>
+ * The client negotiates HTTP/2 when the server supports it, so that concurrent requests are multiplexed on a single
+ * connection, and keeps connections open between requests otherwise. The same client is used by the GraphQL calls.
+ * Each request is bounded by a read timeout. Responses are requested gzip-encoded.
+ * @author Julb.
+ */
+@RequiredArgsConstructor
+class HttpClientConnector implements GitHubConnector {
+
+    /**
+     * The HTTP client.
+     */
+    @NonNull
+    private final HttpClient httpClient;
+
+    /**
+     * The timeout of each request, until the response headers are received.
+     */
+    @NonNull
+    private final Duration readTimeout;
+
+    /**
+     * Builds the HTTP client shared by the GitHub API calls of a run.
+     * @param connectTimeout the connection timeout.
+     * @return the HTTP client.
+     */
+    static HttpClient newHttpClient(@NonNull Duration connectTimeout) {
+        // @formatter:off
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(connectTimeout)
+                .build();
+        // @formatter:on
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public GitHubConnectorResponse send(GitHubConnectorRequest connectorRequest) throws IOException {
+        var request = HttpRequest.newBuilder().timeout(readTimeout);
+        try {
+            request.uri(connectorRequest.url().toURI());
+        } catch (URISyntaxException e) {
+            throw new IOException("Invalid URL", e);
+        }
+
+        for (var header : connectorRequest.allHeaders().entrySet()) {
+            if (header.getValue() != null) {
+                request.header(header.getKey(), String.join(",", header.getValue()));
+            }
+        }
+        if (connectorRequest.header("Accept-Encoding") == null) {
+            request.header("Accept-Encoding", "gzip");
+        }
+
+        var body = HttpRequest.BodyPublishers.noBody();
+        if (connectorRequest.hasBody()) {
+            body = HttpRequest.BodyPublishers.ofByteArray(connectorRequest.body().readAllBytes());
+        }
+        request.method(connectorRequest.method(), body);
+
+        try {
+            var response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+            return new HttpClientConnectorResponse(connectorRequest, response);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw (InterruptedIOException) new InterruptedIOException(e.getMessage()).initCause(e);
+        }
+    }
+
+    /**
+     * The response of a request sent through the {@link HttpClient}.
+     * @author Julb.
+     */
+    static class HttpClientConnectorResponse extends GitHubConnectorResponse {
+
+        /**
+         * The HTTP response.
+         */
+        private final HttpResponse<InputStream> response;
+
+        /**
+         * The decoded body stream.
+         */
+        private InputStream bodyStream;
+
+        /**
+         * Default constructor.
+         * @param request the request.
+         * @param response the HTTP response.
+         */
+        HttpClientConnectorResponse(GitHubConnectorRequest request, HttpResponse<InputStream> response) {
+            super(request, response.statusCode(), response.headers().map());
+            this.response = response;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public InputStream bodyStream() throws IOException {
+            if (bodyStream == null) {
+                bodyStream = wrapStream(response.body());
+            }
+            return bodyStream;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void close() throws IOException {
+            response.body().close();
+        }
+    }
+}
@@ -0,0 +1,357 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+import org.kohsuke.github.HttpException;
+
+import me.julb.sdk.github.actions.kit.GitHubActionsKit;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+
+/**
+ * The engine creating merge commits in a local clone of the repository with the git CLI, and pushing them. <br>
+ * The target branch and the head are fetched into private refs, merged with <code>git merge-tree</code> without
+ * touching the working tree nor the index, then the merge commit is pushed to the target branch. The push is not
+ * forced: it is rejected if the target branch moved meanwhile. <br>
+ * Failures are reported as the merges API does, so that they are handled alike: a conflict is an HTTP
+ * <code>409</code> error, and a rejected push an HTTP <code>409</code> error telling that the reference update failed.
+ * Git commands run one at a time, as they share the clone.
+ * @author Julb.
+ */
+@RequiredArgsConstructor
+class LocalGitEngine {
+
+    /**
+     * The default remote name.
+     */
+    static final String DEFAULT_REMOTE = "origin";
+
+    /**
+     * The prefix of the private refs receiving the fetched commits.
+     */
+    private static final String FETCH_REF_PREFIX = "refs/merge-branch/";
+
+    /**
+     * The oldest git version supporting <code>git merge-tree --write-tree</code>.
+     */
+    static final String MIN_GIT_VERSION = "2.38";
+
+    /**
+     * The pattern of the output of <code>git version</code>.
+     */
+    private static final Pattern GIT_VERSION = Pattern.compile("git version (\\d+)\\.(\\d+)");
+
+    /**
+     * The HTTP status of conflicts.
+     */
+    private static final int HTTP_CONFLICT = 409;
+
+    /**
+     * The pattern of commit SHAs.
+     */
+    private static final Pattern COMMIT_SHA = Pattern.compile("[0-9a-f]{40}");
+
+    /**
+     * The committer name used when the clone has none configured.
+     */
+    private static final String DEFAULT_COMMITTER_NAME = "github-actions[bot]";
+
+    /**
+     * The committer email used when the clone has none configured.
+     */
+    private static final String DEFAULT_COMMITTER_EMAIL = "41898282+github-actions[bot]@users.noreply.github.com";
+
+    /**
+     * The GitHub action kit.
+     */
+    @NonNull
+    private final GitHubActionsKit ghActionsKit;
+
+    /**
+     * The directory of the clone.
+     */
+    @NonNull
+    private final Path workspace;
+
+    /**
+     * The name of the remote of the repository.
+     */
+    @NonNull
+    private final String remote;
+
+    /**
+     * Checks that the workspace holds a clone of the given repository in which merges can be created: a full clone,
+     * whose remote points to the repository, with a git CLI supporting <code>git merge-tree --write-tree</code>. <br>
+     * A git CLI that cannot be run makes the clone unusable.
+     * @param repository the repository, as <code>owner/name</code>.
+     * @return the reason why the clone cannot be used, or <code>empty</code> if it can.
+     */
+    synchronized Optional<String> checkUsable(@NonNull String repository) {
+        try {
+            return checkClone(repository);
+        } catch (IOException e) {
+            return Optional.of(String.format("git unavailable: %s", e.getMessage()));
+        }
+    }
+
+    /**
+     * Checks the git CLI version, then the clone in the workspace.
+     * @param repository the repository, as <code>owner/name</code>.
+     * @return the reason why the clone cannot be used, or <code>empty</code> if it can.
+     * @throws IOException if git cannot be run.
+     */
+    private Optional<String> checkClone(String repository) throws IOException {
+        var version = git("version");
+        if (!supportsMergeTree(version)) {
+            return Optional.of(String.format("%s is older than git %s", version, MIN_GIT_VERSION));
+        }
+        if (run("rev-parse", "--is-inside-work-tree").getExitCode() != 0) {
+            return Optional.of(String.format("no git clone in %s", workspace));
+        }
+        if ("true".equals(git("rev-parse", "--is-shallow-repository"))) {
+            return Optional.of(String.format("shallow clone in %s, check it out with fetch-depth: 0", workspace));
+        }
+
+        var url = run("remote", "get-url", remote);
+        if (url.getExitCode() != 0) {
+            return Optional.of(String.format("no remote %s in %s", remote, workspace));
+        }
+        var normalizedUrl = url.getOutput().trim().toLowerCase(Locale.ROOT).replaceAll("(\\.git)?/*$", "");
+        if (!normalizedUrl.endsWith("/" + repository.toLowerCase(Locale.ROOT))
+                && !normalizedUrl.endsWith(":" + repository.toLowerCase(Locale.ROOT))) {
+            return Optional.of(String.format("remote %s in %s is not %s", remote, workspace, repository));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Merges the given head into the given target branch, and pushes the merge commit.
+     * @param head the head to merge, as a ref or a commit SHA.
+     * @param to the target branch name.
+     * @param message the merge commit message, or <code>empty</code> for the default one.
+     * @return the merge result.
+     * @throws IOException if an error occurs.
+     */
+    synchronized MergeResult merge(@NonNull String head, @NonNull String to, @NonNull Optional<String> message)
+            throws IOException {
+        var headRef = FETCH_REF_PREFIX + "head";
+        var toRef = FETCH_REF_PREFIX + "to";
+        try {
+            // Fetch the target branch, and the head unless it is a commit already there.
+            var refspecs = new ArrayList<String>();
+            refspecs.add(String.format("+refs/heads/%s:%s", to, toRef));
+            if (!COMMIT_SHA.matcher(head).matches() || run("cat-file", "-e", head + "^{commit}").getExitCode() != 0) {
+                refspecs.add(String.format("+%s:%s", head, headRef));
+            } else {
+                git("update-ref", headRef, head);
+            }
+            var fetch = new ArrayList<>(List.of("fetch", "--quiet", "--no-tags", "--no-write-fetch-head", remote));
+            fetch.addAll(refspecs);
+            git(fetch.toArray(new String[0]));
+
+            var toSha = git("rev-parse", toRef + "^{commit}");
+            var headSha = git("rev-parse", headRef + "^{commit}");
+
+            // Nothing to merge if the head is already in the target branch.
+            if (run("merge-base", "--is-ancestor", headSha, toSha).getExitCode() == 0) {
+                ghActionsKit.notice(String.format("Nothing to merge into branch %s.", to));
+                return new MergeResult(head, to, MergeStatus.UP_TO_DATE, toSha);
+            }
+
+            // Merge the trees, without checkout.
+            var mergeTree = run("merge-tree", "--write-tree", "--no-messages", toSha, headSha);
+            if (mergeTree.getExitCode() == 1) {
+                throw new HttpException(
+                        String.format("Merge conflict merging %s into branch %s.", head, to),
+                        HTTP_CONFLICT,
+                        "Conflict",
+                        workspace.toString());
+            }
+            var tree = mergeTree.check().getOutput().lines().findFirst().orElseThrow();
+
+            var commit = new ArrayList<>(committer());
+            // @formatter:off
+            commit.addAll(List.of(
+                    "commit-tree", tree,
+                    "-p", toSha,
+                    "-p", headSha,
+                    "-m", message.orElse(String.format("Merge %s into %s", head, to))));
+            // @formatter:on
+            var mergeSha = git(commit.toArray(new String[0]));
+
+            // Push without force: rejected if the target branch moved meanwhile.
+            var push = run("push", "--quiet", "--porcelain", remote, String.format("%s:refs/heads/%s", mergeSha, to));
+            if (push.getExitCode() != 0) {
+                throw new HttpException(
+                        String.format("Reference update failed pushing branch %s: %s", to, push.getError().trim()),
+                        HTTP_CONFLICT,
+                        "Conflict",
+                        workspace.toString());
+            }
+
+            ghActionsKit.notice(String.format("Branch %s merged successfully.", to));
+            return new MergeResult(head, to, MergeStatus.MERGED, mergeSha);
+        } finally {
+            run("update-ref", "-d", headRef);
+            run("update-ref", "-d", toRef);
+        }
+    }
+
+    // ------------------------------------------ Utility methods.
+
+    /**
+     * Checks if the git CLI of the given version supports <code>git merge-tree --write-tree</code>.
+     * @param version the output of <code>git version</code>.
+     * @return <code>true</code> if the version is {@value #MIN_GIT_VERSION} or later, <code>false</code> otherwise.
+     */
+    static boolean supportsMergeTree(@NonNull String version) {
+        var matcher = GIT_VERSION.matcher(version);
+        if (!matcher.find()) {
+            return false;
+        }
+        var minVersion = MIN_GIT_VERSION.split("\\.");
+        var major = Integer.parseInt(matcher.group(1));
+        var minor = Integer.parseInt(matcher.group(2));
+        var minMajor = Integer.parseInt(minVersion[0]);
+        return major > minMajor || (major == minMajor && minor >= Integer.parseInt(minVersion[1]));
+    }
+
+    /**
+     * Gets the options setting the committer identity if the clone has none configured, as in a fresh checkout.
+     * @return the options, possibly empty.
+     * @throws IOException if an error occurs.
+     */
+    private List<String> committer() throws IOException {
+        if (run("config", "user.email").getExitCode() == 0) {
+            return List.of();
+        }
+        return List.of("-c", "user.name=" + DEFAULT_COMMITTER_NAME, "-c", "user.email=" + DEFAULT_COMMITTER_EMAIL);
+    }
+
+    /**
+     * Runs the given git command, which must succeed.
+     * @param args the git arguments.
+     * @return the trimmed standard output.
+     * @throws IOException if the command fails.
+     */
+    private String git(String... args) throws IOException {
+        return run(args).check().getOutput().trim();
+    }
+
+    /**
+     * Runs the given git command in the clone, without any prompt. <br>
+     * The clone is marked as safe, as it is owned by the runner user while the action may run as another user. The
+     * standard error is read apart, so that warnings never mix with the parsed output.
+     * @param args the git arguments.
+     * @return the result of the command.
+     * @throws IOException if the command cannot be run.
+     */
+    private GitResult run(String... args) throws IOException {
+        var command = new ArrayList<String>();
+        command.add("git");
+        command.add("-c");
+        command.add("safe.directory=" + workspace.toAbsolutePath().normalize());
+        command.addAll(Arrays.asList(args));
+
+        var processBuilder = new ProcessBuilder(command).directory(workspace.toFile());
+        processBuilder.environment().put("GIT_TERMINAL_PROMPT", "0");
+        var process = processBuilder.start();
+
+        var error = new ByteArrayOutputStream();
+        var errorReader = new Thread(() -> {
+            try (var errorStream = process.getErrorStream()) {
+                errorStream.transferTo(error);
+            } catch (IOException e) {
+                // The standard error is only reported.
+            }
+        });
+        errorReader.start();
+        try {
+            var output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            var exitCode = process.waitFor();
+            errorReader.join();
+            ghActionsKit.debug(String.format("git %s: exit code %d.", String.join(" ", args), exitCode));
+            return new GitResult(command, exitCode, output, error.toString(StandardCharsets.UTF_8));
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for git");
+        }
+    }
+
+    /**
+     * The result of a git command.
+     * @author Julb.
+     */
+    @Value
+    static class GitResult {
+
+        /**
+         * The command.
+         */
+        List<String> command;
+
+        /**
+         * The exit code.
+         */
+        int exitCode;
+
+        /**
+         * The standard output.
+         */
+        String output;
+
+        /**
+         * The standard error.
+         */
+        String error;
+
+        /**
+         * Checks that the command succeeded.
+         * @return this result.
+         * @throws IOException if the command failed.
+         */
+        GitResult check() throws IOException {
+            if (exitCode != 0) {
+                throw new IOException(String.format(
+                        "%s failed with exit code %d: %s", String.join(" ", command), exitCode, error.trim()));
+            }
+            return this;
+        }
+    }
+}
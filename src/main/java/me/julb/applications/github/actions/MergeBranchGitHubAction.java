@@ -24,16 +24,48 @@
 package me.julb.applications.github.actions;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.http.HttpClient;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+
+import com.fasterxml.jackson.databind.InjectableValues;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 
 import org.kohsuke.github.GHBranch;
+import org.kohsuke.github.GHFileNotFoundException;
 import org.kohsuke.github.GHRef;
 import org.kohsuke.github.GHRepository;
 import org.kohsuke.github.GitHub;
 import org.kohsuke.github.GitHubBuilder;
+import org.kohsuke.github.HttpException;
+import org.kohsuke.github.connector.GitHubConnector;
+import org.kohsuke.github.connector.GitHubConnectorResponse;
 
 import me.julb.sdk.github.actions.kit.GitHubActionsKit;
 import me.julb.sdk.github.actions.spi.GitHubActionProvider;
@@ -48,6 +80,89 @@ import lombok.Setter;
  */
 public class MergeBranchGitHubAction implements GitHubActionProvider {
 
+    /**
+     * The default maximum number of merges run at a time.
+     */
+    static final int DEFAULT_MAX_PARALLEL = 4;
+
+    /**
+     * The default timeout to connect to the GitHub API.
+     */
+    static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(10);
+
+    /**
+     * The default timeout of each GitHub API request.
+     */
+    static final Duration DEFAULT_READ_TIMEOUT = Duration.ofSeconds(60);
+
+    /**
+     * The default maximum size of the response cache, in megabytes.
+     */
+    static final long DEFAULT_CACHE_MAX_SIZE = 64;
+
+    /**
+     * The default maximum time waited for the rate limits on a request.
+     */
+    static final Duration DEFAULT_RATE_LIMIT_MAX_WAIT = Duration.ofMinutes(10);
+
+    /**
+     * The default number of retries of a merge failing transiently.
+     */
+    static final int DEFAULT_MERGE_RETRIES = 3;
+
+    /**
+     * The default delay before the first retry of a merge failing transiently.
+     */
+    static final Duration DEFAULT_MERGE_RETRY_BACKOFF = Duration.ofSeconds(1);
+
+    /**
+     * The default lease of the merge lock, above the default maximum waits so that a merge held by the rate limits
+     * keeps its lock.
+     */
+    static final Duration DEFAULT_LOCK_LEASE = Duration.ofMinutes(20);
+
+    /**
+     * The default maximum time waited for the merge lock.
+     */
+    static final Duration DEFAULT_LOCK_TIMEOUT = Duration.ofMinutes(10);
+
+    /**
+     * The default first interval between two polls of the merge lock.
+     */
+    static final Duration DEFAULT_LOCK_POLL_INTERVAL = Duration.ofSeconds(1);
+
+    /**
+     * The file name of the flight recording, in the workspace.
+     */
+    static final String JFR_FILE_NAME = "merge-branch.jfr";
+
+    /**
+     * The HTTP status returned by GitHub on merge conflicts.
+     */
+    private static final int HTTP_CONFLICT = 409;
+
+    /**
+     * The HTTP status returned by GitHub on rejected ref updates.
+     */
+    private static final int HTTP_UNPROCESSABLE_ENTITY = 422;
+
+    /**
+     * The prefix of installation tokens, such as the token issued for the job.
+     */
+    private static final String INSTALLATION_TOKEN_PREFIX = "ghs_";
+
+    /**
+     * The pattern of error messages of merges failing because the target branch moved meanwhile.
+     */
+    private static final Pattern TARGET_MOVED_MESSAGE = Pattern.compile(
+            "base (branch )?(was )?(changed|modified)|reference (update failed|cannot be updated)|not a fast forward",
+            Pattern.CASE_INSENSITIVE);
+
+    /**
+     * The JSON object mapper.
+     */
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
     /**
      * The GitHub action kit.
      */
@@ -60,52 +175,279 @@ public class MergeBranchGitHubAction implements GitHubActionProvider {
     @Setter(AccessLevel.PACKAGE)
     private GitHub ghApi;
 
+    /**
+     * The HTTP client shared by the API calls.
+     */
+    @Setter(AccessLevel.PACKAGE)
+    private HttpClient httpClient;
+
+    /**
+     * The scheduler of the API calls.
+     */
+    @Setter(AccessLevel.PACKAGE)
+    private RateLimitScheduler rateLimitScheduler;
+
+    /**
+     * The delay before the first retry of a merge failing transiently.
+     */
+    @Setter(AccessLevel.PACKAGE)
+    private Duration mergeRetryBackoff = DEFAULT_MERGE_RETRY_BACKOFF;
+
+    /**
+     * The first interval between two polls of the merge lock.
+     */
+    @Setter(AccessLevel.PACKAGE)
+    private Duration lockPollInterval = DEFAULT_LOCK_POLL_INTERVAL;
+
+    /**
+     * The metrics of the run.
+     */
+    @Setter(AccessLevel.PACKAGE)
+    private MergeMetrics mergeMetrics = new MergeMetrics();
+
+    /**
+     * The timer of the phases of the run.
+     */
+    @Setter(AccessLevel.PACKAGE)
+    private PhaseTimer phaseTimer =
+            new PhaseTimer(this::getRequestCount, (phase, duration) -> mergeMetrics.observePhase(phase, duration));
+
     /**
      * The GitHub repository.
      */
     @Setter(AccessLevel.PACKAGE)
     private GHRepository ghRepository;
 
+    /**
+     * The ref resolver.
+     */
+    @Setter(AccessLevel.PACKAGE)
+    private RefResolver refResolver;
+
+    /**
+     * The GraphQL backend.
+     */
+    @Setter(AccessLevel.PACKAGE)
+    private GraphQLBackend graphQLBackend;
+
+    /**
+     * The connector of the GitHub API client, once built.
+     */
+    @Setter(AccessLevel.PACKAGE)
+    private GitHubConnector apiConnector;
+
+    /**
+     * The discovery of the target branches matching a pattern.
+     */
+    @Setter(AccessLevel.PACKAGE)
+    private TargetDiscovery targetDiscovery;
+
+    /**
+     * The local git engine, once selected.
+     */
+    @Setter(AccessLevel.PACKAGE)
+    private LocalGitEngine localGitEngine;
+
+    /**
+     * <code>true</code> if the workspace was found unusable by the local git engine, <code>false</code> otherwise.
+     */
+    private boolean localGitEngineUnusable;
+
     /**
      * {@inheritDoc}
      */
     @Override
     public void execute() {
+        recordJvmStartup();
+        var recording = startRecording();
         try {
-            // Get inputs
-            var from = getInputFrom();
-            var to = getInputTo();
-            var message = getInputMessage();
+            var chain = getInputChain();
+            if (!chain.isEmpty()) {
+                executeChain(chain);
+            } else {
+                var from = getInputFrom();
+                if (from.size() == 1) {
+                    executeMerge(from.get(0));
+                } else {
+                    executeTrain(from);
+                }
+            }
+        } catch (Exception e) {
+            mergeMetrics.recordFailure();
+            throw new CompletionException(diagnoseConnection(e));
+        } finally {
+            reportRateLimitWait();
+            reportRequests();
+            reportDurations();
+            writeMetrics();
+            recording.ifPresent(this::stopRecording);
+        }
+    }
+
+    /**
+     * Merges the source ref into the target branches.
+     * @param from the source ref name.
+     * @throws IOException if an error occurs.
+     * @throws InterruptedException if the current thread is interrupted while waiting for the merges.
+     */
+    void executeMerge(@NonNull String from) throws IOException, InterruptedException {
+        // Get inputs
+        var to = getInputTo();
+        var message = getInputMessage();
+        var maxParallel = getInputMaxParallel();
+
+        // Trace parameters
+        ghActionsKit.debug(String.format(
+                "parameters: [from: %s, to: %s, message: %s, max-parallel: %d]",
+                from,
+                to,
+                message.orElse(""),
+                maxParallel));
+
+        // Resolve and merge with GraphQL if requested, unless comparing first, locking, discovering targets or merging
+        // locally.
+        // @formatter:off
+        if (to.size() == 1
+                && !TargetDiscovery.isGlob(to.get(0))
+                && getInputResolver() == ResolverBackend.GRAPHQL
+                && getInputMode() == MergeMode.MERGE
+                && getInputStrategy() == MergeStrategy.MERGE
+                && getInputEngine() == MergeEngine.API
+                && !getInputLock()) {
+            // @formatter:on
+            var mergeResult = mergeWithGraphQL(from, to.get(0), message);
+            if (mergeResult.isPresent()) {
+                var mergeResults = List.of(mergeResult.get());
+                ghActionsKit.setOutput(OutputVars.SHA.key(), mergeResult.get().getSha());
+                ghActionsKit.setOutput(OutputVars.SHAS.key(), shasOutput(mergeResults));
+                ghActionsKit.setOutput(OutputVars.RESULTS.key(), resultsOutput(mergeResults, MergeResult::getTo));
+                return;
+            }
+            ghActionsKit.debug("graphql resolution: refs not found, falling back to rest resolution.");
+        }
+
+        // Read GitHub repository.
+        connectRepository();
 
-            // Trace parameters
-            ghActionsKit.debug(
-                    String.format("parameters: [from: %s, to: %s, message: %s]", from, to, message.orElse("")));
+        // Expand the target patterns.
+        var targets = discoverTargets(to, from);
+        if (targets.isEmpty()) {
+            ghActionsKit.notice(String.format("No target branch to merge into: %s.", String.join(", ", to)));
+            ghActionsKit.setOutput(OutputVars.SHAS.key(), shasOutput(List.of()));
+            ghActionsKit.setOutput(OutputVars.RESULTS.key(), resultsOutput(List.of(), MergeResult::getTo));
+            return;
+        }
+
+        // Get source ref, and target branch if single, concurrently.
+        var fromGHRefFuture = async(() -> getAnyGHRef(from).orElseThrow());
+
+        // Do the merges
+        List<MergeResult> mergeResults;
+        if (targets.size() == 1) {
+            var toGhBranchFuture = async(() -> getToBranch(targets.get(0)).orElseThrow());
+            var fromGHRef = await(fromGHRefFuture);
+            var toGhBranch = await(toGhBranchFuture);
+            mergeResults = List.of(merge(fromGHRef.getRef(), targets.get(0), toGhBranch, message));
+        } else {
+            mergeResults = mergeAll(await(fromGHRefFuture), targets, message, maxParallel);
+        }
 
-            // Read GitHub repository.
-            connectApi();
+        // Output vars.
+        ghActionsKit.setOutput(OutputVars.SHA.key(), mergeResults.get(0).getSha());
+        ghActionsKit.setOutput(OutputVars.SHAS.key(), shasOutput(mergeResults));
+        ghActionsKit.setOutput(OutputVars.RESULTS.key(), resultsOutput(mergeResults, MergeResult::getTo));
+        if (getInputMode() != MergeMode.MERGE) {
+            ghActionsKit.setOutput(
+                    OutputVars.COMPARISONS.key(), comparisonsOutput(mergeResults, MergeResult::getTo));
+        }
+    }
+
+    /**
+     * Merges each source ref into the target branch, one after the other.
+     * @param from the source ref names.
+     * @throws IOException if an error occurs.
+     */
+    void executeTrain(@NonNull List<String> from) throws IOException {
+        // Get inputs
+        var to = getInputTo();
+        var message = getInputMessage();
+        var continueOnConflict = getInputContinueOnConflict();
 
-            // Retrieve repository
-            ghRepository = ghApi.getRepository(ghActionsKit.getGitHubRepository());
+        // Trace parameters
+        ghActionsKit.debug(String.format(
+                "parameters: [from: %s, to: %s, message: %s, continue-on-conflict: %b]",
+                from,
+                to,
+                message.orElse(""),
+                continueOnConflict));
 
-            // Get source ref
-            var fromGHRef = getAnyGHRef(from).orElseThrow();
+        if (to.size() != 1) {
+            throw new IllegalArgumentException(
+                    String.format("merging many sources requires exactly one target branch: %s", to));
+        }
 
-            // Get target branch
-            var toGhBranch = getToBranch(to).orElseThrow();
+        // Read GitHub repository.
+        connectRepository();
 
-            // Do the merge
-            var ghMergeCommit = toGhBranch.merge(fromGHRef.getRef(), message.orElse(null));
+        // Get source refs and target branch concurrently.
+        var fromGHRefsFuture = async(() -> getAnyGHRefs(from));
+        var toGhBranchFuture = async(() -> getToBranch(to.get(0)).orElseThrow());
+        var fromGHRefs = new ArrayList<GHRef>();
+        for (Optional<GHRef> fromGHRef : await(fromGHRefsFuture)) {
+            fromGHRefs.add(fromGHRef.orElseThrow());
+        }
+        var toGhBranch = await(toGhBranchFuture);
 
+        // Do the merges
+        var mergeResults = new ArrayList<MergeResult>();
+        try {
+            mergeTrain(fromGHRefs, to.get(0), toGhBranch, message, continueOnConflict, mergeResults);
+        } finally {
             // Output vars.
-            if (ghMergeCommit != null) {
-                ghActionsKit.notice("Branch merged successfully.");
-                ghActionsKit.setOutput(OutputVars.SHA.key(), ghMergeCommit.getSHA1());
-            } else {
-                ghActionsKit.notice("Nothing to merge.");
-                ghActionsKit.setOutput(OutputVars.SHA.key(), toGhBranch.getSHA1());
+            if (!mergeResults.isEmpty()) {
+                ghActionsKit.setOutput(
+                        OutputVars.SHA.key(), mergeResults.get(mergeResults.size() - 1).getSha());
+                ghActionsKit.setOutput(
+                        OutputVars.RESULTS.key(), resultsOutput(mergeResults, MergeResult::getFrom));
+                if (getInputMode() != MergeMode.MERGE) {
+                    ghActionsKit.setOutput(
+                            OutputVars.COMPARISONS.key(), comparisonsOutput(mergeResults, MergeResult::getFrom));
+                }
+            }
+        }
+    }
+
+    /**
+     * Merges each branch of the chain into the next one.
+     * @param chain the branch names, from the oldest to the newest.
+     * @throws IOException if an error occurs.
+     */
+    void executeChain(@NonNull List<String> chain) throws IOException {
+        // Get inputs
+        var message = getInputMessage();
+
+        // Trace parameters
+        ghActionsKit.debug(String.format("parameters: [chain: %s, message: %s]", chain, message.orElse("")));
+
+        // Read GitHub repository.
+        connectRepository();
+
+        // Do the merges
+        var mergeResults = new ArrayList<MergeResult>();
+        try {
+            mergeChain(chain, message, mergeResults);
+        } finally {
+            // Output vars.
+            if (!mergeResults.isEmpty()) {
+                ghActionsKit.setOutput(
+                        OutputVars.SHA.key(), mergeResults.get(mergeResults.size() - 1).getSha());
+                ghActionsKit.setOutput(OutputVars.SHAS.key(), shasOutput(mergeResults));
+                ghActionsKit.setOutput(OutputVars.RESULTS.key(), resultsOutput(mergeResults, MergeResult::getTo));
+                if (getInputMode() != MergeMode.MERGE) {
+                    ghActionsKit.setOutput(
+                            OutputVars.COMPARISONS.key(), comparisonsOutput(mergeResults, MergeResult::getTo));
+                }
             }
-        } catch (Exception e) {
-            throw new CompletionException(e);
         }
     }
 
@@ -113,18 +455,22 @@ public class MergeBranchGitHubAction implements GitHubActionProvider {
 
     /**
      * Gets the "from" input.
-     * @return the "from" input.
+     * @return the "from" input, as a list of source ref names.
      */
-    String getInputFrom() {
-        return ghActionsKit.getInput("from").orElse(ghActionsKit.getGitHubSha());
+    List<String> getInputFrom() {
+        // @formatter:off
+        return ghActionsKit.getInput("from")
+                .map(this::splitList)
+                .orElseGet(() -> List.of(ghActionsKit.getGitHubSha()));
+        // @formatter:on
     }
 
     /**
      * Gets the "to" input.
-     * @return the "to" input.
+     * @return the "to" input, as a list of target branch names.
      */
-    String getInputTo() {
-        return ghActionsKit.getRequiredInput("to");
+    List<String> getInputTo() {
+        return splitList(ghActionsKit.getRequiredInput("to"));
     }
 
     /**
@@ -136,94 +482,1374 @@ public class MergeBranchGitHubAction implements GitHubActionProvider {
     }
 
     /**
-     * Connects to GitHub API.
-     * @throws IOException if an error occurs.
+     * Gets the "chain" input.
+     * @return the "chain" input, as a list of branch names.
      */
-    void connectApi() throws IOException {
-        ghActionsKit.debug("github api url connection: check.");
+    List<String> getInputChain() {
+        return ghActionsKit.getInput("chain").map(this::splitList).orElse(List.of());
+    }
 
-        // Get token
-        var githubToken = ghActionsKit.getRequiredEnv("GITHUB_TOKEN");
+    /**
+     * Gets the "continue-on-conflict" input.
+     * @return the "continue-on-conflict" input.
+     */
+    boolean getInputContinueOnConflict() {
+        return ghActionsKit.getInput("continue-on-conflict").map(Boolean::parseBoolean).orElse(false);
+    }
+
+    /**
+     * Gets the "max-parallel" input.
+     * @return the "max-parallel" input.
+     */
+    int getInputMaxParallel() {
+        return ghActionsKit.getInput("max-parallel").map(Integer::valueOf).orElse(DEFAULT_MAX_PARALLEL);
+    }
+
+    /**
+     * Gets the "resolver" input.
+     * @return the "resolver" input.
+     */
+    ResolverBackend getInputResolver() {
+        return ghActionsKit.getInput("resolver").map(ResolverBackend::fromKey).orElse(ResolverBackend.REST);
+    }
+
+    /**
+     * Gets the "mode" input.
+     * @return the merge mode, or {@link MergeMode#MERGE} if not provided.
+     */
+    MergeMode getInputMode() {
+        return ghActionsKit.getInput("mode").map(MergeMode::fromKey).orElse(MergeMode.MERGE);
+    }
+
+    /**
+     * Gets the "strategy" input.
+     * @return the merge strategy, or {@link MergeStrategy#MERGE} if not provided.
+     */
+    MergeStrategy getInputStrategy() {
+        return ghActionsKit.getInput("strategy").map(MergeStrategy::fromKey).orElse(MergeStrategy.MERGE);
+    }
+
+    /**
+     * Gets the "engine" input.
+     * @return the merge engine, or {@link MergeEngine#API} if not provided.
+     */
+    MergeEngine getInputEngine() {
+        return ghActionsKit.getInput("engine").map(MergeEngine::fromKey).orElse(MergeEngine.API);
+    }
+
+    /**
+     * Gets the "connection" input.
+     * @return the connection mode, or {@link ConnectionMode#EAGER} if not provided.
+     */
+    ConnectionMode getInputConnection() {
+        return ghActionsKit.getInput("connection").map(ConnectionMode::fromKey).orElse(ConnectionMode.EAGER);
+    }
 
+    /**
+     * Gets the "connector" input.
+     * @return the connector, or {@link ConnectorType#DEFAULT} if not provided.
+     */
+    ConnectorType getInputConnector() {
         // @formatter:off
-        ghApi = Optional.ofNullable(ghApi)
-                .orElse(new GitHubBuilder()
-                        .withEndpoint(ghActionsKit.getGitHubApiUrl())
-                        .withOAuthToken(githubToken)
-                        .build());
-        ghApi.checkApiUrlValidity();
-        ghActionsKit.debug("github api url connection: ok.");
+        return ghActionsKit.getInput("connector")
+                .map(ConnectorType::fromKey)
+                .orElse(ConnectorType.DEFAULT);
         // @formatter:on
     }
 
     /**
-     * Gets the branch matching the given name.
-     * @param name the branch name to look for.
-     * @return the {@link GHBranch} for the given branch if exists, <code>false</code> otherwise.
-     * @throws IOException if an error occurs.
+     * Gets the "connect-timeout" input.
+     * @return the "connect-timeout" input.
      */
-    Optional<GHBranch> getToBranch(@NonNull String name) throws IOException {
-        return Optional.ofNullable(ghRepository.getBranch(name));
+    Duration getInputConnectTimeout() {
+        // @formatter:off
+        return ghActionsKit.getInput("connect-timeout")
+                .map(Long::valueOf)
+                .map(Duration::ofSeconds)
+                .orElse(DEFAULT_CONNECT_TIMEOUT);
+        // @formatter:on
     }
 
     /**
-     * Gets the {@link GHRef} branch or tag matching the given name.
-     * @param name the branch or tag name to look for.
-     * @return the {@link GHRef} for the given branch or tag if exists, <code>false</code> otherwise.
-     * @throws IOException if an error occurs.
+     * Gets the "read-timeout" input.
+     * @return the "read-timeout" input.
      */
-    Optional<GHRef> getAnyGHRef(@NonNull String name) throws IOException {
-        // Convert name to branch ref
-        var branchRef = branchRef(name);
+    Duration getInputReadTimeout() {
+        // @formatter:off
+        return ghActionsKit.getInput("read-timeout")
+                .map(Long::valueOf)
+                .map(Duration::ofSeconds)
+                .orElse(DEFAULT_READ_TIMEOUT);
+        // @formatter:on
+    }
 
-        // Convert name to tag ref
-        var tagRef = tagRef(name);
+    /**
+     * Gets the "cache-dir" input.
+     * @return the "cache-dir" input.
+     */
+    Optional<String> getInputCacheDir() {
+        return ghActionsKit.getInput("cache-dir");
+    }
+
+    /**
+     * Gets the "cache-max-size" input.
+     * @return the "cache-max-size" input, in megabytes.
+     */
+    long getInputCacheMaxSize() {
+        return ghActionsKit.getInput("cache-max-size").map(Long::valueOf).orElse(DEFAULT_CACHE_MAX_SIZE);
+    }
 
-        // Convert name to commit ref
-        var commitRef = commitRef(name);
+    /**
+     * Gets the "rate-limit-max-wait" input.
+     * @return the maximum time waited for the rate limits on a request.
+     */
+    Duration getInputRateLimitMaxWait() {
+        // @formatter:off
+        return ghActionsKit.getInput("rate-limit-max-wait")
+                .map(Long::valueOf)
+                .map(Duration::ofSeconds)
+                .orElse(DEFAULT_RATE_LIMIT_MAX_WAIT);
+        // @formatter:on
+    }
 
-        // List of candidates for which ref is OK.
-        var candidates = List.of(
-                branchRef.toLowerCase(Locale.ROOT),
-                tagRef.toLowerCase(Locale.ROOT),
-                commitRef.toLowerCase(Locale.ROOT),
-                name.toLowerCase(Locale.ROOT));
+    /**
+     * Gets the "merge-retries" input.
+     * @return the number of retries of a merge failing transiently.
+     */
+    int getInputMergeRetries() {
+        return ghActionsKit.getInput("merge-retries").map(Integer::valueOf).orElse(DEFAULT_MERGE_RETRIES);
+    }
 
-        // Browse existing refs
-        for (GHRef ghRef : ghRepository.getRefs()) {
-            // Check if the ref is in the candidates.
-            if (candidates.contains(ghRef.getRef().toLowerCase(Locale.ROOT))) {
-                return Optional.of(ghRef);
-            }
+    /**
+     * Gets the "lock" input.
+     * @return <code>true</code> to merge into each target branch under its merge lock, <code>false</code> otherwise.
+     */
+    boolean getInputLock() {
+        return ghActionsKit.getInput("lock").map(Boolean::parseBoolean).orElse(false);
+    }
+
+    /**
+     * Gets the "lock-lease" input.
+     * @return the lease of the merge lock.
+     */
+    Duration getInputLockLease() {
+        // @formatter:off
+        return ghActionsKit.getInput("lock-lease")
+                .map(Long::valueOf)
+                .map(Duration::ofSeconds)
+                .orElse(DEFAULT_LOCK_LEASE);
+        // @formatter:on
+    }
+
+    /**
+     * Gets the "lock-timeout" input.
+     * @return the maximum time waited for the merge lock.
+     */
+    Duration getInputLockTimeout() {
+        // @formatter:off
+        return ghActionsKit.getInput("lock-timeout")
+                .map(Long::valueOf)
+                .map(Duration::ofSeconds)
+                .orElse(DEFAULT_LOCK_TIMEOUT);
+        // @formatter:on
+    }
+
+    /**
+     * Gets the "record-jfr" input.
+     * @return <code>true</code> to dump a flight recording of the run to the workspace, <code>false</code> otherwise.
+     */
+    boolean getInputRecordJfr() {
+        return ghActionsKit.getInput("record-jfr").map(Boolean::parseBoolean).orElse(false);
+    }
+
+    /**
+     * Gets the "metrics-file" input.
+     * @return the path of the metrics file to write at the end of the run, if any.
+     */
+    Optional<String> getInputMetricsFile() {
+        return ghActionsKit.getInput("metrics-file");
+    }
+
+    /**
+     * Gets the "scan-page-size" input.
+     * @return the "scan-page-size" input.
+     */
+    int getInputScanPageSize() {
+        return ghActionsKit.getInput("scan-page-size").map(Integer::valueOf).orElse(RefResolver.MAX_SCAN_PAGE_SIZE);
+    }
+
+    /**
+     * Connects to GitHub API and retrieves the repository. <br>
+     * The API validity check and the repository retrieval are run concurrently.
+     * @throws IOException if an error occurs.
+     */
+    void connectRepository() throws IOException {
+        if (getInputConnection() == ConnectionMode.LAZY) {
+            connectRepositoryLazily();
+            return;
         }
 
-        return Optional.empty();
+        buildApi();
+
+        var checkApiFuture = async(() -> {
+            checkApi();
+            return null;
+        });
+        var ghRepositoryFuture = async(() -> {
+            var repository = ghActionsKit.getGitHubRepository();
+            return phaseTimer.timed(Phase.GET_REPOSITORY, repository, () -> ghApi.getRepository(repository));
+        });
+
+        // Report API errors first.
+        await(checkApiFuture);
+        ghRepository = await(ghRepositoryFuture);
     }
 
     /**
-     * Gets the ref from a branch name.
-     * @param branchName the branch name.
-     * @return the ref for the given branch name.
+     * Connects to GitHub API and addresses the repository by name, without any request. <br>
+     * Connection or authorization errors surface from the first lookup.
+     * @throws IOException if an error occurs.
      */
-    String branchRef(@NonNull String branchName) {
-        return String.format("refs/heads/%s", branchName);
+    void connectRepositoryLazily() throws IOException {
+        var repository = ghActionsKit.getGitHubRepository();
+        var ownerAndName = repository.split("/", 2);
+        if (ownerAndName.length != 2) {
+            throw new IllegalArgumentException(String.format("invalid repository: %s", repository));
+        }
+
+        // Get token
+        var githubToken = ghActionsKit.getRequiredEnv("GITHUB_TOKEN");
+
+        // A token without a user login: the client would otherwise look up the token owner on build.
+        // @formatter:off
+        ghApi = phaseTimer.timed(Phase.CONNECT_API, null, () -> Optional.ofNullable(ghApi)
+                .orElse(newApiBuilder()
+                        .withAuthorizationProvider(() -> "token " + githubToken)
+                        .build()));
+        // @formatter:on
+
+        ghRepository = phaseTimer.timed(
+                Phase.GET_REPOSITORY, repository, () -> getRepositoryHandle(ownerAndName[0], ownerAndName[1]));
+        ghActionsKit.debug("github api url connection: skipped.");
     }
 
     /**
-     * Gets the ref from a tag name.
-     * @param name the tag name.
-     * @return the ref for the given tag name.
+     * Builds a repository handle bound to the GitHub API, without fetching the repository.
+     * @param owner the repository owner login.
+     * @param name the repository name.
+     * @return the repository handle.
+     * @throws IOException if an error occurs.
      */
-    String tagRef(@NonNull String name) {
-        return String.format("refs/tags/%s", name);
+    GHRepository getRepositoryHandle(@NonNull String owner, @NonNull String name) throws IOException {
+        var node = JsonNodeFactory.instance.objectNode();
+        node.put("name", name);
+        node.put("full_name", owner + "/" + name);
+        node.putObject("owner").put("login", owner);
+
+        // @formatter:off
+        var injectableValues = new InjectableValues.Std()
+                .addValue(GitHub.class, ghApi)
+                .addValue(GitHubConnectorResponse.class, null);
+        return GitHub.getMappingObjectReader()
+                .forType(GHRepository.class)
+                .with(injectableValues)
+                .readValue(node);
+        // @formatter:on
     }
 
     /**
-     * Gets the ref from a commit sha.
-     * @param name the commit sha.
-     * @return the ref for the given commit.
+     * Replaces a lookup error by the connection error, if any, when connected lazily. <br>
+     * A repository that cannot be reached looks like a missing ref or branch, so the checks skipped on connection
+     * are run to report the actual cause.
+     * @param e the error.
+     * @return the connection error, or the given error if the connection is fine.
      */
-    String commitRef(@NonNull String name) {
-        return String.format("refs/commits/%s", name);
+    Exception diagnoseConnection(@NonNull Exception e) {
+        if (!(e instanceof NoSuchElementException || e instanceof GHFileNotFoundException)
+                || ghApi == null
+                || getInputConnection() != ConnectionMode.LAZY) {
+            return e;
+        }
+
+        try {
+            checkApi();
+            ghApi.getRepository(ghActionsKit.getGitHubRepository());
+            return e;
+        } catch (IOException connectionError) {
+            connectionError.addSuppressed(e);
+            return connectionError;
+        }
+    }
+
+    /**
+     * Builds the GitHub API client.
+     * @throws IOException if an error occurs.
+     */
+    void buildApi() throws IOException {
+        // Get token
+        var githubToken = ghActionsKit.getRequiredEnv("GITHUB_TOKEN");
+
+        // @formatter:off
+        ghApi = phaseTimer.timed(Phase.CONNECT_API, null, () -> Optional.ofNullable(ghApi)
+                .orElse(newApiBuilder()
+                        .withOAuthToken(githubToken)
+                        .build()));
+        // @formatter:on
+    }
+
+    /**
+     * Creates a GitHub API client builder for the API URL, with the shared API connector. <br>
+     * The rate limits are handled by the scheduler only, failing once given up instead of waiting again.
+     * @return the GitHub API client builder.
+     */
+    GitHubBuilder newApiBuilder() {
+        // @formatter:off
+        return new GitHubBuilder()
+                .withEndpoint(ghActionsKit.getGitHubApiUrl())
+                .withRateLimitHandler(RateLimitScheduler.RATE_LIMIT_HANDLER)
+                .withAbuseLimitHandler(RateLimitScheduler.ABUSE_LIMIT_HANDLER)
+                .withConnector(getApiConnector());
+        // @formatter:on
+    }
+
+    /**
+     * Gets the connector shared by the API calls, creating it on first use with the transport, the rate limit
+     * scheduler and the response cache from the inputs. <br>
+     * Every request sent, retries included, is counted in the metrics.
+     * @return the API connector.
+     */
+    synchronized GitHubConnector getApiConnector() {
+        if (apiConnector != null) {
+            return apiConnector;
+        }
+
+        var connector = GitHubConnector.DEFAULT;
+        if (getInputConnector() == ConnectorType.HTTP_CLIENT) {
+            connector = new HttpClientConnector(getHttpClient(), getInputReadTimeout());
+        }
+
+        connector = new MetricsConnector(connector, mergeMetrics);
+
+        rateLimitScheduler = new RateLimitScheduler(connector, getInputRateLimitMaxWait());
+        connector = rateLimitScheduler;
+
+        var cacheDir = getInputCacheDir();
+        if (cacheDir.isPresent()) {
+            var maxSize = getInputCacheMaxSize() * 1024 * 1024;
+            connector = new CachingConnector(
+                    connector, new ResponseCache(Path.of(cacheDir.get()), maxSize), getCacheScope());
+        }
+
+        apiConnector = connector;
+        return apiConnector;
+    }
+
+    /**
+     * Gets the scope of the cached API responses: the repository, with the token unless it is issued for the job. <br>
+     * A token issued for the job is renewed on every run, so that keying by it would never hit across runs. A
+     * long-lived token keeps its own entries.
+     * @return the cache scope.
+     */
+    String getCacheScope() {
+        var repository = ghActionsKit.getGitHubRepository();
+        var token = ghActionsKit.getRequiredEnv("GITHUB_TOKEN");
+        if (token.startsWith(INSTALLATION_TOKEN_PREFIX)) {
+            return repository;
+        }
+        return repository + "\n" + token;
+    }
+
+    /**
+     * Reports the time waited for the rate limits, if the API calls were scheduled.
+     */
+    void reportRateLimitWait() {
+        if (rateLimitScheduler != null) {
+            var waited = rateLimitScheduler.getWaited().toMillis();
+            ghActionsKit.setOutput(OutputVars.RATE_LIMIT_WAIT.key(), String.valueOf(waited));
+            if (waited > 0) {
+                ghActionsKit.notice(String.format("Waited %d ms for the GitHub API rate limits.", waited));
+            }
+        }
+    }
+
+    /**
+     * Traces the number of API requests of the run, by method and endpoint.
+     */
+    void reportRequests() {
+        var apiCallCounts = mergeMetrics.getApiCallCounts();
+        // @formatter:off
+        var summary = apiCallCounts.entrySet().stream()
+                .map(entry -> String.format("%s: %d", entry.getKey(), entry.getValue()))
+                .collect(Collectors.joining(", "));
+        // @formatter:on
+        var total = apiCallCounts.values().stream().mapToLong(Long::longValue).sum();
+        ghActionsKit.debug(String.format("requests: [%s], total: %d.", summary, total));
+    }
+
+    /**
+     * Gets the number of API requests sent so far.
+     * @return the number of requests sent, or <code>0</code> before the API client is built.
+     */
+    long getRequestCount() {
+        return rateLimitScheduler == null ? 0 : rateLimitScheduler.getRequestCount();
+    }
+
+    /**
+     * Records the JVM startup, from the process start until now.
+     */
+    void recordJvmStartup() {
+        // @formatter:off
+        ProcessHandle.current().info().startInstant()
+                .map(start -> Duration.between(start, Instant.now()))
+                .filter(startup -> !startup.isNegative())
+                .ifPresent(startup -> phaseTimer.record(Phase.JVM_STARTUP, startup));
+        // @formatter:on
+    }
+
+    /**
+     * Sets the duration outputs and traces the duration of each phase.
+     */
+    void reportDurations() {
+        var elapsed = phaseTimer.getElapsed().toMillis();
+        ghActionsKit.debug(String.format("timings: [%s], total: %d ms.", phaseTimer.summary(), elapsed));
+        ghActionsKit.setOutput(OutputVars.DURATION.key(), String.valueOf(elapsed));
+
+        var phaseDurations = new LinkedHashMap<String, Long>();
+        phaseTimer.getDurations().forEach((phase, duration) -> phaseDurations.put(phase.key(), duration.toMillis()));
+        try {
+            ghActionsKit.setOutput(OutputVars.PHASE_DURATIONS.key(), OBJECT_MAPPER.writeValueAsString(phaseDurations));
+        } catch (IOException e) {
+            ghActionsKit.debug(String.format("phase durations not reported: %s", e.getMessage()));
+        }
+    }
+
+    /**
+     * Writes the metrics of the run to the metrics file, if requested.
+     */
+    void writeMetrics() {
+        var metricsFile = getInputMetricsFile();
+        if (metricsFile.isPresent()) {
+            try {
+                mergeMetrics.writeTo(Path.of(metricsFile.get()));
+            } catch (IOException e) {
+                ghActionsKit.debug(String.format("metrics not written: %s", e.getMessage()));
+            }
+        }
+    }
+
+    /**
+     * Starts a flight recording of the run if requested, to be written to the workspace once stopped.
+     * @return the recording, or <code>empty</code> if not requested or if it cannot be started.
+     */
+    Optional<Recording> startRecording() {
+        if (!getInputRecordJfr()) {
+            return Optional.empty();
+        }
+        if (!FlightRecorder.isAvailable()) {
+            ghActionsKit.debug("flight recording not started: flight recorder not available.");
+            return Optional.empty();
+        }
+
+        var destination = Path.of(ghActionsKit.getRequiredEnv("GITHUB_WORKSPACE"), JFR_FILE_NAME);
+        try {
+            var recording = new Recording(Configuration.getConfiguration("default"));
+            recording.enable(PhaseEvent.class);
+            recording.setDestination(destination);
+            recording.start();
+            return Optional.of(recording);
+        } catch (IOException | ParseException e) {
+            ghActionsKit.debug(String.format("flight recording not started: %s", e.getMessage()));
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Stops the given flight recording, writing it to its destination.
+     * @param recording the recording.
+     */
+    void stopRecording(@NonNull Recording recording) {
+        try (recording) {
+            recording.stop();
+            ghActionsKit.notice(String.format("Flight recording written to %s.", recording.getDestination()));
+        }
+    }
+
+    /**
+     * Gets the HTTP client shared by the API calls, creating it on first use.
+     * @return the HTTP client.
+     */
+    HttpClient getHttpClient() {
+        // @formatter:off
+        httpClient = Optional.ofNullable(httpClient)
+                .orElseGet(() -> HttpClientConnector.newHttpClient(getInputConnectTimeout()));
+        // @formatter:on
+        return httpClient;
+    }
+
+    /**
+     * Checks the GitHub API URL validity.
+     * @throws IOException if an error occurs.
+     */
+    void checkApi() throws IOException {
+        ghActionsKit.debug("github api url connection: check.");
+        phaseTimer.timed(Phase.CONNECT_API, null, () -> ghApi.checkApiUrlValidity());
+        ghActionsKit.debug("github api url connection: ok.");
+    }
+
+    /**
+     * Resolves the repository, the source ref and the target branch with a single GraphQL query, then merges.
+     * @param from the branch, tag, ref or commit name to merge.
+     * @param to the target branch name.
+     * @param message the merge commit message.
+     * @return the merge result, or <code>empty</code> if the source ref or the target branch could not be resolved.
+     * @throws IOException if an error occurs.
+     * @throws InterruptedException if the current thread is interrupted while waiting for the response.
+     */
+    Optional<MergeResult> mergeWithGraphQL(@NonNull String from, @NonNull String to, @NonNull Optional<String> message)
+            throws IOException, InterruptedException {
+        var repository = ghActionsKit.getGitHubRepository();
+        var backend = getGraphQLBackend();
+
+        // Resolve repository, source and target at once.
+        GraphQLBackend.Resolution resolution;
+        var resolveSpan = phaseTimer.start(Phase.GET_REF, from);
+        try {
+            resolution = backend.resolve(repository, from, to);
+        } finally {
+            resolveSpan.close();
+        }
+        if (resolution.getFromRef().isEmpty() || resolution.getToOid().isEmpty()) {
+            return Optional.empty();
+        }
+
+        // Do the merge, by ref name so that a source moved meanwhile is merged at its latest commit.
+        var fromRef = resolution.getFromRef().get();
+        Optional<String> mergeSha;
+        try {
+            mergeSha = phaseTimer.timed(Phase.MERGE, to, () -> withMergeRetries(
+                    to, attempt -> backend.merge(repository, to, fromRef, message)));
+        } catch (HttpException e) {
+            mergeMetrics.recordMerge(isConflict(e) ? MergeOutcome.CONFLICT : MergeOutcome.ERROR);
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            mergeMetrics.recordMerge(MergeOutcome.ERROR);
+            throw e;
+        }
+        if (mergeSha.isPresent()) {
+            ghActionsKit.notice(String.format("Branch %s merged successfully.", to));
+            mergeMetrics.recordMerge(MergeOutcome.MERGED);
+            return Optional.of(new MergeResult(fromRef, to, MergeStatus.MERGED, mergeSha.get()));
+        } else {
+            ghActionsKit.notice(String.format("Nothing to merge into branch %s.", to));
+            mergeMetrics.recordMerge(MergeOutcome.NOOP);
+            return Optional.of(
+                    new MergeResult(fromRef, to, MergeStatus.UP_TO_DATE, resolution.getToOid().get()));
+        }
+    }
+
+    /**
+     * Gets the GraphQL backend.
+     * @return the GraphQL backend.
+     */
+    GraphQLBackend getGraphQLBackend() {
+        // @formatter:off
+        graphQLBackend = Optional.ofNullable(graphQLBackend)
+                .orElseGet(() -> new GraphQLBackend(
+                        ghActionsKit,
+                        getHttpClient(),
+                        getApiConnector(),
+                        ghActionsKit.getGitHubApiUrl(),
+                        ghActionsKit.getRequiredEnv("GITHUB_TOKEN")));
+        // @formatter:on
+        return graphQLBackend;
+    }
+
+    /**
+     * Gets the discovery of the target branches matching a pattern, sending its requests through the connector of the
+     * GitHub API client.
+     * @return the target discovery.
+     */
+    TargetDiscovery getTargetDiscovery() {
+        // @formatter:off
+        targetDiscovery = Optional.ofNullable(targetDiscovery)
+                .orElseGet(() -> new TargetDiscovery(
+                        ghActionsKit,
+                        Optional.ofNullable(apiConnector).orElse(GitHubConnector.DEFAULT),
+                        ghActionsKit.getGitHubApiUrl(),
+                        ghActionsKit.getRequiredEnv("GITHUB_TOKEN"),
+                        ghActionsKit.getGitHubRepository()));
+        // @formatter:on
+        return targetDiscovery;
+    }
+
+    /**
+     * Expands the target branch patterns into the matching branches. <br>
+     * The branch names are kept as is, duplicates and the source branch are left out, and a notice is posted for each
+     * pattern matching no branch.
+     * @param to the target branch names or patterns.
+     * @param from the source ref name.
+     * @return the target branch names, in the order of the inputs.
+     * @throws IOException if an error occurs.
+     */
+    List<String> discoverTargets(@NonNull List<String> to, @NonNull String from) throws IOException {
+        if (to.stream().noneMatch(TargetDiscovery::isGlob)) {
+            return to;
+        }
+
+        // Several patterns: list the refs once into the index shared with the ref resolution, rather than once per
+        // pattern.
+        var indexed = to.stream().filter(TargetDiscovery::isGlob).count() > 1;
+        var targets = new LinkedHashSet<String>();
+        for (String name : to) {
+            if (!TargetDiscovery.isGlob(name)) {
+                targets.add(name);
+                continue;
+            }
+            // @formatter:off
+            var branches = phaseTimer.timed(Phase.DISCOVER_TARGETS, name, () -> indexed
+                    ? getTargetDiscovery().discover(name, getRefResolver().getRefIndex())
+                    : getTargetDiscovery().discover(name));
+            // @formatter:on
+            if (branches.isEmpty()) {
+                ghActionsKit.notice(String.format("No branch matches the target pattern %s.", name));
+            }
+            targets.addAll(branches);
+        }
+
+        // Never merge a branch into itself.
+        targets.remove(from);
+        if (from.startsWith("refs/heads/")) {
+            targets.remove(from.substring("refs/heads/".length()));
+        }
+        return new ArrayList<>(targets);
+    }
+
+    /**
+     * Merges the given ref into each of the given target branches, up to the given number of merges at a time.
+     * @param fromGHRef the ref to merge.
+     * @param targets the target branch names.
+     * @param message the merge commit message.
+     * @param maxParallel the maximum number of merges run at a time.
+     * @return the merge results, in the order of the target branches.
+     * @throws IOException if an error occurs.
+     * @throws InterruptedException if the current thread is interrupted while waiting for the merges.
+     */
+    List<MergeResult> mergeAll(
+            @NonNull GHRef fromGHRef,
+            @NonNull List<String> targets,
+            @NonNull Optional<String> message,
+            int maxParallel)
+            throws IOException, InterruptedException {
+        if (maxParallel < 1) {
+            throw new IllegalArgumentException(String.format("max parallel must be positive: %d", maxParallel));
+        }
+
+        // Single target: no need for a thread.
+        if (targets.size() == 1) {
+            return List.of(merge(fromGHRef, targets.get(0), message));
+        }
+
+        var executor = Executors.newFixedThreadPool(Math.min(maxParallel, targets.size()));
+        try {
+            var tasks = new ArrayList<Callable<MergeResult>>();
+            for (String to : targets) {
+                tasks.add(() -> merge(fromGHRef, to, message));
+            }
+
+            // Wait for all merges, then report the first failure.
+            var mergeResults = new ArrayList<MergeResult>();
+            Throwable failure = null;
+            for (Future<MergeResult> future : executor.invokeAll(tasks)) {
+                try {
+                    mergeResults.add(future.get());
+                } catch (ExecutionException e) {
+                    failure = Optional.ofNullable(failure).orElse(e.getCause());
+                }
+            }
+            if (failure instanceof IOException) {
+                throw (IOException) failure;
+            } else if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            } else if (failure instanceof Error) {
+                throw (Error) failure;
+            } else if (failure != null) {
+                throw new CompletionException(failure);
+            }
+            return mergeResults;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Merges each branch of the chain into the next one, stopping at the first conflict. <br>
+     * The SHA resulting from each merge is used as the source of the next one.
+     * @param chain the branch names, from the oldest to the newest.
+     * @param message the merge commit message.
+     * @param mergeResults the list to which the result of each merge is added.
+     * @throws IOException if an error occurs.
+     */
+    void mergeChain(
+            @NonNull List<String> chain, @NonNull Optional<String> message, @NonNull List<MergeResult> mergeResults)
+            throws IOException {
+        if (chain.size() < 2) {
+            throw new IllegalArgumentException(
+                    String.format("merge chain must contain at least two branches: %s", chain));
+        }
+
+        var head = chain.get(0);
+        for (int i = 1; i < chain.size(); i++) {
+            var to = chain.get(i);
+            try {
+                var mergeResult = merge(head, to, message);
+                mergeResults.add(mergeResult);
+                head = mergeResult.getSha();
+            } catch (HttpException e) {
+                if (isConflict(e)) {
+                    throw new IllegalStateException(
+                            String.format(
+                                    "merge chain stopped at hop %d/%d (%s -> %s): merge conflict.",
+                                    i,
+                                    chain.size() - 1,
+                                    chain.get(i - 1),
+                                    to),
+                            e);
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Merges each source ref into the target branch, one after the other. <br>
+     * On conflict, the train stops unless asked to continue, in which case the conflict is reported and the next source
+     * ref is merged.
+     * @param fromGHRefs the refs to merge.
+     * @param to the target branch name.
+     * @param toGhBranch the target branch.
+     * @param message the merge commit message.
+     * @param continueOnConflict <code>true</code> to continue with the next ref on conflict, <code>false</code> to
+     *            stop.
+     * @param mergeResults the list to which the result of each merge is added.
+     * @throws IOException if an error occurs.
+     */
+    void mergeTrain(
+            @NonNull List<GHRef> fromGHRefs,
+            @NonNull String to,
+            @NonNull GHBranch toGhBranch,
+            @NonNull Optional<String> message,
+            boolean continueOnConflict,
+            @NonNull List<MergeResult> mergeResults)
+            throws IOException {
+        var head = toGhBranch.getSHA1();
+        for (GHRef fromGHRef : fromGHRefs) {
+            var from = fromGHRef.getRef();
+            try {
+                var mergeResult = merge(from, to, head, toGhBranch, message);
+                if (mergeResult.getStatus() == MergeStatus.MERGED
+                        || mergeResult.getStatus() == MergeStatus.FAST_FORWARDED) {
+                    head = mergeResult.getSha();
+                }
+                mergeResults.add(new MergeResult(
+                        from, to, mergeResult.getStatus(), head, mergeResult.getComparison().orElse(null)));
+            } catch (HttpException e) {
+                if (!isConflict(e)) {
+                    throw e;
+                }
+                mergeResults.add(new MergeResult(from, to, MergeStatus.CONFLICT, head));
+                ghActionsKit.notice(String.format("Conflict merging %s into branch %s.", from, to));
+                if (!continueOnConflict) {
+                    throw new IllegalStateException(
+                            String.format("merge train stopped at %s: merge conflict.", from), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Merges the given ref into the given target branch.
+     * @param fromGHRef the ref to merge.
+     * @param to the target branch name.
+     * @param message the merge commit message.
+     * @return the merge result.
+     * @throws IOException if an error occurs.
+     */
+    MergeResult merge(@NonNull GHRef fromGHRef, @NonNull String to, @NonNull Optional<String> message)
+            throws IOException {
+        return merge(fromGHRef.getRef(), to, message);
+    }
+
+    /**
+     * Merges the given head into the given target branch.
+     * @param head the head to merge, as a ref or a commit SHA.
+     * @param to the target branch name.
+     * @param message the merge commit message.
+     * @return the merge result.
+     * @throws IOException if an error occurs.
+     */
+    MergeResult merge(@NonNull String head, @NonNull String to, @NonNull Optional<String> message)
+            throws IOException {
+        // Get target branch
+        var toGhBranch = getToBranch(to).orElseThrow();
+
+        // Do the merge
+        return merge(head, to, toGhBranch, message);
+    }
+
+    /**
+     * Merges the given head into the given target branch.
+     * @param head the head to merge, as a ref or a commit SHA.
+     * @param to the target branch name.
+     * @param toGhBranch the target branch.
+     * @param message the merge commit message.
+     * @return the merge result.
+     * @throws IOException if an error occurs.
+     */
+    MergeResult merge(
+            @NonNull String head,
+            @NonNull String to,
+            @NonNull GHBranch toGhBranch,
+            @NonNull Optional<String> message)
+            throws IOException {
+        return merge(head, to, toGhBranch.getSHA1(), toGhBranch, message);
+    }
+
+    /**
+     * Merges the given head into the given target branch, whose latest commit is known. <br>
+     * The merge is timed, and its outcome counted in the metrics.
+     * @param head the head to merge, as a ref or a commit SHA.
+     * @param to the target branch name.
+     * @param toSha the target branch latest commit SHA.
+     * @param toGhBranch the target branch.
+     * @param message the merge commit message.
+     * @return the merge result.
+     * @throws IOException if an error occurs.
+     */
+    MergeResult merge(
+            @NonNull String head,
+            @NonNull String to,
+            @NonNull String toSha,
+            @NonNull GHBranch toGhBranch,
+            @NonNull Optional<String> message)
+            throws IOException {
+        try {
+            var mergeResult = phaseTimer.timed(
+                    Phase.MERGE, to, () -> lockAndMerge(head, to, toSha, toGhBranch, message));
+            mergeMetrics.recordMerge(MergeOutcome.of(mergeResult.getStatus()));
+            return mergeResult;
+        } catch (HttpException e) {
+            mergeMetrics.recordMerge(isConflict(e) ? MergeOutcome.CONFLICT : MergeOutcome.ERROR);
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            mergeMetrics.recordMerge(MergeOutcome.ERROR);
+            throw e;
+        }
+    }
+
+    /**
+     * Merges the given head into the given target branch, whose latest commit is known. <br>
+     * If requested, and unless planning, the merge is done under the merge lock of the target branch, after refreshing
+     * the target branch which may have moved while waiting for the lock.
+     * @param head the head to merge, as a ref or a commit SHA.
+     * @param to the target branch name.
+     * @param toSha the target branch latest commit SHA.
+     * @param toGhBranch the target branch.
+     * @param message the merge commit message.
+     * @return the merge result.
+     * @throws IOException if an error occurs.
+     */
+    MergeResult lockAndMerge(
+            @NonNull String head,
+            @NonNull String to,
+            @NonNull String toSha,
+            @NonNull GHBranch toGhBranch,
+            @NonNull Optional<String> message)
+            throws IOException {
+        if (!getInputLock() || getInputMode() == MergeMode.PLAN) {
+            return mergeWithRetries(head, to, toSha, toGhBranch, message);
+        }
+
+        try (var lock = newRefLock(to)) {
+            lock.acquire(toSha);
+            var lockedGhBranch = getToBranch(to).orElseThrow();
+            return mergeWithRetries(head, to, lockedGhBranch.getSHA1(), lockedGhBranch, message);
+        }
+    }
+
+    /**
+     * Merges the given head into the given target branch, whose latest commit is known. <br>
+     * A merge failing transiently, on a server error or because the target branch moved meanwhile, is retried with an
+     * exponential backoff, after refreshing the target branch only. A merge conflict fails immediately.
+     * @param head the head to merge, as a ref or a commit SHA.
+     * @param to the target branch name.
+     * @param toSha the target branch latest commit SHA.
+     * @param toGhBranch the target branch.
+     * @param message the merge commit message.
+     * @return the merge result.
+     * @throws IOException if an error occurs.
+     */
+    MergeResult mergeWithRetries(
+            @NonNull String head,
+            @NonNull String to,
+            @NonNull String toSha,
+            @NonNull GHBranch toGhBranch,
+            @NonNull Optional<String> message)
+            throws IOException {
+        return withMergeRetries(to, attempt -> {
+            if (attempt == 0) {
+                return attemptMerge(head, to, toSha, toGhBranch, message);
+            }
+
+            // Refresh the target branch only.
+            var refreshedGhBranch = getToBranch(to).orElseThrow();
+            return attemptMerge(head, to, refreshedGhBranch.getSHA1(), refreshedGhBranch, message);
+        });
+    }
+
+    /**
+     * Runs the given merge attempt, retrying it with an exponential backoff while it fails transiently.
+     * @param <T> the merge result type.
+     * @param to the target branch name.
+     * @param mergeAttempt the merge attempt, given the number of the attempt starting from <code>0</code>.
+     * @return the merge result.
+     * @throws IOException if an error occurs.
+     */
+    <T> T withMergeRetries(@NonNull String to, @NonNull MergeAttempt<T> mergeAttempt) throws IOException {
+        var retries = getInputMergeRetries();
+        for (int attempt = 0;; attempt++) {
+            try {
+                return mergeAttempt.attempt(attempt);
+            } catch (HttpException e) {
+                if (attempt >= retries || !isTransientFailure(e)) {
+                    throw e;
+                }
+
+                var delay = mergeRetryBackoff.multipliedBy(1L << Math.min(attempt, 16));
+                ghActionsKit.debug(String.format(
+                        "merge into branch %s: attempt %d/%d failed with HTTP %d, retrying in %d ms.",
+                        to,
+                        attempt + 1,
+                        retries + 1,
+                        e.getResponseCode(),
+                        delay.toMillis()));
+                sleep(delay);
+            }
+        }
+    }
+
+    /**
+     * Creates the merge lock of the given target branch, owned by the current run. <br>
+     * The lease must exceed the maximum wait for the rate limits: otherwise, a merge held by the rate limits may
+     * outlive its lease, and its lock be stolen by another run.
+     * @param to the target branch name.
+     * @return the merge lock, not acquired yet.
+     * @throws IllegalArgumentException if the lease does not exceed the maximum wait for the rate limits.
+     */
+    RefLock newRefLock(@NonNull String to) {
+        var lease = getInputLockLease();
+        var rateLimitMaxWait = getInputRateLimitMaxWait();
+        if (lease.compareTo(rateLimitMaxWait) <= 0) {
+            throw new IllegalArgumentException(String.format(
+                    "lock lease must be greater than the rate limit max wait: %d s <= %d s",
+                    lease.toSeconds(),
+                    rateLimitMaxWait.toSeconds()));
+        }
+
+        var owner = String.format(
+                "%s-%s",
+                ghActionsKit.getRequiredEnv("GITHUB_RUN_ID"),
+                UUID.randomUUID().toString().substring(0, 8));
+        return new RefLock(
+                ghActionsKit, ghRepository, to, owner, lease, getInputLockTimeout(), lockPollInterval);
+    }
+
+    /**
+     * Merges the given head into the given target branch once, whose latest commit is known. <br>
+     * Unless in {@link MergeMode#MERGE} mode with the {@link MergeStrategy#MERGE} strategy, the target branch is
+     * compared with the head first. The merge is skipped if the head has no commit missing from the target branch, and
+     * the target branch is fast-forwarded if requested and if it has no commit missing from the head.
+     * @param head the head to merge, as a ref or a commit SHA.
+     * @param to the target branch name.
+     * @param toSha the target branch latest commit SHA.
+     * @param toGhBranch the target branch.
+     * @param message the merge commit message.
+     * @return the merge result.
+     * @throws IOException if an error occurs.
+     */
+    MergeResult attemptMerge(
+            @NonNull String head,
+            @NonNull String to,
+            @NonNull String toSha,
+            @NonNull GHBranch toGhBranch,
+            @NonNull Optional<String> message)
+            throws IOException {
+        var mode = getInputMode();
+        var strategy = getInputStrategy();
+        if (mode == MergeMode.MERGE && strategy == MergeStrategy.MERGE) {
+            return createMergeCommit(head, to, toSha, toGhBranch, message, null);
+        }
+
+        // Compare first.
+        var comparison = compare(toSha, head);
+        if (comparison.getAheadBy() == 0) {
+            ghActionsKit.notice(String.format("Nothing to merge into branch %s.", to));
+            return new MergeResult(head, to, MergeStatus.UP_TO_DATE, toSha, comparison);
+        }
+
+        var fastForward = strategy != MergeStrategy.MERGE && comparison.getBehindBy() == 0;
+        if (strategy == MergeStrategy.FF_ONLY && !fastForward) {
+            throw new IllegalStateException(String.format(
+                    "branch %s cannot be fast-forwarded: %d commit(s) missing from %s.",
+                    to,
+                    comparison.getBehindBy(),
+                    head));
+        }
+
+        if (mode == MergeMode.PLAN) {
+            ghActionsKit.notice(String.format(
+                    "Branch %s would be %s: %d commit(s) ahead, %d commit(s) behind.",
+                    to,
+                    fastForward ? "fast-forwarded" : "merged",
+                    comparison.getAheadBy(),
+                    comparison.getBehindBy()));
+            var status = fastForward ? MergeStatus.WOULD_FAST_FORWARD : MergeStatus.WOULD_MERGE;
+            return new MergeResult(head, to, status, toSha, comparison);
+        } else if (fastForward) {
+            return fastForward(head, to, comparison);
+        } else {
+            return createMergeCommit(head, to, toSha, toGhBranch, message, comparison);
+        }
+    }
+
+    /**
+     * Creates the commit merging the given head into the given target branch.
+     * @param head the head to merge, as a ref or a commit SHA.
+     * @param to the target branch name.
+     * @param toSha the target branch latest commit SHA.
+     * @param toGhBranch the target branch.
+     * @param message the merge commit message.
+     * @param comparison the comparison of the target branch with the head, or <code>null</code> if not compared.
+     * @return the merge result.
+     * @throws IOException if an error occurs.
+     */
+    MergeResult createMergeCommit(
+            @NonNull String head,
+            @NonNull String to,
+            @NonNull String toSha,
+            @NonNull GHBranch toGhBranch,
+            @NonNull Optional<String> message,
+            Comparison comparison)
+            throws IOException {
+        var localGitEngine = getLocalGitEngine();
+        if (localGitEngine.isPresent()) {
+            var mergeResult = localGitEngine.get().merge(head, to, message);
+            return new MergeResult(head, to, mergeResult.getStatus(), mergeResult.getSha(), comparison);
+        }
+
+        var ghMergeCommit = toGhBranch.merge(head, message.orElse(null));
+
+        if (ghMergeCommit != null) {
+            ghActionsKit.notice(String.format("Branch %s merged successfully.", to));
+            return new MergeResult(head, to, MergeStatus.MERGED, ghMergeCommit.getSHA1(), comparison);
+        } else {
+            ghActionsKit.notice(String.format("Nothing to merge into branch %s.", to));
+            return new MergeResult(head, to, MergeStatus.UP_TO_DATE, toSha, comparison);
+        }
+    }
+
+    /**
+     * Gets the local git engine, if selected by the "engine" input. <br>
+     * With the {@link MergeEngine#AUTO} engine, the clone in the workspace is checked once, and merges are created
+     * with the API if it cannot be used.
+     * @return the local git engine, or <code>empty</code> if merges are created with the API.
+     * @throws IOException if an error occurs.
+     */
+    synchronized Optional<LocalGitEngine> getLocalGitEngine() throws IOException {
+        var engine = getInputEngine();
+        if (engine == MergeEngine.API) {
+            return Optional.empty();
+        }
+
+        if (localGitEngine == null && !localGitEngineUnusable) {
+            var workspace = Path.of(ghActionsKit.getRequiredEnv("GITHUB_WORKSPACE"));
+            var candidate = new LocalGitEngine(ghActionsKit, workspace, LocalGitEngine.DEFAULT_REMOTE);
+            var unusable = candidate.checkUsable(ghActionsKit.getGitHubRepository());
+            if (unusable.isEmpty()) {
+                localGitEngine = candidate;
+            } else if (engine == MergeEngine.LOCAL) {
+                throw new IllegalStateException(String.format("local git engine unavailable: %s.", unusable.get()));
+            } else {
+                localGitEngineUnusable = true;
+                ghActionsKit.debug(String.format("local git engine: %s, merging with the api.", unusable.get()));
+            }
+        }
+        return Optional.ofNullable(localGitEngine);
+    }
+
+    /**
+     * Moves the given target branch to the given head, at the commit found by the comparison. <br>
+     * The ref update is not forced: GitHub rejects it if the target branch has moved to a commit missing from the head
+     * in the meantime.
+     * @param head the head, as a ref or a commit SHA.
+     * @param to the target branch name.
+     * @param comparison the comparison of the target branch with the head.
+     * @return the merge result.
+     * @throws IOException if an error occurs.
+     */
+    MergeResult fastForward(@NonNull String head, @NonNull String to, @NonNull Comparison comparison)
+            throws IOException {
+        var sha = comparison.getHeadSha();
+        getRefHandle(RefResolver.branchRef(to)).updateTo(sha, false);
+
+        ghActionsKit.notice(String.format("Branch %s fast-forwarded successfully.", to));
+        return new MergeResult(head, to, MergeStatus.FAST_FORWARDED, sha, comparison);
+    }
+
+    /**
+     * Builds a handle on the given ref of the repository bound to the GitHub API, without fetching the ref.
+     * @param ref the full ref name.
+     * @return the ref handle.
+     * @throws IOException if an error occurs.
+     */
+    GHRef getRefHandle(@NonNull String ref) throws IOException {
+        var node = JsonNodeFactory.instance.objectNode();
+        node.put("ref", ref);
+        node.put("url", String.format(
+                "%s/repos/%s/%s/git/%s",
+                ghActionsKit.getGitHubApiUrl().replaceAll("/+$", ""),
+                ghRepository.getOwnerName(),
+                ghRepository.getName(),
+                ref));
+
+        // @formatter:off
+        var injectableValues = new InjectableValues.Std()
+                .addValue(GitHub.class, ghApi)
+                .addValue(GitHubConnectorResponse.class, null);
+        return GitHub.getMappingObjectReader()
+                .forType(GHRef.class)
+                .with(injectableValues)
+                .readValue(node);
+        // @formatter:on
+    }
+
+    /**
+     * Compares the given base with the given head, with a single request. <br>
+     * The head is compared with the base rather than the other way around, so that the base commit of the response is
+     * the head commit, then the counts are swapped. The compared commits are paginated so that the response holds at
+     * most one of them.
+     * @param base the base, as a ref or a commit SHA.
+     * @param head the head, as a ref or a commit SHA.
+     * @return the comparison of the base with the head.
+     * @throws IOException if an error occurs.
+     */
+    Comparison compare(@NonNull String base, @NonNull String head) throws IOException {
+        ghRepository.setCompareUsePaginatedCommits(true);
+        var ghCompare = ghRepository.getCompare(head, base);
+        return new Comparison(
+                ghCompare.getBehindBy(), ghCompare.getAheadBy(), ghCompare.getBaseCommit().getSHA1());
+    }
+
+    /**
+     * Gets the branch matching the given name.
+     * @param name the branch name to look for.
+     * @return the {@link GHBranch} for the given branch if exists, <code>false</code> otherwise.
+     * @throws IOException if an error occurs.
+     */
+    Optional<GHBranch> getToBranch(@NonNull String name) throws IOException {
+        return phaseTimer.timed(Phase.GET_TO_BRANCH, name, () -> Optional.ofNullable(ghRepository.getBranch(name)));
+    }
+
+    /**
+     * Gets the {@link GHRef} branch or tag matching the given name.
+     * @param name the branch or tag name to look for.
+     * @return the {@link GHRef} for the given branch or tag if exists, <code>false</code> otherwise.
+     * @throws IOException if an error occurs.
+     */
+    Optional<GHRef> getAnyGHRef(@NonNull String name) throws IOException {
+        return phaseTimer.timed(Phase.GET_REF, name, () -> getRefResolver().resolve(name));
+    }
+
+    /**
+     * Gets the {@link GHRef} branch or tag matching each of the given names.
+     * @param names the branch or tag names to look for.
+     * @return the {@link GHRef} for each given branch or tag if exists, <code>empty</code> otherwise.
+     * @throws IOException if an error occurs.
+     */
+    List<Optional<GHRef>> getAnyGHRefs(@NonNull List<String> names) throws IOException {
+        return phaseTimer.timed(Phase.GET_REF, String.join(",", names), () -> getRefResolver().resolveAll(names));
+    }
+
+    /**
+     * Gets the ref resolver, shared by all the lookups of the run.
+     * @return the ref resolver.
+     */
+    RefResolver getRefResolver() {
+        // @formatter:off
+        refResolver = Optional.ofNullable(refResolver)
+                .orElseGet(() -> new RefResolver(ghActionsKit, ghRepository, getInputScanPageSize()));
+        // @formatter:on
+        return refResolver;
+    }
+
+    /**
+     * Runs the given task asynchronously.
+     * @param <T> the type of the task result.
+     * @param task the task.
+     * @return the future result of the task.
+     */
+    <T> CompletableFuture<T> async(@NonNull Callable<T> task) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return task.call();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    /**
+     * Waits for the given future result, rethrowing the error of the task as is.
+     * @param <T> the type of the task result.
+     * @param future the future result.
+     * @return the result.
+     * @throws IOException if the task failed with an I/O error.
+     */
+    <T> T await(@NonNull CompletableFuture<T> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            } else if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Checks if the given error is a merge conflict.
+     * @param e the error.
+     * @return <code>true</code> if the error is a merge conflict, <code>false</code> otherwise.
+     */
+    boolean isConflict(@NonNull HttpException e) {
+        return e.getResponseCode() == HTTP_CONFLICT && !isTransientFailure(e);
+    }
+
+    /**
+     * Checks if the given error is a transient merge failure: a server error, or a rejection because the target branch
+     * moved meanwhile.
+     * @param e the error.
+     * @return <code>true</code> if the merge may succeed when retried, <code>false</code> otherwise.
+     */
+    boolean isTransientFailure(@NonNull HttpException e) {
+        var responseCode = e.getResponseCode();
+        if (responseCode >= 500 && responseCode < 600) {
+            return true;
+        }
+        // @formatter:off
+        return (responseCode == HTTP_CONFLICT || responseCode == HTTP_UNPROCESSABLE_ENTITY)
+                && TARGET_MOVED_MESSAGE.matcher(Optional.ofNullable(e.getMessage()).orElse("")).find();
+        // @formatter:on
+    }
+
+    /**
+     * Sleeps for the given duration.
+     * @param duration the duration.
+     * @throws IOException if the current thread is interrupted.
+     */
+    void sleep(@NonNull Duration duration) throws IOException {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting to retry the merge");
+        }
+    }
+
+    /**
+     * Splits a list input into its values.
+     * @param value the input value, with values separated by new lines or commas.
+     * @return the non-blank values, trimmed.
+     */
+    List<String> splitList(@NonNull String value) {
+        // @formatter:off
+        return Arrays.stream(value.split("[\\n,]"))
+                .map(String::trim)
+                .filter(v -> !v.isEmpty())
+                .collect(Collectors.toList());
+        // @formatter:on
+    }
+
+    /**
+     * Gets the "results" output from the given merge results.
+     * @param mergeResults the merge results.
+     * @param key the function giving the output key of a merge result.
+     * @return the JSON object mapping the key of each merge result to its status.
+     * @throws IOException if an error occurs.
+     */
+    String resultsOutput(@NonNull List<MergeResult> mergeResults, @NonNull Function<MergeResult, String> key)
+            throws IOException {
+        var results = new LinkedHashMap<String, String>();
+        for (MergeResult mergeResult : mergeResults) {
+            results.put(key.apply(mergeResult), mergeResult.getStatus().key());
+        }
+        return OBJECT_MAPPER.writeValueAsString(results);
+    }
+
+    /**
+     * Gets the "comparisons" output from the given merge results.
+     * @param mergeResults the merge results.
+     * @param key the function giving the output key of a merge result.
+     * @return the JSON object mapping the key of each compared merge result to its commits ahead and behind.
+     * @throws IOException if an error occurs.
+     */
+    String comparisonsOutput(@NonNull List<MergeResult> mergeResults, @NonNull Function<MergeResult, String> key)
+            throws IOException {
+        var comparisons = new LinkedHashMap<String, Map<String, Integer>>();
+        for (MergeResult mergeResult : mergeResults) {
+            if (mergeResult.getComparison().isPresent()) {
+                var counts = new LinkedHashMap<String, Integer>();
+                counts.put("ahead-by", mergeResult.getComparison().get().getAheadBy());
+                counts.put("behind-by", mergeResult.getComparison().get().getBehindBy());
+                comparisons.put(key.apply(mergeResult), counts);
+            }
+        }
+        return OBJECT_MAPPER.writeValueAsString(comparisons);
+    }
+
+    /**
+     * Gets the "shas" output from the given merge results.
+     * @param mergeResults the merge results.
+     * @return the JSON object mapping each target branch name to its SHA.
+     * @throws IOException if an error occurs.
+     */
+    String shasOutput(@NonNull List<MergeResult> mergeResults) throws IOException {
+        var shas = new LinkedHashMap<String, String>();
+        for (MergeResult mergeResult : mergeResults) {
+            shas.put(mergeResult.getTo(), mergeResult.getSha());
+        }
+        return OBJECT_MAPPER.writeValueAsString(shas);
+    }
+
+    /**
+     * An attempt of a merge.
+     * @param <T> the merge result type.
+     * @author Julb.
+     */
+    @FunctionalInterface
+    interface MergeAttempt<T> {
+
+        /**
+         * Attempts the merge.
+         * @param attempt the number of the attempt, starting from <code>0</code>.
+         * @return the merge result.
+         * @throws IOException if an error occurs.
+         */
+        T attempt(int attempt) throws IOException;
     }
 }
@@ -0,0 +1,87 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import java.util.Arrays;
+
+import lombok.NonNull;
+
+/**
+ * The engines creating merge commits. <br>
+ * @author Julb.
+ */
+enum MergeEngine {
+
+    /**
+     * Creates merge commits with the merges API.
+     */
+    API("api"),
+
+    /**
+     * Creates merge commits in the clone checked out in the workspace, and pushes them.
+     */
+    LOCAL("local"),
+
+    /**
+     * Uses the {@link #LOCAL} engine if the workspace holds a usable clone of the repository, and the {@link #API}
+     * engine otherwise.
+     */
+    AUTO("auto");
+
+    /**
+     * The engine name.
+     */
+    private String key;
+
+    /**
+     * Default constructor.
+     * @param key the engine name.
+     */
+    MergeEngine(String key) {
+        this.key = key;
+    }
+
+    /**
+     * Getter for property key.
+     * @return Value of property key.
+     */
+    public String key() {
+        return key;
+    }
+
+    /**
+     * Gets the engine matching the given name.
+     * @param key the engine name.
+     * @return the engine matching the given name.
+     * @throws IllegalArgumentException if no engine matches the given name.
+     */
+    static MergeEngine fromKey(@NonNull String key) {
+        // @formatter:off
+        return Arrays.stream(values())
+                .filter(v -> v.key.equalsIgnoreCase(key.trim()))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException(String.format("unknown engine: %s", key)));
+        // @formatter:on
+    }
+}
@@ -0,0 +1,360 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+import lombok.NonNull;
+
+/**
+ * The metrics of a run, written in the Prometheus text format for the textfile collector of the node exporter. <br>
+ * The file is written to a temporary file next to it then moved in place, so that a scrape never reads a partial
+ * file. The temporary file is hidden and does not end with <code>.prom</code>, so the collector skips it. <br>
+ * Metrics are collected from concurrent threads.
+ * @author Julb.
+ */
+class MergeMetrics {
+
+    /**
+     * The prefix of the metric names.
+     */
+    private static final String PREFIX = "gh_merge_branch_";
+
+    /**
+     * The upper bounds of the buckets of the phase durations, in seconds. Phases include lock waits.
+     */
+    private static final double[] PHASE_BUCKETS = {0.01, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60, 300};
+
+    /**
+     * The upper bounds of the buckets of the API call durations, in seconds.
+     */
+    private static final double[] API_CALL_BUCKETS = {0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+
+    /**
+     * The label separator of the keys of the labelled metrics.
+     */
+    private static final String LABEL_SEPARATOR = "\u0000";
+
+    /**
+     * The phase durations, by phase.
+     */
+    private final Map<String, Histogram> phaseDurations = new ConcurrentSkipListMap<>();
+
+    /**
+     * The API call durations, by endpoint.
+     */
+    private final Map<String, Histogram> apiCallDurations = new ConcurrentSkipListMap<>();
+
+    /**
+     * The API calls, by method, endpoint and status.
+     */
+    private final Map<String, LongAdder> apiCalls = new ConcurrentSkipListMap<>();
+
+    /**
+     * The merges, by outcome.
+     */
+    private final Map<String, LongAdder> merges = new ConcurrentSkipListMap<>();
+
+    /**
+     * The rate limit remaining after the last API call, or <code>-1</code> if unknown.
+     */
+    private final AtomicLong rateLimitRemaining = new AtomicLong(-1);
+
+    /**
+     * Observes the duration of a phase.
+     * @param phase the phase.
+     * @param duration the phase duration.
+     */
+    void observePhase(@NonNull Phase phase, @NonNull Duration duration) {
+        phaseDurations.computeIfAbsent(phase.key(), k -> new Histogram(PHASE_BUCKETS)).observe(seconds(duration));
+    }
+
+    /**
+     * Observes an API call.
+     * @param method the HTTP method.
+     * @param endpoint the endpoint, without identifiers.
+     * @param status the HTTP status, or <code>error</code> if no response was received.
+     * @param duration the call duration.
+     */
+    void observeApiCall(
+            @NonNull String method, @NonNull String endpoint, @NonNull String status, @NonNull Duration duration) {
+        apiCallDurations
+                .computeIfAbsent(endpoint, k -> new Histogram(API_CALL_BUCKETS))
+                .observe(seconds(duration));
+        apiCalls.computeIfAbsent(String.join(LABEL_SEPARATOR, method, endpoint, status), k -> new LongAdder())
+                .increment();
+    }
+
+    /**
+     * Gets the number of API calls by method and endpoint, whatever their status.
+     * @return the number of API calls, by <code>METHOD endpoint</code>, sorted.
+     */
+    Map<String, Long> getApiCallCounts() {
+        var apiCallCounts = new TreeMap<String, Long>();
+        for (var entry : apiCalls.entrySet()) {
+            var labelValues = entry.getKey().split(LABEL_SEPARATOR, -1);
+            apiCallCounts.merge(labelValues[0] + " " + labelValues[1], entry.getValue().sum(), Long::sum);
+        }
+        return apiCallCounts;
+    }
+
+    /**
+     * Sets the rate limit remaining after the last API call.
+     * @param remaining the number of requests remaining.
+     */
+    void setRateLimitRemaining(long remaining) {
+        rateLimitRemaining.set(remaining);
+    }
+
+    /**
+     * Counts a merge.
+     * @param outcome the merge outcome.
+     */
+    void recordMerge(@NonNull MergeOutcome outcome) {
+        merges.computeIfAbsent(outcome.key(), k -> new LongAdder()).increment();
+    }
+
+    /**
+     * Counts a failed run as a merge error, unless the failure was already counted by a merge.
+     */
+    void recordFailure() {
+        if (merges.isEmpty()) {
+            recordMerge(MergeOutcome.ERROR);
+        }
+    }
+
+    /**
+     * Writes the metrics to the given file, atomically.
+     * @param file the file.
+     * @throws IOException if an error occurs.
+     */
+    void writeTo(@NonNull Path file) throws IOException {
+        var directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        var temporaryFile = Files.createTempFile(directory, "." + file.getFileName(), ".tmp");
+        try {
+            try (var writer = Files.newBufferedWriter(temporaryFile, StandardCharsets.UTF_8)) {
+                write(writer);
+            }
+            try {
+                // Readable by the collector, which may run as another user.
+                Files.setPosixFilePermissions(temporaryFile, PosixFilePermissions.fromString("rw-r--r--"));
+            } catch (UnsupportedOperationException e) {
+                // Not a POSIX file system.
+            }
+            try {
+                Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporaryFile);
+        }
+    }
+
+    /**
+     * Writes the metrics in the Prometheus text format.
+     * @param writer the writer.
+     * @throws IOException if an error occurs.
+     */
+    void write(@NonNull Writer writer) throws IOException {
+        var phaseDurationName = PREFIX + "phase_duration_seconds";
+        header(writer, phaseDurationName, "histogram", "The duration of the phases of the run, in seconds.");
+        for (var entry : phaseDurations.entrySet()) {
+            entry.getValue().write(writer, phaseDurationName, List.of("phase"), List.of(entry.getKey()));
+        }
+
+        var apiCallDurationName = PREFIX + "api_call_duration_seconds";
+        header(writer, apiCallDurationName, "histogram", "The duration of the GitHub API calls, in seconds.");
+        for (var entry : apiCallDurations.entrySet()) {
+            entry.getValue().write(writer, apiCallDurationName, List.of("endpoint"), List.of(entry.getKey()));
+        }
+
+        var apiCallName = PREFIX + "api_calls_total";
+        header(writer, apiCallName, "counter", "The GitHub API calls, by method, endpoint and status.");
+        for (var entry : apiCalls.entrySet()) {
+            var labelValues = List.of(entry.getKey().split(LABEL_SEPARATOR, -1));
+            sample(writer, apiCallName, List.of("method", "endpoint", "status"), labelValues, entry.getValue().sum());
+        }
+
+        var rateLimitName = PREFIX + "rate_limit_remaining";
+        var remaining = rateLimitRemaining.get();
+        if (remaining >= 0) {
+            header(writer, rateLimitName, "gauge", "The GitHub API requests remaining in the rate limit window.");
+            sample(writer, rateLimitName, List.of(), List.of(), remaining);
+        }
+
+        var mergeName = PREFIX + "merges_total";
+        header(writer, mergeName, "counter", "The merges, by outcome: merged, noop, conflict or error.");
+        for (var entry : merges.entrySet()) {
+            sample(writer, mergeName, List.of("outcome"), List.of(entry.getKey()), entry.getValue().sum());
+        }
+
+        var lastRunName = PREFIX + "last_run_timestamp_seconds";
+        header(writer, lastRunName, "gauge", "The end time of the run, in seconds since the epoch.");
+        sample(writer, lastRunName, List.of(), List.of(), Instant.now().getEpochSecond());
+    }
+
+    /**
+     * Writes the header of a metric.
+     * @param writer the writer.
+     * @param name the metric name.
+     * @param type the metric type.
+     * @param help the metric description.
+     * @throws IOException if an error occurs.
+     */
+    private static void header(Writer writer, String name, String type, String help) throws IOException {
+        writer.write(String.format("# HELP %s %s%n# TYPE %s %s%n", name, help, name, type));
+    }
+
+    /**
+     * Writes a sample.
+     * @param writer the writer.
+     * @param name the sample name.
+     * @param labelNames the label names.
+     * @param labelValues the label values.
+     * @param value the sample value.
+     * @throws IOException if an error occurs.
+     */
+    private static void sample(
+            Writer writer, String name, List<String> labelNames, List<String> labelValues, Number value)
+            throws IOException {
+        writer.write(name);
+        if (!labelNames.isEmpty()) {
+            writer.write('{');
+            for (int i = 0; i < labelNames.size(); i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writer.write(String.format("%s=\"%s\"", labelNames.get(i), escape(labelValues.get(i))));
+            }
+            writer.write('}');
+        }
+        writer.write(' ');
+        writer.write(value.toString());
+        writer.write('\n');
+    }
+
+    /**
+     * Escapes the given label value.
+     * @param value the label value.
+     * @return the escaped label value.
+     */
+    static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * Converts the given duration to seconds.
+     * @param duration the duration.
+     * @return the duration in seconds.
+     */
+    private static double seconds(Duration duration) {
+        return duration.toNanos() / 1e9;
+    }
+
+    /**
+     * A histogram with fixed buckets.
+     * @author Julb.
+     */
+    static class Histogram {
+
+        /**
+         * The upper bounds of the buckets.
+         */
+        private final double[] upperBounds;
+
+        /**
+         * The number of observations of each bucket, the last one counting the observations above all bounds.
+         */
+        private final AtomicLongArray bucketCounts;
+
+        /**
+         * The sum of the observations.
+         */
+        private final DoubleAdder sum = new DoubleAdder();
+
+        /**
+         * Default constructor.
+         * @param upperBounds the upper bounds of the buckets, in ascending order.
+         */
+        Histogram(double[] upperBounds) {
+            this.upperBounds = upperBounds;
+            this.bucketCounts = new AtomicLongArray(upperBounds.length + 1);
+        }
+
+        /**
+         * Observes a value.
+         * @param value the value.
+         */
+        void observe(double value) {
+            var bucket = 0;
+            while (bucket < upperBounds.length && value > upperBounds[bucket]) {
+                bucket++;
+            }
+            bucketCounts.incrementAndGet(bucket);
+            sum.add(value);
+        }
+
+        /**
+         * Writes the samples of the histogram, with cumulative buckets.
+         * @param writer the writer.
+         * @param name the metric name.
+         * @param labelNames the label names.
+         * @param labelValues the label values.
+         * @throws IOException if an error occurs.
+         */
+        void write(Writer writer, String name, List<String> labelNames, List<String> labelValues) throws IOException {
+            var bucketLabelNames = new ArrayList<>(labelNames);
+            bucketLabelNames.add("le");
+            var count = 0L;
+            for (int i = 0; i <= upperBounds.length; i++) {
+                count += bucketCounts.get(i);
+                var bucketLabelValues = new ArrayList<>(labelValues);
+                bucketLabelValues.add(i < upperBounds.length ? Double.toString(upperBounds[i]) : "+Inf");
+                sample(writer, name + "_bucket", bucketLabelNames, bucketLabelValues, count);
+            }
+            sample(writer, name + "_count", labelNames, labelValues, count);
+            sample(writer, name + "_sum", labelNames, labelValues, sum.sum());
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+/**
+ * The outcome of a merge, as exported in the metrics. <br>
+ * @author Julb.
+ */
+enum MergeOutcome {
+
+    /**
+     * The target branch moved, by a merge commit or a fast-forward.
+     */
+    MERGED("merged"),
+
+    /**
+     * Nothing merged: up-to-date, or planned only.
+     */
+    NOOP("noop"),
+
+    /**
+     * Merge conflict.
+     */
+    CONFLICT("conflict"),
+
+    /**
+     * Any other failure.
+     */
+    ERROR("error");
+
+    /**
+     * The outcome name.
+     */
+    private String key;
+
+    /**
+     * Default constructor.
+     * @param key the key name.
+     */
+    MergeOutcome(String key) {
+        this.key = key;
+    }
+
+    /**
+     * Getter for property key.
+     * @return Value of property key.
+     */
+    public String key() {
+        return key;
+    }
+
+    /**
+     * Gets the outcome of a merge with the given status.
+     * @param status the merge status.
+     * @return the merge outcome.
+     */
+    static MergeOutcome of(MergeStatus status) {
+        switch (status) {
+            case MERGED:
+            case FAST_FORWARDED:
+                return MERGED;
+            case CONFLICT:
+                return CONFLICT;
+            default:
+                return NOOP;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import java.util.Optional;
+
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+import lombok.Value;
+
+/**
+ * The result of a merge into a target branch. <br>
+ * @author Julb.
+ */
+@Value
+@AllArgsConstructor
+class MergeResult {
+
+    /**
+     * The merged head, as a ref or a commit SHA.
+     */
+    @NonNull
+    String from;
+
+    /**
+     * The target branch name.
+     */
+    @NonNull
+    String to;
+
+    /**
+     * The merge status.
+     */
+    @NonNull
+    MergeStatus status;
+
+    /**
+     * The merge commit SHA, or the target branch latest commit SHA if no merge was done.
+     */
+    @NonNull
+    String sha;
+
+    /**
+     * The comparison of the target branch with the merged head, if compared before merging.
+     */
+    Comparison comparison;
+
+    /**
+     * Constructor of a result without comparison.
+     * @param from the merged head, as a ref or a commit SHA.
+     * @param to the target branch name.
+     * @param status the merge status.
+     * @param sha the merge commit SHA, or the target branch latest commit SHA if no merge was done.
+     */
+    MergeResult(@NonNull String from, @NonNull String to, @NonNull MergeStatus status, @NonNull String sha) {
+        this(from, to, status, sha, null);
+    }
+
+    /**
+     * Getter for property comparison.
+     * @return the comparison of the target branch with the merged head, or <code>empty</code> if not compared.
+     */
+    public Optional<Comparison> getComparison() {
+        return Optional.ofNullable(comparison);
+    }
+}
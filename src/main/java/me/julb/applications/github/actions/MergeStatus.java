@@ -0,0 +1,82 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+/**
+ * The status of a merge into a target branch. <br>
+ * @author Julb.
+ */
+enum MergeStatus {
+
+    /**
+     * The source has been merged into the target branch.
+     */
+    MERGED("merged"),
+
+    /**
+     * The target branch has been moved to the source, without merge commit.
+     */
+    FAST_FORWARDED("fast-forwarded"),
+
+    /**
+     * The target branch already contains the source.
+     */
+    UP_TO_DATE("up-to-date"),
+
+    /**
+     * The source is ahead of the target branch, and would be merged outside of plan mode.
+     */
+    WOULD_MERGE("would-merge"),
+
+    /**
+     * The target branch is an ancestor of the source, and would be fast-forwarded outside of plan mode.
+     */
+    WOULD_FAST_FORWARD("would-fast-forward"),
+
+    /**
+     * The source could not be merged into the target branch because of a conflict.
+     */
+    CONFLICT("conflict");
+
+    /**
+     * The status name.
+     */
+    private String key;
+
+    /**
+     * Default constructor.
+     * @param key the status name.
+     */
+    MergeStatus(String key) {
+        this.key = key;
+    }
+
+    /**
+     * Getter for property key.
+     * @return Value of property key.
+     */
+    public String key() {
+        return key;
+    }
+}
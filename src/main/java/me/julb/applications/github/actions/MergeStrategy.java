@@ -0,0 +1,86 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import java.util.Arrays;
+
+import lombok.NonNull;
+
+/**
+ * The way the source is integrated into the target branches. <br>
+ * @author Julb.
+ */
+enum MergeStrategy {
+
+    /**
+     * Always creates a merge commit.
+     */
+    MERGE("merge"),
+
+    /**
+     * Moves the target branch to the source, failing if the target branch has commits missing from the source.
+     */
+    FF_ONLY("ff-only"),
+
+    /**
+     * Moves the target branch to the source when possible, and creates a merge commit otherwise.
+     */
+    FF_PREFERRED("ff-preferred");
+
+    /**
+     * The strategy name.
+     */
+    private String key;
+
+    /**
+     * Default constructor.
+     * @param key the strategy name.
+     */
+    MergeStrategy(String key) {
+        this.key = key;
+    }
+
+    /**
+     * Getter for property key.
+     * @return Value of property key.
+     */
+    public String key() {
+        return key;
+    }
+
+    /**
+     * Gets the strategy matching the given name.
+     * @param key the strategy name.
+     * @return the strategy matching the given name.
+     * @throws IllegalArgumentException if no strategy matches the given name.
+     */
+    static MergeStrategy fromKey(@NonNull String key) {
+        // @formatter:off
+        return Arrays.stream(values())
+                .filter(v -> v.key.equalsIgnoreCase(key.trim()))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException(String.format("unknown strategy: %s", key)));
+        // @formatter:on
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import java.io.IOException;
+import java.net.URL;
+import java.time.Duration;
+import java.util.regex.Pattern;
+
+import org.kohsuke.github.connector.GitHubConnector;
+import org.kohsuke.github.connector.GitHubConnectorRequest;
+import org.kohsuke.github.connector.GitHubConnectorResponse;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * The GitHub API connector recording the calls sent over the network in the {@link MergeMetrics}. <br>
+ * Calls are labelled by endpoint, with the repository and ref names left out to keep the number of series low.
+ * @author Julb.
+ */
+@RequiredArgsConstructor
+class MetricsConnector implements GitHubConnector {
+
+    /**
+     * The pattern of repository paths: the repository, then the resource, with its group for Git database resources.
+     */
+    private static final Pattern REPOSITORY_PATH = Pattern.compile(".*?/repos/[^/]+/[^/]+(/git/[^/]+|/[^/]+)?.*");
+
+    /**
+     * The connector sending the requests.
+     */
+    @NonNull
+    private final GitHubConnector delegate;
+
+    /**
+     * The metrics.
+     */
+    @NonNull
+    private final MergeMetrics mergeMetrics;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public GitHubConnectorResponse send(GitHubConnectorRequest request) throws IOException {
+        var endpoint = endpoint(request.url());
+        var start = System.nanoTime();
+        GitHubConnectorResponse response;
+        try {
+            response = delegate.send(request);
+        } catch (IOException e) {
+            var duration = Duration.ofNanos(System.nanoTime() - start);
+            mergeMetrics.observeApiCall(request.method(), endpoint, "error", duration);
+            throw e;
+        }
+        var duration = Duration.ofNanos(System.nanoTime() - start);
+        mergeMetrics.observeApiCall(request.method(), endpoint, String.valueOf(response.statusCode()), duration);
+
+        var remaining = response.header("X-RateLimit-Remaining");
+        if (remaining != null) {
+            try {
+                mergeMetrics.setRateLimitRemaining(Long.parseLong(remaining));
+            } catch (NumberFormatException e) {
+                // Not reported.
+            }
+        }
+        return response;
+    }
+
+    /**
+     * Gets the endpoint of the given URL, without identifiers.
+     * @param url the URL.
+     * @return the endpoint, e.g. <code>/repos/{owner}/{repo}/branches</code>.
+     */
+    static String endpoint(@NonNull URL url) {
+        var path = url.getPath();
+        var matcher = REPOSITORY_PATH.matcher(path);
+        if (matcher.matches()) {
+            return "/repos/{owner}/{repo}" + (matcher.group(1) == null ? "" : matcher.group(1));
+        }
+
+        // Top-level resources, below the API path prefix if any.
+        var lastSlash = path.lastIndexOf('/');
+        return lastSlash < 0 ? "/" : path.substring(lastSlash);
+    }
+}
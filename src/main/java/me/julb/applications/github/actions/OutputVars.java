@@ -32,7 +32,37 @@ enum OutputVars {
     /**
      * The merge commit sha.
      */
-    SHA("sha");
+    SHA("sha"),
+
+    /**
+     * The SHA of each target branch.
+     */
+    SHAS("shas"),
+
+    /**
+     * The status of each merge.
+     */
+    RESULTS("results"),
+
+    /**
+     * The number of commits ahead and behind of each source compared with its target branch.
+     */
+    COMPARISONS("comparisons"),
+
+    /**
+     * The time waited for the GitHub API rate limits, in milliseconds.
+     */
+    RATE_LIMIT_WAIT("rate-limit-wait-ms"),
+
+    /**
+     * The duration of the run, in milliseconds.
+     */
+    DURATION("duration-ms"),
+
+    /**
+     * The cumulated duration of each phase of the run, in milliseconds.
+     */
+    PHASE_DURATIONS("phase-durations-ms");
 
     /**
      * The variable name.
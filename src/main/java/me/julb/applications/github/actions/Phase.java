@@ -0,0 +1,87 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+/**
+ * The timed phases of a run. <br>
+ * @author Julb.
+ */
+enum Phase {
+
+    /**
+     * The JVM startup, until the action is executed.
+     */
+    JVM_STARTUP("jvm-startup"),
+
+    /**
+     * The GitHub API client build and check.
+     */
+    CONNECT_API("connect-api"),
+
+    /**
+     * The repository retrieval.
+     */
+    GET_REPOSITORY("get-repository"),
+
+    /**
+     * The discovery of the target branches matching a pattern.
+     */
+    DISCOVER_TARGETS("discover-targets"),
+
+    /**
+     * The resolution of source refs.
+     */
+    GET_REF("get-ref"),
+
+    /**
+     * The retrieval of target branches.
+     */
+    GET_TO_BRANCH("get-to-branch"),
+
+    /**
+     * The merges, lock waits and retries included, target branch refreshes excluded.
+     */
+    MERGE("merge");
+
+    /**
+     * The phase name.
+     */
+    private String key;
+
+    /**
+     * Default constructor.
+     * @param key the key name.
+     */
+    Phase(String key) {
+        this.key = key;
+    }
+
+    /**
+     * Getter for property key.
+     * @return Value of property key.
+     */
+    public String key() {
+        return key;
+    }
+}
@@ -0,0 +1,341 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+import lombok.NonNull;
+
+/**
+ * The timer of the phases of a run. <br>
+ * Each phase is timed in a {@link Span}, committed as a {@link PhaseEvent} when the flight recorder is on, and added
+ * to the totals of the phase. Phases run concurrently are cumulated, so the totals may exceed the run duration. <br>
+ * Phases nested in the same thread are not: a span is added its own time and requests only, those of the spans
+ * nested in it being added to their own phases. The flight recorder events keep the whole span. <br>
+ * The requests of a span are counted from the requests sent by all threads meanwhile.
+ * @author Julb.
+ */
+class PhaseTimer {
+
+    /**
+     * The counter of the requests sent.
+     */
+    private final LongSupplier requestCounter;
+
+    /**
+     * The observer of the duration of each span.
+     */
+    private final BiConsumer<Phase, Duration> observer;
+
+    /**
+     * The start time of the run, in nanoseconds.
+     */
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * The totals of each phase.
+     */
+    private final Map<Phase, Total> totals = new EnumMap<>(Phase.class);
+
+    /**
+     * The innermost span open in each thread.
+     */
+    private final ThreadLocal<Span> openSpan = new ThreadLocal<>();
+
+    /**
+     * Default constructor.
+     * @param requestCounter the counter of the requests sent.
+     */
+    PhaseTimer(@NonNull LongSupplier requestCounter) {
+        this(requestCounter, (phase, duration) -> {
+        });
+    }
+
+    /**
+     * Constructor with an observer.
+     * @param requestCounter the counter of the requests sent.
+     * @param observer the observer of the duration of each span.
+     */
+    PhaseTimer(@NonNull LongSupplier requestCounter, @NonNull BiConsumer<Phase, Duration> observer) {
+        this.requestCounter = requestCounter;
+        this.observer = observer;
+        for (var phase : Phase.values()) {
+            totals.put(phase, new Total());
+        }
+    }
+
+    /**
+     * Starts a span of the given phase.
+     * @param phase the phase.
+     * @param ref the name of the ref or branch the phase is about, or <code>null</code>.
+     * @return the span, to close once the phase is over.
+     */
+    Span start(@NonNull Phase phase, String ref) {
+        return new Span(phase, ref);
+    }
+
+    /**
+     * Runs the given call in a span of the given phase.
+     * @param <T> the result type.
+     * @param <E> the exception type.
+     * @param phase the phase.
+     * @param ref the name of the ref or branch the phase is about, or <code>null</code>.
+     * @param call the call.
+     * @return the call result.
+     * @throws E if the call fails.
+     */
+    <T, E extends Exception> T timed(@NonNull Phase phase, String ref, @NonNull Call<T, E> call) throws E {
+        var span = start(phase, ref);
+        try {
+            return call.call();
+        } finally {
+            span.close();
+        }
+    }
+
+    /**
+     * Runs the given task in a span of the given phase.
+     * @param <E> the exception type.
+     * @param phase the phase.
+     * @param ref the name of the ref or branch the phase is about, or <code>null</code>.
+     * @param task the task.
+     * @throws E if the task fails.
+     */
+    <E extends Exception> void timed(@NonNull Phase phase, String ref, @NonNull Task<E> task) throws E {
+        var span = start(phase, ref);
+        try {
+            task.run();
+        } finally {
+            span.close();
+        }
+    }
+
+    /**
+     * Adds a phase timed elsewhere.
+     * @param phase the phase.
+     * @param duration the phase duration.
+     */
+    void record(@NonNull Phase phase, @NonNull Duration duration) {
+        totals.get(phase).add(duration.toNanos(), 0);
+        observer.accept(phase, duration);
+    }
+
+    /**
+     * Gets the time elapsed since the start of the run.
+     * @return the time elapsed.
+     */
+    Duration getElapsed() {
+        return Duration.ofNanos(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Gets the cumulated duration of each phase run.
+     * @return the duration of each phase run, in the order of the phases.
+     */
+    Map<Phase, Duration> getDurations() {
+        var durations = new LinkedHashMap<Phase, Duration>();
+        totals.forEach((phase, total) -> {
+            if (total.spans.sum() > 0) {
+                durations.put(phase, Duration.ofNanos(total.nanos.sum()));
+            }
+        });
+        return durations;
+    }
+
+    /**
+     * Gets the summary of the phases run.
+     * @return the duration, and the number of requests if any, of each phase run.
+     */
+    String summary() {
+        // @formatter:off
+        return getDurations().keySet().stream()
+                .map(phase -> {
+                    var total = totals.get(phase);
+                    var requests = total.requests.sum();
+                    return String.format(
+                            "%s: %d ms%s",
+                            phase.key(),
+                            Duration.ofNanos(total.nanos.sum()).toMillis(),
+                            requests > 0 ? String.format(" (%d requests)", requests) : "");
+                })
+                .collect(Collectors.joining(", "));
+        // @formatter:on
+    }
+
+    /**
+     * The timing of one run of a phase.
+     * @author Julb.
+     */
+    class Span implements AutoCloseable {
+
+        /**
+         * The phase.
+         */
+        private final Phase phase;
+
+        /**
+         * The flight recorder event.
+         */
+        private final PhaseEvent event = new PhaseEvent();
+
+        /**
+         * The start time of the span, in nanoseconds.
+         */
+        private final long spanStartNanos;
+
+        /**
+         * The number of requests sent before the span.
+         */
+        private final long startRequestCount;
+
+        /**
+         * The span in which this span is nested, or <code>null</code>.
+         */
+        private final Span parent;
+
+        /**
+         * The duration of the spans nested in this span, in nanoseconds.
+         */
+        private long nestedNanos;
+
+        /**
+         * The number of requests of the spans nested in this span.
+         */
+        private long nestedRequests;
+
+        /**
+         * Default constructor.
+         * @param phase the phase.
+         * @param ref the name of the ref or branch the phase is about, or <code>null</code>.
+         */
+        private Span(Phase phase, String ref) {
+            this.phase = phase;
+            this.event.phase = phase.key();
+            this.event.ref = ref;
+            this.parent = openSpan.get();
+            openSpan.set(this);
+            this.startRequestCount = requestCounter.getAsLong();
+            this.spanStartNanos = System.nanoTime();
+            this.event.begin();
+        }
+
+        /**
+         * Ends the span.
+         */
+        @Override
+        public void close() {
+            event.end();
+            var nanos = System.nanoTime() - spanStartNanos;
+            var requests = requestCounter.getAsLong() - startRequestCount;
+            if (parent != null) {
+                parent.nestedNanos += nanos;
+                parent.nestedRequests += requests;
+                openSpan.set(parent);
+            } else {
+                openSpan.remove();
+            }
+
+            // Leave the nested spans to their own phases.
+            var ownNanos = nanos - nestedNanos;
+            totals.get(phase).add(ownNanos, requests - nestedRequests);
+            observer.accept(phase, Duration.ofNanos(ownNanos));
+            if (event.shouldCommit()) {
+                event.requestCount = requests;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * A call timed in a span.
+     * @param <T> the result type.
+     * @param <E> the exception type.
+     * @author Julb.
+     */
+    @FunctionalInterface
+    interface Call<T, E extends Exception> {
+
+        /**
+         * Runs the call.
+         * @return the call result.
+         * @throws E if the call fails.
+         */
+        T call() throws E;
+    }
+
+    /**
+     * A task without result timed in a span.
+     * @param <E> the exception type.
+     * @author Julb.
+     */
+    @FunctionalInterface
+    interface Task<E extends Exception> {
+
+        /**
+         * Runs the task.
+         * @throws E if the task fails.
+         */
+        void run() throws E;
+    }
+
+    /**
+     * The totals of a phase.
+     * @author Julb.
+     */
+    private static class Total {
+
+        /**
+         * The number of spans.
+         */
+        private final LongAdder spans = new LongAdder();
+
+        /**
+         * The cumulated duration, in nanoseconds.
+         */
+        private final LongAdder nanos = new LongAdder();
+
+        /**
+         * The cumulated number of requests.
+         */
+        private final LongAdder requests = new LongAdder();
+
+        /**
+         * Adds a span.
+         * @param spanNanos the span duration, in nanoseconds.
+         * @param spanRequests the number of requests of the span.
+         */
+        private void add(long spanNanos, long spanRequests) {
+            spans.increment();
+            nanos.add(spanNanos);
+            requests.add(spanRequests);
+        }
+    }
+}
@@ -0,0 +1,488 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+import org.kohsuke.github.GitHubAbuseLimitHandler;
+import org.kohsuke.github.GitHubRateLimitHandler;
+import org.kohsuke.github.HttpException;
+import org.kohsuke.github.connector.GitHubConnector;
+import org.kohsuke.github.connector.GitHubConnectorRequest;
+import org.kohsuke.github.connector.GitHubConnectorResponse;
+
+import lombok.NonNull;
+
+/**
+ * The GitHub API connector pacing the requests according to the rate limits reported by GitHub. <br>
+ * Once the primary rate limit is exhausted, requests are held until its reset. A request hitting a secondary rate
+ * limit is retried after the <code>Retry-After</code> delay, or after an exponential backoff with jitter if not
+ * given, and all the requests are held meanwhile. Writes are sent concurrently, as bounded by the callers, until a
+ * secondary rate limit is hit: they are then sent one at a time, as recommended by GitHub, spaced by an interval
+ * growing on each secondary rate limit and shrinking on each successful write, until it fades out. <br>
+ * A request is given up, and its response returned as is, when waiting for it would exceed the maximum wait.
+ * @author Julb.
+ */
+class RateLimitScheduler implements GitHubConnector {
+
+    /**
+     * The default first backoff delay on secondary rate limits without <code>Retry-After</code>.
+     */
+    static final Duration DEFAULT_MIN_BACKOFF = Duration.ofSeconds(1);
+
+    /**
+     * The maximum backoff delay, and the maximum interval between writes.
+     */
+    private static final Duration MAX_BACKOFF = Duration.ofMinutes(1);
+
+    /**
+     * The margin added to the reset time of the primary rate limit, for clock skews.
+     */
+    private static final Duration RESET_MARGIN = Duration.ofSeconds(1);
+
+    /**
+     * The HTTP status of rate limited responses.
+     */
+    private static final int HTTP_FORBIDDEN = 403;
+
+    /**
+     * The HTTP status of rate limited responses, as sent by some endpoints.
+     */
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    /**
+     * The pattern of error messages of secondary rate limits.
+     */
+    private static final Pattern SECONDARY_RATE_LIMIT_MESSAGE =
+            Pattern.compile("secondary rate limit|abuse detection", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * The handler of primary rate limits given up by the scheduler, failing instead of waiting for the reset.
+     */
+    static final GitHubRateLimitHandler RATE_LIMIT_HANDLER = new GitHubRateLimitHandler() {
+        @Override
+        public void onError(GitHubConnectorResponse response) throws IOException {
+            throw rateLimitException(response);
+        }
+    };
+
+    /**
+     * The handler of secondary rate limits given up by the scheduler, failing instead of waiting.
+     */
+    static final GitHubAbuseLimitHandler ABUSE_LIMIT_HANDLER = new GitHubAbuseLimitHandler() {
+        @Override
+        public void onError(GitHubConnectorResponse response) throws IOException {
+            throw rateLimitException(response);
+        }
+    };
+
+    /**
+     * The connector sending the requests.
+     */
+    private final GitHubConnector delegate;
+
+    /**
+     * The maximum time waited for a request.
+     */
+    private final Duration maxWait;
+
+    /**
+     * The first backoff delay on secondary rate limits without <code>Retry-After</code>.
+     */
+    private final Duration minBackoff;
+
+    /**
+     * The lock sending writes one at a time while paced.
+     */
+    private final Lock writeLock = new ReentrantLock(true);
+
+    /**
+     * The total time waited, in nanoseconds.
+     */
+    private final AtomicLong waitedNanos = new AtomicLong();
+
+    /**
+     * The number of requests sent, retries included.
+     */
+    private final AtomicLong requestCount = new AtomicLong();
+
+    /**
+     * The time until which all requests are held.
+     */
+    private Instant pausedUntil = Instant.MIN;
+
+    /**
+     * The minimum interval between two writes.
+     */
+    private Duration writeInterval = Duration.ZERO;
+
+    /**
+     * The time the last write was sent, guarded by the write lock.
+     */
+    private Instant lastWrite = Instant.MIN;
+
+    /**
+     * Default constructor.
+     * @param delegate the connector sending the requests.
+     * @param maxWait the maximum time waited for a request.
+     */
+    RateLimitScheduler(@NonNull GitHubConnector delegate, @NonNull Duration maxWait) {
+        this(delegate, maxWait, DEFAULT_MIN_BACKOFF);
+    }
+
+    /**
+     * Constructor with the first backoff delay.
+     * @param delegate the connector sending the requests.
+     * @param maxWait the maximum time waited for a request.
+     * @param minBackoff the first backoff delay on secondary rate limits without <code>Retry-After</code>.
+     */
+    RateLimitScheduler(@NonNull GitHubConnector delegate, @NonNull Duration maxWait, @NonNull Duration minBackoff) {
+        this.delegate = delegate;
+        this.maxWait = maxWait;
+        this.minBackoff = minBackoff;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public GitHubConnectorResponse send(GitHubConnectorRequest request) throws IOException {
+        var write = !"GET".equals(request.method());
+        var waited = Duration.ZERO;
+        for (int attempt = 0;; attempt++) {
+            // Hold the request while paused, within the maximum wait.
+            var pause = Duration.between(Instant.now(), getPausedUntil());
+            if (!pause.isNegative() && waited.plus(pause).compareTo(maxWait) <= 0) {
+                waited = waited.plus(sleep(pause));
+            }
+
+            requestCount.incrementAndGet();
+            var response = write ? sendWrite(request) : delegate.send(request);
+            if (isRateLimitStatus(response.statusCode())) {
+                response = buffer(response);
+            }
+            noteRateLimit(response);
+
+            var retryDelay = getRetryDelay(response, attempt);
+            if (retryDelay.isEmpty()) {
+                if (write) {
+                    onWriteSuccess();
+                }
+                return response;
+            }
+            if (waited.plus(retryDelay.get()).compareTo(maxWait) > 0) {
+                return response;
+            }
+            response.close();
+            pauseUntil(Instant.now().plus(retryDelay.get()));
+        }
+    }
+
+    /**
+     * Gets the total time waited for the rate limits.
+     * @return the total time waited.
+     */
+    Duration getWaited() {
+        return Duration.ofNanos(waitedNanos.get());
+    }
+
+    /**
+     * Gets the number of requests sent, retries included.
+     * @return the number of requests sent.
+     */
+    long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * Sends the given write right away, or once the previous one is done and the write interval has elapsed if writes
+     * are paced since a secondary rate limit.
+     * @param request the request.
+     * @return the response.
+     * @throws IOException if an error occurs.
+     */
+    private GitHubConnectorResponse sendWrite(GitHubConnectorRequest request) throws IOException {
+        if (getWriteInterval().isZero()) {
+            return delegate.send(request);
+        }
+
+        writeLock.lock();
+        try {
+            var interval = Duration.between(Instant.now(), lastWrite.plus(getWriteInterval()));
+            if (!interval.isNegative()) {
+                sleep(interval);
+            }
+            try {
+                return delegate.send(request);
+            } finally {
+                lastWrite = Instant.now();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Notes the primary rate limit reported by the given response, holding the next requests if exhausted.
+     * @param response the response.
+     */
+    private void noteRateLimit(GitHubConnectorResponse response) {
+        if ("0".equals(response.header("X-RateLimit-Remaining"))) {
+            parseLong(response.header("X-RateLimit-Reset"))
+                    .ifPresent(reset -> pauseUntil(Instant.ofEpochSecond(reset).plus(RESET_MARGIN)));
+        }
+    }
+
+    /**
+     * Gets the delay before retrying the request of the given response.
+     * @param response the response, whose body is read if it may be a secondary rate limit.
+     * @param attempt the number of attempts already done for the request.
+     * @return the delay, or <code>empty</code> if the response is not rate limited.
+     * @throws IOException if an error occurs while reading the response.
+     */
+    private Optional<Duration> getRetryDelay(GitHubConnectorResponse response, int attempt) throws IOException {
+        if (!isRateLimitStatus(response.statusCode())) {
+            return Optional.empty();
+        }
+
+        // Primary rate limit: until its reset.
+        var reset = parseLong(response.header("X-RateLimit-Reset"));
+        if ("0".equals(response.header("X-RateLimit-Remaining")) && reset.isPresent()) {
+            var untilReset = Duration.between(Instant.now(), Instant.ofEpochSecond(reset.get()).plus(RESET_MARGIN));
+            return Optional.of(untilReset.isNegative() ? Duration.ZERO : untilReset);
+        }
+
+        // Secondary rate limit: as told, or with a backoff.
+        var retryAfter = parseLong(response.header("Retry-After"));
+        if (retryAfter.isEmpty() && !isSecondaryRateLimitMessage(response)) {
+            return Optional.empty();
+        }
+        onSecondaryRateLimit();
+        return Optional.of(retryAfter.map(Duration::ofSeconds).orElseGet(() -> backoff(attempt)));
+    }
+
+    /**
+     * Checks if the body of the given response is a secondary rate limit error message. <br>
+     * The body is read in memory, and can be read again.
+     * @param response the response.
+     * @return <code>true</code> if the response is a secondary rate limit, <code>false</code> otherwise.
+     * @throws IOException if an error occurs while reading the response.
+     */
+    private boolean isSecondaryRateLimitMessage(GitHubConnectorResponse response) throws IOException {
+        if (!(response instanceof BufferedResponse)) {
+            return false;
+        }
+        var body = new String(((BufferedResponse) response).body, StandardCharsets.UTF_8);
+        return SECONDARY_RATE_LIMIT_MESSAGE.matcher(body).find();
+    }
+
+    /**
+     * Computes the backoff delay of the given attempt: exponential, with a random half to spread the retries.
+     * @param attempt the number of attempts already done.
+     * @return the backoff delay.
+     */
+    Duration backoff(int attempt) {
+        var delay = minBackoff.multipliedBy(1L << Math.min(attempt, 16));
+        if (delay.compareTo(MAX_BACKOFF) > 0) {
+            delay = MAX_BACKOFF;
+        }
+        var half = delay.toMillis() / 2;
+        return Duration.ofMillis(half + ThreadLocalRandom.current().nextLong(half + 1));
+    }
+
+    /**
+     * Holds all requests until the given time, unless already held longer.
+     * @param until the time.
+     */
+    private synchronized void pauseUntil(Instant until) {
+        if (until.isAfter(pausedUntil)) {
+            pausedUntil = until;
+        }
+    }
+
+    /**
+     * Getter for property pausedUntil.
+     * @return Value of property pausedUntil.
+     */
+    private synchronized Instant getPausedUntil() {
+        return pausedUntil;
+    }
+
+    /**
+     * Getter for property writeInterval.
+     * @return Value of property writeInterval.
+     */
+    synchronized Duration getWriteInterval() {
+        return writeInterval;
+    }
+
+    /**
+     * Doubles the interval between writes, from the first backoff delay up to the maximum backoff delay.
+     */
+    private synchronized void onSecondaryRateLimit() {
+        var doubled = writeInterval.multipliedBy(2);
+        writeInterval = doubled.compareTo(minBackoff) < 0 ? minBackoff : doubled;
+        if (writeInterval.compareTo(MAX_BACKOFF) > 0) {
+            writeInterval = MAX_BACKOFF;
+        }
+    }
+
+    /**
+     * Halves the interval between writes, and stops pacing writes once it falls below an eighth of the first backoff
+     * delay.
+     */
+    private synchronized void onWriteSuccess() {
+        writeInterval = writeInterval.dividedBy(2);
+        if (writeInterval.compareTo(minBackoff.dividedBy(8)) < 0) {
+            writeInterval = Duration.ZERO;
+        }
+    }
+
+    /**
+     * Sleeps for the given duration, counting it in the time waited.
+     * @param duration the duration.
+     * @return the duration.
+     * @throws IOException if the current thread is interrupted.
+     */
+    private Duration sleep(Duration duration) throws IOException {
+        try {
+            Thread.sleep(duration.toMillis());
+            waitedNanos.addAndGet(duration.toNanos());
+            return duration;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for the rate limit");
+        }
+    }
+
+    /**
+     * Checks if the given HTTP status may be a rate limit.
+     * @param statusCode the HTTP status.
+     * @return <code>true</code> if the HTTP status may be a rate limit, <code>false</code> otherwise.
+     */
+    private static boolean isRateLimitStatus(int statusCode) {
+        return statusCode == HTTP_FORBIDDEN || statusCode == HTTP_TOO_MANY_REQUESTS;
+    }
+
+    /**
+     * Reads the body of the given response in memory.
+     * @param response the response, closed.
+     * @return the response with its body read in memory.
+     * @throws IOException if an error occurs while reading the response.
+     */
+    private static BufferedResponse buffer(GitHubConnectorResponse response) throws IOException {
+        try (response) {
+            var body = Optional.ofNullable(response.bodyStream()).orElseGet(InputStream::nullInputStream);
+            var headers = new TreeMap<String, List<String>>(String.CASE_INSENSITIVE_ORDER);
+            for (var header : response.allHeaders().entrySet()) {
+                if (header.getKey() != null) {
+                    headers.put(header.getKey(), header.getValue());
+                }
+            }
+            return new BufferedResponse(response.request(), response.statusCode(), headers, body.readAllBytes());
+        }
+    }
+
+    /**
+     * Parses the given header value as a number.
+     * @param value the header value.
+     * @return the number, or <code>empty</code> if missing or not a number.
+     */
+    private static Optional<Long> parseLong(String value) {
+        try {
+            return Optional.ofNullable(value).map(String::trim).map(Long::valueOf);
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Creates the error of a rate limited response given up by the scheduler.
+     * @param response the response.
+     * @return the error.
+     */
+    private static HttpException rateLimitException(GitHubConnectorResponse response) {
+        return new HttpException(
+                String.format("API rate limit exceeded: %s", response.request().url()),
+                response.statusCode(),
+                "",
+                response.request().url().toString());
+    }
+
+    /**
+     * A response served from a body read in memory.
+     * @author Julb.
+     */
+    private static class BufferedResponse extends GitHubConnectorResponse {
+
+        /**
+         * The decoded response body.
+         */
+        private final byte[] body;
+
+        /**
+         * Default constructor.
+         * @param request the request.
+         * @param statusCode the HTTP status.
+         * @param headers the response headers.
+         * @param body the decoded response body.
+         */
+        BufferedResponse(
+                GitHubConnectorRequest request, int statusCode, Map<String, List<String>> headers, byte[] body) {
+            super(request, statusCode, headers);
+            this.body = body;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public InputStream bodyStream() {
+            return new ByteArrayInputStream(body);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void close() {
+            // Nothing to release.
+        }
+    }
+}
@@ -0,0 +1,266 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+import com.fasterxml.jackson.databind.InjectableValues;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+
+import org.kohsuke.github.GHRef;
+import org.kohsuke.github.GitHub;
+import org.kohsuke.github.connector.GitHubConnectorResponse;
+
+import lombok.NonNull;
+
+/**
+ * An in-memory index of the refs of a repository, loaded once and shared by all the lookups of a run, ignoring case.
+ * <br>
+ * Only the name, SHA and object type of each ref are kept, in parallel arrays, and a {@link GHRef} is built on lookup:
+ * the memory grows with the names and SHAs, not with the listed objects. Exact lookups go through an open-addressing
+ * hash table of array positions. Prefix queries go through the positions of the branches and tags, under
+ * <code>refs/heads/</code> and <code>refs/tags/</code>, sorted by case-folded name: refs sharing a prefix are
+ * contiguous, so that a query is two binary searches bounding the matches, the sorted array acting as a flattened trie.
+ * Besides the strings themselves, the index costs a few references and ints per ref, and a case-folded copy of a name
+ * only when it has upper case characters. <br>
+ * When refs only differ by case, exact lookups return the first one listed.
+ * @author Julb.
+ */
+class RefIndex {
+
+    /**
+     * The prefix of branch refs.
+     */
+    private static final String BRANCH_REF_PREFIX = "refs/heads/";
+
+    /**
+     * The prefix of tag refs.
+     */
+    private static final String TAG_REF_PREFIX = "refs/tags/";
+
+    /**
+     * The GitHub API the refs are bound to, or <code>null</code> if none.
+     */
+    private final GitHub root;
+
+    /**
+     * The full names of the refs, in listing order.
+     */
+    private final String[] names;
+
+    /**
+     * The SHAs of the objects of the refs, in the same order.
+     */
+    private final String[] shas;
+
+    /**
+     * The types of the objects of the refs, in the same order.
+     */
+    private final String[] types;
+
+    /**
+     * The case-folded names of the refs, in the same order.
+     */
+    private final String[] keys;
+
+    /**
+     * The hash table of the exact lookups: the position of a ref plus one, or <code>0</code> for an empty slot.
+     */
+    private final int[] slots;
+
+    /**
+     * The positions of the branches and tags, sorted by case-folded name, then by listing order.
+     */
+    private final int[] sorted;
+
+    /**
+     * Builds the index of the given refs.
+     * @param root the GitHub API the refs are bound to, or <code>null</code> if none.
+     * @param names the full names of the refs, in listing order.
+     * @param shas the SHAs of the objects of the refs, in the same order.
+     * @param types the types of the objects of the refs, in the same order.
+     */
+    RefIndex(GitHub root, @NonNull List<String> names, @NonNull List<String> shas, @NonNull List<String> types) {
+        if (shas.size() != names.size() || types.size() != names.size()) {
+            throw new IllegalArgumentException(String.format(
+                    "ref names, shas and types must have the same size: %d, %d, %d",
+                    names.size(),
+                    shas.size(),
+                    types.size()));
+        }
+
+        var size = names.size();
+        this.root = root;
+        this.names = names.toArray(new String[0]);
+        this.shas = shas.toArray(new String[0]);
+        this.types = new String[size];
+        this.keys = new String[size];
+        for (int i = 0; i < size; i++) {
+            // Few distinct types: shared instances.
+            this.types[i] = types.get(i).intern();
+            this.keys[i] = key(this.names[i]);
+        }
+
+        // Twice as many slots as refs, at least, for short probe sequences.
+        this.slots = new int[Integer.highestOneBit(Math.max(size, 1) * 4 - 1)];
+        for (int i = 0; i < size; i++) {
+            var slot = slot(keys[i]);
+            while (slots[slot] != 0 && !keys[slots[slot] - 1].equals(keys[i])) {
+                slot = (slot + 1) & (slots.length - 1);
+            }
+            if (slots[slot] == 0) {
+                slots[slot] = i + 1;
+            }
+        }
+
+        // Stable sort: equal keys stay in listing order.
+        // @formatter:off
+        this.sorted = IntStream.range(0, size)
+                .filter(i -> keys[i].startsWith(BRANCH_REF_PREFIX) || keys[i].startsWith(TAG_REF_PREFIX))
+                .boxed()
+                .sorted((i, j) -> keys[i].compareTo(keys[j]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+        // @formatter:on
+    }
+
+    /**
+     * Gets the number of refs in the index.
+     * @return the number of refs.
+     */
+    int size() {
+        return names.length;
+    }
+
+    /**
+     * Gets the ref matching the given full ref name, ignoring case.
+     * @param ref the full ref name.
+     * @return the matching ref, or <code>empty</code> if none.
+     * @throws IOException if the ref cannot be built.
+     */
+    Optional<GHRef> get(@NonNull String ref) throws IOException {
+        var key = key(ref);
+        for (int slot = slot(key);; slot = (slot + 1) & (slots.length - 1)) {
+            var position = slots[slot];
+            if (position == 0) {
+                return Optional.empty();
+            }
+            if (keys[position - 1].equals(key)) {
+                return Optional.of(ghRef(position - 1));
+            }
+        }
+    }
+
+    /**
+     * Gets the full names of the branches and tags starting with the given prefix, ignoring case.
+     * @param prefix the prefix of the full ref names, under <code>refs/heads/</code> or <code>refs/tags/</code>, e.g.
+     *        <code>refs/heads/release/</code>.
+     * @return the matching full ref names, sorted by case-folded name.
+     */
+    List<String> withPrefix(@NonNull String prefix) {
+        var key = key(prefix);
+        if (!key.startsWith(BRANCH_REF_PREFIX) && !key.startsWith(TAG_REF_PREFIX)) {
+            throw new IllegalArgumentException(String.format("prefix must be a branch or tag ref: %s", prefix));
+        }
+
+        // First match, then first non-match after it.
+        var from = search(0, position -> keys[position].compareTo(key) >= 0);
+        var to = search(from, position -> !keys[position].startsWith(key));
+        var matches = new String[to - from];
+        for (int i = from; i < to; i++) {
+            matches[i - from] = names[sorted[i]];
+        }
+        return Collections.unmodifiableList(Arrays.asList(matches));
+    }
+
+    // ------------------------------------------ Utility methods.
+
+    /**
+     * Gets the first position of the sorted refs, from the given one, for which the given condition holds. The
+     * condition must not hold before some position and hold from then on.
+     * @param low the first position to search from.
+     * @param condition the condition, on the position of a ref in listing order.
+     * @return the first position, or the number of sorted refs if the condition never holds.
+     */
+    private int search(int low, IntPredicate condition) {
+        var high = sorted.length;
+        while (low < high) {
+            var middle = (low + high) >>> 1;
+            if (condition.test(sorted[middle])) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Builds the ref at the given position, as listed by the GitHub API.
+     * @param position the position.
+     * @return the ref.
+     * @throws IOException if the ref cannot be built.
+     */
+    private GHRef ghRef(int position) throws IOException {
+        var node = JsonNodeFactory.instance.objectNode();
+        node.put("ref", names[position]);
+        node.putObject("object").put("sha", shas[position]).put("type", types[position]);
+
+        // @formatter:off
+        var injectableValues = new InjectableValues.Std()
+                .addValue(GitHub.class, root)
+                .addValue(GitHubConnectorResponse.class, null);
+        return GitHub.getMappingObjectReader()
+                .forType(GHRef.class)
+                .with(injectableValues)
+                .readValue(node);
+        // @formatter:on
+    }
+
+    /**
+     * Gets the first slot of the hash table probed for the given key.
+     * @param key the case-folded key.
+     * @return the slot.
+     */
+    private int slot(String key) {
+        var hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & (slots.length - 1);
+    }
+
+    /**
+     * Gets the case-folded key of the given name, which is the name itself when already in lower case.
+     * @param name the name.
+     * @return the case-folded key.
+     */
+    private static String key(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+}
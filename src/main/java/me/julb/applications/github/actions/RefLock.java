@@ -0,0 +1,348 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.kohsuke.github.GHFileNotFoundException;
+import org.kohsuke.github.GHRef;
+import org.kohsuke.github.GHRepository;
+import org.kohsuke.github.HttpException;
+
+import me.julb.sdk.github.actions.kit.GitHubActionsKit;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * The lock of a target branch, held through a ref of the repository, to merge into the branch one run at a time. <br>
+ * The lock is the ref <code>refs/locks/merge/&lt;branch&gt;</code>, pointing to a tag object whose message holds the
+ * owner and the lease expiry of the lock. A lock whose lease has expired is stolen. <br>
+ * Runs wait for the lock in turn: each run creates a ticket ref under <code>refs/locks/queue/&lt;branch&gt;/</code>,
+ * named after its creation time, and tries to take the lock only when its ticket is the oldest one. Tickets older
+ * than the wait timeout are from runs which gave up, and are skipped. <br>
+ * Stealing a lock deletes the ref and creates it again: two runs stealing the same stale lock at the same time may
+ * both believe they hold it. The lease should therefore be well above the duration of a merge.
+ * @author Julb.
+ */
+@RequiredArgsConstructor
+class RefLock implements Closeable {
+
+    /**
+     * The prefix of the lock refs.
+     */
+    static final String LOCK_REF_PREFIX = "refs/locks/merge/";
+
+    /**
+     * The prefix of the ticket refs.
+     */
+    static final String QUEUE_REF_PREFIX = "refs/locks/queue/";
+
+    /**
+     * The maximum interval between two polls of the lock.
+     */
+    private static final Duration MAX_POLL_INTERVAL = Duration.ofSeconds(15);
+
+    /**
+     * The HTTP status returned by GitHub when creating a ref which already exists.
+     */
+    private static final int HTTP_UNPROCESSABLE_ENTITY = 422;
+
+    /**
+     * The pattern of the lease expiry in the message of the lock tag object.
+     */
+    private static final Pattern EXPIRES = Pattern.compile("^expires: (\\S+)$", Pattern.MULTILINE);
+
+    /**
+     * The pattern of ticket names: the creation time in milliseconds, and the owner.
+     */
+    private static final Pattern TICKET = Pattern.compile("(\\d{13})-.+");
+
+    /**
+     * The GitHub action kit.
+     */
+    @NonNull
+    private final GitHubActionsKit ghActionsKit;
+
+    /**
+     * The GitHub repository.
+     */
+    @NonNull
+    private final GHRepository ghRepository;
+
+    /**
+     * The target branch name.
+     */
+    @NonNull
+    private final String to;
+
+    /**
+     * The lock owner, unique to the run.
+     */
+    @NonNull
+    private final String owner;
+
+    /**
+     * The lease of the lock, after which it may be stolen.
+     */
+    @NonNull
+    private final Duration lease;
+
+    /**
+     * The maximum time waited for the lock.
+     */
+    @NonNull
+    private final Duration waitTimeout;
+
+    /**
+     * The first interval between two polls of the lock, doubled on each poll.
+     */
+    @NonNull
+    private final Duration minPollInterval;
+
+    /**
+     * The SHA of the lock tag object, once the lock is held.
+     */
+    private String lockSha;
+
+    /**
+     * Waits for the lock in turn, and takes it.
+     * @param toSha the target branch latest commit SHA, to which the lock and ticket refs point.
+     * @throws IOException if an error occurs.
+     * @throws IllegalStateException if the lock could not be taken within the wait timeout.
+     */
+    void acquire(@NonNull String toSha) throws IOException {
+        var deadline = Instant.now().plus(waitTimeout);
+        var ticket = ghRepository.createRef(ticketRefName(Instant.now()), toSha);
+        try {
+            for (int attempt = 0;; attempt++) {
+                if (isFirstInQueue(ticket.getRef()) && tryLock(toSha)) {
+                    ghActionsKit.debug(String.format("merge lock of branch %s: acquired by %s.", to, owner));
+                    return;
+                }
+                if (Instant.now().isAfter(deadline)) {
+                    throw new IllegalStateException(String.format(
+                            "timed out after %d s waiting for the merge lock of branch %s.",
+                            waitTimeout.toSeconds(),
+                            to));
+                }
+                var delay = pollDelay(attempt);
+                ghActionsKit.debug(String.format(
+                        "merge lock of branch %s: held, polling again in %d ms.", to, delay.toMillis()));
+                sleep(delay);
+            }
+        } finally {
+            deleteQuietly(ticket);
+        }
+    }
+
+    /**
+     * Releases the lock, unless stolen meanwhile.
+     * @throws IOException if an error occurs.
+     */
+    @Override
+    public void close() throws IOException {
+        if (lockSha == null) {
+            return;
+        }
+        var lockRef = getLockRef();
+        if (lockRef.isPresent() && lockSha.equals(lockRef.get().getObject().getSha())) {
+            lockRef.get().delete();
+            ghActionsKit.debug(String.format("merge lock of branch %s: released.", to));
+        } else {
+            ghActionsKit.debug(String.format("merge lock of branch %s: lease expired and lock stolen.", to));
+        }
+        lockSha = null;
+    }
+
+    /**
+     * Takes the lock if free, or if held with an expired lease.
+     * @param toSha the target branch latest commit SHA.
+     * @return <code>true</code> if the lock is taken, <code>false</code> if held by another run.
+     * @throws IOException if an error occurs.
+     */
+    boolean tryLock(@NonNull String toSha) throws IOException {
+        var lockRef = getLockRef();
+        if (lockRef.isPresent()) {
+            if (!isExpired(lockRef.get())) {
+                return false;
+            }
+            lockRef.get().delete();
+            ghActionsKit.debug(String.format("merge lock of branch %s: lease expired, lock stolen.", to));
+        }
+
+        var message = String.format("merge lock of branch %s\n\nowner: %s\nexpires: %s\n", to, owner, expiry());
+        var lockTag = ghRepository.createTag("merge-lock", message, toSha, "commit");
+        try {
+            ghRepository.createRef(LOCK_REF_PREFIX + to, lockTag.getSha());
+        } catch (HttpException e) {
+            if (e.getResponseCode() == HTTP_UNPROCESSABLE_ENTITY) {
+                return false;
+            }
+            throw e;
+        }
+        lockSha = lockTag.getSha();
+        return true;
+    }
+
+    /**
+     * Checks if the given ticket is the oldest of the tickets of runs still waiting.
+     * @param ticketRefName the ticket ref name.
+     * @return <code>true</code> if the ticket is the first in the queue, <code>false</code> otherwise.
+     * @throws IOException if an error occurs.
+     */
+    boolean isFirstInQueue(@NonNull String ticketRefName) throws IOException {
+        var prefix = QUEUE_REF_PREFIX + to + "/";
+        GHRef[] ticketRefs;
+        try {
+            ticketRefs = ghRepository.getRefs(prefix.substring("refs/".length(), prefix.length() - 1));
+        } catch (GHFileNotFoundException e) {
+            ticketRefs = new GHRef[0];
+        }
+
+        var oldestWaitingTime = Instant.now().minus(waitTimeout);
+        // @formatter:off
+        var tickets = Arrays.stream(ticketRefs)
+                .map(GHRef::getRef)
+                .filter(name -> name.startsWith(prefix))
+                .map(name -> name.substring(prefix.length()))
+                .filter(ticket -> getTicketTime(ticket).map(oldestWaitingTime::isBefore).orElse(false))
+                .sorted()
+                .collect(Collectors.toList());
+        // @formatter:on
+        return tickets.isEmpty() || ticketRefName.equals(prefix + tickets.get(0));
+    }
+
+    /**
+     * Checks if the lease of the given lock has expired.
+     * @param lockRef the lock ref.
+     * @return <code>true</code> if the lease has expired or cannot be read, <code>false</code> otherwise.
+     * @throws IOException if an error occurs.
+     */
+    boolean isExpired(@NonNull GHRef lockRef) throws IOException {
+        if (!"tag".equals(lockRef.getObject().getType())) {
+            return true;
+        }
+        var matcher = EXPIRES.matcher(ghRepository.getTagObject(lockRef.getObject().getSha()).getMessage());
+        try {
+            return !matcher.find() || Instant.parse(matcher.group(1)).isBefore(Instant.now());
+        } catch (DateTimeParseException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Gets the lock ref.
+     * @return the lock ref, or <code>empty</code> if the lock is free.
+     * @throws IOException if an error occurs.
+     */
+    private Optional<GHRef> getLockRef() throws IOException {
+        try {
+            return Optional.ofNullable(ghRepository.getRef(LOCK_REF_PREFIX.substring("refs/".length()) + to));
+        } catch (GHFileNotFoundException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Gets the name of the ticket ref created at the given time.
+     * @param time the creation time.
+     * @return the ticket ref name.
+     */
+    String ticketRefName(@NonNull Instant time) {
+        return String.format("%s%s/%013d-%s", QUEUE_REF_PREFIX, to, time.toEpochMilli(), owner);
+    }
+
+    /**
+     * Gets the creation time of the given ticket.
+     * @param ticket the ticket name.
+     * @return the creation time, or <code>empty</code> if the name is not a ticket name.
+     */
+    private static Optional<Instant> getTicketTime(String ticket) {
+        var matcher = TICKET.matcher(ticket);
+        if (!matcher.matches()) {
+            return Optional.empty();
+        }
+        return Optional.of(Instant.ofEpochMilli(Long.parseLong(matcher.group(1))));
+    }
+
+    /**
+     * Gets the lease expiry of a lock taken now.
+     * @return the lease expiry.
+     */
+    private Instant expiry() {
+        return Instant.now().plus(lease);
+    }
+
+    /**
+     * Computes the delay before the next poll of the given attempt: exponential, with a random half to spread the
+     * polls of the waiting runs.
+     * @param attempt the number of polls already done.
+     * @return the delay.
+     */
+    Duration pollDelay(int attempt) {
+        var delay = minPollInterval.multipliedBy(1L << Math.min(attempt, 16));
+        if (delay.compareTo(MAX_POLL_INTERVAL) > 0) {
+            delay = MAX_POLL_INTERVAL;
+        }
+        var half = delay.toMillis() / 2;
+        return Duration.ofMillis(half + ThreadLocalRandom.current().nextLong(half + 1));
+    }
+
+    /**
+     * Deletes the given ref, ignoring errors: tickets of runs which gave up are skipped anyway.
+     * @param ref the ref.
+     */
+    private void deleteQuietly(GHRef ref) {
+        try {
+            ref.delete();
+        } catch (IOException e) {
+            ghActionsKit.debug(String.format("merge lock of branch %s: ticket not deleted: %s", to, e.getMessage()));
+        }
+    }
+
+    /**
+     * Sleeps for the given duration.
+     * @param duration the duration.
+     * @throws IOException if the current thread is interrupted.
+     */
+    private static void sleep(Duration duration) throws IOException {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for the merge lock");
+        }
+    }
+}
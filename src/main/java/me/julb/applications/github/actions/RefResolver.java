@@ -0,0 +1,433 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+
+import org.kohsuke.github.GHFileNotFoundException;
+import org.kohsuke.github.GHRef;
+import org.kohsuke.github.GHRepository;
+import org.kohsuke.github.GitHub;
+import org.kohsuke.github.HttpException;
+
+import me.julb.sdk.github.actions.kit.GitHubActionsKit;
+
+import lombok.NonNull;
+
+/**
+ * The engine resolving a branch, tag, ref or commit name to a {@link GHRef}. <br>
+ * Each candidate is first probed directly with a single request, by order of precedence:
+ * <ul>
+ * <li><code>refs/heads/&lt;name&gt;</code></li>
+ * <li><code>refs/tags/&lt;name&gt;</code></li>
+ * <li>the name itself if it is a full ref, in which case it is the only ref probed</li>
+ * <li>the commit SHA</li>
+ * </ul>
+ * The full refs listing is only browsed when all probes miss, e.g. for case-insensitive matches. When many names are
+ * resolved at once, the listing is loaded at most once into an index shared by all the lookups.
+ * @author Julb.
+ */
+class RefResolver {
+
+    /**
+     * The pattern of a name which may be a full or abbreviated commit SHA.
+     */
+    private static final Pattern SHA_PATTERN = Pattern.compile("[0-9a-fA-F]{4,40}");
+
+    /**
+     * The HTTP status returned by GitHub when a SHA does not match any commit.
+     */
+    private static final int HTTP_UNPROCESSABLE_ENTITY = 422;
+
+    /**
+     * The maximum number of refs per page supported by the GitHub API.
+     */
+    static final int MAX_SCAN_PAGE_SIZE = 100;
+
+    /**
+     * The prefix of branch refs.
+     */
+    private static final String BRANCH_REF_PREFIX = "refs/heads/";
+
+    /**
+     * The prefix of tag refs.
+     */
+    private static final String TAG_REF_PREFIX = "refs/tags/";
+
+    /**
+     * The prefix of commit refs.
+     */
+    private static final String COMMIT_REF_PREFIX = "refs/commits/";
+
+    /**
+     * The GitHub action kit.
+     */
+    @NonNull
+    private final GitHubActionsKit ghActionsKit;
+
+    /**
+     * The GitHub repository.
+     */
+    @NonNull
+    private final GHRepository ghRepository;
+
+    /**
+     * The number of refs fetched per page when scanning refs.
+     */
+    private final int scanPageSize;
+
+    /**
+     * The index of the refs of the repository, once loaded.
+     */
+    private RefIndex refIndex;
+
+    /**
+     * Default constructor.
+     * @param ghActionsKit the GitHub action kit.
+     * @param ghRepository the GitHub repository.
+     * @param scanPageSize the number of refs fetched per page when scanning refs, between 1 and
+     *            {@value #MAX_SCAN_PAGE_SIZE}.
+     */
+    RefResolver(@NonNull GitHubActionsKit ghActionsKit, @NonNull GHRepository ghRepository, int scanPageSize) {
+        if (scanPageSize < 1 || scanPageSize > MAX_SCAN_PAGE_SIZE) {
+            throw new IllegalArgumentException(String.format(
+                    "scan page size must be between 1 and %d: %d", MAX_SCAN_PAGE_SIZE, scanPageSize));
+        }
+        this.ghActionsKit = ghActionsKit;
+        this.ghRepository = ghRepository;
+        this.scanPageSize = scanPageSize;
+    }
+
+    /**
+     * Resolves the {@link GHRef} branch, tag, ref or commit matching the given name.
+     * @param name the branch, tag, ref or commit name to look for.
+     * @return the {@link GHRef} for the given name if exists, <code>empty</code> otherwise.
+     * @throws IOException if an error occurs.
+     */
+    Optional<GHRef> resolve(@NonNull String name) throws IOException {
+        // Probe directly.
+        var ghRef = probe(name);
+        if (ghRef.isPresent()) {
+            return ghRef;
+        }
+
+        return fallback(name);
+    }
+
+    /**
+     * Finds the {@link GHRef} matching the given name once direct probes missed, in the index if already loaded, by
+     * scanning refs otherwise.
+     * @param name the branch, tag, ref or commit name to look for.
+     * @return the {@link GHRef} for the given name if exists, <code>empty</code> otherwise.
+     * @throws IOException if an error occurs.
+     */
+    Optional<GHRef> fallback(@NonNull String name) throws IOException {
+        if (refIndex != null) {
+            ghActionsKit.debug(String.format("ref resolution: no direct match for %s, looking up index.", name));
+            return lookupIndex(name);
+        } else {
+            ghActionsKit.debug(String.format("ref resolution: no direct match for %s, scanning refs.", name));
+            return scanRefs(name);
+        }
+    }
+
+    /**
+     * Resolves the {@link GHRef} branch, tag, ref or commit matching each of the given names. <br>
+     * Each name is first probed directly. When more than one name cannot be probed directly, the refs of the
+     * repository are listed once into an index shared by all the remaining lookups.
+     * @param names the branch, tag, ref or commit names to look for.
+     * @return the {@link GHRef} for each given name if exists, <code>empty</code> otherwise, in the order of the names.
+     * @throws IOException if an error occurs.
+     */
+    List<Optional<GHRef>> resolveAll(@NonNull List<String> names) throws IOException {
+        var ghRefs = new ArrayList<Optional<GHRef>>();
+        var misses = 0;
+        for (String name : names) {
+            var ghRef = probe(name);
+            ghRefs.add(ghRef);
+            if (ghRef.isEmpty()) {
+                misses++;
+            }
+        }
+
+        // Load index once for all the remaining lookups.
+        if (misses > 1) {
+            loadIndex();
+        }
+
+        for (int i = 0; i < names.size(); i++) {
+            if (ghRefs.get(i).isEmpty()) {
+                ghRefs.set(i, fallback(names.get(i)));
+            }
+        }
+        return ghRefs;
+    }
+
+    /**
+     * Probes directly the {@link GHRef} branch, tag, ref or commit matching the given name.
+     * @param name the branch, tag, ref or commit name to look for.
+     * @return the {@link GHRef} for the given name if exists, <code>empty</code> otherwise.
+     * @throws IOException if an error occurs.
+     */
+    Optional<GHRef> probe(@NonNull String name) throws IOException {
+        // Probe refs directly.
+        for (String candidate : probeCandidates(name)) {
+            var ghRef = probeRef(candidate);
+            if (ghRef.isPresent()) {
+                ghActionsKit.debug(String.format("ref resolution: %s found by direct probe.", candidate));
+                return ghRef;
+            }
+        }
+
+        // Probe commit directly.
+        var commitGHRef = probeCommit(name);
+        if (commitGHRef.isPresent()) {
+            ghActionsKit.debug(String.format("ref resolution: commit %s found by direct probe.", name));
+            return commitGHRef;
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Gets the refs to probe directly for the given name, by order of precedence.
+     * @param name the branch, tag or ref name.
+     * @return the refs to probe.
+     */
+    List<String> probeCandidates(@NonNull String name) {
+        if (name.startsWith("refs/")) {
+            return List.of(name);
+        } else {
+            return List.of(branchRef(name), tagRef(name));
+        }
+    }
+
+    /**
+     * Gets the {@link GHRef} exactly matching the given ref with a single request.
+     * @param ref the full ref name.
+     * @return the {@link GHRef} if exists, <code>empty</code> otherwise.
+     * @throws IOException if an error occurs.
+     */
+    Optional<GHRef> probeRef(@NonNull String ref) throws IOException {
+        try {
+            return Optional.ofNullable(ghRepository.getRef(ref));
+        } catch (GHFileNotFoundException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Gets a {@link GHRef} pointing to the commit matching the given SHA with a single request.
+     * @param sha the commit SHA, full or abbreviated.
+     * @return the {@link GHRef} pointing to the commit if exists, <code>empty</code> otherwise.
+     * @throws IOException if an error occurs.
+     */
+    Optional<GHRef> probeCommit(@NonNull String sha) throws IOException {
+        if (!isCommitSha(sha)) {
+            return Optional.empty();
+        }
+
+        try {
+            var ghCommit = ghRepository.getCommit(sha);
+            if (ghCommit == null) {
+                return Optional.empty();
+            }
+            return Optional.of(commitGHRef(ghCommit.getSHA1()));
+        } catch (GHFileNotFoundException e) {
+            return Optional.empty();
+        } catch (HttpException e) {
+            if (e.getResponseCode() == HTTP_UNPROCESSABLE_ENTITY) {
+                return Optional.empty();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Browses the refs of the repository page by page to find the one matching the given name, ignoring case. <br>
+     * Only the page being examined is kept in memory, and the scan stops at the first match.
+     * @param name the branch, tag, ref or commit name to look for.
+     * @return the {@link GHRef} for the given name if exists, <code>empty</code> otherwise.
+     * @throws IOException if an error occurs.
+     */
+    Optional<GHRef> scanRefs(@NonNull String name) throws IOException {
+        var pages = 0;
+        var refs = 0;
+        try {
+            var iterator = ghRepository.listRefs().withPageSize(scanPageSize).iterator();
+            while (iterator.hasNext()) {
+                var page = iterator.nextPage();
+                pages++;
+                for (GHRef ghRef : page) {
+                    refs++;
+                    if (matches(ghRef.getRef(), name)) {
+                        return Optional.of(ghRef);
+                    }
+                }
+            }
+            return Optional.empty();
+        } finally {
+            ghActionsKit.debug(String.format("ref scan: %d page(s) fetched, %d ref(s) examined.", pages, refs));
+        }
+    }
+
+    /**
+     * Lists all the refs of the repository into an index, if not loaded yet.
+     * @throws IOException if an error occurs.
+     */
+    void loadIndex() throws IOException {
+        if (refIndex != null) {
+            return;
+        }
+
+        // Keep the names, SHAs and types only, page by page.
+        var names = new ArrayList<String>();
+        var shas = new ArrayList<String>();
+        var types = new ArrayList<String>();
+        var pages = 0;
+        var iterator = ghRepository.listRefs().withPageSize(scanPageSize).iterator();
+        while (iterator.hasNext()) {
+            pages++;
+            for (GHRef ghRef : iterator.nextPage()) {
+                names.add(ghRef.getRef());
+                shas.add(ghRef.getObject().getSha());
+                types.add(ghRef.getObject().getType());
+            }
+        }
+        refIndex = new RefIndex(ghRepository.getRoot(), names, shas, types);
+        ghActionsKit.debug(String.format(
+                "ref index: %d page(s) fetched, %d ref(s) indexed.", pages, refIndex.size()));
+    }
+
+    /**
+     * Gets the index of the refs of the repository, listing them if not loaded yet.
+     * @return the index of the refs.
+     * @throws IOException if an error occurs.
+     */
+    RefIndex getRefIndex() throws IOException {
+        loadIndex();
+        return refIndex;
+    }
+
+    /**
+     * Looks up the {@link GHRef} matching the given name as a branch, tag, commit or full ref in the index, ignoring
+     * case.
+     * @param name the branch, tag, ref or commit name to look for.
+     * @return the {@link GHRef} for the given name if exists, <code>empty</code> otherwise.
+     * @throws IOException if an error occurs.
+     */
+    Optional<GHRef> lookupIndex(@NonNull String name) throws IOException {
+        for (String ref : List.of(branchRef(name), tagRef(name), commitRef(name), name)) {
+            var ghRef = refIndex.get(ref);
+            if (ghRef.isPresent()) {
+                return ghRef;
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Checks if the given ref matches the given name as a branch, tag, commit or full ref, ignoring case. <br>
+     * This method does not allocate.
+     * @param ref the ref to check.
+     * @param name the branch, tag, ref or commit name.
+     * @return <code>true</code> if the ref matches the name, <code>false</code> otherwise.
+     */
+    static boolean matches(@NonNull String ref, @NonNull String name) {
+        return matches(ref, BRANCH_REF_PREFIX, name)
+                || matches(ref, TAG_REF_PREFIX, name)
+                || matches(ref, COMMIT_REF_PREFIX, name)
+                || matches(ref, "", name);
+    }
+
+    /**
+     * Checks if the given ref is the given prefix followed by the given name, ignoring case.
+     * @param ref the ref to check.
+     * @param prefix the ref prefix.
+     * @param name the branch, tag, ref or commit name.
+     * @return <code>true</code> if the ref matches the prefix and name, <code>false</code> otherwise.
+     */
+    private static boolean matches(String ref, String prefix, String name) {
+        return ref.length() == prefix.length() + name.length()
+                && ref.regionMatches(true, 0, prefix, 0, prefix.length())
+                && ref.regionMatches(true, prefix.length(), name, 0, name.length());
+    }
+
+    /**
+     * Builds a {@link GHRef} whose ref is the given commit SHA.
+     * @param sha the full commit SHA.
+     * @return the {@link GHRef} pointing to the commit.
+     * @throws IOException if an error occurs.
+     */
+    GHRef commitGHRef(@NonNull String sha) throws IOException {
+        var node = JsonNodeFactory.instance.objectNode();
+        node.put("ref", sha);
+        node.putObject("object").put("type", "commit").put("sha", sha);
+        return GitHub.getMappingObjectReader().forType(GHRef.class).readValue(node);
+    }
+
+    // ------------------------------------------ Utility methods.
+
+    /**
+     * Checks if the given name may be a full or abbreviated commit SHA.
+     * @param name the name.
+     * @return <code>true</code> if the name may be a commit SHA, <code>false</code> otherwise.
+     */
+    static boolean isCommitSha(@NonNull String name) {
+        return SHA_PATTERN.matcher(name).matches();
+    }
+
+    /**
+     * Gets the ref from a branch name.
+     * @param branchName the branch name.
+     * @return the ref for the given branch name.
+     */
+    static String branchRef(@NonNull String branchName) {
+        return BRANCH_REF_PREFIX + branchName;
+    }
+
+    /**
+     * Gets the ref from a tag name.
+     * @param name the tag name.
+     * @return the ref for the given tag name.
+     */
+    static String tagRef(@NonNull String name) {
+        return TAG_REF_PREFIX + name;
+    }
+
+    /**
+     * Gets the ref from a commit sha.
+     * @param name the commit sha.
+     * @return the ref for the given commit.
+     */
+    static String commitRef(@NonNull String name) {
+        return COMMIT_REF_PREFIX + name;
+    }
+}
@@ -0,0 +1,271 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+
+/**
+ * The on-disk cache of GitHub API responses, with one file per entry. <br>
+ * The cache can be shared by concurrent processes: entries are written to a temporary file then atomically renamed,
+ * and an entry removed by another process is a cache miss. Reading an entry updates its modification time, and the
+ * least recently used entries are evicted when the cache exceeds its maximum size. <br>
+ * The size of the cache is estimated from the directory listed by the first write, then updated by each write: the
+ * directory is only listed again once the estimate exceeds the maximum size, so that writing many entries stays
+ * linear. Entries written by other processes are counted by the next listing.
+ * @author Julb.
+ */
+@RequiredArgsConstructor
+class ResponseCache {
+
+    /**
+     * The file suffix of the entries.
+     */
+    static final String ENTRY_SUFFIX = ".json";
+
+    /**
+     * The file suffix of the entries being written.
+     */
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    /**
+     * The lock file taken while evicting entries.
+     */
+    private static final String EVICTION_LOCK = ".eviction.lock";
+
+    /**
+     * The age after which a temporary file is considered left over by a failed process.
+     */
+    private static final Duration TEMPORARY_MAX_AGE = Duration.ofHours(1);
+
+    /**
+     * The JSON object mapper.
+     */
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /**
+     * The cache directory.
+     */
+    @NonNull
+    private final Path directory;
+
+    /**
+     * The maximum size of the cache entries, in bytes.
+     */
+    private final long maxSize;
+
+    /**
+     * The estimated size of the cache entries, in bytes, or <code>-1</code> until the directory is listed.
+     */
+    private final AtomicLong size = new AtomicLong(-1);
+
+    /**
+     * Gets the entry matching the given key.
+     * @param key the entry key.
+     * @return the entry, or <code>empty</code> if not cached.
+     * @throws IOException if an error occurs.
+     */
+    Optional<Entry> get(@NonNull String key) throws IOException {
+        var file = entryFile(key);
+        try {
+            var entry = OBJECT_MAPPER.readValue(Files.readAllBytes(file), Entry.class);
+            Files.setLastModifiedTime(file, FileTime.from(Instant.now()));
+            return Optional.of(entry);
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (JsonProcessingException e) {
+            Files.deleteIfExists(file);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Stores the given entry, then evicts the least recently used entries if the cache is estimated to exceed its
+     * maximum size.
+     * @param key the entry key.
+     * @param entry the entry.
+     * @throws IOException if an error occurs.
+     */
+    void put(@NonNull String key, @NonNull Entry entry) throws IOException {
+        Files.createDirectories(directory);
+
+        var bytes = OBJECT_MAPPER.writeValueAsBytes(entry);
+        var replacedSize = 0L;
+        var temporaryFile = Files.createTempFile(directory, key, TEMPORARY_SUFFIX);
+        try {
+            Files.write(temporaryFile, bytes);
+            try {
+                replacedSize = Files.size(entryFile(key));
+            } catch (NoSuchFileException e) {
+                // New entry.
+            }
+            Files.move(
+                    temporaryFile,
+                    entryFile(key),
+                    StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporaryFile);
+        }
+
+        // List the directory on the first write, then only once the estimate exceeds the maximum size.
+        var growth = bytes.length - replacedSize;
+        var estimate = size.updateAndGet(current -> current < 0 ? current : current + growth);
+        if (estimate < 0 || estimate > maxSize) {
+            evict();
+        }
+    }
+
+    /**
+     * Lists the cache directory, and evicts the least recently used entries until the cache fits its maximum size.
+     * <br>
+     * Skipped if another thread or process is already evicting entries.
+     * @throws IOException if an error occurs.
+     */
+    void evict() throws IOException {
+        var options = new StandardOpenOption[] {StandardOpenOption.CREATE, StandardOpenOption.WRITE};
+        try (var channel = FileChannel.open(directory.resolve(EVICTION_LOCK), options);
+                var lock = channel.tryLock()) {
+            if (lock == null) {
+                return;
+            }
+
+            var entryFiles = new ArrayList<EntryFile>();
+            var totalSize = 0L;
+            var now = Instant.now();
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                for (Path file : files) {
+                    var fileName = file.getFileName().toString();
+                    try {
+                        var lastModifiedTime = Files.getLastModifiedTime(file).toInstant();
+                        if (fileName.endsWith(ENTRY_SUFFIX)) {
+                            var entryFile = new EntryFile(file, Files.size(file), lastModifiedTime);
+                            entryFiles.add(entryFile);
+                            totalSize += entryFile.getSize();
+                        } else if (fileName.endsWith(TEMPORARY_SUFFIX)
+                                && lastModifiedTime.plus(TEMPORARY_MAX_AGE).isBefore(now)) {
+                            Files.deleteIfExists(file);
+                        }
+                    } catch (NoSuchFileException e) {
+                        // Removed by another process.
+                    }
+                }
+            }
+
+            entryFiles.sort(Comparator.comparing(EntryFile::getLastModifiedTime));
+            var iterator = entryFiles.iterator();
+            while (totalSize > maxSize && iterator.hasNext()) {
+                var entryFile = iterator.next();
+                Files.deleteIfExists(entryFile.getPath());
+                totalSize -= entryFile.getSize();
+            }
+            size.set(totalSize);
+        } catch (OverlappingFileLockException e) {
+            // Evicting in another thread.
+        }
+    }
+
+    /**
+     * Gets the file of the entry matching the given key.
+     * @param key the entry key.
+     * @return the entry file.
+     */
+    private Path entryFile(String key) {
+        return directory.resolve(key + ENTRY_SUFFIX);
+    }
+
+    /**
+     * A cached response.
+     * @author Julb.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    static class Entry {
+
+        /**
+         * The entity tag of the response.
+         */
+        private String etag;
+
+        /**
+         * The response headers.
+         */
+        private Map<String, List<String>> headers;
+
+        /**
+         * The decoded response body.
+         */
+        private byte[] body;
+    }
+
+    /**
+     * An entry file, with its size and last access time.
+     * @author Julb.
+     */
+    @Value
+    private static class EntryFile {
+
+        /**
+         * The file path.
+         */
+        Path path;
+
+        /**
+         * The file size.
+         */
+        long size;
+
+        /**
+         * The last access time.
+         */
+        Instant lastModifiedTime;
+    }
+}
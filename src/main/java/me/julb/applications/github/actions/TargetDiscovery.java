@@ -0,0 +1,375 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.kohsuke.github.HttpException;
+import org.kohsuke.github.connector.GitHubConnector;
+import org.kohsuke.github.connector.GitHubConnectorRequest;
+
+import me.julb.sdk.github.actions.kit.GitHubActionsKit;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * The discovery of the target branches matching a glob pattern. <br>
+ * In a pattern, <code>*</code> and <code>?</code> match any characters and any single character within a path segment,
+ * <code>**</code> matches across segments, and <code>[...]</code> matches a character class. The branches starting
+ * with the literal prefix of the pattern are listed with the matching-refs endpoint of the Git database API, so that
+ * the filtering is done by GitHub, then the pattern is applied to them. When the refs of the repository are already
+ * indexed, the branches starting with the literal prefix are queried from the index instead. <br>
+ * The requests go through the connector of the API client, with its rate limit scheduling, metrics and cache.
+ * @author Julb.
+ */
+@RequiredArgsConstructor
+class TargetDiscovery {
+
+    /**
+     * The number of refs fetched per page, the maximum supported by the GitHub API.
+     */
+    static final int PAGE_SIZE = 100;
+
+    /**
+     * The HTTP status returned on success.
+     */
+    private static final int HTTP_OK = 200;
+
+    /**
+     * The pattern of the link to the next page, in the <code>Link</code> header.
+     */
+    private static final Pattern NEXT_PAGE_LINK = Pattern.compile("<([^>]+)>\\s*;\\s*rel=\"next\"");
+
+    /**
+     * The prefix of branch refs.
+     */
+    private static final String BRANCH_REF_PREFIX = "refs/heads/";
+
+    /**
+     * The JSON object mapper.
+     */
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /**
+     * The GitHub action kit.
+     */
+    @NonNull
+    private final GitHubActionsKit ghActionsKit;
+
+    /**
+     * The connector of the API client.
+     */
+    @NonNull
+    private final GitHubConnector connector;
+
+    /**
+     * The GitHub REST API URL.
+     */
+    @NonNull
+    private final String apiUrl;
+
+    /**
+     * The GitHub token.
+     */
+    @NonNull
+    private final String token;
+
+    /**
+     * The repository, as <code>owner/name</code>.
+     */
+    @NonNull
+    private final String repository;
+
+    /**
+     * Lists the branches matching the given pattern.
+     * @param glob the glob pattern of the branch names.
+     * @return the matching branch names, sorted.
+     * @throws IOException if an error occurs.
+     */
+    List<String> discover(@NonNull String glob) throws IOException {
+        var pattern = toPattern(glob);
+        var branches = new ArrayList<String>();
+        var pages = 0;
+        var refs = 0;
+
+        var url = new URL(String.format(
+                "%s/repos/%s/git/matching-refs/heads/%s?per_page=%d",
+                apiUrl.replaceAll("/+$", ""),
+                repository,
+                encodePath(literalPrefix(glob)),
+                PAGE_SIZE));
+        while (url != null) {
+            try (var response = connector.send(new GetRequest(url, token))) {
+                var body = response.bodyStream() == null ? null : response.bodyStream().readAllBytes();
+                if (response.statusCode() != HTTP_OK) {
+                    throw new HttpException(
+                            body == null ? "" : new String(body, StandardCharsets.UTF_8),
+                            response.statusCode(),
+                            String.valueOf(response.statusCode()),
+                            url.toString());
+                }
+
+                pages++;
+                for (JsonNode node : OBJECT_MAPPER.readTree(body)) {
+                    refs++;
+                    match(pattern, node.path("ref").asText(), branches);
+                }
+                url = nextPage(response.header("Link"));
+            }
+        }
+
+        ghActionsKit.debug(String.format(
+                "target discovery: %s matched %d of %d branch(es) listed in %d page(s).",
+                glob,
+                branches.size(),
+                refs,
+                pages));
+        branches.sort(null);
+        return branches;
+    }
+
+    /**
+     * Lists the branches matching the given pattern in the given index of the refs of the repository, without any
+     * request.
+     * @param glob the glob pattern of the branch names.
+     * @param refIndex the index of the refs of the repository.
+     * @return the matching branch names, sorted.
+     */
+    List<String> discover(@NonNull String glob, @NonNull RefIndex refIndex) {
+        var pattern = toPattern(glob);
+        var branches = new ArrayList<String>();
+
+        // The index ignores case: the pattern sorts the candidates out.
+        var refs = refIndex.withPrefix(BRANCH_REF_PREFIX + literalPrefix(glob));
+        for (String ref : refs) {
+            match(pattern, ref, branches);
+        }
+
+        ghActionsKit.debug(String.format(
+                "target discovery: %s matched %d of %d branch(es) in the ref index.",
+                glob,
+                branches.size(),
+                refs.size()));
+        branches.sort(null);
+        return branches;
+    }
+
+    // ------------------------------------------ Utility methods.
+
+    /**
+     * Adds the branch of the given ref to the given branches if it matches the given pattern.
+     * @param pattern the pattern of the branch names.
+     * @param ref the full ref name.
+     * @param branches the matching branch names.
+     */
+    private static void match(Pattern pattern, String ref, List<String> branches) {
+        if (ref.startsWith(BRANCH_REF_PREFIX)) {
+            var branch = ref.substring(BRANCH_REF_PREFIX.length());
+            if (pattern.matcher(branch).matches()) {
+                branches.add(branch);
+            }
+        }
+    }
+
+    /**
+     * Checks if the given branch name is a glob pattern. <br>
+     * The wildcard characters are not allowed in Git ref names, so that a branch name is never mistaken for a pattern.
+     * @param name the branch name or pattern.
+     * @return <code>true</code> if the name is a pattern, <code>false</code> otherwise.
+     */
+    static boolean isGlob(@NonNull String name) {
+        return name.indexOf('*') >= 0 || name.indexOf('?') >= 0 || name.indexOf('[') >= 0;
+    }
+
+    /**
+     * Gets the literal prefix of the given pattern, up to its first wildcard.
+     * @param glob the glob pattern.
+     * @return the literal prefix, possibly empty.
+     */
+    static String literalPrefix(@NonNull String glob) {
+        for (int i = 0; i < glob.length(); i++) {
+            var c = glob.charAt(i);
+            if (c == '*' || c == '?' || c == '[') {
+                return glob.substring(0, i);
+            }
+        }
+        return glob;
+    }
+
+    /**
+     * Percent-encodes each segment of the given path, keeping the separators.
+     * @param path the path.
+     * @return the encoded path.
+     */
+    static String encodePath(@NonNull String path) {
+        // @formatter:off
+        return Arrays.stream(path.split("/", -1))
+                .map(segment -> URLEncoder.encode(segment, StandardCharsets.UTF_8).replace("+", "%20"))
+                .collect(Collectors.joining("/"));
+        // @formatter:on
+    }
+
+    /**
+     * Converts the given glob pattern to a regular expression.
+     * @param glob the glob pattern.
+     * @return the regular expression.
+     */
+    static Pattern toPattern(@NonNull String glob) {
+        var regex = new StringBuilder();
+        for (int i = 0; i < glob.length(); i++) {
+            var c = glob.charAt(i);
+            if (c == '*' && i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                regex.append(".*");
+                i++;
+            } else if (c == '*') {
+                regex.append("[^/]*");
+            } else if (c == '?') {
+                regex.append("[^/]");
+            } else if (c == '[' && glob.indexOf(']', i + 1) > i + 1) {
+                var end = glob.indexOf(']', i + 1);
+                var characterClass = glob.substring(i + 1, end);
+                regex.append('[');
+                if (characterClass.startsWith("!")) {
+                    regex.append('^');
+                    characterClass = characterClass.substring(1);
+                }
+                regex.append(characterClass.replace("\\", "\\\\").replace("[", "\\[")).append(']');
+                i = end;
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    /**
+     * Gets the URL of the next page from the given <code>Link</code> header.
+     * @param link the <code>Link</code> header, or <code>null</code> if none.
+     * @return the URL of the next page, or <code>null</code> if on the last page.
+     * @throws IOException if the URL is malformed.
+     */
+    private static URL nextPage(String link) throws IOException {
+        if (link == null) {
+            return null;
+        }
+        var matcher = NEXT_PAGE_LINK.matcher(link);
+        return matcher.find() ? new URL(matcher.group(1)) : null;
+    }
+
+    /**
+     * An authenticated GET request.
+     * @author Julb.
+     */
+    @RequiredArgsConstructor
+    private static class GetRequest implements GitHubConnectorRequest {
+
+        /**
+         * The request URL.
+         */
+        private final URL url;
+
+        /**
+         * The GitHub token.
+         */
+        private final String token;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String method() {
+            return "GET";
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Map<String, List<String>> allHeaders() {
+            return Map.of(
+                    "Authorization", List.of("token " + token),
+                    "Accept", List.of("application/vnd.github+json"));
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String header(String name) {
+            // @formatter:off
+            return allHeaders().entrySet().stream()
+                    .filter(header -> header.getKey().equalsIgnoreCase(name))
+                    .map(header -> String.join(",", header.getValue()))
+                    .findFirst()
+                    .orElse(null);
+            // @formatter:on
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String contentType() {
+            return null;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public InputStream body() {
+            return null;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public URL url() {
+            return url;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean hasBody() {
+            return false;
+        }
+    }
+}
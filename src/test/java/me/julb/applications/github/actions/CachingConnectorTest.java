@@ -0,0 +1,258 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.kohsuke.github.connector.GitHubConnector;
+import org.kohsuke.github.connector.GitHubConnectorRequest;
+import org.kohsuke.github.connector.GitHubConnectorResponse;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+/**
+ * Test class for {@link CachingConnector} class. <br>
+ * @author Julb.
+ */
+@ExtendWith(MockitoExtension.class)
+class CachingConnectorTest {
+
+    /**
+     * The scope of the cached responses.
+     */
+    private static final String SCOPE = "octocat/Hello-World";
+
+    /**
+     * The class under test.
+     */
+    private CachingConnector cachingConnector = null;
+
+    /**
+     * The cache directory.
+     */
+    @TempDir
+    Path directory;
+
+    /**
+     * A mock for the connector sending the requests.
+     */
+    @Mock
+    private GitHubConnector delegateMock;
+
+    /**
+     * A mock for GitHub connector request.
+     */
+    @Mock
+    private GitHubConnectorRequest requestMock;
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @BeforeEach
+    void setUp() throws Exception {
+        cachingConnector = new CachingConnector(delegateMock, new ResponseCache(directory, 1024 * 1024), SCOPE);
+
+        lenient().when(requestMock.url()).thenReturn(new URL("https://api.github.com/repos/o/r/branches/main"));
+        lenient().when(requestMock.method()).thenReturn("GET");
+        lenient().when(requestMock.allHeaders()).thenReturn(Map.of("Authorization", List.of("token 123")));
+        lenient().when(requestMock.header("Authorization")).thenReturn("token 123");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenSendPost_thenSendRequestAsIs() throws Exception {
+        when(requestMock.method()).thenReturn("POST");
+        var response = response(201, Map.of("ETag", List.of("\"abc\"")), "{}");
+        when(delegateMock.send(requestMock)).thenReturn(response);
+
+        assertThat(this.cachingConnector.send(requestMock)).isSameAs(response);
+        try (var files = Files.list(directory)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenSendGetTwiceAndNotModified_thenServeCachedBody() throws Exception {
+        when(delegateMock.send(any()))
+                .thenReturn(response(
+                        200,
+                        Map.of("ETag", List.of("\"abc\""), "X-RateLimit-Remaining", List.of("4999")),
+                        "{\"name\":\"main\"}"))
+                .thenReturn(response(
+                        304, Map.of("ETag", List.of("\"abc\""), "X-RateLimit-Remaining", List.of("4999")), ""));
+
+        var first = this.cachingConnector.send(requestMock);
+        var second = this.cachingConnector.send(requestMock);
+
+        assertThat(body(first)).isEqualTo("{\"name\":\"main\"}");
+        assertThat(second.statusCode()).isEqualTo(200);
+        assertThat(body(second)).isEqualTo("{\"name\":\"main\"}");
+        assertThat(second.header("X-RateLimit-Remaining")).isEqualTo("4999");
+
+        var requestCaptor = ArgumentCaptor.forClass(GitHubConnectorRequest.class);
+        verify(delegateMock, times(2)).send(requestCaptor.capture());
+        assertThat(requestCaptor.getAllValues().get(0).header("If-None-Match")).isNull();
+        assertThat(requestCaptor.getAllValues().get(1).header("If-None-Match")).isEqualTo("\"abc\"");
+        assertThat(requestCaptor.getAllValues().get(1).header("Authorization")).isEqualTo("token 123");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenSendGetTwiceAndModified_thenServeAndCacheNewBody() throws Exception {
+        when(delegateMock.send(any()))
+                .thenReturn(response(200, Map.of("ETag", List.of("\"abc\"")), "{\"sha\":\"1\"}"))
+                .thenReturn(response(200, Map.of("ETag", List.of("\"def\"")), "{\"sha\":\"2\"}"))
+                .thenReturn(response(304, Map.of(), ""));
+
+        this.cachingConnector.send(requestMock);
+        assertThat(body(this.cachingConnector.send(requestMock))).isEqualTo("{\"sha\":\"2\"}");
+        assertThat(body(this.cachingConnector.send(requestMock))).isEqualTo("{\"sha\":\"2\"}");
+
+        var requestCaptor = ArgumentCaptor.forClass(GitHubConnectorRequest.class);
+        verify(delegateMock, times(3)).send(requestCaptor.capture());
+        assertThat(requestCaptor.getAllValues().get(2).header("If-None-Match")).isEqualTo("\"def\"");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenSendGetWithoutEtag_thenDoNotCache() throws Exception {
+        var response = response(200, Map.of(), "{}");
+        when(delegateMock.send(requestMock)).thenReturn(response);
+
+        assertThat(this.cachingConnector.send(requestMock)).isSameAs(response);
+        try (var files = Files.list(directory)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenSendGetNotFound_thenReturnResponseAsIs() throws Exception {
+        var response = response(404, Map.of("ETag", List.of("\"abc\"")), "{\"message\":\"Not Found\"}");
+        when(delegateMock.send(requestMock)).thenReturn(response);
+
+        assertThat(this.cachingConnector.send(requestMock)).isSameAs(response);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenCacheNotWritable_thenServeResponse() throws Exception {
+        var file = Files.createFile(directory.resolve("file"));
+        var connector = new CachingConnector(delegateMock, new ResponseCache(file, 1024 * 1024), SCOPE);
+        when(delegateMock.send(requestMock)).thenReturn(response(200, Map.of("ETag", List.of("\"abc\"")), "{}"));
+
+        assertThat(body(connector.send(requestMock))).isEqualTo("{}");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenCacheKeyWithOtherToken_thenSameKey() throws Exception {
+        var key = CachingConnector.cacheKey(SCOPE, requestMock);
+
+        lenient().when(requestMock.header("Authorization")).thenReturn("token 456");
+
+        assertThat(CachingConnector.cacheKey(SCOPE, requestMock)).hasSize(64).isEqualTo(key);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenCacheKeyWithOtherScopeOrMediaType_thenDifferentKey() throws Exception {
+        var key = CachingConnector.cacheKey(SCOPE, requestMock);
+
+        assertThat(CachingConnector.cacheKey("octocat/Other", requestMock)).hasSize(64).isNotEqualTo(key);
+
+        lenient().when(requestMock.header("Accept")).thenReturn("application/vnd.github.raw");
+
+        assertThat(CachingConnector.cacheKey(SCOPE, requestMock)).hasSize(64).isNotEqualTo(key);
+    }
+
+    // ------------------------------------------ Utility methods.
+
+    /**
+     * Creates a network response.
+     * @param statusCode the status code.
+     * @param headers the headers.
+     * @param body the body.
+     * @return the response.
+     */
+    private GitHubConnectorResponse response(int statusCode, Map<String, List<String>> headers, String body) {
+        return new GitHubConnectorResponse(requestMock, statusCode, headers) {
+            @Override
+            public InputStream bodyStream() {
+                return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+            }
+
+            @Override
+            public void close() {
+                // Nothing to release.
+            }
+        };
+    }
+
+    /**
+     * Reads the body of a response.
+     * @param response the response.
+     * @return the body.
+     * @throws Exception if an error occurs.
+     */
+    private static String body(GitHubConnectorResponse response) throws Exception {
+        return new String(response.bodyStream().readAllBytes(), StandardCharsets.UTF_8);
+    }
+}
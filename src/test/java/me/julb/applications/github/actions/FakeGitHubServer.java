@@ -0,0 +1,814 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import me.julb.sdk.github.actions.kit.GitHubActionsKit;
+
+import lombok.NonNull;
+import lombok.Value;
+
+/**
+ * An in-process fake of the GitHub REST API, serving a single repository over HTTP for end-to-end tests. <br>
+ * The repository holds refs pointing to commits, each commit knowing its ancestors: merges create commits and move
+ * branches, comparisons count the commits missing on each side, and a merge of a head already in the base is a
+ * <code>204 No Content</code>. Refs, all or those matching a prefix, are listed page by page, with <code>Link</code>
+ * headers as GitHub does. <br>
+ * Successful responses have an entity tag, and conditional requests matching it are answered with
+ * <code>304 Not Modified</code>. Latency, server errors, secondary rate limits and merge conflicts can be injected.
+ * Every request is recorded, and actions connected to the server are created with their inputs. <br>
+ * The server is also launched on its own by the scripts of <code>src/main/docker</code>, with the action jar and the
+ * test classes on the class path: see {@link #main(String[])}.
+ * @author Julb.
+ */
+class FakeGitHubServer implements AutoCloseable {
+
+    /**
+     * The default page size of ref listings.
+     */
+    private static final int DEFAULT_PAGE_SIZE = 30;
+
+    /**
+     * The pattern of repository paths.
+     */
+    private static final Pattern REPOSITORY_PATH = Pattern.compile("/repos/([^/]+)/([^/]+)(/.*)?");
+
+    /**
+     * The JSON object mapper.
+     */
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /**
+     * The repository owner login.
+     */
+    private final String owner;
+
+    /**
+     * The repository name.
+     */
+    private final String name;
+
+    /**
+     * The HTTP server.
+     */
+    private final HttpServer server;
+
+    /**
+     * The executor handling the requests.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * The commit SHA of each ref, by full ref name.
+     */
+    private final Map<String, String> refs = new TreeMap<>();
+
+    /**
+     * The ancestors of each commit, itself included, by commit SHA.
+     */
+    private final Map<String, Set<String>> ancestors = new HashMap<>();
+
+    /**
+     * The refs whose merge conflicts with any branch.
+     */
+    private final Set<String> conflictingRefs = new HashSet<>();
+
+    /**
+     * The faults injected in the next requests, by HTTP method.
+     */
+    private final Map<String, List<Fault>> faults = new HashMap<>();
+
+    /**
+     * The number of commits created.
+     */
+    private final AtomicInteger commitCount = new AtomicInteger();
+
+    /**
+     * The requests received, as <code>METHOD /path?query</code>.
+     */
+    private final ConcurrentLinkedQueue<String> requests = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The file to which the requests are appended, or <code>null</code> if none.
+     */
+    private final Path requestLog;
+
+    /**
+     * The latency added to each response.
+     */
+    private volatile Duration latency = Duration.ZERO;
+
+    /**
+     * Creates and starts the server for the given repository, on a free local port.
+     * @param repository the repository, as <code>owner/name</code>.
+     * @throws IOException if the server cannot be started.
+     */
+    FakeGitHubServer(@NonNull String repository) throws IOException {
+        this(repository, 0, null);
+    }
+
+    /**
+     * Creates and starts the server for the given repository, on the given local port.
+     * @param repository the repository, as <code>owner/name</code>.
+     * @param port the port, or <code>0</code> for a free port.
+     * @param requestLog the file to which the requests are appended, or <code>null</code> if none.
+     * @throws IOException if the server cannot be started.
+     */
+    FakeGitHubServer(@NonNull String repository, int port, Path requestLog) throws IOException {
+        var ownerAndName = repository.split("/", 2);
+        this.owner = ownerAndName[0];
+        this.name = ownerAndName[1];
+        this.requestLog = requestLog;
+        this.executor = Executors.newCachedThreadPool();
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        this.server.createContext("/", exchange -> {
+            try (exchange) {
+                requests.add(exchange.getRequestMethod() + " " + exchange.getRequestURI());
+                log(exchange);
+                sleep(latency);
+                handle(exchange);
+            } catch (RuntimeException e) {
+                respond(exchange, 500, Map.of("message", String.valueOf(e.getMessage())));
+            }
+        });
+        this.server.setExecutor(executor);
+        this.server.start();
+    }
+
+    /**
+     * Starts the server for the scripts of <code>src/main/docker</code>, until the process is killed. <br>
+     * The repository <code>octocat/Hello-World</code> holds the <code>main</code>, <code>develop</code>,
+     * <code>release</code> and <code>staging</code> branches, none containing another. Each request is appended to the
+     * request log, as <code>&lt;epoch-millis&gt; &lt;method&gt; &lt;path&gt;</code>, suffixed by
+     * <code>conditional</code> if it has an entity tag.
+     * @param args the port, and the optional request log path.
+     * @throws IOException if the server cannot be started.
+     */
+    public static void main(String[] args) throws IOException {
+        var port = Integer.parseInt(args[0]);
+        var requestLog = args.length > 1 ? Path.of(args[1]) : null;
+
+        var server = new FakeGitHubServer("octocat/Hello-World", port, requestLog);
+        for (String branch : List.of("main", "develop", "release", "staging")) {
+            server.createBranch(branch);
+        }
+    }
+
+    /**
+     * Gets the API URL of the server.
+     * @return the API URL.
+     */
+    String getApiUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * Sets the latency added to each response.
+     * @param latency the latency.
+     */
+    void setLatency(@NonNull Duration latency) {
+        this.latency = latency;
+    }
+
+    /**
+     * Creates a branch pointing to a new root commit.
+     * @param branch the branch name.
+     * @return the commit SHA.
+     */
+    synchronized String createBranch(@NonNull String branch) {
+        var sha = newCommit(Set.of());
+        refs.put(RefResolver.branchRef(branch), sha);
+        return sha;
+    }
+
+    /**
+     * Creates a branch pointing to a new commit on top of another branch.
+     * @param branch the branch name.
+     * @param from the name of the branch to start from.
+     * @return the commit SHA.
+     */
+    synchronized String createBranch(@NonNull String branch, @NonNull String from) {
+        var sha = newCommit(Set.of(refs.get(RefResolver.branchRef(from))));
+        refs.put(RefResolver.branchRef(branch), sha);
+        return sha;
+    }
+
+    /**
+     * Creates a tag pointing to the given commit.
+     * @param tag the tag name.
+     * @param sha the commit SHA.
+     */
+    synchronized void createTag(@NonNull String tag, @NonNull String sha) {
+        refs.put(RefResolver.tagRef(tag), sha);
+    }
+
+    /**
+     * Gets the commit SHA of the given branch.
+     * @param branch the branch name.
+     * @return the commit SHA, or <code>empty</code> if the branch does not exist.
+     */
+    synchronized Optional<String> getBranchSha(@NonNull String branch) {
+        return Optional.ofNullable(refs.get(RefResolver.branchRef(branch)));
+    }
+
+    /**
+     * Checks if the given commit is reachable from the given branch.
+     * @param branch the branch name.
+     * @param sha the commit SHA.
+     * @return <code>true</code> if the branch contains the commit, <code>false</code> otherwise.
+     */
+    synchronized boolean contains(@NonNull String branch, @NonNull String sha) {
+        return getBranchSha(branch).map(ancestors::get).map(a -> a.contains(sha)).orElse(false);
+    }
+
+    /**
+     * Makes the merge of the given branch conflict with any branch.
+     * @param branch the branch name.
+     */
+    synchronized void addConflict(@NonNull String branch) {
+        conflictingRefs.add(RefResolver.branchRef(branch));
+    }
+
+    /**
+     * Fails the next requests of the given method with the given HTTP status.
+     * @param method the HTTP method.
+     * @param status the HTTP status.
+     * @param times the number of requests to fail.
+     */
+    synchronized void failNext(@NonNull String method, int status, int times) {
+        for (int i = 0; i < times; i++) {
+            faults.computeIfAbsent(method, m -> new ArrayList<>()).add(new Fault(status, null));
+        }
+    }
+
+    /**
+     * Answers the next requests of the given method with a secondary rate limit.
+     * @param method the HTTP method.
+     * @param retryAfter the delay before retrying, sent in <code>Retry-After</code>.
+     * @param times the number of requests to throttle.
+     */
+    synchronized void throttleNext(@NonNull String method, @NonNull Duration retryAfter, int times) {
+        for (int i = 0; i < times; i++) {
+            faults.computeIfAbsent(method, m -> new ArrayList<>()).add(new Fault(403, retryAfter));
+        }
+    }
+
+    /**
+     * Gets the requests received so far.
+     * @return the requests, as <code>METHOD /path?query</code>, in order of reception.
+     */
+    List<String> getRequests() {
+        return List.copyOf(requests);
+    }
+
+    /**
+     * Gets the number of requests received so far.
+     * @return the number of requests.
+     */
+    int getRequestCount() {
+        return requests.size();
+    }
+
+    /**
+     * Forgets the requests received so far.
+     */
+    void clearRequests() {
+        requests.clear();
+    }
+
+    /**
+     * Creates an action connected to the server, with the given inputs.
+     * @param inputs the inputs.
+     * @param outputs the map to which the outputs set by the action are put.
+     * @return the action.
+     */
+    MergeBranchGitHubAction newAction(@NonNull Map<String, String> inputs, @NonNull Map<String, String> outputs) {
+        var ghActionsKit = mock(GitHubActionsKit.class);
+        when(ghActionsKit.getInput(anyString())).thenAnswer(i -> Optional.ofNullable(inputs.get(i.getArgument(0))));
+        when(ghActionsKit.getRequiredInput(anyString()))
+                .thenAnswer(i -> Optional.ofNullable(inputs.get(i.getArgument(0))).orElseThrow());
+        when(ghActionsKit.getRequiredEnv("GITHUB_TOKEN")).thenReturn("token");
+        when(ghActionsKit.getGitHubRepository()).thenReturn(owner + "/" + name);
+        when(ghActionsKit.getGitHubApiUrl()).thenReturn(getApiUrl());
+        doAnswer(i -> outputs.put(i.getArgument(0), i.getArgument(1)))
+                .when(ghActionsKit)
+                .setOutput(anyString(), anyString());
+
+        var githubAction = new MergeBranchGitHubAction();
+        githubAction.setGhActionsKit(ghActionsKit);
+        return githubAction;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    // ------------------------------------------ Utility methods.
+
+    /**
+     * Appends the given request to the request log, if any.
+     * @param exchange the request.
+     * @throws IOException if an error occurs.
+     */
+    private void log(HttpExchange exchange) throws IOException {
+        if (requestLog == null) {
+            return;
+        }
+        var line = String.format(
+                "%d %s %s%s%n",
+                System.currentTimeMillis(),
+                exchange.getRequestMethod(),
+                exchange.getRequestURI().getPath(),
+                exchange.getRequestHeaders().containsKey("If-None-Match") ? " conditional" : "");
+        synchronized (requestLog) {
+            Files.writeString(requestLog, line, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+    }
+
+    /**
+     * Answers the given request.
+     * @param exchange the request.
+     * @throws IOException if an error occurs.
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        var method = exchange.getRequestMethod();
+        var uri = exchange.getRequestURI();
+        var path = uri.getPath();
+
+        var fault = nextFault(method);
+        if (fault.isPresent()) {
+            if (fault.get().getRetryAfter() != null) {
+                exchange.getResponseHeaders().add(
+                        "Retry-After", String.valueOf(fault.get().getRetryAfter().toSeconds()));
+                respond(exchange, fault.get().getStatus(), Map.of(
+                        "message", "You have exceeded a secondary rate limit. Please wait a few minutes."));
+            } else {
+                respond(exchange, fault.get().getStatus(), Map.of("message", "Server Error"));
+            }
+            return;
+        }
+
+        if (path.equals("/")) {
+            respond(exchange, 200, Map.of("rate_limit_url", getApiUrl() + "/rate_limit"));
+            return;
+        }
+        if (path.equals("/user")) {
+            respond(exchange, 200, Map.of("login", owner, "id", 1));
+            return;
+        }
+
+        var matcher = REPOSITORY_PATH.matcher(path);
+        if (!matcher.matches() || !owner.equals(matcher.group(1)) || !name.equals(matcher.group(2))) {
+            respond(exchange, 404, Map.of("message", "Not Found"));
+            return;
+        }
+        var tail = matcher.group(3) == null ? "" : matcher.group(3);
+
+        if (tail.isEmpty() && method.equals("GET")) {
+            respond(exchange, 200, repository());
+        } else if (tail.equals("/git/refs") && method.equals("GET")) {
+            listRefs(exchange, query(uri), "", "/git/refs");
+        } else if (tail.startsWith("/git/matching-refs/") && method.equals("GET")) {
+            listRefs(exchange, query(uri), "refs/" + tail.substring("/git/matching-refs/".length()), tail);
+        } else if (tail.startsWith("/git/refs/") && method.equals("GET")) {
+            getRef(exchange, "refs/" + tail.substring("/git/refs/".length()));
+        } else if (tail.startsWith("/git/refs/") && method.equals("PATCH")) {
+            updateRef(exchange, "refs/" + tail.substring("/git/refs/".length()));
+        } else if (tail.startsWith("/branches/") && method.equals("GET")) {
+            getBranch(exchange, tail.substring("/branches/".length()));
+        } else if (tail.startsWith("/commits/") && method.equals("GET")) {
+            getCommit(exchange, tail.substring("/commits/".length()));
+        } else if (tail.startsWith("/compare/") && method.equals("GET")) {
+            compare(exchange, tail.substring("/compare/".length()));
+        } else if (tail.equals("/merges") && method.equals("POST")) {
+            merge(exchange);
+        } else {
+            respond(exchange, 404, Map.of("message", "Not Found"));
+        }
+    }
+
+    /**
+     * Lists the refs of the repository starting with the given prefix, one page at a time.
+     * @param exchange the request.
+     * @param query the query parameters.
+     * @param prefix the prefix of the full ref names listed.
+     * @param path the path of the listing in the repository, for the page links.
+     * @throws IOException if an error occurs.
+     */
+    private void listRefs(HttpExchange exchange, Map<String, String> query, String prefix, String path)
+            throws IOException {
+        var pageSize = Integer.parseInt(query.getOrDefault("per_page", String.valueOf(DEFAULT_PAGE_SIZE)));
+        var page = Integer.parseInt(query.getOrDefault("page", "1"));
+
+        var allRefs = new ArrayList<Map.Entry<String, String>>();
+        synchronized (this) {
+            for (Map.Entry<String, String> ref : refs.entrySet()) {
+                if (ref.getKey().startsWith(prefix)) {
+                    allRefs.add(Map.entry(ref.getKey(), ref.getValue()));
+                }
+            }
+        }
+        var lastPage = Math.max(1, (allRefs.size() + pageSize - 1) / pageSize);
+        var from = Math.min((page - 1) * pageSize, allRefs.size());
+        var to = Math.min(from + pageSize, allRefs.size());
+
+        var body = new ArrayList<Map<String, Object>>();
+        for (Map.Entry<String, String> ref : allRefs.subList(from, to)) {
+            body.add(ref(ref.getKey(), ref.getValue()));
+        }
+
+        var pageUrl = getApiUrl() + repositoryPath() + path + "?per_page=" + pageSize + "&page=";
+        var links = new ArrayList<String>();
+        if (page < lastPage) {
+            links.add(String.format("<%s%d>; rel=\"next\"", pageUrl, page + 1));
+            links.add(String.format("<%s%d>; rel=\"last\"", pageUrl, lastPage));
+        }
+        if (page > 1) {
+            links.add(String.format("<%s%d>; rel=\"first\"", pageUrl, 1));
+            links.add(String.format("<%s%d>; rel=\"prev\"", pageUrl, page - 1));
+        }
+        if (!links.isEmpty()) {
+            exchange.getResponseHeaders().add("Link", String.join(", ", links));
+        }
+        respond(exchange, 200, body);
+    }
+
+    /**
+     * Gets the given ref or, as GitHub does, the refs it is a prefix of.
+     * @param exchange the request.
+     * @param ref the full ref name.
+     * @throws IOException if an error occurs.
+     */
+    private synchronized void getRef(HttpExchange exchange, String ref) throws IOException {
+        var sha = refs.get(ref);
+        if (sha != null) {
+            respond(exchange, 200, ref(ref, sha));
+            return;
+        }
+
+        var matchingRefs = new ArrayList<Map<String, Object>>();
+        refs.forEach((r, s) -> {
+            if (r.startsWith(ref + "/")) {
+                matchingRefs.add(ref(r, s));
+            }
+        });
+        if (matchingRefs.isEmpty()) {
+            respond(exchange, 404, Map.of("message", "Not Found"));
+        } else {
+            respond(exchange, 200, matchingRefs);
+        }
+    }
+
+    /**
+     * Moves the given ref, rejecting updates that are not fast forwards unless forced.
+     * @param exchange the request.
+     * @param ref the full ref name.
+     * @throws IOException if an error occurs.
+     */
+    private synchronized void updateRef(HttpExchange exchange, String ref) throws IOException {
+        var request = OBJECT_MAPPER.readTree(exchange.getRequestBody());
+        var sha = request.path("sha").asText();
+        var force = request.path("force").asBoolean(false);
+
+        var currentSha = refs.get(ref);
+        if (currentSha == null || !ancestors.containsKey(sha)) {
+            respond(exchange, 422, Map.of("message", "Reference does not exist"));
+        } else if (!force && !ancestors.get(sha).contains(currentSha)) {
+            respond(exchange, 422, Map.of("message", "Update is not a fast forward"));
+        } else {
+            refs.put(ref, sha);
+            respond(exchange, 200, ref(ref, sha));
+        }
+    }
+
+    /**
+     * Gets the given branch.
+     * @param exchange the request.
+     * @param branch the branch name.
+     * @throws IOException if an error occurs.
+     */
+    private synchronized void getBranch(HttpExchange exchange, String branch) throws IOException {
+        var sha = refs.get(RefResolver.branchRef(branch));
+        if (sha == null) {
+            respond(exchange, 404, Map.of("message", "Branch not found"));
+        } else {
+            respond(exchange, 200, Map.of("name", branch, "commit", commit(sha), "protected", false));
+        }
+    }
+
+    /**
+     * Gets the given commit.
+     * @param exchange the request.
+     * @param shaOrRef the commit SHA, or a ref.
+     * @throws IOException if an error occurs.
+     */
+    private synchronized void getCommit(HttpExchange exchange, String shaOrRef) throws IOException {
+        var sha = resolve(shaOrRef);
+        if (sha.isEmpty()) {
+            respond(exchange, 422, Map.of("message", "No commit found for SHA: " + shaOrRef));
+        } else {
+            respond(exchange, 200, commit(sha.get()));
+        }
+    }
+
+    /**
+     * Compares a base with a head, given as <code>base...head</code>.
+     * @param exchange the request.
+     * @param baseAndHead the base and the head.
+     * @throws IOException if an error occurs.
+     */
+    private synchronized void compare(HttpExchange exchange, String baseAndHead) throws IOException {
+        var parts = baseAndHead.split("\\.\\.\\.", 2);
+        var baseSha = parts.length == 2 ? resolve(parts[0]) : Optional.<String>empty();
+        var headSha = parts.length == 2 ? resolve(parts[1]) : Optional.<String>empty();
+        if (baseSha.isEmpty() || headSha.isEmpty()) {
+            respond(exchange, 404, Map.of("message", "Not Found"));
+            return;
+        }
+
+        var baseAncestors = ancestors.get(baseSha.get());
+        var headAncestors = ancestors.get(headSha.get());
+        var aheadBy = headAncestors.stream().filter(sha -> !baseAncestors.contains(sha)).count();
+        var behindBy = baseAncestors.stream().filter(sha -> !headAncestors.contains(sha)).count();
+        String status;
+        if (aheadBy == 0 && behindBy == 0) {
+            status = "identical";
+        } else if (behindBy == 0) {
+            status = "ahead";
+        } else if (aheadBy == 0) {
+            status = "behind";
+        } else {
+            status = "diverged";
+        }
+
+        var body = new LinkedHashMap<String, Object>();
+        body.put("status", status);
+        body.put("ahead_by", aheadBy);
+        body.put("behind_by", behindBy);
+        body.put("total_commits", aheadBy);
+        body.put("base_commit", commit(baseSha.get()));
+        body.put("merge_base_commit", commit(baseSha.get()));
+        body.put("commits", List.of());
+        body.put("files", List.of());
+        respond(exchange, 200, body);
+    }
+
+    /**
+     * Merges a head into a base branch, creating a merge commit unless the base already contains the head.
+     * @param exchange the request.
+     * @throws IOException if an error occurs.
+     */
+    private synchronized void merge(HttpExchange exchange) throws IOException {
+        var request = OBJECT_MAPPER.readTree(exchange.getRequestBody());
+        var base = request.path("base").asText();
+        var head = request.path("head").asText();
+
+        var baseRef = RefResolver.branchRef(base);
+        var baseSha = refs.get(baseRef);
+        var headSha = resolve(head);
+        if (baseSha == null) {
+            respond(exchange, 404, Map.of("message", "Base does not exist"));
+        } else if (headSha.isEmpty()) {
+            respond(exchange, 404, Map.of("message", "Head does not exist"));
+        } else if (ancestors.get(baseSha).contains(headSha.get())) {
+            respond(exchange, 204, null);
+        } else if (conflictingRefs.contains(head) || conflictingRefs.contains(RefResolver.branchRef(head))) {
+            respond(exchange, 409, Map.of("message", "Merge conflict"));
+        } else {
+            var mergeSha = newCommit(Set.of(baseSha, headSha.get()));
+            refs.put(baseRef, mergeSha);
+            respond(exchange, 201, commit(mergeSha));
+        }
+    }
+
+    /**
+     * Resolves the given head to a commit SHA, as GitHub does: as a full ref, a ref without <code>refs/</code>, a
+     * branch, a tag or a commit SHA.
+     * @param head the head.
+     * @return the commit SHA, or <code>empty</code> if not found.
+     */
+    private Optional<String> resolve(String head) {
+        for (String ref : List.of(head, "refs/" + head, RefResolver.branchRef(head), RefResolver.tagRef(head))) {
+            if (refs.containsKey(ref)) {
+                return Optional.of(refs.get(ref));
+            }
+        }
+        return Optional.of(head).filter(ancestors::containsKey);
+    }
+
+    /**
+     * Creates a commit with the given parents.
+     * @param parents the parent commit SHAs.
+     * @return the commit SHA.
+     */
+    private String newCommit(Set<String> parents) {
+        var sha = String.format("%040x", commitCount.incrementAndGet());
+        var commitAncestors = new HashSet<String>();
+        commitAncestors.add(sha);
+        parents.forEach(parent -> commitAncestors.addAll(ancestors.get(parent)));
+        ancestors.put(sha, commitAncestors);
+        return sha;
+    }
+
+    /**
+     * Takes the next fault injected for the given method.
+     * @param method the HTTP method.
+     * @return the fault, or <code>empty</code> if none.
+     */
+    private synchronized Optional<Fault> nextFault(String method) {
+        var methodFaults = faults.get(method);
+        if (methodFaults == null || methodFaults.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(methodFaults.remove(0));
+    }
+
+    /**
+     * Gets the path of the repository.
+     * @return the repository path.
+     */
+    private String repositoryPath() {
+        return "/repos/" + owner + "/" + name;
+    }
+
+    /**
+     * Gets the JSON representation of the repository.
+     * @return the repository.
+     */
+    private Map<String, Object> repository() {
+        var body = new LinkedHashMap<String, Object>();
+        body.put("name", name);
+        body.put("full_name", owner + "/" + name);
+        body.put("owner", Map.of("login", owner));
+        body.put("url", getApiUrl() + repositoryPath());
+        body.put("default_branch", "main");
+        return body;
+    }
+
+    /**
+     * Gets the JSON representation of a ref.
+     * @param ref the full ref name.
+     * @param sha the commit SHA.
+     * @return the ref.
+     */
+    private Map<String, Object> ref(String ref, String sha) {
+        // @formatter:off
+        return Map.of(
+                "ref", ref,
+                "url", getApiUrl() + repositoryPath() + "/git/" + ref,
+                "object", Map.of(
+                        "sha", sha,
+                        "type", "commit",
+                        "url", getApiUrl() + repositoryPath() + "/git/commits/" + sha));
+        // @formatter:on
+    }
+
+    /**
+     * Gets the JSON representation of a commit.
+     * @param sha the commit SHA.
+     * @return the commit.
+     */
+    private Map<String, Object> commit(String sha) {
+        return Map.of("sha", sha, "url", getApiUrl() + repositoryPath() + "/commits/" + sha);
+    }
+
+    /**
+     * Parses the query parameters of the given URI.
+     * @param uri the URI.
+     * @return the query parameters.
+     */
+    private static Map<String, String> query(URI uri) {
+        var query = new HashMap<String, String>();
+        if (uri.getRawQuery() != null) {
+            for (String parameter : uri.getRawQuery().split("&")) {
+                var nameAndValue = parameter.split("=", 2);
+                query.put(
+                        URLDecoder.decode(nameAndValue[0], StandardCharsets.UTF_8),
+                        nameAndValue.length == 2 ? URLDecoder.decode(nameAndValue[1], StandardCharsets.UTF_8) : "");
+            }
+        }
+        return query;
+    }
+
+    /**
+     * Sends the given JSON response.
+     * @param exchange the request.
+     * @param status the HTTP status.
+     * @param body the body, serialized as JSON, or <code>null</code> for no body.
+     * @throws IOException if an error occurs.
+     */
+    private static void respond(HttpExchange exchange, int status, Object body) throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+
+        var bytes = OBJECT_MAPPER.writeValueAsBytes(body);
+        exchange.getResponseHeaders().add("Content-Type", "application/json; charset=utf-8");
+
+        // Conditional requests, as answered by GitHub.
+        if (status == 200) {
+            var etag = String.format("\"%08x\"", Arrays.hashCode(bytes));
+            exchange.getResponseHeaders().add("ETag", etag);
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+        }
+
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    /**
+     * Sleeps for the given duration.
+     * @param duration the duration.
+     */
+    private static void sleep(Duration duration) {
+        if (duration.isZero()) {
+            return;
+        }
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A fault injected in a response.
+     * @author Julb.
+     */
+    @Value
+    private static class Fault {
+
+        /**
+         * The HTTP status.
+         */
+        int status;
+
+        /**
+         * The delay sent in <code>Retry-After</code>, or <code>null</code> if not rate limited.
+         */
+        Duration retryAfter;
+    }
+}
@@ -0,0 +1,301 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.kohsuke.github.HttpException;
+import org.kohsuke.github.connector.GitHubConnector;
+import org.kohsuke.github.connector.GitHubConnectorRequest;
+import org.kohsuke.github.connector.GitHubConnectorResponse;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import me.julb.sdk.github.actions.kit.GitHubActionsKit;
+
+/**
+ * Test class for {@link GraphQLBackend} class. <br>
+ * @author Julb.
+ */
+@ExtendWith(MockitoExtension.class)
+class GraphQLBackendTest {
+
+    /**
+     * The class under test.
+     */
+    private GraphQLBackend graphQLBackend = null;
+
+    /**
+     * A mock for GitHub action kit.
+     */
+    @Mock
+    private GitHubActionsKit ghActionsKitMock;
+
+    /**
+     * A mock for HTTP client.
+     */
+    @Mock
+    private HttpClient httpClientMock;
+
+    /**
+     * A mock for HTTP response.
+     */
+    @Mock
+    private HttpResponse<String> httpResponseMock;
+
+    /**
+     * A mock for the API connector.
+     */
+    @Mock
+    private GitHubConnector connectorMock;
+
+    /**
+     * A mock for the API connector response.
+     */
+    @Mock
+    private GitHubConnectorResponse connectorResponseMock;
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @BeforeEach
+    void setUp() throws Exception {
+        graphQLBackend = new GraphQLBackend(
+                ghActionsKitMock, httpClientMock, connectorMock, "https://api.github.com", "token");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenResolveBranch_thenSendSingleQuery() throws Exception {
+        when(httpClientMock.<String>send(any(), any())).thenReturn(httpResponseMock);
+        when(httpResponseMock.statusCode()).thenReturn(200);
+        when(httpResponseMock.body())
+                .thenReturn("{\"data\":{\"repository\":{\"id\":\"R_1\","
+                        + "\"fromBranch\":{\"target\":{\"oid\":\"111111\"}},"
+                        + "\"fromTag\":null,\"fromRef\":null,\"fromCommit\":null,"
+                        + "\"to\":{\"target\":{\"oid\":\"222222\"}}}}}");
+
+        var resolution = this.graphQLBackend.resolve("octocat/Hello-World", "branch-from", "branch-to");
+
+        assertThat(resolution.getRepositoryId()).contains("R_1");
+        assertThat(resolution.getFromRef()).contains("refs/heads/branch-from");
+        assertThat(resolution.getFromOid()).contains("111111");
+        assertThat(resolution.getToOid()).contains("222222");
+
+        var requestCaptor = ArgumentCaptor.forClass(HttpRequest.class);
+        verify(httpClientMock).send(requestCaptor.capture(), any());
+        var request = requestCaptor.getValue();
+        assertThat(request.uri()).isEqualTo(URI.create("https://api.github.com/graphql"));
+        assertThat(request.method()).isEqualTo("POST");
+        assertThat(request.headers().firstValue("Authorization")).contains("token token");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenResolveAnnotatedTag_thenPeelTag() throws Exception {
+        when(httpClientMock.<String>send(any(), any())).thenReturn(httpResponseMock);
+        when(httpResponseMock.statusCode()).thenReturn(200);
+        when(httpResponseMock.body())
+                .thenReturn("{\"data\":{\"repository\":{\"id\":\"R_1\",\"fromBranch\":null,"
+                        + "\"fromTag\":{\"target\":{\"oid\":\"aaaaaa\",\"target\":{\"oid\":\"111111\"}}},"
+                        + "\"fromRef\":null,\"fromCommit\":null,"
+                        + "\"to\":{\"target\":{\"oid\":\"222222\"}}}}}");
+
+        var resolution = this.graphQLBackend.resolve("octocat/Hello-World", "1.0.0", "branch-to");
+
+        assertThat(resolution.getFromRef()).contains("refs/tags/1.0.0");
+        assertThat(resolution.getFromOid()).contains("111111");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenResolveCommitAndBranchMissing_thenReturnCommitAndEmptyTarget() throws Exception {
+        when(httpClientMock.<String>send(any(), any())).thenReturn(httpResponseMock);
+        when(httpResponseMock.statusCode()).thenReturn(200);
+        when(httpResponseMock.body())
+                .thenReturn("{\"data\":{\"repository\":{\"id\":\"R_1\",\"fromBranch\":null,\"fromTag\":null,"
+                        + "\"fromRef\":null,\"fromCommit\":{\"oid\":\"123456789\"},\"to\":null}}}");
+
+        var resolution = this.graphQLBackend.resolve("octocat/Hello-World", "1234567", "branch-to");
+
+        assertThat(resolution.getFromRef()).contains("123456789");
+        assertThat(resolution.getFromOid()).contains("123456789");
+        assertThat(resolution.getToOid()).isEmpty();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenResolveNotCommitSha_thenIgnoreCommitExpression() throws Exception {
+        when(httpClientMock.<String>send(any(), any())).thenReturn(httpResponseMock);
+        when(httpResponseMock.statusCode()).thenReturn(200);
+        when(httpResponseMock.body())
+                .thenReturn("{\"data\":{\"repository\":{\"id\":\"R_1\",\"fromBranch\":null,\"fromTag\":null,"
+                        + "\"fromRef\":null,\"fromCommit\":{\"oid\":\"123456789\"},\"to\":null}}}");
+
+        var resolution = this.graphQLBackend.resolve("octocat/Hello-World", "HEAD", "branch-to");
+
+        assertThat(resolution.getFromRef()).isEmpty();
+        assertThat(resolution.getFromOid()).isEmpty();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenResolveWithErrors_thenThrowIOException() throws Exception {
+        when(httpClientMock.<String>send(any(), any())).thenReturn(httpResponseMock);
+        when(httpResponseMock.statusCode()).thenReturn(200);
+        when(httpResponseMock.body())
+                .thenReturn("{\"data\":{\"repository\":null},\"errors\":[{\"message\":\"Could not resolve\"}]}");
+
+        assertThrows(
+                IOException.class,
+                () -> this.graphQLBackend.resolve("octocat/Hello-World", "branch-from", "branch-to"));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenResolveInvalidRepository_thenThrowIllegalArgumentException() throws Exception {
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> this.graphQLBackend.resolve("Hello-World", "branch-from", "branch-to"));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenMergeCreated_thenSendThroughConnectorAndReturnSha() throws Exception {
+        when(connectorMock.send(any())).thenReturn(connectorResponseMock);
+        when(connectorResponseMock.statusCode()).thenReturn(201);
+        when(connectorResponseMock.bodyStream()).thenReturn(body("{\"sha\":\"333333\"}"));
+
+        assertThat(this.graphQLBackend.merge(
+                        "octocat/Hello-World", "branch-to", "refs/heads/branch-from", Optional.of("some message")))
+                .contains("333333");
+
+        var requestCaptor = ArgumentCaptor.forClass(GitHubConnectorRequest.class);
+        verify(connectorMock).send(requestCaptor.capture());
+        var request = requestCaptor.getValue();
+        assertThat(request.url()).isEqualTo(new URL("https://api.github.com/repos/octocat/Hello-World/merges"));
+        assertThat(request.method()).isEqualTo("POST");
+        assertThat(request.header("authorization")).isEqualTo("token token");
+        assertThat(request.body()).hasContent("{\"base\":\"branch-to\",\"head\":\"refs/heads/branch-from\","
+                + "\"commit_message\":\"some message\"}");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenMergeNoContent_thenReturnEmpty() throws Exception {
+        when(connectorMock.send(any())).thenReturn(connectorResponseMock);
+        when(connectorResponseMock.statusCode()).thenReturn(204);
+
+        assertThat(this.graphQLBackend.merge(
+                        "octocat/Hello-World", "branch-to", "refs/heads/branch-from", Optional.empty()))
+                .isEmpty();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenMergeConflict_thenThrowHttpException() throws Exception {
+        when(connectorMock.send(any())).thenReturn(connectorResponseMock);
+        when(connectorResponseMock.statusCode()).thenReturn(409);
+        when(connectorResponseMock.bodyStream()).thenReturn(body("{\"message\":\"Merge conflict\"}"));
+
+        var e = assertThrows(
+                HttpException.class,
+                () -> this.graphQLBackend.merge(
+                        "octocat/Hello-World", "branch-to", "refs/heads/branch-from", Optional.empty()));
+        assertThat(e.getResponseCode()).isEqualTo(409);
+        assertThat(e.getMessage()).contains("Merge conflict");
+        verify(connectorResponseMock).close();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGraphQLUriForEnterpriseServer_thenReplaceRestPath() {
+        var backend = new GraphQLBackend(
+                ghActionsKitMock, httpClientMock, connectorMock, "https://ghe.example.com/api/v3/", "token");
+
+        assertThat(backend.graphQLUri()).isEqualTo(URI.create("https://ghe.example.com/api/graphql"));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenResolveQuery_thenQueryAllLookupsAtOnce() throws Exception {
+        assertThat(GraphQLBackend.RESOLVE_QUERY)
+                .contains("repository(owner: $owner, name: $name)")
+                .contains("fromBranch: ref(qualifiedName: $fromBranch)")
+                .contains("fromTag: ref(qualifiedName: $fromTag)")
+                .contains("fromCommit: object(expression: $from)")
+                .contains("to: ref(qualifiedName: $to)");
+    }
+
+    // ------------------------------------------ Utility methods.
+
+    /**
+     * Gets a response body stream.
+     * @param json the JSON body.
+     * @return the body stream.
+     */
+    private static ByteArrayInputStream body(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
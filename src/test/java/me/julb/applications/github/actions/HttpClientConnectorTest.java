@@ -0,0 +1,200 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.kohsuke.github.connector.GitHubConnectorRequest;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+/**
+ * Test class for {@link HttpClientConnector} class. <br>
+ * @author Julb.
+ */
+@ExtendWith(MockitoExtension.class)
+class HttpClientConnectorTest {
+
+    /**
+     * The class under test.
+     */
+    private HttpClientConnector httpClientConnector = null;
+
+    /**
+     * A mock for HTTP client.
+     */
+    @Mock
+    private HttpClient httpClientMock;
+
+    /**
+     * A mock for HTTP response.
+     */
+    @Mock
+    private HttpResponse<InputStream> httpResponseMock;
+
+    /**
+     * A mock for GitHub connector request.
+     */
+    @Mock
+    private GitHubConnectorRequest connectorRequestMock;
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @BeforeEach
+    void setUp() throws Exception {
+        httpClientConnector = new HttpClientConnector(httpClientMock, Duration.ofSeconds(30));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenSendGet_thenSendRequestWithHeadersAndTimeout() throws Exception {
+        when(connectorRequestMock.url()).thenReturn(new URL("https://api.github.com/repos/octocat/Hello-World"));
+        when(connectorRequestMock.method()).thenReturn("GET");
+        when(connectorRequestMock.allHeaders()).thenReturn(Map.of("Authorization", List.of("token 123")));
+        when(connectorRequestMock.hasBody()).thenReturn(false);
+        when(httpClientMock.<InputStream>send(any(), any())).thenReturn(httpResponseMock);
+        when(httpResponseMock.statusCode()).thenReturn(200);
+        when(httpResponseMock.headers()).thenReturn(HttpHeaders.of(Map.of(), (k, v) -> true));
+        when(httpResponseMock.body()).thenReturn(new ByteArrayInputStream("{}".getBytes(StandardCharsets.UTF_8)));
+
+        var response = this.httpClientConnector.send(connectorRequestMock);
+
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(new String(response.bodyStream().readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("{}");
+
+        var requestCaptor = ArgumentCaptor.forClass(HttpRequest.class);
+        verify(httpClientMock).send(requestCaptor.capture(), any());
+        var request = requestCaptor.getValue();
+        assertThat(request.uri()).isEqualTo(URI.create("https://api.github.com/repos/octocat/Hello-World"));
+        assertThat(request.method()).isEqualTo("GET");
+        assertThat(request.timeout()).contains(Duration.ofSeconds(30));
+        assertThat(request.headers().firstValue("Authorization")).contains("token 123");
+        assertThat(request.headers().firstValue("Accept-Encoding")).contains("gzip");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenSendPost_thenSendBody() throws Exception {
+        when(connectorRequestMock.url()).thenReturn(new URL("https://api.github.com/repos/octocat/Hello-World/merges"));
+        when(connectorRequestMock.method()).thenReturn("POST");
+        when(connectorRequestMock.allHeaders()).thenReturn(Map.of());
+        when(connectorRequestMock.hasBody()).thenReturn(true);
+        when(connectorRequestMock.body())
+                .thenReturn(new ByteArrayInputStream("{\"base\":\"main\"}".getBytes(StandardCharsets.UTF_8)));
+        when(httpClientMock.<InputStream>send(any(), any())).thenReturn(httpResponseMock);
+        when(httpResponseMock.statusCode()).thenReturn(201);
+        when(httpResponseMock.headers()).thenReturn(HttpHeaders.of(Map.of(), (k, v) -> true));
+
+        var response = this.httpClientConnector.send(connectorRequestMock);
+
+        assertThat(response.statusCode()).isEqualTo(201);
+
+        var requestCaptor = ArgumentCaptor.forClass(HttpRequest.class);
+        verify(httpClientMock).send(requestCaptor.capture(), any());
+        assertThat(requestCaptor.getValue().method()).isEqualTo("POST");
+        assertThat(requestCaptor.getValue().bodyPublisher()).isPresent();
+        assertThat(requestCaptor.getValue().bodyPublisher().get().contentLength()).isEqualTo(15);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenSendAndResponseGzipped_thenDecodeBody() throws Exception {
+        var gzipped = new ByteArrayOutputStream();
+        try (var gzip = new GZIPOutputStream(gzipped)) {
+            gzip.write("{\"sha\":\"123456\"}".getBytes(StandardCharsets.UTF_8));
+        }
+
+        when(connectorRequestMock.url()).thenReturn(new URL("https://api.github.com/repos/octocat/Hello-World"));
+        when(connectorRequestMock.method()).thenReturn("GET");
+        when(connectorRequestMock.allHeaders()).thenReturn(Map.of());
+        when(connectorRequestMock.hasBody()).thenReturn(false);
+        when(httpClientMock.<InputStream>send(any(), any())).thenReturn(httpResponseMock);
+        when(httpResponseMock.statusCode()).thenReturn(200);
+        when(httpResponseMock.headers())
+                .thenReturn(HttpHeaders.of(Map.of("content-encoding", List.of("gzip")), (k, v) -> true));
+        when(httpResponseMock.body()).thenReturn(new ByteArrayInputStream(gzipped.toByteArray()));
+
+        var response = this.httpClientConnector.send(connectorRequestMock);
+
+        assertThat(new String(response.bodyStream().readAllBytes(), StandardCharsets.UTF_8))
+                .isEqualTo("{\"sha\":\"123456\"}");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenSendInterrupted_thenThrowInterruptedIOException() throws Exception {
+        when(connectorRequestMock.url()).thenReturn(new URL("https://api.github.com/repos/octocat/Hello-World"));
+        when(connectorRequestMock.method()).thenReturn("GET");
+        when(connectorRequestMock.allHeaders()).thenReturn(Map.of());
+        when(connectorRequestMock.hasBody()).thenReturn(false);
+        when(httpClientMock.<InputStream>send(any(), any())).thenThrow(new InterruptedException("interrupted"));
+
+        assertThrows(InterruptedIOException.class, () -> this.httpClientConnector.send(connectorRequestMock));
+        assertThat(Thread.interrupted()).isTrue();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenNewHttpClient_thenPreferHttp2() throws Exception {
+        var httpClient = HttpClientConnector.newHttpClient(Duration.ofSeconds(5));
+
+        assertThat(httpClient.version()).isEqualTo(HttpClient.Version.HTTP_2);
+        assertThat(httpClient.connectTimeout()).contains(Duration.ofSeconds(5));
+    }
+}
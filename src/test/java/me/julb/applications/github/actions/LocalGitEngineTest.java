@@ -0,0 +1,275 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.kohsuke.github.HttpException;
+
+import me.julb.sdk.github.actions.kit.GitHubActionsKit;
+
+/**
+ * Test class for {@link LocalGitEngine} class, merging in clones of local bare repositories, without network. <br>
+ * @author Julb.
+ */
+class LocalGitEngineTest {
+
+    /**
+     * The repository.
+     */
+    private static final String REPOSITORY = "octocat/hello-world";
+
+    /**
+     * The temporary directory.
+     */
+    @TempDir
+    Path tempDir;
+
+    /**
+     * The bare repository, acting as the remote.
+     */
+    private Path origin;
+
+    /**
+     * The clone in which commits are pushed to the remote.
+     */
+    private Path seed;
+
+    /**
+     * The clone in which merges are created.
+     */
+    private Path workspace;
+
+    /**
+     * The class under test.
+     */
+    private LocalGitEngine localGitEngine;
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @BeforeEach
+    void setUp() throws Exception {
+        origin = tempDir.resolve(REPOSITORY + ".git");
+        Files.createDirectories(origin);
+        git(origin, "init", "--quiet", "--bare", "--initial-branch=main");
+
+        seed = tempDir.resolve("seed");
+        git(tempDir, "clone", "--quiet", origin.toString(), seed.toString());
+        git(seed, "checkout", "--quiet", "-b", "main");
+        commit("README.md", "hello");
+        git(seed, "push", "--quiet", "origin", "main");
+        git(seed, "checkout", "--quiet", "-b", "feature");
+        commit("feature.txt", "feature");
+        git(seed, "push", "--quiet", "origin", "feature");
+        git(seed, "checkout", "--quiet", "main");
+        commit("main.txt", "main");
+        git(seed, "push", "--quiet", "origin", "main");
+
+        workspace = tempDir.resolve("workspace");
+        git(tempDir, "clone", "--quiet", origin.toString(), workspace.toString());
+        localGitEngine = new LocalGitEngine(mock(GitHubActionsKit.class), workspace, LocalGitEngine.DEFAULT_REMOTE);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenCheckUsableClone_thenUsable() throws Exception {
+        assertThat(localGitEngine.checkUsable(REPOSITORY)).isEmpty();
+        assertThat(localGitEngine.checkUsable("OctoCat/Hello-World")).isEmpty();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenCheckUsableOtherClones_thenUnusable() throws Exception {
+        var empty = Files.createDirectories(tempDir.resolve("empty"));
+        var shallow = tempDir.resolve("shallow");
+        git(tempDir, "clone", "--quiet", "--depth", "1", "file://" + origin, shallow.toString());
+        var ghActionsKit = mock(GitHubActionsKit.class);
+
+        assertThat(new LocalGitEngine(ghActionsKit, empty, "origin").checkUsable(REPOSITORY))
+                .hasValueSatisfying(reason -> assertThat(reason).startsWith("no git clone"));
+        assertThat(new LocalGitEngine(ghActionsKit, shallow, "origin").checkUsable(REPOSITORY))
+                .hasValueSatisfying(reason -> assertThat(reason).startsWith("shallow clone"));
+        assertThat(new LocalGitEngine(ghActionsKit, workspace, "upstream").checkUsable(REPOSITORY))
+                .hasValueSatisfying(reason -> assertThat(reason).startsWith("no remote upstream"));
+        assertThat(localGitEngine.checkUsable("octocat/other"))
+                .hasValueSatisfying(reason -> assertThat(reason).contains("is not octocat/other"));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenCheckUsableWithoutGit_thenUnusable() throws Exception {
+        var missing = tempDir.resolve("missing");
+
+        assertThat(new LocalGitEngine(mock(GitHubActionsKit.class), missing, "origin").checkUsable(REPOSITORY))
+                .hasValueSatisfying(reason -> assertThat(reason).startsWith("git unavailable"));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenSupportsMergeTree_thenCompareWithMinVersion() {
+        assertThat(LocalGitEngine.supportsMergeTree("git version 2.38.0")).isTrue();
+        assertThat(LocalGitEngine.supportsMergeTree("git version 2.43.0.windows.1")).isTrue();
+        assertThat(LocalGitEngine.supportsMergeTree("git version 3.0.0")).isTrue();
+        assertThat(LocalGitEngine.supportsMergeTree("git version 2.34.1")).isFalse();
+        assertThat(LocalGitEngine.supportsMergeTree("git version 1.99.0")).isFalse();
+        assertThat(LocalGitEngine.supportsMergeTree("unknown")).isFalse();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenMerge_thenPushMergeCommitWithoutCheckout() throws Exception {
+        var workspaceHead = git(workspace, "rev-parse", "HEAD");
+        var mainSha = git(origin, "rev-parse", "main");
+        var featureSha = git(origin, "rev-parse", "feature");
+
+        var mergeResult = localGitEngine.merge("refs/heads/feature", "main", Optional.of("Merge feature"));
+
+        assertThat(mergeResult.getStatus()).isEqualTo(MergeStatus.MERGED);
+        assertThat(mergeResult.getSha()).isEqualTo(git(origin, "rev-parse", "main"));
+        assertThat(git(origin, "rev-parse", "main^1", "main^2")).isEqualTo(mainSha + "\n" + featureSha);
+        assertThat(git(origin, "log", "-1", "--format=%s", "main")).isEqualTo("Merge feature");
+        assertThat(git(origin, "ls-tree", "--name-only", "main")).contains("feature.txt", "main.txt");
+        assertThat(git(workspace, "rev-parse", "HEAD")).isEqualTo(workspaceHead);
+        assertThat(git(workspace, "status", "--porcelain")).isEmpty();
+        assertThat(git(workspace, "for-each-ref", "refs/merge-branch/")).isEmpty();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenMergeAgain_thenNothingToMerge() throws Exception {
+        localGitEngine.merge("refs/heads/feature", "main", Optional.empty());
+        var mainSha = git(origin, "rev-parse", "main");
+
+        var mergeResult = localGitEngine.merge("refs/heads/feature", "main", Optional.empty());
+
+        assertThat(mergeResult.getStatus()).isEqualTo(MergeStatus.UP_TO_DATE);
+        assertThat(mergeResult.getSha()).isEqualTo(mainSha);
+        assertThat(git(origin, "rev-parse", "main")).isEqualTo(mainSha);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenMergeSha_thenMergeCommit() throws Exception {
+        var featureSha = git(origin, "rev-parse", "feature");
+
+        var mergeResult = localGitEngine.merge(featureSha, "main", Optional.empty());
+
+        assertThat(mergeResult.getStatus()).isEqualTo(MergeStatus.MERGED);
+        assertThat(git(origin, "rev-parse", "main^2")).isEqualTo(featureSha);
+        assertThat(git(origin, "log", "-1", "--format=%s", "main")).isEqualTo("Merge " + featureSha + " into main");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenMergeConflicts_thenThrowConflict() throws Exception {
+        git(seed, "checkout", "--quiet", "-b", "conflict", "feature");
+        commit("main.txt", "conflict");
+        git(seed, "push", "--quiet", "origin", "conflict");
+        var mainSha = git(origin, "rev-parse", "main");
+
+        var e = assertThrows(
+                HttpException.class, () -> localGitEngine.merge("refs/heads/conflict", "main", Optional.empty()));
+
+        assertThat(e.getResponseCode()).isEqualTo(409);
+        assertThat(e.getMessage()).contains("Merge conflict");
+        assertThat(git(origin, "rev-parse", "main")).isEqualTo(mainSha);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenMergeMissingBranch_thenThrowIOException() throws Exception {
+        assertThrows(
+                IOException.class, () -> localGitEngine.merge("refs/heads/missing", "main", Optional.empty()));
+    }
+
+    // ------------------------------------------ Utility methods.
+
+    /**
+     * Commits the given file in the seed clone.
+     * @param file the file name.
+     * @param content the file content.
+     * @throws IOException if an error occurs.
+     */
+    private void commit(String file, String content) throws IOException {
+        Files.writeString(seed.resolve(file), content);
+        git(seed, "add", file);
+        git(seed, "-c", "user.name=Octocat", "-c", "user.email=octocat@github.com", "commit", "--quiet", "-m", file);
+    }
+
+    /**
+     * Runs the given git command, which must succeed.
+     * @param directory the working directory.
+     * @param args the git arguments.
+     * @return the trimmed output.
+     * @throws IOException if the command fails.
+     */
+    private static String git(Path directory, String... args) throws IOException {
+        var command = new ArrayList<String>();
+        command.add("git");
+        command.addAll(Arrays.asList(args));
+        var process = new ProcessBuilder(command).directory(directory.toFile()).redirectErrorStream(true).start();
+        try {
+            var output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8).trim();
+            if (process.waitFor() != 0) {
+                throw new IOException(String.format("%s failed: %s", command, output));
+            }
+            return output;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Request budget test class for {@link MergeBranchGitHubAction} class, running the action over HTTP against a
+ * {@link FakeGitHubServer}. <br>
+ * Each scenario asserts the maximum number of API requests of a run, so that a change, or a library upgrade, adding
+ * round trips fails the build. A budget is only raised on purpose.
+ * @author Julb.
+ */
+class MergeBranchGitHubActionBudgetTest {
+
+    /**
+     * The repository.
+     */
+    private static final String REPOSITORY = "octocat/hello-world";
+
+    /**
+     * The fake GitHub API.
+     */
+    private FakeGitHubServer server;
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new FakeGitHubServer(REPOSITORY);
+        server.createBranch("main");
+        server.createBranch("develop");
+    }
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @AfterEach
+    void tearDown() throws Exception {
+        server.close();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenMergeBranchIntoBranch_thenWithinBudget() throws Exception {
+        server.createBranch("feature");
+
+        assertBudget(Map.of("from", "feature", "to", "main"), 6);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenMergeBranchIntoBranchLazily_thenWithinBudget() throws Exception {
+        server.createBranch("feature");
+
+        assertBudget(Map.of("from", "feature", "to", "main", "connection", "lazy"), 3);
+        assertThat(server.getRequests()).noneMatch(request -> request.startsWith("GET /user"));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenMergeTagIntoBranch_thenWithinBudget() throws Exception {
+        server.createTag("v1.0.0", server.createBranch("feature"));
+
+        assertBudget(Map.of("from", "v1.0.0", "to", "main"), 7);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenMergeShaIntoBranch_thenWithinBudget() throws Exception {
+        var sha = server.createBranch("feature");
+
+        assertBudget(Map.of("from", sha, "to", "main"), 8);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenMergeBranchIntoManyBranches_thenWithinBudget() throws Exception {
+        server.createBranch("feature");
+
+        assertBudget(Map.of("from", "feature", "to", "main\ndevelop"), 8);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenMergeBranchIntoBranchesMatchingPattern_thenWithinBudget() throws Exception {
+        server.createBranch("feature");
+        server.createBranch("release/1.x");
+        server.createBranch("release/2.x");
+
+        assertBudget(Map.of("from", "feature", "to", "release/*"), 9);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenMergeManyBranchesIntoBranch_thenWithinBudget() throws Exception {
+        server.createBranch("feature-1");
+        server.createBranch("feature-2");
+
+        assertBudget(Map.of("from", "feature-1\nfeature-2", "to", "main"), 8);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenMergeChain_thenWithinBudget() throws Exception {
+        server.createBranch("release");
+
+        assertBudget(Map.of("chain", "release\ndevelop\nmain", "to", "main"), 7);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenFastForward_thenWithinBudget() throws Exception {
+        server.createBranch("feature", "main");
+
+        assertBudget(Map.of("from", "feature", "to", "main", "strategy", "ff-only"), 7);
+    }
+
+    // ------------------------------------------ Utility methods.
+
+    /**
+     * Runs the action with the given inputs, and asserts its number of API requests.
+     * @param inputs the inputs.
+     * @param maxRequests the maximum number of API requests.
+     */
+    private void assertBudget(Map<String, String> inputs, int maxRequests) {
+        var mergeMetrics = new MergeMetrics();
+        var githubAction = server.newAction(inputs, new HashMap<>());
+        githubAction.setMergeMetrics(mergeMetrics);
+        githubAction.execute();
+
+        var apiCallCounts = mergeMetrics.getApiCallCounts();
+        var requests = apiCallCounts.values().stream().mapToLong(Long::longValue).sum();
+        assertThat(requests).as("requests by endpoint: %s", apiCallCounts).isLessThanOrEqualTo(maxRequests);
+        assertThat(server.getRequestCount()).as("requests received").isEqualTo(requests);
+    }
+}
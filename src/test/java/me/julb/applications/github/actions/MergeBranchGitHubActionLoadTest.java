@@ -0,0 +1,349 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.kohsuke.github.HttpException;
+
+/**
+ * End-to-end test class for {@link MergeBranchGitHubAction} class, running the action over HTTP against a
+ * {@link FakeGitHubServer}. <br>
+ * The load test runs many merges concurrently, and asserts their throughput, their latency percentiles and the number
+ * of requests sent per merge, so that performance regressions are caught without reaching GitHub. The measures are
+ * published as report entries of the test.
+ * @author Julb.
+ */
+class MergeBranchGitHubActionLoadTest {
+
+    /**
+     * The repository.
+     */
+    private static final String REPOSITORY = "octocat/hello-world";
+
+    /**
+     * The number of merges of the load test, <code>100</code> unless set by the <code>load.merges</code> property.
+     */
+    private static final int LOAD_MERGES = Integer.getInteger("load.merges", 100);
+
+    /**
+     * The number of merges run at a time by the load test, <code>8</code> unless set by the
+     * <code>load.concurrency</code> property.
+     */
+    private static final int LOAD_CONCURRENCY = Integer.getInteger("load.concurrency", 8);
+
+    /**
+     * The number of target branches of the load test.
+     */
+    private static final int LOAD_TARGETS = 20;
+
+    /**
+     * The maximum number of requests per merge: token owner, API check, repository, source ref, target branch and
+     * merge.
+     */
+    private static final double MAX_REQUESTS_PER_MERGE = 6;
+
+    /**
+     * The maximum 99th percentile of the merge latency.
+     */
+    private static final Duration MAX_P99_LATENCY = Duration.ofSeconds(10);
+
+    /**
+     * The minimum number of merges per second, <code>5</code> unless set by the <code>load.min-throughput</code>
+     * property.
+     */
+    private static final int MIN_THROUGHPUT = Integer.getInteger("load.min-throughput", 5);
+
+    /**
+     * The fake GitHub API.
+     */
+    private FakeGitHubServer server;
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new FakeGitHubServer(REPOSITORY);
+    }
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @AfterEach
+    void tearDown() throws Exception {
+        server.close();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenExecuteConcurrently_thenMergeAllWithinBudget(TestReporter testReporter) throws Exception {
+        server.setLatency(Duration.ofMillis(2));
+        for (int i = 0; i < LOAD_TARGETS; i++) {
+            server.createBranch(target(i));
+        }
+        var featureShas = new ArrayList<String>();
+        for (int i = 0; i < LOAD_MERGES; i++) {
+            featureShas.add(server.createBranch(feature(i)));
+        }
+
+        var executor = Executors.newFixedThreadPool(LOAD_CONCURRENCY);
+        var latencies = Collections.synchronizedList(new ArrayList<Long>());
+        var start = System.nanoTime();
+        Duration elapsed;
+        try {
+            var tasks = new ArrayList<Callable<Map<String, String>>>();
+            for (int i = 0; i < LOAD_MERGES; i++) {
+                var inputs = Map.of("from", feature(i), "to", target(i % LOAD_TARGETS));
+                tasks.add(() -> {
+                    var mergeStart = System.nanoTime();
+                    var outputs = execute(inputs);
+                    latencies.add(System.nanoTime() - mergeStart);
+                    return outputs;
+                });
+            }
+            for (Future<Map<String, String>> future : executor.invokeAll(tasks)) {
+                assertThat(future.get()).containsKey(OutputVars.SHA.key());
+            }
+            elapsed = Duration.ofNanos(System.nanoTime() - start);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        for (int i = 0; i < LOAD_MERGES; i++) {
+            assertThat(server.contains(target(i % LOAD_TARGETS), featureShas.get(i))).isTrue();
+        }
+
+        var p50 = percentile(latencies, 0.50);
+        var p99 = percentile(latencies, 0.99);
+        var requestsPerMerge = (double) server.getRequestCount() / LOAD_MERGES;
+        var throughput = LOAD_MERGES * 1000.0 / Math.max(elapsed.toMillis(), 1);
+        // @formatter:off
+        testReporter.publishEntry(Map.of(
+                "merges", String.valueOf(LOAD_MERGES),
+                "concurrency", String.valueOf(LOAD_CONCURRENCY),
+                "merges-per-second", String.format("%.1f", throughput),
+                "p50-ms", String.valueOf(p50.toMillis()),
+                "p99-ms", String.valueOf(p99.toMillis()),
+                "requests-per-merge", String.format("%.1f", requestsPerMerge)));
+        // @formatter:on
+
+        assertThat(requestsPerMerge).isLessThanOrEqualTo(MAX_REQUESTS_PER_MERGE);
+        assertThat(p99).isLessThan(MAX_P99_LATENCY);
+        assertThat(p50).isLessThanOrEqualTo(p99);
+        assertThat(throughput).as("merges per second").isGreaterThanOrEqualTo(MIN_THROUGHPUT);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenExecuteAgain_thenNothingToMerge() throws Exception {
+        server.createBranch("main");
+        server.createBranch("feature");
+
+        var first = execute(Map.of("from", "feature", "to", "main"));
+        var second = execute(Map.of("from", "feature", "to", "main"));
+
+        assertThat(first.get(OutputVars.RESULTS.key())).contains("merged");
+        assertThat(second.get(OutputVars.RESULTS.key())).contains("up-to-date");
+        assertThat(second.get(OutputVars.SHA.key())).isEqualTo(first.get(OutputVars.SHA.key()));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenSourceDiffersByCase_thenScanRefsPageByPage() throws Exception {
+        server.createBranch("main");
+        for (int i = 0; i < 250; i++) {
+            server.createBranch(String.format("branch-%03d", i));
+        }
+        var sha = server.getBranchSha("branch-249").orElseThrow();
+
+        execute(Map.of("from", "BRANCH-249", "to", "main", "scan-page-size", "100"));
+
+        assertThat(server.contains("main", sha)).isTrue();
+        // @formatter:off
+        assertThat(server.getRequests())
+                .filteredOn(request -> request.startsWith("GET /repos/" + REPOSITORY + "/git/refs?"))
+                .hasSize(3)
+                .last()
+                .asString()
+                .endsWith("page=3");
+        // @formatter:on
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenTargetPattern_thenMergeIntoMatchingBranches() throws Exception {
+        server.createBranch("main");
+        server.createBranch("release/1.x");
+        server.createBranch("release/2.x");
+        server.createBranch("release/2.x/rc");
+        var sha = server.createBranch("release/feature");
+
+        var outputs = execute(Map.of("from", "release/feature", "to", "release/*, main", "max-parallel", "2"));
+
+        assertThat(server.contains("release/1.x", sha)).isTrue();
+        assertThat(server.contains("release/2.x", sha)).isTrue();
+        assertThat(server.contains("main", sha)).isTrue();
+        assertThat(server.contains("release/2.x/rc", sha)).isFalse();
+        assertThat(outputs.get(OutputVars.RESULTS.key()))
+                .contains("\"release/1.x\"", "\"release/2.x\"", "\"main\"")
+                .doesNotContain("\"release/feature\"");
+        assertThat(server.getRequests())
+                .filteredOn(request -> request.contains("/git/matching-refs/heads/release/"))
+                .hasSize(1);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenFastForward_thenMoveTargetBranch() throws Exception {
+        server.createBranch("main");
+        var sha = server.createBranch("feature", "main");
+
+        var outputs = execute(Map.of("from", "feature", "to", "main", "strategy", "ff-only"));
+
+        assertThat(outputs.get(OutputVars.SHA.key())).isEqualTo(sha);
+        assertThat(server.getBranchSha("main")).contains(sha);
+        assertThat(server.getRequests()).noneMatch(request -> request.startsWith("POST"));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenMergeFailsTransiently_thenRetryAndMerge() throws Exception {
+        server.createBranch("main");
+        var sha = server.createBranch("feature");
+        server.failNext("POST", 502, 1);
+
+        var githubAction = server.newAction(Map.of("from", "feature", "to", "main"), new ConcurrentHashMap<>());
+        githubAction.setMergeRetryBackoff(Duration.ofMillis(1));
+        githubAction.execute();
+
+        assertThat(server.contains("main", sha)).isTrue();
+        assertThat(server.getRequests()).filteredOn(request -> request.startsWith("POST")).hasSize(2);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenThrottled_thenWaitAndMerge() throws Exception {
+        server.createBranch("main");
+        var sha = server.createBranch("feature");
+        server.throttleNext("POST", Duration.ofSeconds(1), 1);
+
+        var outputs = execute(Map.of("from", "feature", "to", "main"));
+
+        assertThat(server.contains("main", sha)).isTrue();
+        assertThat(Long.parseLong(outputs.get(OutputVars.RATE_LIMIT_WAIT.key()))).isPositive();
+        assertThat(server.getRequests()).filteredOn(request -> request.startsWith("POST")).hasSize(2);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenMergeConflicts_thenFail() throws Exception {
+        var mainSha = server.createBranch("main");
+        server.createBranch("feature");
+        server.addConflict("feature");
+
+        var githubAction = server.newAction(Map.of("from", "feature", "to", "main"), new ConcurrentHashMap<>());
+        var e = assertThrows(CompletionException.class, githubAction::execute);
+
+        assertThat(e.getCause()).isInstanceOf(HttpException.class);
+        assertThat(((HttpException) e.getCause()).getResponseCode()).isEqualTo(409);
+        assertThat(server.getBranchSha("main")).contains(mainSha);
+    }
+
+    // ------------------------------------------ Utility methods.
+
+    /**
+     * Executes an action connected to the fake GitHub API, with the given inputs.
+     * @param inputs the inputs.
+     * @return the outputs set by the action.
+     */
+    private Map<String, String> execute(Map<String, String> inputs) {
+        var outputs = new ConcurrentHashMap<String, String>();
+        server.newAction(inputs, outputs).execute();
+        return outputs;
+    }
+
+    /**
+     * Gets the given percentile of the latencies.
+     * @param latencies the latencies, in nanoseconds.
+     * @param percentile the percentile, between 0 and 1.
+     * @return the latency percentile.
+     */
+    private static Duration percentile(List<Long> latencies, double percentile) {
+        var sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        var index = (int) Math.ceil(percentile * sorted.size()) - 1;
+        return Duration.ofNanos(sorted.get(Math.max(index, 0)));
+    }
+
+    /**
+     * Gets the name of the feature branch of the given index.
+     * @param index the index.
+     * @return the branch name.
+     */
+    private static String feature(int index) {
+        return String.format("feature/%03d", index);
+    }
+
+    /**
+     * Gets the name of the target branch of the given index.
+     * @param index the index.
+     * @return the branch name.
+     */
+    private static String target(int index) {
+        return String.format("release/%02d", index);
+    }
+}
@@ -24,28 +24,50 @@
 package me.julb.applications.github.actions;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import jdk.jfr.consumer.RecordingFile;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.kohsuke.github.GHBranch;
 import org.kohsuke.github.GHCommit;
+import org.kohsuke.github.GHCompare;
+import org.kohsuke.github.GHFileNotFoundException;
 import org.kohsuke.github.GHRef;
 import org.kohsuke.github.GHRepository;
 import org.kohsuke.github.GitHub;
+import org.kohsuke.github.HttpException;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -100,7 +122,19 @@ class MergeBranchGitHubActionTest {
     void whenGetInputTo_thenReturnValue() throws Exception {
         when(this.ghActionsKitMock.getRequiredInput("to")).thenReturn("branch-to");
 
-        assertThat(this.githubAction.getInputTo()).isEqualTo("branch-to");
+        assertThat(this.githubAction.getInputTo()).containsExactly("branch-to");
+
+        verify(this.ghActionsKitMock).getRequiredInput("to");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetInputToMultipleValues_thenReturnValues() throws Exception {
+        when(this.ghActionsKitMock.getRequiredInput("to")).thenReturn("branch-1, branch-2\nbranch-3\n\n");
+
+        assertThat(this.githubAction.getInputTo()).containsExactly("branch-1", "branch-2", "branch-3");
 
         verify(this.ghActionsKitMock).getRequiredInput("to");
     }
@@ -110,6 +144,7 @@ class MergeBranchGitHubActionTest {
      */
     @Test
     void whenGetInputToNotProvided_thenFail() {
+        when(this.ghActionsKitMock.getGitHubSha()).thenReturn("123456");
         when(this.ghActionsKitMock.getRequiredInput("to")).thenThrow(NoSuchElementException.class);
         assertThrows(CompletionException.class, () -> this.githubAction.execute());
         verify(this.ghActionsKitMock).getRequiredInput("to");
@@ -122,7 +157,7 @@ class MergeBranchGitHubActionTest {
     void whenGetInputFromProvided_thenReturnValue() throws Exception {
         when(this.ghActionsKitMock.getInput("from")).thenReturn(Optional.of("branch-name"));
 
-        assertThat(this.githubAction.getInputFrom()).isEqualTo("branch-name");
+        assertThat(this.githubAction.getInputFrom()).containsExactly("branch-name");
 
         verify(this.ghActionsKitMock).getInput("from");
     }
@@ -135,7 +170,7 @@ class MergeBranchGitHubActionTest {
         when(this.ghActionsKitMock.getInput("from")).thenReturn(Optional.empty());
         when(this.ghActionsKitMock.getGitHubSha()).thenReturn("123456");
 
-        assertThat(this.githubAction.getInputFrom()).isEqualTo("123456");
+        assertThat(this.githubAction.getInputFrom()).containsExactly("123456");
 
         verify(this.ghActionsKitMock).getInput("from");
         verify(this.ghActionsKitMock).getGitHubSha();
@@ -169,301 +204,2161 @@ class MergeBranchGitHubActionTest {
      * Test method.
      */
     @Test
-    void whenConnectApi_thenVerifyOK() throws Exception {
-        when(ghActionsKitMock.getRequiredEnv("GITHUB_TOKEN")).thenReturn("token");
-        when(ghActionsKitMock.getGitHubApiUrl()).thenReturn("https://api.github.com");
+    void whenGetInputChainPresent_thenReturnValues() throws Exception {
+        when(this.ghActionsKitMock.getInput("chain")).thenReturn(Optional.of("release/1.0\nrelease/1.1\nmain"));
 
-        this.githubAction.connectApi();
+        assertThat(this.githubAction.getInputChain()).containsExactly("release/1.0", "release/1.1", "main");
 
-        verify(ghActionsKitMock).getRequiredEnv("GITHUB_TOKEN");
-        verify(ghActionsKitMock).getGitHubApiUrl();
-        verify(ghActionsKitMock, times(2)).debug(Mockito.anyString());
-        verify(ghApiMock).checkApiUrlValidity();
+        verify(this.ghActionsKitMock).getInput("chain");
     }
 
     /**
      * Test method.
      */
     @Test
-    void whenGetTargetBranchExist_thenReturnBranch() throws Exception {
-        var ghBranchMock = mock(GHBranch.class);
-        when(ghRepositoryMock.getBranch("branch-name")).thenReturn(ghBranchMock);
+    void whenGetInputChainEmpty_thenReturnEmpty() throws Exception {
+        when(this.ghActionsKitMock.getInput("chain")).thenReturn(Optional.empty());
 
-        assertThat(this.githubAction.getToBranch("branch-name")).isPresent().contains(ghBranchMock);
+        assertThat(this.githubAction.getInputChain()).isEmpty();
 
-        verify(ghRepositoryMock).getBranch("branch-name");
+        verify(this.ghActionsKitMock).getInput("chain");
     }
 
     /**
      * Test method.
      */
     @Test
-    void whenGetTargetBranchDoesNotExist_thenReturnEmpty() throws Exception {
-        when(ghRepositoryMock.getBranch("branch-name")).thenReturn(null);
+    void whenGetInputFromManyValues_thenReturnValues() throws Exception {
+        when(this.ghActionsKitMock.getInput("from")).thenReturn(Optional.of("feature-1\nfeature-2"));
 
-        assertThat(this.githubAction.getToBranch("branch-name")).isEmpty();
+        assertThat(this.githubAction.getInputFrom()).containsExactly("feature-1", "feature-2");
 
-        verify(ghRepositoryMock).getBranch("branch-name");
+        verify(this.ghActionsKitMock).getInput("from");
     }
 
     /**
      * Test method.
      */
     @Test
-    void whenGetTargetBranchNull_thenThrowNullPointerException() throws Exception {
-        assertThrows(NullPointerException.class, () -> this.githubAction.getToBranch(null));
+    void whenGetInputContinueOnConflictPresent_thenReturnValue() throws Exception {
+        when(this.ghActionsKitMock.getInput("continue-on-conflict")).thenReturn(Optional.of("true"));
+
+        assertThat(this.githubAction.getInputContinueOnConflict()).isTrue();
+
+        verify(this.ghActionsKitMock).getInput("continue-on-conflict");
     }
 
     /**
      * Test method.
      */
     @Test
-    void whenExecuteWithCommitToMerge_thenMergeCommitCreated() throws Exception {
-        var spy = spy(this.githubAction);
+    void whenGetInputContinueOnConflictEmpty_thenReturnFalse() throws Exception {
+        when(this.ghActionsKitMock.getInput("continue-on-conflict")).thenReturn(Optional.empty());
 
-        var ghRefFrom = mock(GHRef.class);
-        when(ghRefFrom.getRef()).thenReturn("refs/heads/branch-from");
+        assertThat(this.githubAction.getInputContinueOnConflict()).isFalse();
 
-        var ghBranchTo = mock(GHBranch.class);
+        verify(this.ghActionsKitMock).getInput("continue-on-conflict");
+    }
 
-        var ghMergeCommit = mock(GHCommit.class);
-        when(ghMergeCommit.getSHA1()).thenReturn("123456");
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetInputMaxParallelPresent_thenReturnValue() throws Exception {
+        when(this.ghActionsKitMock.getInput("max-parallel")).thenReturn(Optional.of("8"));
 
-        when(this.ghActionsKitMock.getGitHubRepository()).thenReturn("octocat/Hello-World");
-        doReturn("branch-from").when(spy).getInputFrom();
-        doReturn("branch-to").when(spy).getInputTo();
-        doReturn(Optional.of("some message")).when(spy).getInputMessage();
+        assertThat(this.githubAction.getInputMaxParallel()).isEqualTo(8);
 
-        doNothing().when(spy).connectApi();
+        verify(this.ghActionsKitMock).getInput("max-parallel");
+    }
 
-        when(this.ghApiMock.getRepository("octocat/Hello-World")).thenReturn(ghRepositoryMock);
-        doReturn(Optional.of(ghRefFrom)).when(spy).getAnyGHRef("branch-from");
-        doReturn(Optional.of(ghBranchTo)).when(spy).getToBranch("branch-to");
-        when(ghBranchTo.merge("refs/heads/branch-from", "some message")).thenReturn(ghMergeCommit);
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetInputMaxParallelEmpty_thenReturnDefaultValue() throws Exception {
+        when(this.ghActionsKitMock.getInput("max-parallel")).thenReturn(Optional.empty());
 
-        spy.execute();
+        assertThat(this.githubAction.getInputMaxParallel()).isEqualTo(4);
 
-        verify(this.ghActionsKitMock).getGitHubRepository();
+        verify(this.ghActionsKitMock).getInput("max-parallel");
+    }
 
-        verify(spy).getInputFrom();
-        verify(spy).getInputTo();
-        verify(spy).getInputMessage();
-        verify(spy).connectApi();
-        verify(spy).getToBranch("branch-to");
-        verify(spy).getAnyGHRef("branch-from");
-        verify(ghBranchTo).merge("refs/heads/branch-from", "some message");
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetInputResolverPresent_thenReturnValue() throws Exception {
+        when(this.ghActionsKitMock.getInput("resolver")).thenReturn(Optional.of("GraphQL"));
 
-        verify(this.ghApiMock).getRepository("octocat/Hello-World");
-        verify(this.ghActionsKitMock).notice(anyString());
-        verify(this.ghActionsKitMock).setOutput(OutputVars.SHA.key(), "123456");
+        assertThat(this.githubAction.getInputResolver()).isEqualTo(ResolverBackend.GRAPHQL);
+
+        verify(this.ghActionsKitMock).getInput("resolver");
     }
 
     /**
      * Test method.
      */
     @Test
-    void whenExecuteWithNoCommitToMerge_thenDoNothing() throws Exception {
-        var spy = spy(this.githubAction);
+    void whenGetInputResolverEmpty_thenReturnRest() throws Exception {
+        when(this.ghActionsKitMock.getInput("resolver")).thenReturn(Optional.empty());
 
-        var ghRefFrom = mock(GHRef.class);
-        when(ghRefFrom.getRef()).thenReturn("refs/heads/branch-from");
+        assertThat(this.githubAction.getInputResolver()).isEqualTo(ResolverBackend.REST);
 
-        var ghBranchTo = mock(GHBranch.class);
-        when(ghBranchTo.getSHA1()).thenReturn("456789");
+        verify(this.ghActionsKitMock).getInput("resolver");
+    }
 
-        when(this.ghActionsKitMock.getGitHubRepository()).thenReturn("octocat/Hello-World");
-        doReturn("branch-from").when(spy).getInputFrom();
-        doReturn("branch-to").when(spy).getInputTo();
-        doReturn(Optional.of("some message")).when(spy).getInputMessage();
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetInputResolverUnknown_thenThrowIllegalArgumentException() throws Exception {
+        when(this.ghActionsKitMock.getInput("resolver")).thenReturn(Optional.of("soap"));
 
-        doNothing().when(spy).connectApi();
+        assertThrows(IllegalArgumentException.class, () -> this.githubAction.getInputResolver());
+    }
 
-        when(this.ghApiMock.getRepository("octocat/Hello-World")).thenReturn(ghRepositoryMock);
-        doReturn(Optional.of(ghRefFrom)).when(spy).getAnyGHRef("branch-from");
-        doReturn(Optional.of(ghBranchTo)).when(spy).getToBranch("branch-to");
-        when(ghBranchTo.merge("refs/heads/branch-from", "some message")).thenReturn(null);
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetInputModePresent_thenReturnValue() throws Exception {
+        when(this.ghActionsKitMock.getInput("mode")).thenReturn(Optional.of("Plan"));
 
-        spy.execute();
+        assertThat(this.githubAction.getInputMode()).isEqualTo(MergeMode.PLAN);
 
-        verify(this.ghActionsKitMock).getGitHubRepository();
+        verify(this.ghActionsKitMock).getInput("mode");
+    }
 
-        verify(spy).getInputFrom();
-        verify(spy).getInputTo();
-        verify(spy).getInputMessage();
-        verify(spy).connectApi();
-        verify(spy).getToBranch("branch-to");
-        verify(spy).getAnyGHRef("branch-from");
-        verify(ghBranchTo).merge("refs/heads/branch-from", "some message");
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetInputModeEmpty_thenReturnMerge() throws Exception {
+        when(this.ghActionsKitMock.getInput("mode")).thenReturn(Optional.empty());
 
-        verify(this.ghApiMock).getRepository("octocat/Hello-World");
-        verify(this.ghActionsKitMock).notice(anyString());
-        verify(this.ghActionsKitMock).setOutput(OutputVars.SHA.key(), "456789");
+        assertThat(this.githubAction.getInputMode()).isEqualTo(MergeMode.MERGE);
+
+        verify(this.ghActionsKitMock).getInput("mode");
     }
 
     /**
      * Test method.
      */
     @Test
-    void whenExecuteWithFromBranchEmpty_thenThrowCompletionException() throws Exception {
-        var spy = spy(this.githubAction);
+    void whenGetInputModeUnknown_thenThrowIllegalArgumentException() throws Exception {
+        when(this.ghActionsKitMock.getInput("mode")).thenReturn(Optional.of("dry"));
 
-        when(this.ghActionsKitMock.getGitHubRepository()).thenReturn("octocat/Hello-World");
-        doReturn("branch-from").when(spy).getInputFrom();
-        doReturn("branch-to").when(spy).getInputTo();
-        doReturn(Optional.of("some message")).when(spy).getInputMessage();
+        assertThrows(IllegalArgumentException.class, () -> this.githubAction.getInputMode());
+    }
 
-        doNothing().when(spy).connectApi();
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetInputStrategyPresent_thenReturnValue() throws Exception {
+        when(this.ghActionsKitMock.getInput("strategy")).thenReturn(Optional.of("FF-Preferred"));
 
-        when(this.ghApiMock.getRepository("octocat/Hello-World")).thenReturn(ghRepositoryMock);
-        doReturn(Optional.empty()).when(spy).getAnyGHRef("branch-from");
+        assertThat(this.githubAction.getInputStrategy()).isEqualTo(MergeStrategy.FF_PREFERRED);
 
-        assertThrows(CompletionException.class, () -> spy.execute());
+        verify(this.ghActionsKitMock).getInput("strategy");
+    }
 
-        verify(this.ghActionsKitMock).getGitHubRepository();
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetInputStrategyEmpty_thenReturnMerge() throws Exception {
+        when(this.ghActionsKitMock.getInput("strategy")).thenReturn(Optional.empty());
 
-        verify(spy).getInputFrom();
-        verify(spy).getInputTo();
-        verify(spy).getInputMessage();
-        verify(spy).connectApi();
-        verify(spy).getAnyGHRef("branch-from");
+        assertThat(this.githubAction.getInputStrategy()).isEqualTo(MergeStrategy.MERGE);
 
-        verify(this.ghApiMock).getRepository("octocat/Hello-World");
+        verify(this.ghActionsKitMock).getInput("strategy");
     }
 
     /**
      * Test method.
      */
     @Test
-    void whenExecuteWithToBranchEmpty_thenThrowCompletionException() throws Exception {
-        var spy = spy(this.githubAction);
+    void whenGetInputStrategyUnknown_thenThrowIllegalArgumentException() throws Exception {
+        when(this.ghActionsKitMock.getInput("strategy")).thenReturn(Optional.of("rebase"));
 
-        var ghRefFrom = mock(GHRef.class);
+        assertThrows(IllegalArgumentException.class, () -> this.githubAction.getInputStrategy());
+    }
 
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetCacheScope_thenKeepTokenUnlessIssuedForJob() throws Exception {
         when(this.ghActionsKitMock.getGitHubRepository()).thenReturn("octocat/Hello-World");
-        doReturn("branch-from").when(spy).getInputFrom();
-        doReturn("branch-to").when(spy).getInputTo();
-        doReturn(Optional.of("some message")).when(spy).getInputMessage();
 
-        doNothing().when(spy).connectApi();
+        when(this.ghActionsKitMock.getRequiredEnv("GITHUB_TOKEN")).thenReturn("ghs_job");
+        assertThat(this.githubAction.getCacheScope()).isEqualTo("octocat/Hello-World");
 
-        when(this.ghApiMock.getRepository("octocat/Hello-World")).thenReturn(ghRepositoryMock);
-        doReturn(Optional.of(ghRefFrom)).when(spy).getAnyGHRef("branch-from");
-        doReturn(Optional.empty()).when(spy).getToBranch("branch-to");
+        when(this.ghActionsKitMock.getRequiredEnv("GITHUB_TOKEN")).thenReturn("ghp_personal");
+        assertThat(this.githubAction.getCacheScope()).isEqualTo("octocat/Hello-World\nghp_personal");
+    }
 
-        assertThrows(CompletionException.class, () -> spy.execute());
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetInputEnginePresent_thenReturnValue() throws Exception {
+        when(this.ghActionsKitMock.getInput("engine")).thenReturn(Optional.of("Auto"));
 
-        verify(this.ghActionsKitMock).getGitHubRepository();
+        assertThat(this.githubAction.getInputEngine()).isEqualTo(MergeEngine.AUTO);
 
-        verify(spy).getInputFrom();
-        verify(spy).getInputTo();
-        verify(spy).getInputMessage();
-        verify(spy).connectApi();
-        verify(spy).getToBranch("branch-to");
-        verify(spy).getAnyGHRef("branch-from");
+        verify(this.ghActionsKitMock).getInput("engine");
+    }
 
-        verify(this.ghApiMock).getRepository("octocat/Hello-World");
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetInputEngineEmpty_thenReturnApi() throws Exception {
+        when(this.ghActionsKitMock.getInput("engine")).thenReturn(Optional.empty());
+
+        assertThat(this.githubAction.getInputEngine()).isEqualTo(MergeEngine.API);
+
+        verify(this.ghActionsKitMock).getInput("engine");
     }
 
     /**
      * Test method.
      */
     @Test
-    void whenGetAnyGHRefExist_thenReturnRef() throws Exception {
-        var ghRef1 = Mockito.mock(GHRef.class);
-        when(ghRef1.getRef()).thenReturn("refs/heads/main");
+    void whenGetLocalGitEngineWithoutClone_thenFallbackToApiOrThrow(@TempDir Path workspace) throws Exception {
+        when(this.ghActionsKitMock.getRequiredEnv("GITHUB_WORKSPACE")).thenReturn(workspace.toString());
+        when(this.ghActionsKitMock.getGitHubRepository()).thenReturn("octocat/Hello-World");
 
-        var ghRef2 = Mockito.mock(GHRef.class);
-        when(ghRef2.getRef()).thenReturn("refs/heads/BRANCH-name");
+        when(this.ghActionsKitMock.getInput("engine")).thenReturn(Optional.of("local"));
+        assertThrows(IllegalStateException.class, () -> this.githubAction.getLocalGitEngine());
 
-        var ghRef3 = Mockito.mock(GHRef.class);
-        when(ghRef3.getRef()).thenReturn("refs/tags/1.0.0");
+        when(this.ghActionsKitMock.getInput("engine")).thenReturn(Optional.of("auto"));
+        assertThat(this.githubAction.getLocalGitEngine()).isEmpty();
+        assertThat(this.githubAction.getLocalGitEngine()).isEmpty();
 
-        var ghRef4 = Mockito.mock(GHRef.class);
-        when(ghRef4.getRef()).thenReturn("refs/commits/123456");
+        verify(this.ghActionsKitMock, times(2)).getRequiredEnv("GITHUB_WORKSPACE");
+    }
 
-        when(ghRepositoryMock.getRefs()).thenReturn(new GHRef[] {ghRef1, ghRef2, ghRef3, ghRef4});
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetInputConnectionPresent_thenReturnValue() throws Exception {
+        when(this.ghActionsKitMock.getInput("connection")).thenReturn(Optional.of("Lazy"));
 
-        assertThat(this.githubAction.getAnyGHRef("refs/heads/main")).isPresent().contains(ghRef1);
-        assertThat(this.githubAction.getAnyGHRef("branch-name")).isPresent().contains(ghRef2);
-        assertThat(this.githubAction.getAnyGHRef("1.0.0")).isPresent().contains(ghRef3);
-        assertThat(this.githubAction.getAnyGHRef("refs/tags/1.0.0")).isPresent().contains(ghRef3);
-        assertThat(this.githubAction.getAnyGHRef("refs/commits/123456"))
-                .isPresent()
-                .contains(ghRef4);
-        assertThat(this.githubAction.getAnyGHRef("123456")).isPresent().contains(ghRef4);
+        assertThat(this.githubAction.getInputConnection()).isEqualTo(ConnectionMode.LAZY);
 
-        verify(ghRepositoryMock, times(6)).getRefs();
-        verify(ghRef1, times(6)).getRef();
-        verify(ghRef2, times(5)).getRef();
-        verify(ghRef3, times(4)).getRef();
-        verify(ghRef4, times(2)).getRef();
+        verify(this.ghActionsKitMock).getInput("connection");
     }
 
     /**
      * Test method.
      */
     @Test
-    void whenGetAnyGHRefDoesNotExist_thenReturnEmpty() throws Exception {
-        when(ghRepositoryMock.getRefs()).thenReturn(new GHRef[] {});
+    void whenGetInputConnectionEmpty_thenReturnEager() throws Exception {
+        when(this.ghActionsKitMock.getInput("connection")).thenReturn(Optional.empty());
 
-        assertThat(this.githubAction.getAnyGHRef("branch-name")).isEmpty();
+        assertThat(this.githubAction.getInputConnection()).isEqualTo(ConnectionMode.EAGER);
 
-        verify(ghRepositoryMock).getRefs();
+        verify(this.ghActionsKitMock).getInput("connection");
     }
 
     /**
      * Test method.
      */
     @Test
-    void whenGetAnyGHRefNull_thenThrowNullPointerException() throws Exception {
-        assertThrows(NullPointerException.class, () -> this.githubAction.getAnyGHRef(null));
+    void whenGetInputConnectionUnknown_thenThrowIllegalArgumentException() throws Exception {
+        when(this.ghActionsKitMock.getInput("connection")).thenReturn(Optional.of("later"));
+
+        assertThrows(IllegalArgumentException.class, () -> this.githubAction.getInputConnection());
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetInputConnectorPresent_thenReturnValue() throws Exception {
+        when(this.ghActionsKitMock.getInput("connector")).thenReturn(Optional.of("HttpClient"));
+
+        assertThat(this.githubAction.getInputConnector()).isEqualTo(ConnectorType.HTTP_CLIENT);
+
+        verify(this.ghActionsKitMock).getInput("connector");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetInputConnectorEmpty_thenReturnDefault() throws Exception {
+        when(this.ghActionsKitMock.getInput("connector")).thenReturn(Optional.empty());
+
+        assertThat(this.githubAction.getInputConnector()).isEqualTo(ConnectorType.DEFAULT);
+
+        verify(this.ghActionsKitMock).getInput("connector");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetInputConnectorUnknown_thenThrowIllegalArgumentException() throws Exception {
+        when(this.ghActionsKitMock.getInput("connector")).thenReturn(Optional.of("carrier-pigeon"));
+
+        assertThrows(IllegalArgumentException.class, () -> this.githubAction.getInputConnector());
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetInputTimeoutsPresent_thenReturnSeconds() throws Exception {
+        when(this.ghActionsKitMock.getInput("connect-timeout")).thenReturn(Optional.of("3"));
+        when(this.ghActionsKitMock.getInput("read-timeout")).thenReturn(Optional.of("20"));
+
+        assertThat(this.githubAction.getInputConnectTimeout()).isEqualTo(Duration.ofSeconds(3));
+        assertThat(this.githubAction.getInputReadTimeout()).isEqualTo(Duration.ofSeconds(20));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetInputTimeoutsEmpty_thenReturnDefaultValues() throws Exception {
+        when(this.ghActionsKitMock.getInput("connect-timeout")).thenReturn(Optional.empty());
+        when(this.ghActionsKitMock.getInput("read-timeout")).thenReturn(Optional.empty());
+
+        assertThat(this.githubAction.getInputConnectTimeout())
+                .isEqualTo(MergeBranchGitHubAction.DEFAULT_CONNECT_TIMEOUT);
+        assertThat(this.githubAction.getInputReadTimeout()).isEqualTo(MergeBranchGitHubAction.DEFAULT_READ_TIMEOUT);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetInputCacheProvided_thenReturnValues() throws Exception {
+        when(this.ghActionsKitMock.getInput("cache-dir")).thenReturn(Optional.of(".gh-api-cache"));
+        when(this.ghActionsKitMock.getInput("cache-max-size")).thenReturn(Optional.of("16"));
+
+        assertThat(this.githubAction.getInputCacheDir()).contains(".gh-api-cache");
+        assertThat(this.githubAction.getInputCacheMaxSize()).isEqualTo(16);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetInputCacheEmpty_thenReturnDefaultValues() throws Exception {
+        when(this.ghActionsKitMock.getInput("cache-dir")).thenReturn(Optional.empty());
+        when(this.ghActionsKitMock.getInput("cache-max-size")).thenReturn(Optional.empty());
+
+        assertThat(this.githubAction.getInputCacheDir()).isEmpty();
+        assertThat(this.githubAction.getInputCacheMaxSize()).isEqualTo(MergeBranchGitHubAction.DEFAULT_CACHE_MAX_SIZE);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetInputRateLimitMaxWaitPresent_thenReturnSeconds() throws Exception {
+        when(this.ghActionsKitMock.getInput("rate-limit-max-wait")).thenReturn(Optional.of("120"));
+
+        assertThat(this.githubAction.getInputRateLimitMaxWait()).isEqualTo(Duration.ofMinutes(2));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetInputRateLimitMaxWaitEmpty_thenReturnDefaultValue() throws Exception {
+        when(this.ghActionsKitMock.getInput("rate-limit-max-wait")).thenReturn(Optional.empty());
+
+        assertThat(this.githubAction.getInputRateLimitMaxWait())
+                .isEqualTo(MergeBranchGitHubAction.DEFAULT_RATE_LIMIT_MAX_WAIT);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenReportRateLimitWait_thenSetOutputAndNotice() throws Exception {
+        var rateLimitScheduler = mock(RateLimitScheduler.class);
+        when(rateLimitScheduler.getWaited()).thenReturn(Duration.ofMillis(1500));
+        this.githubAction.setRateLimitScheduler(rateLimitScheduler);
+
+        this.githubAction.reportRateLimitWait();
+
+        verify(this.ghActionsKitMock).setOutput(OutputVars.RATE_LIMIT_WAIT.key(), "1500");
+        verify(this.ghActionsKitMock).notice("Waited 1500 ms for the GitHub API rate limits.");
     }
 
     /**
      * Test method.
      */
     @Test
-    void whenBranchRefNamePresent_thenReturnRefValue() {
-        assertThat(this.githubAction.branchRef("branch-name")).isEqualTo("refs/heads/branch-name");
+    void whenReportRateLimitWaitWithoutScheduler_thenNoOutput() throws Exception {
+        this.githubAction.reportRateLimitWait();
+
+        verify(this.ghActionsKitMock, never()).setOutput(anyString(), anyString());
     }
 
     /**
      * Test method.
      */
     @Test
-    void whenBranchRefNameNull_thenThrowNullPointerException() throws Exception {
-        assertThrows(NullPointerException.class, () -> this.githubAction.branchRef(null));
+    void whenReportRequests_thenDebugCountsByEndpoint() throws Exception {
+        var mergeMetrics = new MergeMetrics();
+        mergeMetrics.observeApiCall("GET", "/repos/{owner}/{repo}/branches", "200", Duration.ofMillis(10));
+        mergeMetrics.observeApiCall("POST", "/repos/{owner}/{repo}/merges", "502", Duration.ofMillis(10));
+        mergeMetrics.observeApiCall("POST", "/repos/{owner}/{repo}/merges", "201", Duration.ofMillis(10));
+        this.githubAction.setMergeMetrics(mergeMetrics);
+
+        this.githubAction.reportRequests();
+
+        verify(this.ghActionsKitMock).debug(
+                "requests: [GET /repos/{owner}/{repo}/branches: 1, POST /repos/{owner}/{repo}/merges: 2], total: 3.");
     }
 
     /**
      * Test method.
      */
     @Test
-    void whenTagRefNamePresent_thenReturnRefValue() {
-        assertThat(this.githubAction.tagRef("1.0.0")).isEqualTo("refs/tags/1.0.0");
+    void whenReportRequestsWithoutRequest_thenDebugZero() throws Exception {
+        this.githubAction.reportRequests();
+
+        verify(this.ghActionsKitMock).debug("requests: [], total: 0.");
     }
 
     /**
      * Test method.
      */
     @Test
-    void whenTagRefNameNull_thenThrowNullPointerException() throws Exception {
-        assertThrows(NullPointerException.class, () -> this.githubAction.tagRef(null));
+    void whenReportDurations_thenSetOutputsAndDebug() throws Exception {
+        var phaseTimer = mock(PhaseTimer.class);
+        when(phaseTimer.getElapsed()).thenReturn(Duration.ofMillis(250));
+        var durations = new LinkedHashMap<Phase, Duration>();
+        durations.put(Phase.CONNECT_API, Duration.ofMillis(100));
+        durations.put(Phase.MERGE, Duration.ofMillis(150));
+        when(phaseTimer.getDurations()).thenReturn(durations);
+        when(phaseTimer.summary()).thenReturn("connect-api: 100 ms, merge: 150 ms (1 requests)");
+        this.githubAction.setPhaseTimer(phaseTimer);
+
+        this.githubAction.reportDurations();
+
+        verify(this.ghActionsKitMock).setOutput(OutputVars.DURATION.key(), "250");
+        verify(this.ghActionsKitMock)
+                .setOutput(OutputVars.PHASE_DURATIONS.key(), "{\"connect-api\":100,\"merge\":150}");
+        verify(this.ghActionsKitMock)
+                .debug("timings: [connect-api: 100 ms, merge: 150 ms (1 requests)], total: 250 ms.");
     }
 
     /**
      * Test method.
      */
     @Test
-    void whenCommitRefNamePresent_thenReturnRefValue() {
-        assertThat(this.githubAction.commitRef("123456")).isEqualTo("refs/commits/123456");
+    void whenGetRequestCount_thenReturnRequestsSentBySchedulerIfAny() throws Exception {
+        assertThat(this.githubAction.getRequestCount()).isZero();
+
+        var rateLimitScheduler = mock(RateLimitScheduler.class);
+        when(rateLimitScheduler.getRequestCount()).thenReturn(7L);
+        this.githubAction.setRateLimitScheduler(rateLimitScheduler);
+
+        assertThat(this.githubAction.getRequestCount()).isEqualTo(7);
     }
 
     /**
      * Test method.
      */
     @Test
-    void whenCommitRefNameNull_thenThrowNullPointerException() throws Exception {
-        assertThrows(NullPointerException.class, () -> this.githubAction.commitRef(null));
+    void whenWriteMetricsRequested_thenWriteMetricsFile(@TempDir Path directory) throws Exception {
+        var file = directory.resolve("merge-branch.prom");
+        when(this.ghActionsKitMock.getInput("metrics-file")).thenReturn(Optional.of(file.toString()));
+        var mergeMetrics = mock(MergeMetrics.class);
+        this.githubAction.setMergeMetrics(mergeMetrics);
+
+        this.githubAction.writeMetrics();
+
+        verify(mergeMetrics).writeTo(file);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenWriteMetricsNotRequested_thenWriteNothing() throws Exception {
+        when(this.ghActionsKitMock.getInput("metrics-file")).thenReturn(Optional.empty());
+        var mergeMetrics = mock(MergeMetrics.class);
+        this.githubAction.setMergeMetrics(mergeMetrics);
+
+        this.githubAction.writeMetrics();
+
+        verify(mergeMetrics, never()).writeTo(any());
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetInputRecordJfrEmpty_thenReturnFalse() throws Exception {
+        when(this.ghActionsKitMock.getInput("record-jfr")).thenReturn(Optional.empty());
+
+        assertThat(this.githubAction.getInputRecordJfr()).isFalse();
+        assertThat(this.githubAction.startRecording()).isEmpty();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenRecordJfr_thenWritePhaseEventsToWorkspace(@TempDir Path workspace) throws Exception {
+        when(this.ghActionsKitMock.getInput("record-jfr")).thenReturn(Optional.of("true"));
+        when(this.ghActionsKitMock.getRequiredEnv("GITHUB_WORKSPACE")).thenReturn(workspace.toString());
+        when(this.ghRepositoryMock.getBranch("main")).thenReturn(null);
+
+        var recording = this.githubAction.startRecording();
+        assertThat(recording).isPresent();
+        this.githubAction.getToBranch("main");
+        this.githubAction.stopRecording(recording.get());
+
+        var file = workspace.resolve(MergeBranchGitHubAction.JFR_FILE_NAME);
+        verify(this.ghActionsKitMock).notice(String.format("Flight recording written to %s.", file));
+        // @formatter:off
+        assertThat(RecordingFile.readAllEvents(file))
+                .filteredOn(event -> event.getEventType().getName().equals("me.julb.applications.github.actions.Phase"))
+                .extracting(event -> event.getString("phase"), event -> event.getString("ref"))
+                .containsExactly(tuple("get-to-branch", "main"));
+        // @formatter:on
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetInputMergeRetriesPresent_thenReturnValue() throws Exception {
+        when(this.ghActionsKitMock.getInput("merge-retries")).thenReturn(Optional.of("5"));
+
+        assertThat(this.githubAction.getInputMergeRetries()).isEqualTo(5);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetInputMergeRetriesEmpty_thenReturnDefaultValue() throws Exception {
+        when(this.ghActionsKitMock.getInput("merge-retries")).thenReturn(Optional.empty());
+
+        assertThat(this.githubAction.getInputMergeRetries()).isEqualTo(MergeBranchGitHubAction.DEFAULT_MERGE_RETRIES);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetInputLockPresent_thenReturnValue() throws Exception {
+        when(this.ghActionsKitMock.getInput("lock")).thenReturn(Optional.of("true"));
+
+        assertThat(this.githubAction.getInputLock()).isTrue();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetInputLockEmpty_thenReturnFalse() throws Exception {
+        when(this.ghActionsKitMock.getInput("lock")).thenReturn(Optional.empty());
+
+        assertThat(this.githubAction.getInputLock()).isFalse();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetInputLockLeaseAndTimeoutPresent_thenReturnSeconds() throws Exception {
+        when(this.ghActionsKitMock.getInput("lock-lease")).thenReturn(Optional.of("120"));
+        when(this.ghActionsKitMock.getInput("lock-timeout")).thenReturn(Optional.of("30"));
+
+        assertThat(this.githubAction.getInputLockLease()).isEqualTo(Duration.ofMinutes(2));
+        assertThat(this.githubAction.getInputLockTimeout()).isEqualTo(Duration.ofSeconds(30));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenNewRefLockWithLeaseNotAboveRateLimitMaxWait_thenThrowIllegalArgumentException() throws Exception {
+        when(this.ghActionsKitMock.getInput("lock-lease")).thenReturn(Optional.of("600"));
+        when(this.ghActionsKitMock.getInput("rate-limit-max-wait")).thenReturn(Optional.empty());
+
+        assertThrows(IllegalArgumentException.class, () -> this.githubAction.newRefLock("develop"));
+
+        verify(this.ghActionsKitMock, never()).getRequiredEnv("GITHUB_RUN_ID");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenNewRefLockWithDefaultValues_thenCreateLock() throws Exception {
+        when(this.ghActionsKitMock.getInput(anyString())).thenReturn(Optional.empty());
+        when(this.ghActionsKitMock.getRequiredEnv("GITHUB_RUN_ID")).thenReturn("1234");
+
+        assertThat(this.githubAction.newRefLock("develop")).isNotNull();
+        assertThat(MergeBranchGitHubAction.DEFAULT_LOCK_LEASE)
+                .isGreaterThan(MergeBranchGitHubAction.DEFAULT_RATE_LIMIT_MAX_WAIT)
+                .isGreaterThan(MergeBranchGitHubAction.DEFAULT_LOCK_TIMEOUT);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetInputLockLeaseAndTimeoutEmpty_thenReturnDefaultValues() throws Exception {
+        when(this.ghActionsKitMock.getInput("lock-lease")).thenReturn(Optional.empty());
+        when(this.ghActionsKitMock.getInput("lock-timeout")).thenReturn(Optional.empty());
+
+        assertThat(this.githubAction.getInputLockLease()).isEqualTo(MergeBranchGitHubAction.DEFAULT_LOCK_LEASE);
+        assertThat(this.githubAction.getInputLockTimeout()).isEqualTo(MergeBranchGitHubAction.DEFAULT_LOCK_TIMEOUT);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetHttpClientTwice_thenReuseSameClient() throws Exception {
+        when(this.ghActionsKitMock.getInput("connect-timeout")).thenReturn(Optional.of("3"));
+
+        var httpClient = this.githubAction.getHttpClient();
+
+        assertThat(this.githubAction.getHttpClient()).isSameAs(httpClient);
+        assertThat(httpClient.connectTimeout()).contains(Duration.ofSeconds(3));
+        verify(this.ghActionsKitMock).getInput("connect-timeout");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetInputScanPageSizePresent_thenReturnValue() throws Exception {
+        when(this.ghActionsKitMock.getInput("scan-page-size")).thenReturn(Optional.of("50"));
+
+        assertThat(this.githubAction.getInputScanPageSize()).isEqualTo(50);
+
+        verify(this.ghActionsKitMock).getInput("scan-page-size");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetInputScanPageSizeEmpty_thenReturnDefaultValue() throws Exception {
+        when(this.ghActionsKitMock.getInput("scan-page-size")).thenReturn(Optional.empty());
+
+        assertThat(this.githubAction.getInputScanPageSize()).isEqualTo(100);
+
+        verify(this.ghActionsKitMock).getInput("scan-page-size");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenBuildApi_thenVerifyOK() throws Exception {
+        when(ghActionsKitMock.getRequiredEnv("GITHUB_TOKEN")).thenReturn("token");
+        when(ghActionsKitMock.getGitHubApiUrl()).thenReturn("https://api.github.com");
+
+        this.githubAction.buildApi();
+
+        verify(ghActionsKitMock).getRequiredEnv("GITHUB_TOKEN");
+        verify(ghActionsKitMock).getGitHubApiUrl();
+        verify(ghApiMock, never()).checkApiUrlValidity();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenCheckApi_thenVerifyOK() throws Exception {
+        this.githubAction.checkApi();
+
+        verify(ghActionsKitMock, times(2)).debug(Mockito.anyString());
+        verify(ghApiMock).checkApiUrlValidity();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenConnectRepository_thenCheckApiAndGetRepositoryConcurrently() throws Exception {
+        var spy = spy(this.githubAction);
+        doNothing().when(spy).buildApi();
+
+        var inFlight = new CountDownLatch(2);
+        doAnswer(invocation -> {
+            inFlight.countDown();
+            return inFlight.await(5, TimeUnit.SECONDS);
+        }).when(ghApiMock).checkApiUrlValidity();
+        when(this.ghActionsKitMock.getGitHubRepository()).thenReturn("octocat/Hello-World");
+        when(this.ghApiMock.getRepository("octocat/Hello-World")).thenAnswer(invocation -> {
+            inFlight.countDown();
+            inFlight.await(5, TimeUnit.SECONDS);
+            return ghRepositoryMock;
+        });
+
+        spy.connectRepository();
+
+        assertThat(inFlight.getCount()).isZero();
+        verify(spy).buildApi();
+        verify(ghApiMock).checkApiUrlValidity();
+        verify(ghApiMock).getRepository("octocat/Hello-World");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenConnectRepositoryWithInvalidApi_thenThrowApiError() throws Exception {
+        var spy = spy(this.githubAction);
+        doNothing().when(spy).buildApi();
+
+        doThrow(new IOException("invalid api url")).when(ghApiMock).checkApiUrlValidity();
+        lenient().when(this.ghActionsKitMock.getGitHubRepository()).thenReturn("octocat/Hello-World");
+        lenient().when(this.ghApiMock.getRepository("octocat/Hello-World"))
+                .thenThrow(new IOException("repository not found"));
+
+        var e = assertThrows(IOException.class, spy::connectRepository);
+        assertThat(e).hasMessage("invalid api url");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenConnectRepositoryLazily_thenNoRequest() throws Exception {
+        var spy = spy(this.githubAction);
+        doReturn(ConnectionMode.LAZY).when(spy).getInputConnection();
+        when(this.ghActionsKitMock.getGitHubRepository()).thenReturn("octocat/Hello-World");
+        when(this.ghActionsKitMock.getRequiredEnv("GITHUB_TOKEN")).thenReturn("token");
+        when(this.ghActionsKitMock.getGitHubApiUrl()).thenReturn("https://api.github.com");
+
+        spy.connectRepository();
+
+        verify(spy).connectRepositoryLazily();
+        verify(spy, never()).checkApi();
+        verify(this.ghApiMock, never()).checkApiUrlValidity();
+        verify(this.ghApiMock, never()).getRepository(anyString());
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetRepositoryHandle_thenAddressRepositoryByName() throws Exception {
+        var ghRepository = this.githubAction.getRepositoryHandle("octocat", "Hello-World");
+
+        assertThat(ghRepository.getOwnerName()).isEqualTo("octocat");
+        assertThat(ghRepository.getName()).isEqualTo("Hello-World");
+        assertThat(ghRepository.getFullName()).isEqualTo("octocat/Hello-World");
+        verify(this.ghApiMock, never()).getRepository(anyString());
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenConnectRepositoryLazilyWithInvalidRepository_thenThrowIllegalArgumentException() throws Exception {
+        when(this.ghActionsKitMock.getGitHubRepository()).thenReturn("Hello-World");
+
+        assertThrows(IllegalArgumentException.class, () -> this.githubAction.connectRepositoryLazily());
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenDiagnoseConnectionLazyWithRepositoryNotFound_thenReturnConnectionError() throws Exception {
+        var spy = spy(this.githubAction);
+        doReturn(ConnectionMode.LAZY).when(spy).getInputConnection();
+        when(this.ghActionsKitMock.getGitHubRepository()).thenReturn("octocat/Hello-World");
+        var connectionError = new GHFileNotFoundException("repository not found");
+        when(this.ghApiMock.getRepository("octocat/Hello-World")).thenThrow(connectionError);
+
+        var lookupError = new NoSuchElementException();
+        var e = spy.diagnoseConnection(lookupError);
+
+        assertThat(e).isSameAs(connectionError);
+        assertThat(e.getSuppressed()).containsExactly(lookupError);
+        verify(this.ghApiMock).checkApiUrlValidity();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenDiagnoseConnectionLazyWithRepositoryFound_thenReturnLookupError() throws Exception {
+        var spy = spy(this.githubAction);
+        doReturn(ConnectionMode.LAZY).when(spy).getInputConnection();
+        when(this.ghActionsKitMock.getGitHubRepository()).thenReturn("octocat/Hello-World");
+        when(this.ghApiMock.getRepository("octocat/Hello-World")).thenReturn(ghRepositoryMock);
+
+        var lookupError = new NoSuchElementException();
+
+        assertThat(spy.diagnoseConnection(lookupError)).isSameAs(lookupError);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenDiagnoseConnectionEager_thenReturnLookupError() throws Exception {
+        var spy = spy(this.githubAction);
+        doReturn(ConnectionMode.EAGER).when(spy).getInputConnection();
+
+        var lookupError = new NoSuchElementException();
+
+        assertThat(spy.diagnoseConnection(lookupError)).isSameAs(lookupError);
+        verify(this.ghApiMock, never()).checkApiUrlValidity();
+        verify(this.ghApiMock, never()).getRepository(anyString());
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenAwaitFailedWithRuntimeException_thenRethrowCause() throws Exception {
+        var future = this.githubAction.async(() -> {
+            throw new IllegalStateException("failed");
+        });
+
+        assertThrows(IllegalStateException.class, () -> this.githubAction.await(future));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenAwaitFailedWithError_thenRethrowCause() throws Exception {
+        var future = this.githubAction.async(() -> {
+            throw new AssertionError("failed");
+        });
+
+        assertThrows(AssertionError.class, () -> this.githubAction.await(future));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetTargetBranchExist_thenReturnBranch() throws Exception {
+        var ghBranchMock = mock(GHBranch.class);
+        when(ghRepositoryMock.getBranch("branch-name")).thenReturn(ghBranchMock);
+
+        assertThat(this.githubAction.getToBranch("branch-name")).isPresent().contains(ghBranchMock);
+
+        verify(ghRepositoryMock).getBranch("branch-name");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetTargetBranchDoesNotExist_thenReturnEmpty() throws Exception {
+        when(ghRepositoryMock.getBranch("branch-name")).thenReturn(null);
+
+        assertThat(this.githubAction.getToBranch("branch-name")).isEmpty();
+
+        verify(ghRepositoryMock).getBranch("branch-name");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetTargetBranchNull_thenThrowNullPointerException() throws Exception {
+        assertThrows(NullPointerException.class, () -> this.githubAction.getToBranch(null));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenExecuteWithCommitToMerge_thenMergeCommitCreated() throws Exception {
+        var spy = spy(this.githubAction);
+
+        var ghRefFrom = mock(GHRef.class);
+        when(ghRefFrom.getRef()).thenReturn("refs/heads/branch-from");
+
+        var ghBranchTo = mock(GHBranch.class);
+        when(ghBranchTo.getSHA1()).thenReturn("000000");
+
+        var ghMergeCommit = mock(GHCommit.class);
+        when(ghMergeCommit.getSHA1()).thenReturn("123456");
+
+        when(this.ghActionsKitMock.getGitHubRepository()).thenReturn("octocat/Hello-World");
+        doReturn(List.of("branch-from")).when(spy).getInputFrom();
+        doReturn(List.of("branch-to")).when(spy).getInputTo();
+        doReturn(Optional.of("some message")).when(spy).getInputMessage();
+
+        doNothing().when(spy).buildApi();
+        doNothing().when(spy).checkApi();
+
+        when(this.ghApiMock.getRepository("octocat/Hello-World")).thenReturn(ghRepositoryMock);
+        doReturn(Optional.of(ghRefFrom)).when(spy).getAnyGHRef("branch-from");
+        doReturn(Optional.of(ghBranchTo)).when(spy).getToBranch("branch-to");
+        when(ghBranchTo.merge("refs/heads/branch-from", "some message")).thenReturn(ghMergeCommit);
+
+        spy.execute();
+
+        verify(this.ghActionsKitMock).getGitHubRepository();
+
+        verify(spy).getInputFrom();
+        verify(spy).getInputTo();
+        verify(spy).getInputMessage();
+        verify(spy).connectRepository();
+        verify(spy).getToBranch("branch-to");
+        verify(spy).getAnyGHRef("branch-from");
+        verify(ghBranchTo).merge("refs/heads/branch-from", "some message");
+
+        verify(this.ghApiMock).getRepository("octocat/Hello-World");
+        verify(this.ghActionsKitMock).notice(anyString());
+        verify(this.ghActionsKitMock).setOutput(OutputVars.SHA.key(), "123456");
+        verify(this.ghActionsKitMock).setOutput(OutputVars.SHAS.key(), "{\"branch-to\":\"123456\"}");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenExecuteWithNoCommitToMerge_thenDoNothing() throws Exception {
+        var spy = spy(this.githubAction);
+
+        var ghRefFrom = mock(GHRef.class);
+        when(ghRefFrom.getRef()).thenReturn("refs/heads/branch-from");
+
+        var ghBranchTo = mock(GHBranch.class);
+        when(ghBranchTo.getSHA1()).thenReturn("456789");
+
+        when(this.ghActionsKitMock.getGitHubRepository()).thenReturn("octocat/Hello-World");
+        doReturn(List.of("branch-from")).when(spy).getInputFrom();
+        doReturn(List.of("branch-to")).when(spy).getInputTo();
+        doReturn(Optional.of("some message")).when(spy).getInputMessage();
+
+        doNothing().when(spy).buildApi();
+        doNothing().when(spy).checkApi();
+
+        when(this.ghApiMock.getRepository("octocat/Hello-World")).thenReturn(ghRepositoryMock);
+        doReturn(Optional.of(ghRefFrom)).when(spy).getAnyGHRef("branch-from");
+        doReturn(Optional.of(ghBranchTo)).when(spy).getToBranch("branch-to");
+        when(ghBranchTo.merge("refs/heads/branch-from", "some message")).thenReturn(null);
+
+        spy.execute();
+
+        verify(this.ghActionsKitMock).getGitHubRepository();
+
+        verify(spy).getInputFrom();
+        verify(spy).getInputTo();
+        verify(spy).getInputMessage();
+        verify(spy).connectRepository();
+        verify(spy).getToBranch("branch-to");
+        verify(spy).getAnyGHRef("branch-from");
+        verify(ghBranchTo).merge("refs/heads/branch-from", "some message");
+
+        verify(this.ghApiMock).getRepository("octocat/Hello-World");
+        verify(this.ghActionsKitMock).notice(anyString());
+        verify(this.ghActionsKitMock).setOutput(OutputVars.SHA.key(), "456789");
+        verify(this.ghActionsKitMock).setOutput(OutputVars.SHAS.key(), "{\"branch-to\":\"456789\"}");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenExecuteWithGraphQLResolver_thenMergeWithoutRestLookups() throws Exception {
+        var spy = spy(this.githubAction);
+
+        var graphQLBackendMock = mock(GraphQLBackend.class);
+        when(graphQLBackendMock.resolve("octocat/Hello-World", "branch-from", "branch-to"))
+                .thenReturn(new GraphQLBackend.Resolution(
+                        Optional.of("R_1"),
+                        Optional.of("refs/heads/branch-from"),
+                        Optional.of("111111"),
+                        Optional.of("222222")));
+        when(graphQLBackendMock.merge(
+                        "octocat/Hello-World", "branch-to", "refs/heads/branch-from", Optional.of("some message")))
+                .thenReturn(Optional.of("333333"));
+        spy.setGraphQLBackend(graphQLBackendMock);
+
+        when(this.ghActionsKitMock.getGitHubRepository()).thenReturn("octocat/Hello-World");
+        doReturn(List.of("branch-from")).when(spy).getInputFrom();
+        doReturn(List.of("branch-to")).when(spy).getInputTo();
+        doReturn(Optional.of("some message")).when(spy).getInputMessage();
+        doReturn(ResolverBackend.GRAPHQL).when(spy).getInputResolver();
+
+        spy.execute();
+
+        verify(spy, never()).connectRepository();
+        verify(spy, never()).getAnyGHRef(anyString());
+        verify(spy, never()).getToBranch(anyString());
+        verify(this.ghApiMock, never()).getRepository(anyString());
+        verify(this.ghActionsKitMock).notice(anyString());
+        verify(this.ghActionsKitMock).setOutput(OutputVars.SHA.key(), "333333");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGraphQLMergeFailsWithServerError_thenRetryByRefName() throws Exception {
+        var spy = spy(this.githubAction);
+        spy.setMergeRetryBackoff(Duration.ofMillis(1));
+
+        var graphQLBackendMock = mock(GraphQLBackend.class);
+        when(graphQLBackendMock.resolve("octocat/Hello-World", "branch-from", "branch-to"))
+                .thenReturn(new GraphQLBackend.Resolution(
+                        Optional.of("R_1"),
+                        Optional.of("refs/heads/branch-from"),
+                        Optional.of("111111"),
+                        Optional.of("222222")));
+        when(graphQLBackendMock.merge("octocat/Hello-World", "branch-to", "refs/heads/branch-from", Optional.empty()))
+                .thenThrow(new HttpException("Bad Gateway", 502, "Bad Gateway", "url"))
+                .thenReturn(Optional.of("333333"));
+        spy.setGraphQLBackend(graphQLBackendMock);
+        when(this.ghActionsKitMock.getGitHubRepository()).thenReturn("octocat/Hello-World");
+
+        var mergeResult = spy.mergeWithGraphQL("branch-from", "branch-to", Optional.empty());
+
+        assertThat(mergeResult).contains(
+                new MergeResult("refs/heads/branch-from", "branch-to", MergeStatus.MERGED, "333333"));
+        verify(graphQLBackendMock, times(2))
+                .merge("octocat/Hello-World", "branch-to", "refs/heads/branch-from", Optional.empty());
+        verify(spy, never()).getToBranch(anyString());
+        verify(this.ghActionsKitMock)
+                .debug("merge into branch branch-to: attempt 1/4 failed with HTTP 502, retrying in 1 ms.");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGraphQLMergeConflicts_thenRecordConflict() throws Exception {
+        var mergeMetrics = mock(MergeMetrics.class);
+        this.githubAction.setMergeMetrics(mergeMetrics);
+
+        var graphQLBackendMock = mock(GraphQLBackend.class);
+        when(graphQLBackendMock.resolve("octocat/Hello-World", "7fd1a60", "branch-to"))
+                .thenReturn(new GraphQLBackend.Resolution(
+                        Optional.of("R_1"),
+                        Optional.of("7fd1a60b01f91b314f59955a4e4d4e80d8edf11d"),
+                        Optional.of("7fd1a60b01f91b314f59955a4e4d4e80d8edf11d"),
+                        Optional.of("222222")));
+        when(graphQLBackendMock.merge(
+                        "octocat/Hello-World",
+                        "branch-to",
+                        "7fd1a60b01f91b314f59955a4e4d4e80d8edf11d",
+                        Optional.empty()))
+                .thenThrow(new HttpException("Merge conflict", 409, "Conflict", "url"));
+        this.githubAction.setGraphQLBackend(graphQLBackendMock);
+        when(this.ghActionsKitMock.getGitHubRepository()).thenReturn("octocat/Hello-World");
+
+        assertThrows(
+                HttpException.class,
+                () -> this.githubAction.mergeWithGraphQL("7fd1a60", "branch-to", Optional.empty()));
+
+        verify(mergeMetrics).recordMerge(MergeOutcome.CONFLICT);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGraphQLMergeFails_thenRecordError() throws Exception {
+        var mergeMetrics = mock(MergeMetrics.class);
+        this.githubAction.setMergeMetrics(mergeMetrics);
+
+        var graphQLBackendMock = mock(GraphQLBackend.class);
+        when(graphQLBackendMock.resolve("octocat/Hello-World", "branch-from", "branch-to"))
+                .thenReturn(new GraphQLBackend.Resolution(
+                        Optional.of("R_1"),
+                        Optional.of("refs/heads/branch-from"),
+                        Optional.of("111111"),
+                        Optional.of("222222")));
+        when(graphQLBackendMock.merge("octocat/Hello-World", "branch-to", "refs/heads/branch-from", Optional.empty()))
+                .thenThrow(new HttpException("Not Found", 404, "Not Found", "url"));
+        this.githubAction.setGraphQLBackend(graphQLBackendMock);
+        when(this.ghActionsKitMock.getGitHubRepository()).thenReturn("octocat/Hello-World");
+
+        assertThrows(
+                HttpException.class,
+                () -> this.githubAction.mergeWithGraphQL("branch-from", "branch-to", Optional.empty()));
+
+        verify(mergeMetrics).recordMerge(MergeOutcome.ERROR);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenExecuteWithGraphQLResolverNotFound_thenFallbackToRest() throws Exception {
+        var spy = spy(this.githubAction);
+
+        var graphQLBackendMock = mock(GraphQLBackend.class);
+        when(graphQLBackendMock.resolve("octocat/Hello-World", "Branch-From", "branch-to"))
+                .thenReturn(new GraphQLBackend.Resolution(
+                        Optional.of("R_1"), Optional.empty(), Optional.empty(), Optional.of("222222")));
+        spy.setGraphQLBackend(graphQLBackendMock);
+
+        var ghRefFrom = mock(GHRef.class);
+        when(ghRefFrom.getRef()).thenReturn("refs/heads/branch-from");
+
+        var ghBranchTo = mock(GHBranch.class);
+        when(ghBranchTo.getSHA1()).thenReturn("222222");
+
+        when(this.ghActionsKitMock.getGitHubRepository()).thenReturn("octocat/Hello-World");
+        doReturn(List.of("Branch-From")).when(spy).getInputFrom();
+        doReturn(List.of("branch-to")).when(spy).getInputTo();
+        doReturn(Optional.empty()).when(spy).getInputMessage();
+        doReturn(ResolverBackend.GRAPHQL).when(spy).getInputResolver();
+
+        doNothing().when(spy).buildApi();
+        doNothing().when(spy).checkApi();
+
+        when(this.ghApiMock.getRepository("octocat/Hello-World")).thenReturn(ghRepositoryMock);
+        doReturn(Optional.of(ghRefFrom)).when(spy).getAnyGHRef("Branch-From");
+        doReturn(Optional.of(ghBranchTo)).when(spy).getToBranch("branch-to");
+
+        spy.execute();
+
+        verify(graphQLBackendMock, never()).merge(anyString(), anyString(), anyString(), any());
+        verify(ghBranchTo).merge("refs/heads/branch-from", null);
+        verify(this.ghActionsKitMock).setOutput(OutputVars.SHA.key(), "222222");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenExecuteWithManyTargets_thenMergeEachTarget() throws Exception {
+        var spy = spy(this.githubAction);
+
+        var ghRefFrom = mock(GHRef.class);
+        when(ghRefFrom.getRef()).thenReturn("refs/heads/branch-from");
+
+        var ghBranchTo1 = mock(GHBranch.class);
+        when(ghBranchTo1.getSHA1()).thenReturn("000000");
+        var ghMergeCommit = mock(GHCommit.class);
+        when(ghMergeCommit.getSHA1()).thenReturn("123456");
+        when(ghBranchTo1.merge("refs/heads/branch-from", null)).thenReturn(ghMergeCommit);
+
+        var ghBranchTo2 = mock(GHBranch.class);
+        when(ghBranchTo2.getSHA1()).thenReturn("456789");
+        when(ghBranchTo2.merge("refs/heads/branch-from", null)).thenReturn(null);
+
+        when(this.ghActionsKitMock.getGitHubRepository()).thenReturn("octocat/Hello-World");
+        doReturn(List.of("branch-from")).when(spy).getInputFrom();
+        doReturn(List.of("branch-to-1", "branch-to-2")).when(spy).getInputTo();
+        doReturn(Optional.empty()).when(spy).getInputMessage();
+        doReturn(2).when(spy).getInputMaxParallel();
+
+        doNothing().when(spy).buildApi();
+        doNothing().when(spy).checkApi();
+
+        when(this.ghApiMock.getRepository("octocat/Hello-World")).thenReturn(ghRepositoryMock);
+        doReturn(Optional.of(ghRefFrom)).when(spy).getAnyGHRef("branch-from");
+        doReturn(Optional.of(ghBranchTo1)).when(spy).getToBranch("branch-to-1");
+        doReturn(Optional.of(ghBranchTo2)).when(spy).getToBranch("branch-to-2");
+
+        spy.execute();
+
+        verify(spy, times(1)).getAnyGHRef("branch-from");
+        verify(ghBranchTo1).merge("refs/heads/branch-from", null);
+        verify(ghBranchTo2).merge("refs/heads/branch-from", null);
+
+        verify(this.ghActionsKitMock, times(2)).notice(anyString());
+        verify(this.ghActionsKitMock).setOutput(OutputVars.SHA.key(), "123456");
+        verify(this.ghActionsKitMock)
+                .setOutput(OutputVars.SHAS.key(), "{\"branch-to-1\":\"123456\",\"branch-to-2\":\"456789\"}");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenExecuteWithChain_thenMergeEachHopFromPreviousSha() throws Exception {
+        var spy = spy(this.githubAction);
+
+        var ghBranch11 = mock(GHBranch.class);
+        when(ghBranch11.getSHA1()).thenReturn("000000");
+        var ghMergeCommit11 = mock(GHCommit.class);
+        when(ghMergeCommit11.getSHA1()).thenReturn("111111");
+        when(ghBranch11.merge("release/1.0", "some message")).thenReturn(ghMergeCommit11);
+
+        var ghBranch12 = mock(GHBranch.class);
+        when(ghBranch12.getSHA1()).thenReturn("121212");
+        when(ghBranch12.merge("111111", "some message")).thenReturn(null);
+
+        var ghBranchMain = mock(GHBranch.class);
+        when(ghBranchMain.getSHA1()).thenReturn("000000");
+        var ghMergeCommitMain = mock(GHCommit.class);
+        when(ghMergeCommitMain.getSHA1()).thenReturn("999999");
+        when(ghBranchMain.merge("121212", "some message")).thenReturn(ghMergeCommitMain);
+
+        doReturn(false).when(spy).getInputRecordJfr();
+        when(this.ghActionsKitMock.getInput("chain"))
+                .thenReturn(Optional.of("release/1.0\nrelease/1.1\nrelease/1.2\nmain"));
+        when(this.ghActionsKitMock.getGitHubRepository()).thenReturn("octocat/Hello-World");
+        doReturn(Optional.of("some message")).when(spy).getInputMessage();
+
+        doNothing().when(spy).buildApi();
+        doNothing().when(spy).checkApi();
+
+        when(this.ghApiMock.getRepository("octocat/Hello-World")).thenReturn(ghRepositoryMock);
+        doReturn(Optional.of(ghBranch11)).when(spy).getToBranch("release/1.1");
+        doReturn(Optional.of(ghBranch12)).when(spy).getToBranch("release/1.2");
+        doReturn(Optional.of(ghBranchMain)).when(spy).getToBranch("main");
+
+        spy.execute();
+
+        verify(spy, never()).getInputFrom();
+        verify(spy, never()).getInputTo();
+        verify(spy, never()).getAnyGHRef(anyString());
+        verify(this.ghApiMock).getRepository("octocat/Hello-World");
+        verify(ghBranch11).merge("release/1.0", "some message");
+        verify(ghBranch12).merge("111111", "some message");
+        verify(ghBranchMain).merge("121212", "some message");
+
+        verify(this.ghActionsKitMock).setOutput(OutputVars.SHA.key(), "999999");
+        verify(this.ghActionsKitMock)
+                .setOutput(
+                        OutputVars.SHAS.key(),
+                        "{\"release/1.1\":\"111111\",\"release/1.2\":\"121212\",\"main\":\"999999\"}");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenExecuteWithChainConflict_thenStopAndReportHop() throws Exception {
+        var spy = spy(this.githubAction);
+
+        var ghBranch11 = mock(GHBranch.class);
+        when(ghBranch11.getSHA1()).thenReturn("000000");
+        var ghMergeCommit11 = mock(GHCommit.class);
+        when(ghMergeCommit11.getSHA1()).thenReturn("111111");
+        when(ghBranch11.merge("release/1.0", null)).thenReturn(ghMergeCommit11);
+
+        var ghBranch12 = mock(GHBranch.class);
+        when(ghBranch12.getSHA1()).thenReturn("000000");
+        when(ghBranch12.merge("111111", null))
+                .thenThrow(new HttpException("Merge conflict", 409, "Conflict", "url"));
+
+        doReturn(false).when(spy).getInputRecordJfr();
+        when(this.ghActionsKitMock.getInput("chain"))
+                .thenReturn(Optional.of("release/1.0, release/1.1, release/1.2, main"));
+        when(this.ghActionsKitMock.getGitHubRepository()).thenReturn("octocat/Hello-World");
+        doReturn(Optional.empty()).when(spy).getInputMessage();
+
+        doNothing().when(spy).buildApi();
+        doNothing().when(spy).checkApi();
+
+        when(this.ghApiMock.getRepository("octocat/Hello-World")).thenReturn(ghRepositoryMock);
+        doReturn(Optional.of(ghBranch11)).when(spy).getToBranch("release/1.1");
+        doReturn(Optional.of(ghBranch12)).when(spy).getToBranch("release/1.2");
+
+        var e = assertThrows(CompletionException.class, () -> spy.execute());
+        assertThat(e.getCause())
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("hop 2/3")
+                .hasMessageContaining("release/1.1 -> release/1.2");
+
+        verify(spy, never()).getToBranch("main");
+        verify(this.ghActionsKitMock).setOutput(OutputVars.SHA.key(), "111111");
+        verify(this.ghActionsKitMock).setOutput(OutputVars.SHAS.key(), "{\"release/1.1\":\"111111\"}");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenMergeChainTooShort_thenThrowIllegalArgumentException() throws Exception {
+        var chain = List.of("main");
+        var message = Optional.<String>empty();
+        var mergeResults = new ArrayList<MergeResult>();
+
+        assertThrows(
+                IllegalArgumentException.class, () -> this.githubAction.mergeChain(chain, message, mergeResults));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenExecuteWithManySources_thenMergeEachSourceIntoTarget() throws Exception {
+        var spy = spy(this.githubAction);
+
+        var ghRefFrom1 = mock(GHRef.class);
+        when(ghRefFrom1.getRef()).thenReturn("refs/heads/feature-1");
+        var ghRefFrom2 = mock(GHRef.class);
+        when(ghRefFrom2.getRef()).thenReturn("refs/heads/feature-2");
+        var ghRefFrom3 = mock(GHRef.class);
+        when(ghRefFrom3.getRef()).thenReturn("refs/heads/feature-3");
+
+        var ghBranchTo = mock(GHBranch.class);
+        when(ghBranchTo.getSHA1()).thenReturn("000000");
+        var ghMergeCommit1 = mock(GHCommit.class);
+        when(ghMergeCommit1.getSHA1()).thenReturn("111111");
+        when(ghBranchTo.merge("refs/heads/feature-1", null)).thenReturn(ghMergeCommit1);
+        when(ghBranchTo.merge("refs/heads/feature-2", null)).thenReturn(null);
+        var ghMergeCommit3 = mock(GHCommit.class);
+        when(ghMergeCommit3.getSHA1()).thenReturn("333333");
+        when(ghBranchTo.merge("refs/heads/feature-3", null)).thenReturn(ghMergeCommit3);
+
+        when(this.ghActionsKitMock.getGitHubRepository()).thenReturn("octocat/Hello-World");
+        doReturn(List.of("feature-1", "feature-2", "feature-3")).when(spy).getInputFrom();
+        doReturn(List.of("integration")).when(spy).getInputTo();
+        doReturn(Optional.empty()).when(spy).getInputMessage();
+
+        doNothing().when(spy).buildApi();
+        doNothing().when(spy).checkApi();
+
+        when(this.ghApiMock.getRepository("octocat/Hello-World")).thenReturn(ghRepositoryMock);
+        doReturn(List.of(Optional.of(ghRefFrom1), Optional.of(ghRefFrom2), Optional.of(ghRefFrom3)))
+                .when(spy)
+                .getAnyGHRefs(List.of("feature-1", "feature-2", "feature-3"));
+        doReturn(Optional.of(ghBranchTo)).when(spy).getToBranch("integration");
+
+        spy.execute();
+
+        verify(spy, never()).getAnyGHRef(anyString());
+        verify(spy, times(1)).getToBranch("integration");
+        verify(this.ghActionsKitMock).setOutput(OutputVars.SHA.key(), "333333");
+        verify(this.ghActionsKitMock)
+                .setOutput(
+                        OutputVars.RESULTS.key(),
+                        "{\"refs/heads/feature-1\":\"merged\",\"refs/heads/feature-2\":\"up-to-date\","
+                                + "\"refs/heads/feature-3\":\"merged\"}");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenExecuteWithManySourcesAndManyTargets_thenThrowCompletionException() throws Exception {
+        var spy = spy(this.githubAction);
+
+        doReturn(List.of("feature-1", "feature-2")).when(spy).getInputFrom();
+        doReturn(List.of("branch-1", "branch-2")).when(spy).getInputTo();
+        doReturn(Optional.empty()).when(spy).getInputMessage();
+
+        var e = assertThrows(CompletionException.class, () -> spy.execute());
+        assertThat(e.getCause()).isInstanceOf(IllegalArgumentException.class);
+
+        verify(spy, never()).connectRepository();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenCompare_thenRequestSinglePageComparison() throws Exception {
+        var ghCompare = mock(GHCompare.class);
+        when(ghCompare.getAheadBy()).thenReturn(1);
+        when(ghCompare.getBehindBy()).thenReturn(3);
+        var baseCommit = mock(GHCompare.Commit.class);
+        when(baseCommit.getSHA1()).thenReturn("123456");
+        when(ghCompare.getBaseCommit()).thenReturn(baseCommit);
+        when(this.ghRepositoryMock.getCompare("refs/heads/feature", "000000")).thenReturn(ghCompare);
+
+        assertThat(this.githubAction.compare("000000", "refs/heads/feature")).isEqualTo(new Comparison(3, 1, "123456"));
+
+        verify(this.ghRepositoryMock).setCompareUsePaginatedCommits(true);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenMergeWithCompareAndNothingAhead_thenSkipMerge() throws Exception {
+        var spy = spy(this.githubAction);
+
+        var ghBranchTo = mock(GHBranch.class);
+        when(ghBranchTo.getSHA1()).thenReturn("000000");
+
+        doReturn(MergeMode.COMPARE).when(spy).getInputMode();
+        doReturn(new Comparison(0, 2, "123456")).when(spy).compare("000000", "refs/heads/feature");
+
+        var mergeResult = spy.merge("refs/heads/feature", "develop", ghBranchTo, Optional.empty());
+
+        assertThat(mergeResult)
+                .isEqualTo(new MergeResult(
+                        "refs/heads/feature", "develop", MergeStatus.UP_TO_DATE, "000000",
+                        new Comparison(0, 2, "123456")));
+        verify(ghBranchTo, never()).merge(anyString(), any());
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenMergeWithCompareAndAhead_thenMerge() throws Exception {
+        var spy = spy(this.githubAction);
+
+        var ghBranchTo = mock(GHBranch.class);
+        when(ghBranchTo.getSHA1()).thenReturn("000000");
+        var ghMergeCommit = mock(GHCommit.class);
+        when(ghMergeCommit.getSHA1()).thenReturn("123456");
+        when(ghBranchTo.merge("refs/heads/feature", null)).thenReturn(ghMergeCommit);
+
+        doReturn(MergeMode.COMPARE).when(spy).getInputMode();
+        doReturn(new Comparison(2, 0, "123456")).when(spy).compare("000000", "refs/heads/feature");
+
+        var mergeResult = spy.merge("refs/heads/feature", "develop", ghBranchTo, Optional.empty());
+
+        assertThat(mergeResult)
+                .isEqualTo(new MergeResult(
+                        "refs/heads/feature", "develop", MergeStatus.MERGED, "123456", new Comparison(2, 0, "123456")));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenMergeWithPlanAndAhead_thenReportWithoutMerge() throws Exception {
+        var spy = spy(this.githubAction);
+
+        var ghBranchTo = mock(GHBranch.class);
+        when(ghBranchTo.getSHA1()).thenReturn("000000");
+
+        doReturn(MergeMode.PLAN).when(spy).getInputMode();
+        doReturn(new Comparison(2, 1, "123456")).when(spy).compare("000000", "refs/heads/feature");
+
+        var mergeResult = spy.merge("refs/heads/feature", "develop", ghBranchTo, Optional.empty());
+
+        assertThat(mergeResult)
+                .isEqualTo(new MergeResult(
+                        "refs/heads/feature", "develop", MergeStatus.WOULD_MERGE, "000000",
+                        new Comparison(2, 1, "123456")));
+        verify(ghBranchTo, never()).merge(anyString(), any());
+        verify(this.ghActionsKitMock)
+                .notice("Branch develop would be merged: 2 commit(s) ahead, 1 commit(s) behind.");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenMergeWithFfPreferredAndNothingBehind_thenFastForward() throws Exception {
+        var spy = spy(this.githubAction);
+
+        var ghBranchTo = mock(GHBranch.class);
+        when(ghBranchTo.getSHA1()).thenReturn("000000");
+        var fastForwarded = new MergeResult(
+                "refs/heads/feature", "develop", MergeStatus.FAST_FORWARDED, "123456", new Comparison(2, 0, "123456"));
+
+        doReturn(MergeStrategy.FF_PREFERRED).when(spy).getInputStrategy();
+        doReturn(new Comparison(2, 0, "123456")).when(spy).compare("000000", "refs/heads/feature");
+        doReturn(fastForwarded).when(spy).fastForward("refs/heads/feature", "develop", new Comparison(2, 0, "123456"));
+
+        assertThat(spy.merge("refs/heads/feature", "develop", ghBranchTo, Optional.empty())).isSameAs(fastForwarded);
+
+        verify(ghBranchTo, never()).merge(anyString(), any());
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenMergeWithFfPreferredAndDiverged_thenCreateMergeCommit() throws Exception {
+        var spy = spy(this.githubAction);
+
+        var ghBranchTo = mock(GHBranch.class);
+        when(ghBranchTo.getSHA1()).thenReturn("000000");
+        var ghMergeCommit = mock(GHCommit.class);
+        when(ghMergeCommit.getSHA1()).thenReturn("123456");
+        when(ghBranchTo.merge("refs/heads/feature", null)).thenReturn(ghMergeCommit);
+
+        doReturn(MergeStrategy.FF_PREFERRED).when(spy).getInputStrategy();
+        doReturn(new Comparison(2, 1, "123456")).when(spy).compare("000000", "refs/heads/feature");
+
+        var mergeResult = spy.merge("refs/heads/feature", "develop", ghBranchTo, Optional.empty());
+
+        assertThat(mergeResult)
+                .isEqualTo(new MergeResult(
+                        "refs/heads/feature", "develop", MergeStatus.MERGED, "123456", new Comparison(2, 1, "123456")));
+        verify(spy, never()).fastForward(anyString(), anyString(), any());
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenMergeWithFfOnlyAndDiverged_thenThrowIllegalStateException() throws Exception {
+        var spy = spy(this.githubAction);
+
+        var ghBranchTo = mock(GHBranch.class);
+        when(ghBranchTo.getSHA1()).thenReturn("000000");
+
+        doReturn(MergeStrategy.FF_ONLY).when(spy).getInputStrategy();
+        doReturn(new Comparison(2, 1, "123456")).when(spy).compare("000000", "refs/heads/feature");
+
+        var e = assertThrows(
+                IllegalStateException.class,
+                () -> spy.merge("refs/heads/feature", "develop", ghBranchTo, Optional.empty()));
+        assertThat(e).hasMessageContaining("branch develop cannot be fast-forwarded");
+
+        verify(ghBranchTo, never()).merge(anyString(), any());
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenMergeWithPlanAndFfOnly_thenReportWouldFastForward() throws Exception {
+        var spy = spy(this.githubAction);
+
+        var ghBranchTo = mock(GHBranch.class);
+        when(ghBranchTo.getSHA1()).thenReturn("000000");
+
+        doReturn(MergeMode.PLAN).when(spy).getInputMode();
+        doReturn(MergeStrategy.FF_ONLY).when(spy).getInputStrategy();
+        doReturn(new Comparison(2, 0, "123456")).when(spy).compare("000000", "refs/heads/feature");
+
+        var mergeResult = spy.merge("refs/heads/feature", "develop", ghBranchTo, Optional.empty());
+
+        assertThat(mergeResult.getStatus()).isEqualTo(MergeStatus.WOULD_FAST_FORWARD);
+        assertThat(mergeResult.getSha()).isEqualTo("000000");
+        verify(spy, never()).fastForward(anyString(), anyString(), any());
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenFastForward_thenUpdateRefWithoutForce() throws Exception {
+        var spy = spy(this.githubAction);
+        var ghRefTo = mock(GHRef.class);
+        doReturn(ghRefTo).when(spy).getRefHandle("refs/heads/develop");
+        var comparison = new Comparison(2, 0, "1234567890123456789012345678901234567890");
+
+        var mergeResult = spy.fastForward("refs/heads/feature", "develop", comparison);
+
+        assertThat(mergeResult)
+                .isEqualTo(new MergeResult(
+                        "refs/heads/feature",
+                        "develop",
+                        MergeStatus.FAST_FORWARDED,
+                        "1234567890123456789012345678901234567890",
+                        comparison));
+        verify(ghRefTo).updateTo("1234567890123456789012345678901234567890", false);
+        verify(this.ghRepositoryMock, never()).getRef(anyString());
+        verify(this.ghRepositoryMock, never()).getCommit(anyString());
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetRefHandle_thenBindRefWithoutRequest() throws Exception {
+        when(this.ghActionsKitMock.getGitHubApiUrl()).thenReturn("https://api.github.com/");
+        when(this.ghRepositoryMock.getOwnerName()).thenReturn("octocat");
+        when(this.ghRepositoryMock.getName()).thenReturn("Hello-World");
+
+        var ghRef = this.githubAction.getRefHandle("refs/heads/develop");
+
+        assertThat(ghRef.getRef()).isEqualTo("refs/heads/develop");
+        assertThat(ghRef.getUrl())
+                .hasToString("https://api.github.com/repos/octocat/Hello-World/git/refs/heads/develop");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenMergeTrainWithFastForward_thenCompareNextSourceWithNewHead() throws Exception {
+        var spy = spy(this.githubAction);
+
+        var ghRefFrom1 = mock(GHRef.class);
+        when(ghRefFrom1.getRef()).thenReturn("refs/heads/feature-1");
+        var ghRefFrom2 = mock(GHRef.class);
+        when(ghRefFrom2.getRef()).thenReturn("refs/heads/feature-2");
+        var ghBranchTo = mock(GHBranch.class);
+        when(ghBranchTo.getSHA1()).thenReturn("000000");
+
+        doReturn(MergeStrategy.FF_ONLY).when(spy).getInputStrategy();
+        doReturn(new Comparison(1, 0, "123456")).when(spy).compare("000000", "refs/heads/feature-1");
+        doReturn(new MergeResult(
+                "refs/heads/feature-1", "integration", MergeStatus.FAST_FORWARDED, "111111",
+                new Comparison(1, 0, "123456")))
+                .when(spy)
+                .fastForward("refs/heads/feature-1", "integration", new Comparison(1, 0, "123456"));
+        doReturn(new Comparison(0, 0, "123456")).when(spy).compare("111111", "refs/heads/feature-2");
+
+        var mergeResults = new ArrayList<MergeResult>();
+        spy.mergeTrain(
+                List.of(ghRefFrom1, ghRefFrom2), "integration", ghBranchTo, Optional.empty(), false, mergeResults);
+
+        assertThat(mergeResults)
+                .extracting(MergeResult::getStatus, MergeResult::getSha)
+                .containsExactly(
+                        tuple(MergeStatus.FAST_FORWARDED, "111111"), tuple(MergeStatus.UP_TO_DATE, "111111"));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenExecuteWithPlanAndManyTargets_thenOutputComparisons() throws Exception {
+        var spy = spy(this.githubAction);
+
+        var ghRefFrom = mock(GHRef.class);
+        when(ghRefFrom.getRef()).thenReturn("refs/heads/main");
+        var ghBranchTo1 = mock(GHBranch.class);
+        when(ghBranchTo1.getSHA1()).thenReturn("111111");
+        var ghBranchTo2 = mock(GHBranch.class);
+        when(ghBranchTo2.getSHA1()).thenReturn("222222");
+
+        doReturn(List.of("main")).when(spy).getInputFrom();
+        doReturn(List.of("release/1.0", "release/1.1")).when(spy).getInputTo();
+        doReturn(Optional.empty()).when(spy).getInputMessage();
+        doReturn(MergeMode.PLAN).when(spy).getInputMode();
+        doNothing().when(spy).connectRepository();
+        doReturn(Optional.of(ghRefFrom)).when(spy).getAnyGHRef("main");
+        doReturn(Optional.of(ghBranchTo1)).when(spy).getToBranch("release/1.0");
+        doReturn(Optional.of(ghBranchTo2)).when(spy).getToBranch("release/1.1");
+        doReturn(new Comparison(0, 4, "123456")).when(spy).compare("111111", "refs/heads/main");
+        doReturn(new Comparison(3, 0, "123456")).when(spy).compare("222222", "refs/heads/main");
+
+        spy.execute();
+
+        verify(ghBranchTo1, never()).merge(anyString(), any());
+        verify(ghBranchTo2, never()).merge(anyString(), any());
+        verify(this.ghActionsKitMock)
+                .setOutput(
+                        OutputVars.RESULTS.key(), "{\"release/1.0\":\"up-to-date\",\"release/1.1\":\"would-merge\"}");
+        verify(this.ghActionsKitMock)
+                .setOutput(
+                        OutputVars.COMPARISONS.key(),
+                        "{\"release/1.0\":{\"ahead-by\":0,\"behind-by\":4},"
+                                + "\"release/1.1\":{\"ahead-by\":3,\"behind-by\":0}}");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenMergeFailsWithServerError_thenRefreshTargetOnlyAndRetry() throws Exception {
+        var mergeMetrics = mock(MergeMetrics.class);
+        this.githubAction.setMergeMetrics(mergeMetrics);
+        var spy = spy(this.githubAction);
+        spy.setMergeRetryBackoff(Duration.ofMillis(1));
+
+        var ghBranchTo = mock(GHBranch.class);
+        when(ghBranchTo.getSHA1()).thenReturn("000000");
+        when(ghBranchTo.merge("refs/heads/feature", null))
+                .thenThrow(new HttpException("Bad Gateway", 502, "Bad Gateway", "url"));
+        var ghBranchToRefreshed = mock(GHBranch.class);
+        when(ghBranchToRefreshed.getSHA1()).thenReturn("111111");
+        var ghMergeCommit = mock(GHCommit.class);
+        when(ghMergeCommit.getSHA1()).thenReturn("123456");
+        when(ghBranchToRefreshed.merge("refs/heads/feature", null)).thenReturn(ghMergeCommit);
+
+        doReturn(Optional.of(ghBranchToRefreshed)).when(spy).getToBranch("develop");
+
+        var mergeResult = spy.merge("refs/heads/feature", "develop", ghBranchTo, Optional.empty());
+
+        assertThat(mergeResult)
+                .isEqualTo(new MergeResult("refs/heads/feature", "develop", MergeStatus.MERGED, "123456"));
+        verify(spy).getToBranch("develop");
+        verify(spy, never()).getAnyGHRef(anyString());
+        verify(this.ghActionsKitMock)
+                .debug("merge into branch develop: attempt 1/4 failed with HTTP 502, retrying in 1 ms.");
+        verify(mergeMetrics).recordMerge(MergeOutcome.MERGED);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenMergeFailsWithTargetMoved_thenRetryWithBackoff() throws Exception {
+        var spy = spy(this.githubAction);
+        spy.setMergeRetryBackoff(Duration.ofMillis(1));
+
+        var ghBranchTo = mock(GHBranch.class);
+        when(ghBranchTo.getSHA1()).thenReturn("000000");
+        var ghMergeCommit = mock(GHCommit.class);
+        when(ghMergeCommit.getSHA1()).thenReturn("123456");
+        when(ghBranchTo.merge("refs/heads/feature", null))
+                .thenThrow(new HttpException("{\"message\":\"Base branch was modified.\"}", 409, "Conflict", "url"))
+                .thenThrow(new HttpException("{\"message\":\"Reference update failed\"}", 422, "Unprocessable", "url"))
+                .thenReturn(ghMergeCommit);
+
+        doReturn(Optional.of(ghBranchTo)).when(spy).getToBranch("develop");
+
+        var mergeResult = spy.merge("refs/heads/feature", "develop", ghBranchTo, Optional.empty());
+
+        assertThat(mergeResult.getStatus()).isEqualTo(MergeStatus.MERGED);
+        verify(spy, times(2)).getToBranch("develop");
+        verify(spy).sleep(Duration.ofMillis(1));
+        verify(spy).sleep(Duration.ofMillis(2));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenMergeConflict_thenFailWithoutRetry() throws Exception {
+        var mergeMetrics = mock(MergeMetrics.class);
+        this.githubAction.setMergeMetrics(mergeMetrics);
+        var spy = spy(this.githubAction);
+
+        var ghBranchTo = mock(GHBranch.class);
+        when(ghBranchTo.getSHA1()).thenReturn("000000");
+        when(ghBranchTo.merge("refs/heads/feature", null))
+                .thenThrow(new HttpException("{\"message\":\"Merge conflict\"}", 409, "Conflict", "url"));
+
+        var e = assertThrows(
+                HttpException.class,
+                () -> spy.merge("refs/heads/feature", "develop", ghBranchTo, Optional.empty()));
+        assertThat(spy.isConflict(e)).isTrue();
+
+        verify(spy, never()).getToBranch(anyString());
+        verify(spy, never()).sleep(any());
+        verify(mergeMetrics).recordMerge(MergeOutcome.CONFLICT);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenMergeFailsTransientlyBeyondRetries_thenThrow() throws Exception {
+        var spy = spy(this.githubAction);
+        spy.setMergeRetryBackoff(Duration.ofMillis(1));
+
+        var ghBranchTo = mock(GHBranch.class);
+        when(ghBranchTo.getSHA1()).thenReturn("000000");
+        when(ghBranchTo.merge("refs/heads/feature", null))
+                .thenThrow(new HttpException("Service Unavailable", 503, "Service Unavailable", "url"));
+
+        doReturn(2).when(spy).getInputMergeRetries();
+        doReturn(Optional.of(ghBranchTo)).when(spy).getToBranch("develop");
+
+        var e = assertThrows(
+                HttpException.class,
+                () -> spy.merge("refs/heads/feature", "develop", ghBranchTo, Optional.empty()));
+        assertThat(e.getResponseCode()).isEqualTo(503);
+
+        verify(ghBranchTo, times(3)).merge("refs/heads/feature", null);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenMergeWithLock_thenMergeRefreshedTargetUnderLock() throws Exception {
+        var spy = spy(this.githubAction);
+
+        var ghBranchTo = mock(GHBranch.class);
+        when(ghBranchTo.getSHA1()).thenReturn("000000");
+        var ghBranchToRefreshed = mock(GHBranch.class);
+        when(ghBranchToRefreshed.getSHA1()).thenReturn("111111");
+        var ghMergeCommit = mock(GHCommit.class);
+        when(ghMergeCommit.getSHA1()).thenReturn("123456");
+        when(ghBranchToRefreshed.merge("refs/heads/feature", null)).thenReturn(ghMergeCommit);
+
+        var refLockMock = mock(RefLock.class);
+        doReturn(true).when(spy).getInputLock();
+        doReturn(refLockMock).when(spy).newRefLock("develop");
+        doReturn(Optional.of(ghBranchToRefreshed)).when(spy).getToBranch("develop");
+
+        var mergeResult = spy.merge("refs/heads/feature", "develop", ghBranchTo, Optional.empty());
+
+        assertThat(mergeResult)
+                .isEqualTo(new MergeResult("refs/heads/feature", "develop", MergeStatus.MERGED, "123456"));
+        var inOrder = Mockito.inOrder(refLockMock, ghBranchToRefreshed);
+        inOrder.verify(refLockMock).acquire("000000");
+        inOrder.verify(ghBranchToRefreshed).merge("refs/heads/feature", null);
+        inOrder.verify(refLockMock).close();
+        verify(ghBranchTo, never()).merge(anyString(), any());
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenMergeWithLockFails_thenReleaseLock() throws Exception {
+        var spy = spy(this.githubAction);
+
+        var ghBranchTo = mock(GHBranch.class);
+        when(ghBranchTo.getSHA1()).thenReturn("000000");
+        when(ghBranchTo.merge("refs/heads/feature", null))
+                .thenThrow(new HttpException("{\"message\":\"Merge conflict\"}", 409, "Conflict", "url"));
+
+        var refLockMock = mock(RefLock.class);
+        doReturn(true).when(spy).getInputLock();
+        doReturn(refLockMock).when(spy).newRefLock("develop");
+        doReturn(Optional.of(ghBranchTo)).when(spy).getToBranch("develop");
+
+        assertThrows(
+                HttpException.class,
+                () -> spy.merge("refs/heads/feature", "develop", ghBranchTo, Optional.empty()));
+
+        verify(refLockMock).close();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenPlanWithLock_thenDoNotLock() throws Exception {
+        var spy = spy(this.githubAction);
+
+        var ghBranchTo = mock(GHBranch.class);
+        when(ghBranchTo.getSHA1()).thenReturn("000000");
+        var ghCompare = mock(GHCompare.class);
+        when(ghCompare.getBehindBy()).thenReturn(0);
+        when(ghCompare.getBaseCommit()).thenReturn(mock(GHCompare.Commit.class));
+        when(this.ghRepositoryMock.getCompare("refs/heads/feature", "000000")).thenReturn(ghCompare);
+
+        doReturn(true).when(spy).getInputLock();
+        doReturn(MergeMode.PLAN).when(spy).getInputMode();
+
+        var mergeResult = spy.merge("refs/heads/feature", "develop", ghBranchTo, Optional.empty());
+
+        assertThat(mergeResult.getStatus()).isEqualTo(MergeStatus.UP_TO_DATE);
+        verify(spy, never()).newRefLock(anyString());
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenMergeTrainConflictAndContinue_thenMergeNextSources() throws Exception {
+        var ghRefFrom1 = mock(GHRef.class);
+        when(ghRefFrom1.getRef()).thenReturn("refs/heads/feature-1");
+        var ghRefFrom2 = mock(GHRef.class);
+        when(ghRefFrom2.getRef()).thenReturn("refs/heads/feature-2");
+
+        var ghBranchTo = mock(GHBranch.class);
+        when(ghBranchTo.getSHA1()).thenReturn("000000");
+        when(ghBranchTo.merge("refs/heads/feature-1", null))
+                .thenThrow(new HttpException("Merge conflict", 409, "Conflict", "url"));
+        var ghMergeCommit2 = mock(GHCommit.class);
+        when(ghMergeCommit2.getSHA1()).thenReturn("222222");
+        when(ghBranchTo.merge("refs/heads/feature-2", null)).thenReturn(ghMergeCommit2);
+
+        var mergeResults = new ArrayList<MergeResult>();
+        this.githubAction.mergeTrain(
+                List.of(ghRefFrom1, ghRefFrom2), "integration", ghBranchTo, Optional.empty(), true, mergeResults);
+
+        assertThat(mergeResults)
+                .containsExactly(
+                        new MergeResult("refs/heads/feature-1", "integration", MergeStatus.CONFLICT, "000000"),
+                        new MergeResult("refs/heads/feature-2", "integration", MergeStatus.MERGED, "222222"));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenMergeTrainConflictAndStop_thenThrowIllegalStateException() throws Exception {
+        var ghRefFrom1 = mock(GHRef.class);
+        when(ghRefFrom1.getRef()).thenReturn("refs/heads/feature-1");
+        var ghRefFrom2 = mock(GHRef.class);
+
+        var ghBranchTo = mock(GHBranch.class);
+        when(ghBranchTo.getSHA1()).thenReturn("000000");
+        when(ghBranchTo.merge("refs/heads/feature-1", null))
+                .thenThrow(new HttpException("Merge conflict", 409, "Conflict", "url"));
+
+        var fromGHRefs = List.of(ghRefFrom1, ghRefFrom2);
+        var message = Optional.<String>empty();
+        var mergeResults = new ArrayList<MergeResult>();
+        assertThrows(
+                IllegalStateException.class,
+                () -> this.githubAction.mergeTrain(
+                        fromGHRefs, "integration", ghBranchTo, message, false, mergeResults));
+
+        assertThat(mergeResults)
+                .containsExactly(
+                        new MergeResult("refs/heads/feature-1", "integration", MergeStatus.CONFLICT, "000000"));
+        verify(ghRefFrom2, never()).getRef();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenMergeAllWithFailingTarget_thenMergeOtherTargetsAndThrow() throws Exception {
+        var spy = spy(this.githubAction);
+
+        var ghRefFrom = mock(GHRef.class);
+        when(ghRefFrom.getRef()).thenReturn("refs/heads/branch-from");
+
+        var ghBranchTo = mock(GHBranch.class);
+        when(ghBranchTo.getSHA1()).thenReturn("456789");
+
+        doReturn(Optional.empty()).when(spy).getToBranch("branch-to-1");
+        doReturn(Optional.of(ghBranchTo)).when(spy).getToBranch("branch-to-2");
+
+        var targets = List.of("branch-to-1", "branch-to-2");
+        assertThrows(
+                NoSuchElementException.class,
+                () -> spy.mergeAll(ghRefFrom, targets, Optional.empty(), 2));
+
+        verify(ghBranchTo).merge("refs/heads/branch-from", null);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenMergeAllWithTargetFailingWithError_thenMergeOtherTargetsAndRethrowError() throws Exception {
+        var spy = spy(this.githubAction);
+
+        var ghRefFrom = mock(GHRef.class);
+        when(ghRefFrom.getRef()).thenReturn("refs/heads/branch-from");
+
+        var ghBranchTo = mock(GHBranch.class);
+        when(ghBranchTo.getSHA1()).thenReturn("456789");
+
+        doThrow(new StackOverflowError()).when(spy).getToBranch("branch-to-1");
+        doReturn(Optional.of(ghBranchTo)).when(spy).getToBranch("branch-to-2");
+
+        var targets = List.of("branch-to-1", "branch-to-2");
+        assertThrows(StackOverflowError.class, () -> spy.mergeAll(ghRefFrom, targets, Optional.empty(), 2));
+
+        verify(ghBranchTo).merge("refs/heads/branch-from", null);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenMergeAllWithInvalidMaxParallel_thenThrowIllegalArgumentException() throws Exception {
+        var ghRefFrom = mock(GHRef.class);
+        var targets = List.of("branch-to");
+        var message = Optional.<String>empty();
+
+        assertThrows(
+                IllegalArgumentException.class, () -> this.githubAction.mergeAll(ghRefFrom, targets, message, 0));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenCreateMergeCommitWithLocalEngine_thenMergeLocally() throws Exception {
+        var localGitEngineMock = mock(LocalGitEngine.class);
+        when(localGitEngineMock.merge("refs/heads/branch-from", "branch-to", Optional.of("some message")))
+                .thenReturn(new MergeResult("refs/heads/branch-from", "branch-to", MergeStatus.MERGED, "333333"));
+        this.githubAction.setLocalGitEngine(localGitEngineMock);
+        when(this.ghActionsKitMock.getInput("engine")).thenReturn(Optional.of("local"));
+
+        var ghBranchTo = mock(GHBranch.class);
+        var comparison = new Comparison(1, 1, "123456");
+
+        var mergeResult = this.githubAction.createMergeCommit(
+                "refs/heads/branch-from", "branch-to", "222222", ghBranchTo, Optional.of("some message"), comparison);
+
+        assertThat(mergeResult.getStatus()).isEqualTo(MergeStatus.MERGED);
+        assertThat(mergeResult.getSha()).isEqualTo("333333");
+        assertThat(mergeResult.getComparison()).containsSame(comparison);
+        verifyNoInteractions(ghBranchTo);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenDiscoverTargetsWithoutPattern_thenReturnTargets() throws Exception {
+        var targetDiscoveryMock = mock(TargetDiscovery.class);
+        this.githubAction.setTargetDiscovery(targetDiscoveryMock);
+
+        assertThat(this.githubAction.discoverTargets(List.of("main", "develop"), "feature"))
+                .containsExactly("main", "develop");
+
+        verifyNoInteractions(targetDiscoveryMock);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenDiscoverTargetsWithPattern_thenExpandPatternWithoutSource() throws Exception {
+        var targetDiscoveryMock = mock(TargetDiscovery.class);
+        when(targetDiscoveryMock.discover("release/*")).thenReturn(List.of("release/1.x", "release/2.x"));
+        this.githubAction.setTargetDiscovery(targetDiscoveryMock);
+
+        assertThat(this.githubAction.discoverTargets(
+                        List.of("main", "release/*", "release/1.x"), "refs/heads/release/2.x"))
+                .containsExactly("main", "release/1.x");
+
+        verify(targetDiscoveryMock, never()).discover(anyString(), any());
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenDiscoverTargetsWithPatterns_thenExpandPatternsInRefIndex() throws Exception {
+        var refIndex = new RefIndex(null, List.of(), List.of(), List.of());
+        var refResolverMock = mock(RefResolver.class);
+        when(refResolverMock.getRefIndex()).thenReturn(refIndex);
+        this.githubAction.setRefResolver(refResolverMock);
+
+        var targetDiscoveryMock = mock(TargetDiscovery.class);
+        when(targetDiscoveryMock.discover("release/*", refIndex)).thenReturn(List.of("release/1.x", "release/2.x"));
+        when(targetDiscoveryMock.discover("hotfix/*", refIndex)).thenReturn(List.of());
+        this.githubAction.setTargetDiscovery(targetDiscoveryMock);
+
+        assertThat(this.githubAction.discoverTargets(
+                        List.of("main", "release/*", "release/1.x", "hotfix/*"), "refs/heads/release/2.x"))
+                .containsExactly("main", "release/1.x");
+
+        verify(targetDiscoveryMock, never()).discover(anyString());
+        verify(this.ghActionsKitMock).notice("No branch matches the target pattern hotfix/*.");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenExecuteMergeWithoutMatchingTarget_thenNoticeAndSkipMerge() throws Exception {
+        var spy = spy(this.githubAction);
+
+        var targetDiscoveryMock = mock(TargetDiscovery.class);
+        when(targetDiscoveryMock.discover("release/*")).thenReturn(List.of());
+        spy.setTargetDiscovery(targetDiscoveryMock);
+
+        doNothing().when(spy).connectRepository();
+        doReturn(List.of("release/*")).when(spy).getInputTo();
+        doReturn(Optional.empty()).when(spy).getInputMessage();
+
+        spy.executeMerge("feature");
+
+        verify(spy, never()).getAnyGHRef(anyString());
+        verify(this.ghActionsKitMock).notice("No target branch to merge into: release/*.");
+        verify(this.ghActionsKitMock).setOutput(OutputVars.SHAS.key(), "{}");
+        verify(this.ghActionsKitMock, never()).setOutput(eq(OutputVars.SHA.key()), anyString());
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenExecuteWithFromBranchEmpty_thenThrowCompletionException() throws Exception {
+        var spy = spy(this.githubAction);
+
+        when(this.ghActionsKitMock.getGitHubRepository()).thenReturn("octocat/Hello-World");
+        doReturn(List.of("branch-from")).when(spy).getInputFrom();
+        doReturn(List.of("branch-to")).when(spy).getInputTo();
+        doReturn(Optional.of("some message")).when(spy).getInputMessage();
+
+        doNothing().when(spy).buildApi();
+        doNothing().when(spy).checkApi();
+
+        when(this.ghApiMock.getRepository("octocat/Hello-World")).thenReturn(ghRepositoryMock);
+        doReturn(Optional.empty()).when(spy).getAnyGHRef("branch-from");
+
+        assertThrows(CompletionException.class, () -> spy.execute());
+
+        verify(this.ghActionsKitMock).getGitHubRepository();
+
+        verify(spy).getInputFrom();
+        verify(spy).getInputTo();
+        verify(spy).getInputMessage();
+        verify(spy).connectRepository();
+        verify(spy).getAnyGHRef("branch-from");
+
+        verify(this.ghApiMock).getRepository("octocat/Hello-World");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenExecuteWithToBranchEmpty_thenThrowCompletionException() throws Exception {
+        var spy = spy(this.githubAction);
+
+        var ghRefFrom = mock(GHRef.class);
+
+        when(this.ghActionsKitMock.getGitHubRepository()).thenReturn("octocat/Hello-World");
+        doReturn(List.of("branch-from")).when(spy).getInputFrom();
+        doReturn(List.of("branch-to")).when(spy).getInputTo();
+        doReturn(Optional.of("some message")).when(spy).getInputMessage();
+
+        doNothing().when(spy).buildApi();
+        doNothing().when(spy).checkApi();
+
+        when(this.ghApiMock.getRepository("octocat/Hello-World")).thenReturn(ghRepositoryMock);
+        doReturn(Optional.of(ghRefFrom)).when(spy).getAnyGHRef("branch-from");
+        doReturn(Optional.empty()).when(spy).getToBranch("branch-to");
+
+        assertThrows(CompletionException.class, () -> spy.execute());
+
+        verify(this.ghActionsKitMock).getGitHubRepository();
+
+        verify(spy).getInputFrom();
+        verify(spy).getInputTo();
+        verify(spy).getInputMessage();
+        verify(spy).connectRepository();
+        verify(spy).getToBranch("branch-to");
+        verify(spy).getAnyGHRef("branch-from");
+
+        verify(this.ghApiMock).getRepository("octocat/Hello-World");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetAnyGHRefExist_thenReturnRef() throws Exception {
+        var ghRef = Mockito.mock(GHRef.class);
+        var refResolverMock = mock(RefResolver.class);
+        when(refResolverMock.resolve("branch-name")).thenReturn(Optional.of(ghRef));
+        this.githubAction.setRefResolver(refResolverMock);
+
+        assertThat(this.githubAction.getAnyGHRef("branch-name")).isPresent().contains(ghRef);
+
+        verify(refResolverMock).resolve("branch-name");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetAnyGHRefDoesNotExist_thenReturnEmpty() throws Exception {
+        var refResolverMock = mock(RefResolver.class);
+        when(refResolverMock.resolve("branch-name")).thenReturn(Optional.empty());
+        this.githubAction.setRefResolver(refResolverMock);
+
+        assertThat(this.githubAction.getAnyGHRef("branch-name")).isEmpty();
+
+        verify(refResolverMock).resolve("branch-name");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetAnyGHRefWithoutResolver_thenProbeRef() throws Exception {
+        var ghRef = Mockito.mock(GHRef.class);
+        when(this.ghActionsKitMock.getInput("scan-page-size")).thenReturn(Optional.empty());
+        when(ghRepositoryMock.getRef("refs/heads/branch-name")).thenReturn(ghRef);
+
+        assertThat(this.githubAction.getAnyGHRef("branch-name")).isPresent().contains(ghRef);
+
+        verify(this.ghActionsKitMock).getInput("scan-page-size");
+        verify(ghRepositoryMock).getRef("refs/heads/branch-name");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetAnyGHRefNull_thenThrowNullPointerException() throws Exception {
+        assertThrows(NullPointerException.class, () -> this.githubAction.getAnyGHRef(null));
     }
 }
@@ -0,0 +1,182 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test class for {@link MergeMetrics} class. <br>
+ * @author Julb.
+ */
+class MergeMetricsTest {
+
+    /**
+     * The class under test.
+     */
+    private MergeMetrics mergeMetrics = null;
+
+    /**
+     * The metrics directory.
+     */
+    @TempDir
+    Path directory;
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @BeforeEach
+    void setUp() throws Exception {
+        mergeMetrics = new MergeMetrics();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenWrite_thenWriteCumulativeHistogramsAndCounters() throws Exception {
+        mergeMetrics.observePhase(Phase.MERGE, Duration.ofMillis(30));
+        mergeMetrics.observePhase(Phase.MERGE, Duration.ofSeconds(400));
+        mergeMetrics.observeApiCall("GET", "/repos/{owner}/{repo}/branches", "200", Duration.ofMillis(20));
+        mergeMetrics.observeApiCall("GET", "/repos/{owner}/{repo}/branches", "200", Duration.ofMillis(40));
+        mergeMetrics.observeApiCall("POST", "/repos/{owner}/{repo}/merges", "409", Duration.ofMillis(100));
+        mergeMetrics.setRateLimitRemaining(4997);
+        mergeMetrics.recordMerge(MergeOutcome.MERGED);
+        mergeMetrics.recordMerge(MergeOutcome.CONFLICT);
+
+        var metrics = write();
+
+        assertThat(metrics)
+                .contains("# TYPE gh_merge_branch_phase_duration_seconds histogram\n")
+                .contains("gh_merge_branch_phase_duration_seconds_bucket{phase=\"merge\",le=\"0.01\"} 0\n")
+                .contains("gh_merge_branch_phase_duration_seconds_bucket{phase=\"merge\",le=\"0.05\"} 1\n")
+                .contains("gh_merge_branch_phase_duration_seconds_bucket{phase=\"merge\",le=\"300.0\"} 1\n")
+                .contains("gh_merge_branch_phase_duration_seconds_bucket{phase=\"merge\",le=\"+Inf\"} 2\n")
+                .contains("gh_merge_branch_phase_duration_seconds_count{phase=\"merge\"} 2\n")
+                .contains("gh_merge_branch_phase_duration_seconds_sum{phase=\"merge\"} 400.03\n")
+                .contains("gh_merge_branch_api_call_duration_seconds_bucket"
+                        + "{endpoint=\"/repos/{owner}/{repo}/branches\",le=\"0.025\"} 1\n")
+                .contains("gh_merge_branch_api_call_duration_seconds_count"
+                        + "{endpoint=\"/repos/{owner}/{repo}/branches\"} 2\n")
+                .contains("# TYPE gh_merge_branch_api_calls_total counter\n")
+                .contains("gh_merge_branch_api_calls_total"
+                        + "{method=\"GET\",endpoint=\"/repos/{owner}/{repo}/branches\",status=\"200\"} 2\n")
+                .contains("gh_merge_branch_api_calls_total"
+                        + "{method=\"POST\",endpoint=\"/repos/{owner}/{repo}/merges\",status=\"409\"} 1\n")
+                .contains("gh_merge_branch_rate_limit_remaining 4997\n")
+                .contains("gh_merge_branch_merges_total{outcome=\"conflict\"} 1\n")
+                .contains("gh_merge_branch_merges_total{outcome=\"merged\"} 1\n")
+                .containsPattern("gh_merge_branch_last_run_timestamp_seconds \\d+\n");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetApiCallCounts_thenSumByMethodAndEndpoint() throws Exception {
+        mergeMetrics.observeApiCall("POST", "/repos/{owner}/{repo}/merges", "502", Duration.ofMillis(10));
+        mergeMetrics.observeApiCall("POST", "/repos/{owner}/{repo}/merges", "201", Duration.ofMillis(10));
+        mergeMetrics.observeApiCall("GET", "/repos/{owner}/{repo}/branches", "200", Duration.ofMillis(10));
+
+        assertThat(mergeMetrics.getApiCallCounts())
+                .containsExactly(
+                        entry("GET /repos/{owner}/{repo}/branches", 1L),
+                        entry("POST /repos/{owner}/{repo}/merges", 2L));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenNoApiCall_thenNoRateLimitRemaining() throws Exception {
+        assertThat(write()).doesNotContain("gh_merge_branch_rate_limit_remaining");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenRecordFailure_thenCountErrorUnlessMergesCounted() throws Exception {
+        mergeMetrics.recordFailure();
+        mergeMetrics.recordFailure();
+        assertThat(write()).contains("gh_merge_branch_merges_total{outcome=\"error\"} 1\n");
+
+        var conflictMetrics = new MergeMetrics();
+        conflictMetrics.recordMerge(MergeOutcome.CONFLICT);
+        conflictMetrics.recordFailure();
+        var writer = new StringWriter();
+        conflictMetrics.write(writer);
+        assertThat(writer.toString()).doesNotContain("outcome=\"error\"");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenWriteTo_thenReplaceFileAtomicallyReadableByAll() throws Exception {
+        var file = directory.resolve("textfile/merge-branch.prom");
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, "stale");
+        mergeMetrics.recordMerge(MergeOutcome.NOOP);
+
+        mergeMetrics.writeTo(file);
+
+        assertThat(Files.readString(file)).contains("gh_merge_branch_merges_total{outcome=\"noop\"} 1\n");
+        assertThat(Files.getPosixFilePermissions(file)).isEqualTo(PosixFilePermissions.fromString("rw-r--r--"));
+        try (var files = Files.list(file.getParent())) {
+            assertThat(files).containsExactly(file);
+        }
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenEscape_thenEscapeQuotesBackslashesAndNewLines() throws Exception {
+        assertThat(MergeMetrics.escape("a\"b\\c\nd")).isEqualTo("a\\\"b\\\\c\\nd");
+    }
+
+    // ------------------------------------------ Utility methods.
+
+    /**
+     * Writes the metrics.
+     * @return the metrics, in the Prometheus text format.
+     * @throws Exception if an error occurs.
+     */
+    private String write() throws Exception {
+        var writer = new StringWriter();
+        mergeMetrics.write(writer);
+        return writer.toString();
+    }
+}
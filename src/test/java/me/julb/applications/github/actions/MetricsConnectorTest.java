@@ -0,0 +1,151 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.net.URL;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.kohsuke.github.connector.GitHubConnector;
+import org.kohsuke.github.connector.GitHubConnectorRequest;
+import org.kohsuke.github.connector.GitHubConnectorResponse;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+/**
+ * Test class for {@link MetricsConnector} class. <br>
+ * @author Julb.
+ */
+@ExtendWith(MockitoExtension.class)
+class MetricsConnectorTest {
+
+    /**
+     * The class under test.
+     */
+    private MetricsConnector metricsConnector = null;
+
+    /**
+     * A mock for the connector sending the requests.
+     */
+    @Mock
+    private GitHubConnector delegateMock;
+
+    /**
+     * A mock for the metrics.
+     */
+    @Mock
+    private MergeMetrics mergeMetricsMock;
+
+    /**
+     * A mock for GitHub connector request.
+     */
+    @Mock
+    private GitHubConnectorRequest requestMock;
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @BeforeEach
+    void setUp() throws Exception {
+        metricsConnector = new MetricsConnector(delegateMock, mergeMetricsMock);
+
+        lenient().when(requestMock.url()).thenReturn(new URL("https://api.github.com/repos/o/r/branches/main"));
+        lenient().when(requestMock.method()).thenReturn("GET");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenSend_thenObserveCallAndRateLimitRemaining() throws Exception {
+        var response = mock(GitHubConnectorResponse.class);
+        when(response.statusCode()).thenReturn(200);
+        when(response.header("X-RateLimit-Remaining")).thenReturn("4999");
+        when(delegateMock.send(requestMock)).thenReturn(response);
+
+        assertThat(this.metricsConnector.send(requestMock)).isSameAs(response);
+
+        verify(mergeMetricsMock).observeApiCall(eq("GET"), eq("/repos/{owner}/{repo}/branches"), eq("200"), any());
+        verify(mergeMetricsMock).setRateLimitRemaining(4999);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenSendWithoutRateLimitHeader_thenObserveCallOnly() throws Exception {
+        var response = mock(GitHubConnectorResponse.class);
+        when(response.statusCode()).thenReturn(404);
+        when(delegateMock.send(requestMock)).thenReturn(response);
+
+        this.metricsConnector.send(requestMock);
+
+        verify(mergeMetricsMock).observeApiCall(eq("GET"), eq("/repos/{owner}/{repo}/branches"), eq("404"), any());
+        verify(mergeMetricsMock, never()).setRateLimitRemaining(anyLong());
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenSendFails_thenObserveErrorAndRethrow() throws Exception {
+        when(delegateMock.send(requestMock)).thenThrow(new IOException("connection reset"));
+
+        assertThrows(IOException.class, () -> this.metricsConnector.send(requestMock));
+
+        verify(mergeMetricsMock).observeApiCall(eq("GET"), eq("/repos/{owner}/{repo}/branches"), eq("error"), any());
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenEndpoint_thenLeaveIdentifiersOut() throws Exception {
+        assertThat(MetricsConnector.endpoint(new URL("https://api.github.com/repos/o/r/git/refs/heads/a/b")))
+                .isEqualTo("/repos/{owner}/{repo}/git/refs");
+        assertThat(MetricsConnector.endpoint(new URL("https://api.github.com/repos/o/r/compare/a...b")))
+                .isEqualTo("/repos/{owner}/{repo}/compare");
+        assertThat(MetricsConnector.endpoint(new URL("https://api.github.com/repos/o/r")))
+                .isEqualTo("/repos/{owner}/{repo}");
+        assertThat(MetricsConnector.endpoint(new URL("https://ghe.example.com/api/v3/repos/o/r/merges")))
+                .isEqualTo("/repos/{owner}/{repo}/merges");
+        assertThat(MetricsConnector.endpoint(new URL("https://ghe.example.com/api/v3/user")))
+                .isEqualTo("/user");
+        assertThat(MetricsConnector.endpoint(new URL("https://api.github.com/"))).isEqualTo("/");
+        assertThat(MetricsConnector.endpoint(new URL("https://api.github.com"))).isEqualTo("/");
+    }
+}
@@ -0,0 +1,155 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link PhaseTimer} class. <br>
+ * @author Julb.
+ */
+class PhaseTimerTest {
+
+    /**
+     * The class under test.
+     */
+    private PhaseTimer phaseTimer = null;
+
+    /**
+     * The number of requests sent.
+     */
+    private AtomicLong requestCount = null;
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @BeforeEach
+    void setUp() throws Exception {
+        requestCount = new AtomicLong();
+        phaseTimer = new PhaseTimer(requestCount::get);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenSpansClosed_thenCumulateDurationsInPhaseOrder() throws Exception {
+        phaseTimer.timed(Phase.MERGE, "main", () -> Thread.sleep(20));
+        phaseTimer.timed(Phase.GET_REF, "feature", () -> Thread.sleep(10));
+        phaseTimer.timed(Phase.MERGE, "develop", () -> Thread.sleep(20));
+
+        var durations = phaseTimer.getDurations();
+
+        assertThat(durations).containsOnlyKeys(Phase.GET_REF, Phase.MERGE);
+        assertThat(durations.keySet()).containsExactly(Phase.GET_REF, Phase.MERGE);
+        assertThat(durations.get(Phase.GET_REF)).isGreaterThanOrEqualTo(Duration.ofMillis(10));
+        assertThat(durations.get(Phase.MERGE)).isGreaterThanOrEqualTo(Duration.ofMillis(40));
+        assertThat(phaseTimer.getElapsed()).isGreaterThanOrEqualTo(Duration.ofMillis(50));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenSummary_thenReportDurationsAndRequests() throws Exception {
+        phaseTimer.record(Phase.JVM_STARTUP, Duration.ofMillis(120));
+        phaseTimer.timed(Phase.GET_TO_BRANCH, "main", () -> requestCount.addAndGet(2));
+
+        assertThat(phaseTimer.summary()).matches("jvm-startup: 120 ms, get-to-branch: \\d+ ms \\(2 requests\\)");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenSpansNested_thenExcludeNestedSpansFromParent() throws Exception {
+        var merge = phaseTimer.start(Phase.MERGE, "main");
+        requestCount.incrementAndGet();
+        phaseTimer.timed(Phase.GET_TO_BRANCH, "main", () -> {
+            requestCount.addAndGet(2);
+            Thread.sleep(50);
+        });
+        merge.close();
+
+        var durations = phaseTimer.getDurations();
+
+        assertThat(durations.get(Phase.GET_TO_BRANCH)).isGreaterThanOrEqualTo(Duration.ofMillis(50));
+        assertThat(durations.get(Phase.MERGE)).isLessThan(Duration.ofMillis(50));
+        assertThat(phaseTimer.summary())
+                .matches("get-to-branch: \\d+ ms \\(2 requests\\), merge: \\d+ ms \\(1 requests\\)");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenSpanClosed_thenNextSpanNotNested() throws Exception {
+        phaseTimer.timed(Phase.GET_TO_BRANCH, "main", () -> Thread.sleep(20));
+        phaseTimer.timed(Phase.MERGE, "main", () -> Thread.sleep(20));
+
+        var durations = phaseTimer.getDurations();
+
+        assertThat(durations.get(Phase.GET_TO_BRANCH)).isGreaterThanOrEqualTo(Duration.ofMillis(20));
+        assertThat(durations.get(Phase.MERGE)).isGreaterThanOrEqualTo(Duration.ofMillis(20));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenTimedCallThrows_thenRecordSpanAndRethrow() throws Exception {
+        var exception = new IOException("boom");
+
+        assertThatThrownBy(() -> phaseTimer.timed(Phase.MERGE, "main", () -> {
+            throw exception;
+        })).isSameAs(exception);
+        assertThat(phaseTimer.getDurations()).containsOnlyKeys(Phase.MERGE);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenTimedCall_thenReturnResult() throws Exception {
+        assertThat(phaseTimer.timed(Phase.GET_REF, "main", () -> "sha")).isEqualTo("sha");
+        assertThat(phaseTimer.getDurations()).containsOnlyKeys(Phase.GET_REF);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenNoSpan_thenNoDuration() throws Exception {
+        assertThat(phaseTimer.getDurations()).isEmpty();
+        assertThat(phaseTimer.summary()).isEmpty();
+    }
+}
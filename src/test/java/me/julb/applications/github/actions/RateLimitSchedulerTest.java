@@ -0,0 +1,391 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.kohsuke.github.GitHub;
+import org.kohsuke.github.GitHubBuilder;
+import org.kohsuke.github.HttpException;
+import org.kohsuke.github.connector.GitHubConnector;
+import org.kohsuke.github.connector.GitHubConnectorRequest;
+import org.kohsuke.github.connector.GitHubConnectorResponse;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Test class for {@link RateLimitScheduler} class. <br>
+ * @author Julb.
+ */
+@ExtendWith(MockitoExtension.class)
+class RateLimitSchedulerTest {
+
+    /**
+     * The first backoff delay of the tests.
+     */
+    private static final Duration MIN_BACKOFF = Duration.ofMillis(20);
+
+    /**
+     * The body of a secondary rate limit response.
+     */
+    private static final String SECONDARY_RATE_LIMIT_BODY =
+            "{\"message\":\"You have exceeded a secondary rate limit. Please wait a few minutes and try again.\"}";
+
+    /**
+     * The local stand-in of the GitHub API, throttling the requests.
+     */
+    private HttpServer server;
+
+    /**
+     * The responses of the stand-in, sent in order before answering normally.
+     */
+    private Deque<ThrottledResponse> throttledResponses = new ArrayDeque<>();
+
+    /**
+     * The number of requests received by the stand-in.
+     */
+    private AtomicInteger requestCount = new AtomicInteger();
+
+    /**
+     * A mock for the connector sending the requests.
+     */
+    @Mock
+    private GitHubConnector delegateMock;
+
+    /**
+     * A mock for GitHub connector request.
+     */
+    @Mock
+    private GitHubConnectorRequest requestMock;
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            try (exchange) {
+                requestCount.incrementAndGet();
+                var throttledResponse = throttledResponses.poll();
+                if (throttledResponse != null) {
+                    throttledResponse.headers.forEach(exchange.getResponseHeaders()::add);
+                    respond(exchange, throttledResponse.statusCode, throttledResponse.body);
+                } else {
+                    respond(exchange, 200, "{\"name\":\"r\",\"full_name\":\"o/r\",\"owner\":{\"login\":\"o\"}}");
+                }
+            }
+        });
+        server.start();
+
+        lenient().when(requestMock.url()).thenReturn(new URL("https://api.github.com/repos/o/r/merges"));
+        lenient().when(requestMock.method()).thenReturn("GET");
+    }
+
+    /**
+     * Stops the stand-in.
+     */
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenSecondaryRateLimitWithoutRetryAfter_thenRetryWithBackoff() throws Exception {
+        throttledResponses.add(new ThrottledResponse(403, Map.of(), SECONDARY_RATE_LIMIT_BODY));
+        throttledResponses.add(new ThrottledResponse(403, Map.of(), SECONDARY_RATE_LIMIT_BODY));
+        var scheduler = new RateLimitScheduler(GitHubConnector.DEFAULT, Duration.ofSeconds(10), MIN_BACKOFF);
+
+        var ghRepository = github(scheduler).getRepository("o/r");
+
+        assertThat(ghRepository.getFullName()).isEqualTo("o/r");
+        assertThat(requestCount).hasValue(3);
+        assertThat(scheduler.getRequestCount()).isEqualTo(3);
+        assertThat(scheduler.getWaited()).isGreaterThanOrEqualTo(MIN_BACKOFF.dividedBy(2).multipliedBy(3));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenSecondaryRateLimitWithRetryAfter_thenWaitAsTold() throws Exception {
+        throttledResponses.add(new ThrottledResponse(429, Map.of("Retry-After", "1"), "{}"));
+        var scheduler = new RateLimitScheduler(GitHubConnector.DEFAULT, Duration.ofSeconds(10), MIN_BACKOFF);
+
+        var ghRepository = github(scheduler).getRepository("o/r");
+
+        assertThat(ghRepository.getFullName()).isEqualTo("o/r");
+        assertThat(requestCount).hasValue(2);
+        assertThat(scheduler.getWaited()).isGreaterThan(Duration.ofMillis(900));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenRateLimitWaitExceedsMaxWait_thenFailWithoutWaiting() throws Exception {
+        throttledResponses.add(new ThrottledResponse(403, Map.of("Retry-After", "60"), SECONDARY_RATE_LIMIT_BODY));
+        var scheduler = new RateLimitScheduler(GitHubConnector.DEFAULT, Duration.ofSeconds(10), MIN_BACKOFF);
+        var github = github(scheduler);
+
+        var e = assertThrows(HttpException.class, () -> github.getRepository("o/r"));
+        assertThat(e).hasMessageContaining("API rate limit exceeded");
+
+        assertThat(requestCount).hasValue(1);
+        assertThat(scheduler.getWaited()).isZero();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenForbiddenWithoutRateLimit_thenReturnResponseWithBody() throws Exception {
+        throttledResponses.add(new ThrottledResponse(403, Map.of(), "{\"message\":\"Resource not accessible\"}"));
+        var scheduler = new RateLimitScheduler(GitHubConnector.DEFAULT, Duration.ofSeconds(10), MIN_BACKOFF);
+        var github = github(scheduler);
+
+        var e = assertThrows(HttpException.class, () -> github.getRepository("o/r"));
+        assertThat(e).hasMessageContaining("Resource not accessible");
+
+        assertThat(requestCount).hasValue(1);
+        assertThat(scheduler.getWaited()).isZero();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenPrimaryRateLimitExhausted_thenHoldNextRequestUntilReset() throws Exception {
+        var reset = String.valueOf(Instant.now().getEpochSecond());
+        when(delegateMock.send(requestMock))
+                .thenReturn(response(200, Map.of("X-RateLimit-Remaining", "0", "X-RateLimit-Reset", reset), "{}"))
+                .thenReturn(response(200, Map.of("X-RateLimit-Remaining", "4999"), "{}"));
+        var scheduler = new RateLimitScheduler(delegateMock, Duration.ofSeconds(10), MIN_BACKOFF);
+
+        scheduler.send(requestMock);
+        assertThat(scheduler.getWaited()).isZero();
+        scheduler.send(requestMock);
+
+        assertThat(scheduler.getWaited()).isPositive();
+        verify(delegateMock, times(2)).send(requestMock);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenSecondaryRateLimitOnWrite_thenSpaceNextWrites() throws Exception {
+        when(requestMock.method()).thenReturn("POST");
+        when(delegateMock.send(requestMock))
+                .thenReturn(response(403, Map.of(), SECONDARY_RATE_LIMIT_BODY))
+                .thenReturn(response(201, Map.of(), "{}"));
+        var scheduler = new RateLimitScheduler(delegateMock, Duration.ofSeconds(10), MIN_BACKOFF);
+
+        var response = scheduler.send(requestMock);
+
+        assertThat(response.statusCode()).isEqualTo(201);
+        assertThat(scheduler.getWriteInterval()).isEqualTo(MIN_BACKOFF.dividedBy(2));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenWritesSucceedAfterSecondaryRateLimit_thenStopSpacingWrites() throws Exception {
+        when(requestMock.method()).thenReturn("POST");
+        when(delegateMock.send(requestMock))
+                .thenReturn(response(403, Map.of(), SECONDARY_RATE_LIMIT_BODY))
+                .thenAnswer(invocation -> response(201, Map.of(), "{}"));
+        var scheduler = new RateLimitScheduler(delegateMock, Duration.ofSeconds(10), MIN_BACKOFF);
+
+        scheduler.send(requestMock);
+        assertThat(scheduler.getWriteInterval()).isPositive();
+        for (int i = 0; i < 3; i++) {
+            scheduler.send(requestMock);
+        }
+
+        assertThat(scheduler.getWriteInterval()).isZero();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenConcurrentWrites_thenSendThemConcurrently() throws Exception {
+        when(requestMock.method()).thenReturn("POST");
+        var inFlight = new CountDownLatch(2);
+        when(delegateMock.send(requestMock)).thenAnswer(invocation -> {
+            inFlight.countDown();
+            var overlapped = inFlight.await(5, TimeUnit.SECONDS);
+            return response(overlapped ? 201 : 500, Map.of(), "{}");
+        });
+        var scheduler = new RateLimitScheduler(delegateMock, Duration.ofSeconds(10), MIN_BACKOFF);
+
+        var executor = Executors.newFixedThreadPool(2);
+        try {
+            var first = executor.submit(() -> scheduler.send(requestMock));
+            var second = executor.submit(() -> scheduler.send(requestMock));
+
+            assertThat(first.get().statusCode()).isEqualTo(201);
+            assertThat(second.get().statusCode()).isEqualTo(201);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenBackoff_thenGrowExponentiallyWithJitterUpToMaximum() throws Exception {
+        var scheduler = new RateLimitScheduler(delegateMock, Duration.ofSeconds(10), MIN_BACKOFF);
+
+        assertThat(scheduler.backoff(0)).isBetween(MIN_BACKOFF.dividedBy(2), MIN_BACKOFF);
+        assertThat(scheduler.backoff(3)).isBetween(MIN_BACKOFF.multipliedBy(4), MIN_BACKOFF.multipliedBy(8));
+        assertThat(scheduler.backoff(40)).isBetween(Duration.ofSeconds(30), Duration.ofMinutes(1));
+    }
+
+    // ------------------------------------------ Utility methods.
+
+    /**
+     * Creates a GitHub API client of the stand-in, scheduled by the given scheduler.
+     * @param scheduler the scheduler.
+     * @return the GitHub API client.
+     * @throws IOException if an error occurs.
+     */
+    private GitHub github(RateLimitScheduler scheduler) throws IOException {
+        // @formatter:off
+        return new GitHubBuilder()
+                .withEndpoint("http://127.0.0.1:" + server.getAddress().getPort())
+                .withConnector(scheduler)
+                .withRateLimitHandler(RateLimitScheduler.RATE_LIMIT_HANDLER)
+                .withAbuseLimitHandler(RateLimitScheduler.ABUSE_LIMIT_HANDLER)
+                .build();
+        // @formatter:on
+    }
+
+    /**
+     * Sends the given JSON response from the stand-in.
+     * @param exchange the request.
+     * @param statusCode the status code.
+     * @param body the body.
+     * @throws IOException if an error occurs.
+     */
+    private static void respond(HttpExchange exchange, int statusCode, String body) throws IOException {
+        var bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(statusCode, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    /**
+     * Creates a network response.
+     * @param statusCode the status code.
+     * @param headers the headers.
+     * @param body the body.
+     * @return the response.
+     */
+    private GitHubConnectorResponse response(int statusCode, Map<String, String> headers, String body) {
+        var allHeaders = new HashMap<String, List<String>>();
+        headers.forEach((name, value) -> allHeaders.put(name, List.of(value)));
+        return new GitHubConnectorResponse(requestMock, statusCode, allHeaders) {
+            @Override
+            public InputStream bodyStream() {
+                return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+            }
+
+            @Override
+            public void close() {
+                // Nothing to release.
+            }
+        };
+    }
+
+    /**
+     * A throttled response of the stand-in.
+     * @author Julb.
+     */
+    private static class ThrottledResponse {
+
+        /**
+         * The status code.
+         */
+        private final int statusCode;
+
+        /**
+         * The headers.
+         */
+        private final Map<String, String> headers;
+
+        /**
+         * The body.
+         */
+        private final String body;
+
+        /**
+         * Default constructor.
+         * @param statusCode the status code.
+         * @param headers the headers.
+         * @param body the body.
+         */
+        ThrottledResponse(int statusCode, Map<String, String> headers, String body) {
+            this.statusCode = statusCode;
+            this.headers = headers;
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.kohsuke.github.GHRef;
+
+/**
+ * Test class for {@link RefIndex} class. <br>
+ * @author Julb.
+ */
+class RefIndexTest {
+
+    /**
+     * The SHA of the commits.
+     */
+    private static final String COMMIT_SHA = "7fd1a60b01f91b314f59955a4e4d4e80d8edf11d";
+
+    /**
+     * The SHA of the tag objects.
+     */
+    private static final String TAG_SHA = "2c3ee2e8b7a3a1c5b5fbc8d1e4e0e6a4c6f5a2b1";
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGet_thenMatchIgnoringCase() throws Exception {
+        var refIndex = new RefIndex(
+                null,
+                List.of("refs/heads/Main", "refs/tags/v1.0.0"),
+                List.of(COMMIT_SHA, TAG_SHA),
+                List.of("commit", "tag"));
+
+        assertThat(refIndex.size()).isEqualTo(2);
+        assertThat(refIndex.get("refs/heads/main")).map(GHRef::getRef).contains("refs/heads/Main");
+        assertThat(refIndex.get("REFS/TAGS/V1.0.0")).hasValueSatisfying(ghRef -> {
+            assertThat(ghRef.getRef()).isEqualTo("refs/tags/v1.0.0");
+            assertThat(ghRef.getObject().getSha()).isEqualTo(TAG_SHA);
+            assertThat(ghRef.getObject().getType()).isEqualTo("tag");
+        });
+        assertThat(refIndex.get("refs/heads/develop")).isEmpty();
+        assertThat(refIndex.get("refs/heads")).isEmpty();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenRefsDifferByCase_thenGetFirstListed() throws Exception {
+        var refIndex = new RefIndex(
+                null,
+                List.of("refs/heads/MAIN", "refs/heads/main"),
+                List.of(COMMIT_SHA, TAG_SHA),
+                List.of("commit", "commit"));
+
+        assertThat(refIndex.get("refs/heads/main")).map(GHRef::getRef).contains("refs/heads/MAIN");
+        assertThat(refIndex.get("refs/heads/Main")).map(ghRef -> ghRef.getObject().getSha()).contains(COMMIT_SHA);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenWithPrefix_thenReturnMatchesSorted() throws Exception {
+        var refIndex = new RefIndex(
+                null,
+                List.of(
+                        "refs/heads/release/2.0",
+                        "refs/heads/main",
+                        "refs/tags/release/1.0",
+                        "refs/heads/Release/1.0",
+                        "refs/pull/1/head",
+                        "refs/heads/release/1.0"),
+                List.of(COMMIT_SHA, COMMIT_SHA, TAG_SHA, COMMIT_SHA, COMMIT_SHA, COMMIT_SHA),
+                List.of("commit", "commit", "tag", "commit", "commit", "commit"));
+
+        assertThat(refIndex.withPrefix("refs/heads/release/"))
+                .containsExactly("refs/heads/Release/1.0", "refs/heads/release/1.0", "refs/heads/release/2.0");
+        assertThat(refIndex.withPrefix("REFS/HEADS/"))
+                .containsExactly(
+                        "refs/heads/main",
+                        "refs/heads/Release/1.0",
+                        "refs/heads/release/1.0",
+                        "refs/heads/release/2.0");
+        assertThat(refIndex.withPrefix("refs/tags/")).containsExactly("refs/tags/release/1.0");
+        assertThat(refIndex.withPrefix("refs/heads/feature/")).isEmpty();
+        assertThat(refIndex.withPrefix("refs/heads/zzz")).isEmpty();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenWithPrefixOutsideBranchesAndTags_thenThrowIllegalArgumentException() throws Exception {
+        var refIndex = new RefIndex(null, List.of("refs/pull/1/head"), List.of(COMMIT_SHA), List.of("commit"));
+
+        assertThrows(IllegalArgumentException.class, () -> refIndex.withPrefix("refs/pull/"));
+        assertThrows(IllegalArgumentException.class, () -> refIndex.withPrefix("refs/"));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenEmpty_thenNoMatch() throws Exception {
+        var refIndex = new RefIndex(null, List.of(), List.of(), List.of());
+
+        assertThat(refIndex.size()).isZero();
+        assertThat(refIndex.get("refs/heads/main")).isEmpty();
+        assertThat(refIndex.withPrefix("refs/heads/")).isEmpty();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenSizesDiffer_thenThrowIllegalArgumentException() throws Exception {
+        var names = List.of("refs/heads/main");
+        var shas = List.<String>of();
+        var types = List.of("commit");
+
+        assertThrows(IllegalArgumentException.class, () -> new RefIndex(null, names, shas, types));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenManyRefs_thenGetEach() throws Exception {
+        var names = new ArrayList<String>();
+        var shas = new ArrayList<String>();
+        var types = new ArrayList<String>();
+        for (int i = 0; i < 10000; i++) {
+            names.add(String.format("refs/heads/branch-%05d", i));
+            shas.add(String.format("%040x", i));
+            types.add("commit");
+        }
+        var refIndex = new RefIndex(null, names, shas, types);
+
+        for (int i = 0; i < 10000; i++) {
+            var sha = String.format("%040x", i);
+            assertThat(refIndex.get(String.format("refs/heads/BRANCH-%05d", i)))
+                    .map(ghRef -> ghRef.getObject().getSha())
+                    .contains(sha);
+        }
+        assertThat(refIndex.get("refs/heads/branch-10000")).isEmpty();
+        assertThat(refIndex.withPrefix("refs/heads/BRANCH-012"))
+                .hasSize(100)
+                .startsWith("refs/heads/branch-01200")
+                .endsWith("refs/heads/branch-01299");
+    }
+}
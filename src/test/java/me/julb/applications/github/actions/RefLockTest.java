@@ -0,0 +1,330 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.kohsuke.github.GHFileNotFoundException;
+import org.kohsuke.github.GHRef;
+import org.kohsuke.github.GHRepository;
+import org.kohsuke.github.GHTagObject;
+import org.kohsuke.github.HttpException;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import me.julb.sdk.github.actions.kit.GitHubActionsKit;
+
+/**
+ * Test class for {@link RefLock} class. <br>
+ * @author Julb.
+ */
+@ExtendWith(MockitoExtension.class)
+class RefLockTest {
+
+    /**
+     * The target branch latest commit SHA.
+     */
+    private static final String TO_SHA = "0123456789abcdef0123456789abcdef01234567";
+
+    /**
+     * The class under test.
+     */
+    private RefLock refLock = null;
+
+    /**
+     * The ticket refs of the queue.
+     */
+    private List<GHRef> queue = null;
+
+    /**
+     * A mock for GitHub action kit.
+     */
+    @Mock
+    private GitHubActionsKit ghActionsKitMock;
+
+    /**
+     * A mock for GitHub repository.
+     */
+    @Mock
+    private GHRepository ghRepositoryMock;
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @BeforeEach
+    void setUp() throws Exception {
+        refLock = newRefLock("run-1", Duration.ofSeconds(30));
+
+        queue = new ArrayList<>();
+        lenient().when(ghRepositoryMock.createRef(startsWith("refs/locks/queue/main/"), eq(TO_SHA)))
+                .thenAnswer(invocation -> {
+                    var ticket = ref(invocation.getArgument(0), "commit", TO_SHA);
+                    queue.add(ticket);
+                    return ticket;
+                });
+        lenient().when(ghRepositoryMock.getRefs("locks/queue/main"))
+                .thenAnswer(invocation -> queue.toArray(GHRef[]::new));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenAcquireFreeLock_thenCreateLockRefAndDeleteTicket() throws Exception {
+        when(ghRepositoryMock.getRef("locks/merge/main")).thenThrow(new GHFileNotFoundException());
+        var lockTag = tag("abc", "");
+        when(ghRepositoryMock.createTag(
+                eq("merge-lock"), contains("owner: run-1\nexpires: "), eq(TO_SHA), eq("commit"))).thenReturn(lockTag);
+
+        refLock.acquire(TO_SHA);
+
+        verify(ghRepositoryMock).createRef("refs/locks/merge/main", "abc");
+        verify(queue.get(0)).delete();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenAcquireLockWithLiveLease_thenPollUntilReleased() throws Exception {
+        var lockRef = ref("refs/locks/merge/main", "tag", "def");
+        when(ghRepositoryMock.getRef("locks/merge/main"))
+                .thenReturn(lockRef)
+                .thenReturn(lockRef)
+                .thenThrow(new GHFileNotFoundException());
+        var liveTag = tag("def", "owner: run-2\nexpires: " + Instant.now().plusSeconds(60) + "\n");
+        when(ghRepositoryMock.getTagObject("def")).thenReturn(liveTag);
+        var lockTag = tag("abc", "");
+        when(ghRepositoryMock.createTag(anyString(), anyString(), eq(TO_SHA), eq("commit"))).thenReturn(lockTag);
+
+        refLock.acquire(TO_SHA);
+
+        verify(lockRef, never()).delete();
+        verify(ghRepositoryMock).createRef("refs/locks/merge/main", "abc");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenAcquireLockWithExpiredLease_thenStealLock() throws Exception {
+        var lockRef = ref("refs/locks/merge/main", "tag", "def");
+        when(ghRepositoryMock.getRef("locks/merge/main")).thenReturn(lockRef);
+        var expiredTag = tag("def", "owner: run-2\nexpires: " + Instant.now().minusSeconds(1) + "\n");
+        when(ghRepositoryMock.getTagObject("def")).thenReturn(expiredTag);
+        var lockTag = tag("abc", "");
+        when(ghRepositoryMock.createTag(anyString(), anyString(), eq(TO_SHA), eq("commit"))).thenReturn(lockTag);
+
+        refLock.acquire(TO_SHA);
+
+        verify(lockRef).delete();
+        verify(ghRepositoryMock).createRef("refs/locks/merge/main", "abc");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenAcquireLockTakenMeanwhile_thenPollAgain() throws Exception {
+        when(ghRepositoryMock.getRef("locks/merge/main")).thenThrow(new GHFileNotFoundException());
+        var lockTag = tag("abc", "");
+        when(ghRepositoryMock.createTag(anyString(), anyString(), eq(TO_SHA), eq("commit"))).thenReturn(lockTag);
+        when(ghRepositoryMock.createRef("refs/locks/merge/main", "abc"))
+                .thenThrow(new HttpException("Reference already exists", 422, "", ""))
+                .thenReturn(null);
+
+        refLock.acquire(TO_SHA);
+
+        verify(ghRepositoryMock, times(2)).createRef("refs/locks/merge/main", "abc");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenAcquireLockHeldBeyondTimeout_thenThrowIllegalStateException() throws Exception {
+        refLock = newRefLock("run-1", Duration.ofMillis(50));
+        var lockRef = ref("refs/locks/merge/main", "tag", "def");
+        when(ghRepositoryMock.getRef("locks/merge/main")).thenReturn(lockRef);
+        var liveTag = tag("def", "owner: run-2\nexpires: " + Instant.now().plusSeconds(60) + "\n");
+        when(ghRepositoryMock.getTagObject("def")).thenReturn(liveTag);
+
+        assertThatThrownBy(() -> refLock.acquire(TO_SHA))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("merge lock of branch main");
+
+        verify(ghRepositoryMock, never()).createTag(anyString(), anyString(), anyString(), anyString());
+        verify(queue.get(0)).delete();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenIsFirstInQueueBehindStaleTicket_thenTrue() throws Exception {
+        var now = Instant.now();
+        queue.add(ref(newRefLock("run-0", Duration.ZERO).ticketRefName(now.minusSeconds(60)), "commit", TO_SHA));
+        var ticket = refLock.ticketRefName(now);
+        queue.add(ref(ticket, "commit", TO_SHA));
+        queue.add(ref(newRefLock("run-2", Duration.ZERO).ticketRefName(now.plusMillis(1)), "commit", TO_SHA));
+        queue.add(ref("refs/locks/queue/main-other/0000000000000-run-3", "commit", TO_SHA));
+
+        assertThat(refLock.isFirstInQueue(ticket)).isTrue();
+        assertThat(refLock.isFirstInQueue(queue.get(2).getRef())).isFalse();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenIsExpiredWithUnreadableLease_thenTrue() throws Exception {
+        var commitRef = ref("refs/locks/merge/main", "commit", TO_SHA);
+        var lockRef = ref("refs/locks/merge/main", "tag", "def");
+        var lockTag = tag("def", "owner: run-2\nexpires: tomorrow\n");
+        when(ghRepositoryMock.getTagObject("def")).thenReturn(lockTag);
+
+        assertThat(refLock.isExpired(commitRef)).isTrue();
+        assertThat(refLock.isExpired(lockRef)).isTrue();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenCloseHeldLock_thenDeleteLockRef() throws Exception {
+        var lockRef = acquireAndReturnLockRef("abc");
+
+        refLock.close();
+        refLock.close();
+
+        verify(lockRef).delete();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenCloseStolenLock_thenKeepLockRef() throws Exception {
+        var lockRef = acquireAndReturnLockRef("def");
+
+        refLock.close();
+
+        verify(lockRef, never()).delete();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenPollDelay_thenExponentialAndCapped() throws Exception {
+        assertThat(refLock.pollDelay(0)).isBetween(Duration.ofMillis(0), Duration.ofMillis(1));
+        assertThat(refLock.pollDelay(3)).isBetween(Duration.ofMillis(4), Duration.ofMillis(8));
+        assertThat(refLock.pollDelay(30)).isBetween(Duration.ofMillis(7500), Duration.ofSeconds(15));
+    }
+
+    // ------------------------------------------ Utility methods.
+
+    /**
+     * Creates a lock of the <code>main</code> branch.
+     * @param owner the lock owner.
+     * @param waitTimeout the maximum time waited for the lock.
+     * @return the lock.
+     */
+    private RefLock newRefLock(String owner, Duration waitTimeout) {
+        return new RefLock(
+                ghActionsKitMock,
+                ghRepositoryMock,
+                "main",
+                owner,
+                Duration.ofMinutes(5),
+                waitTimeout,
+                Duration.ofMillis(1));
+    }
+
+    /**
+     * Acquires the lock, and returns the lock ref then pointing to the given tag object.
+     * @param sha the SHA of the tag object of the lock ref after acquisition.
+     * @return the lock ref.
+     * @throws Exception if an error occurs.
+     */
+    private GHRef acquireAndReturnLockRef(String sha) throws Exception {
+        var lockRef = ref("refs/locks/merge/main", "tag", sha);
+        when(ghRepositoryMock.getRef("locks/merge/main"))
+                .thenThrow(new GHFileNotFoundException())
+                .thenReturn(lockRef);
+        var lockTag = tag("abc", "");
+        when(ghRepositoryMock.createTag(anyString(), anyString(), eq(TO_SHA), eq("commit"))).thenReturn(lockTag);
+        refLock.acquire(TO_SHA);
+        return lockRef;
+    }
+
+    /**
+     * Creates a ref.
+     * @param name the ref name.
+     * @param type the type of the object the ref points to.
+     * @param sha the SHA of the object the ref points to.
+     * @return the ref.
+     */
+    private static GHRef ref(String name, String type, String sha) {
+        var object = mock(GHRef.GHObject.class);
+        lenient().when(object.getType()).thenReturn(type);
+        lenient().when(object.getSha()).thenReturn(sha);
+        var ref = mock(GHRef.class);
+        lenient().when(ref.getRef()).thenReturn(name);
+        lenient().when(ref.getObject()).thenReturn(object);
+        return ref;
+    }
+
+    /**
+     * Creates a tag object.
+     * @param sha the tag object SHA.
+     * @param message the tag message.
+     * @return the tag object.
+     */
+    private static GHTagObject tag(String sha, String message) {
+        var tag = mock(GHTagObject.class);
+        lenient().when(tag.getSha()).thenReturn(sha);
+        lenient().when(tag.getMessage()).thenReturn(message);
+        return tag;
+    }
+}
@@ -0,0 +1,540 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.kohsuke.github.GHCommit;
+import org.kohsuke.github.GHFileNotFoundException;
+import org.kohsuke.github.GHRef;
+import org.kohsuke.github.GHRepository;
+import org.kohsuke.github.GitHub;
+import org.kohsuke.github.HttpException;
+import org.kohsuke.github.PagedIterable;
+import org.kohsuke.github.PagedIterator;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import me.julb.sdk.github.actions.kit.GitHubActionsKit;
+
+/**
+ * Test class for {@link RefResolver} class. <br>
+ * @author Julb.
+ */
+@ExtendWith(MockitoExtension.class)
+class RefResolverTest {
+
+    /**
+     * The number of refs of the fake repository.
+     */
+    private static final int FAKE_REPOSITORY_REFS = 100_000;
+
+    /**
+     * The page size used to scan refs.
+     */
+    private static final int SCAN_PAGE_SIZE = 100;
+
+    /**
+     * The class under test.
+     */
+    private RefResolver refResolver = null;
+
+    /**
+     * A mock for GitHub action kit.
+     */
+    @Mock
+    private GitHubActionsKit ghActionsKitMock;
+
+    /**
+     * A mock for GitHub repository.
+     */
+    @Mock
+    private GHRepository ghRepositoryMock;
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @BeforeEach
+    void setUp() throws Exception {
+        refResolver = new RefResolver(ghActionsKitMock, ghRepositoryMock, SCAN_PAGE_SIZE);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenResolveBranch_thenProbeBranchOnly() throws Exception {
+        var ghRef = Mockito.mock(GHRef.class);
+        when(ghRepositoryMock.getRef("refs/heads/branch-name")).thenReturn(ghRef);
+
+        assertThat(this.refResolver.resolve("branch-name")).isPresent().contains(ghRef);
+
+        verify(ghRepositoryMock).getRef("refs/heads/branch-name");
+        verify(ghRepositoryMock, never()).getRef("refs/tags/branch-name");
+        verify(ghRepositoryMock, never()).getRefs();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenResolveTag_thenProbeBranchThenTag() throws Exception {
+        var ghRef = Mockito.mock(GHRef.class);
+        when(ghRepositoryMock.getRef("refs/heads/1.0.0")).thenThrow(GHFileNotFoundException.class);
+        when(ghRepositoryMock.getRef("refs/tags/1.0.0")).thenReturn(ghRef);
+
+        assertThat(this.refResolver.resolve("1.0.0")).isPresent().contains(ghRef);
+
+        verify(ghRepositoryMock).getRef("refs/heads/1.0.0");
+        verify(ghRepositoryMock).getRef("refs/tags/1.0.0");
+        verify(ghRepositoryMock, never()).getRefs();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenResolveFullRef_thenProbeFullRefOnly() throws Exception {
+        var ghRef = Mockito.mock(GHRef.class);
+        when(ghRepositoryMock.getRef("refs/tags/1.0.0")).thenReturn(ghRef);
+
+        assertThat(this.refResolver.resolve("refs/tags/1.0.0")).isPresent().contains(ghRef);
+
+        verify(ghRepositoryMock).getRef("refs/tags/1.0.0");
+        verify(ghRepositoryMock, times(1)).getRef(anyString());
+        verify(ghRepositoryMock, never()).getRefs();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenResolveCommit_thenReturnCommitRef() throws Exception {
+        var ghCommit = Mockito.mock(GHCommit.class);
+        when(ghCommit.getSHA1()).thenReturn("0123456789abcdef0123456789abcdef01234567");
+        when(ghRepositoryMock.getCommit("0123456")).thenReturn(ghCommit);
+
+        var ghRef = this.refResolver.resolve("0123456");
+        assertThat(ghRef).isPresent();
+        assertThat(ghRef.get().getRef()).isEqualTo("0123456789abcdef0123456789abcdef01234567");
+        assertThat(ghRef.get().getObject().getSha()).isEqualTo("0123456789abcdef0123456789abcdef01234567");
+
+        verify(ghRepositoryMock).getRef("refs/heads/0123456");
+        verify(ghRepositoryMock).getRef("refs/tags/0123456");
+        verify(ghRepositoryMock).getCommit("0123456");
+        verify(ghRepositoryMock, never()).getRefs();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenProbeCommitNotSha_thenReturnEmptyWithoutRequest() throws Exception {
+        assertThat(this.refResolver.probeCommit("branch-name")).isEmpty();
+
+        verify(ghRepositoryMock, never()).getCommit(anyString());
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenProbeCommitUnprocessable_thenReturnEmpty() throws Exception {
+        when(ghRepositoryMock.getCommit("abcdef"))
+                .thenThrow(new HttpException("No commit found", 422, "Unprocessable Entity", "url"));
+
+        assertThat(this.refResolver.probeCommit("abcdef")).isEmpty();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenProbeCommitServerError_thenThrowHttpException() throws Exception {
+        when(ghRepositoryMock.getCommit("abcdef"))
+                .thenThrow(new HttpException("Server Error", 500, "Internal Server Error", "url"));
+
+        assertThrows(HttpException.class, () -> this.refResolver.probeCommit("abcdef"));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenResolveWithoutDirectMatch_thenScanRefs() throws Exception {
+        var ghRef1 = Mockito.mock(GHRef.class);
+        when(ghRef1.getRef()).thenReturn("refs/heads/main");
+
+        var ghRef2 = Mockito.mock(GHRef.class);
+        when(ghRef2.getRef()).thenReturn("refs/heads/BRANCH-name");
+
+        var ghRef3 = Mockito.mock(GHRef.class);
+        when(ghRef3.getRef()).thenReturn("refs/tags/1.0.0");
+
+        var ghRef4 = Mockito.mock(GHRef.class);
+        when(ghRef4.getRef()).thenReturn("refs/commits/123456");
+
+        when(ghRepositoryMock.listRefs()).thenAnswer(invocation -> pagedRefs(List.of(ghRef1, ghRef2, ghRef3, ghRef4)));
+
+        assertThat(this.refResolver.resolve("refs/heads/MAIN")).isPresent().contains(ghRef1);
+        assertThat(this.refResolver.resolve("branch-name")).isPresent().contains(ghRef2);
+        assertThat(this.refResolver.resolve("1.0.0")).isPresent().contains(ghRef3);
+        assertThat(this.refResolver.resolve("refs/tags/1.0.0")).isPresent().contains(ghRef3);
+        assertThat(this.refResolver.resolve("refs/commits/123456")).isPresent().contains(ghRef4);
+        assertThat(this.refResolver.resolve("123456")).isPresent().contains(ghRef4);
+
+        verify(ghRepositoryMock, times(6)).listRefs();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenResolveAllWithManyMisses_thenListRefsOnce() throws Exception {
+        var requests = fakeLargeRepository();
+
+        var ghRefs = this.refResolver.resolveAll(List.of("branch-1", "BRANCH-2", "Tag-99999", "unknown"));
+
+        assertThat(ghRefs).hasSize(4);
+        assertThat(ghRefs.get(0)).map(GHRef::getRef).contains("refs/heads/branch-1");
+        assertThat(ghRefs.get(1)).map(GHRef::getRef).contains("refs/heads/branch-2");
+        assertThat(ghRefs.get(2)).map(GHRef::getRef).contains("refs/tags/tag-99999");
+        assertThat(ghRefs.get(3)).isEmpty();
+
+        // One probe for the branch, two for each miss, then a single listing.
+        assertThat(requests.get()).isEqualTo(1 + 3 * 2 + FAKE_REPOSITORY_REFS / SCAN_PAGE_SIZE);
+        verify(ghRepositoryMock, times(1)).listRefs();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenResolveAllWithOneMiss_thenScanRefs() throws Exception {
+        var requests = fakeLargeRepository();
+
+        var ghRefs = this.refResolver.resolveAll(List.of("branch-1", "BRANCH-2"));
+
+        assertThat(ghRefs.get(0)).map(GHRef::getRef).contains("refs/heads/branch-1");
+        assertThat(ghRefs.get(1)).map(GHRef::getRef).contains("refs/heads/branch-2");
+
+        // One probe for the branch, two for the miss, then the scan stops at the first page.
+        assertThat(requests.get()).isEqualTo(1 + 2 + 1);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenLookupIndex_thenMatchByPrecedenceIgnoringCase() throws Exception {
+        var refs = new LinkedHashMap<String, GHRef>();
+        putGHRef(refs, "refs/heads/Main");
+        putGHRef(refs, "refs/tags/main");
+        putGHRef(refs, "refs/tags/1.0.0");
+        var ghRefs = new ArrayList<>(refs.values());
+        when(ghRepositoryMock.listRefs())
+                .thenAnswer(invocation -> pagedRefs(ghRefs.subList(0, 2), ghRefs.subList(2, 3)));
+
+        this.refResolver.loadIndex();
+        this.refResolver.loadIndex();
+
+        assertThat(this.refResolver.lookupIndex("MAIN")).map(GHRef::getRef).contains("refs/heads/Main");
+        assertThat(this.refResolver.lookupIndex("1.0.0")).map(GHRef::getRef).contains("refs/tags/1.0.0");
+        assertThat(this.refResolver.lookupIndex("refs/TAGS/main")).map(GHRef::getRef).contains("refs/tags/main");
+        assertThat(this.refResolver.lookupIndex("unknown")).isEmpty();
+
+        verify(ghRepositoryMock, times(1)).listRefs();
+        verify(ghActionsKitMock).debug("ref index: 2 page(s) fetched, 3 ref(s) indexed.");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenScanRefsMatchInFirstPage_thenStopScan() throws Exception {
+        var ghRef1 = Mockito.mock(GHRef.class);
+        when(ghRef1.getRef()).thenReturn("refs/heads/main");
+
+        var ghRef2 = Mockito.mock(GHRef.class);
+        when(ghRef2.getRef()).thenReturn("refs/heads/BRANCH-name");
+
+        var ghRef3 = Mockito.mock(GHRef.class);
+
+        var pagedIterable = pagedRefs(List.of(ghRef1, ghRef2), List.of(ghRef3));
+        when(ghRepositoryMock.listRefs()).thenReturn(pagedIterable);
+
+        assertThat(this.refResolver.scanRefs("branch-name")).isPresent().contains(ghRef2);
+
+        verify(pagedIterable).withPageSize(SCAN_PAGE_SIZE);
+        verify(ghRef3, never()).getRef();
+        verify(ghActionsKitMock).debug("ref scan: 1 page(s) fetched, 2 ref(s) examined.");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenScanRefsNoMatch_thenBrowseAllPages() throws Exception {
+        var ghRef1 = Mockito.mock(GHRef.class);
+        when(ghRef1.getRef()).thenReturn("refs/heads/main");
+
+        var ghRef2 = Mockito.mock(GHRef.class);
+        when(ghRef2.getRef()).thenReturn("refs/tags/1.0.0");
+
+        when(ghRepositoryMock.listRefs()).thenAnswer(invocation -> pagedRefs(List.of(ghRef1), List.of(ghRef2)));
+
+        assertThat(this.refResolver.scanRefs("branch-name")).isEmpty();
+
+        verify(ghActionsKitMock).debug("ref scan: 2 page(s) fetched, 2 ref(s) examined.");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenMatches_thenCompareIgnoringCase() {
+        assertThat(RefResolver.matches("refs/heads/Branch-Name", "branch-name")).isTrue();
+        assertThat(RefResolver.matches("refs/tags/V1.0.0", "v1.0.0")).isTrue();
+        assertThat(RefResolver.matches("refs/commits/ABCDEF", "abcdef")).isTrue();
+        assertThat(RefResolver.matches("refs/heads/main", "REFS/HEADS/MAIN")).isTrue();
+        assertThat(RefResolver.matches("refs/heads/main", "mai")).isFalse();
+        assertThat(RefResolver.matches("refs/heads/main2", "main")).isFalse();
+        assertThat(RefResolver.matches("refs/pull/1/head", "1/head")).isFalse();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenScanPageSizeOutOfRange_thenThrowIllegalArgumentException() {
+        assertThrows(
+                IllegalArgumentException.class, () -> new RefResolver(ghActionsKitMock, ghRepositoryMock, 0));
+        assertThrows(
+                IllegalArgumentException.class, () -> new RefResolver(ghActionsKitMock, ghRepositoryMock, 101));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenResolveDoesNotExist_thenReturnEmpty() throws Exception {
+        var pagedIterable = pagedRefs();
+        when(ghRepositoryMock.listRefs()).thenReturn(pagedIterable);
+
+        assertThat(this.refResolver.resolve("branch-name")).isEmpty();
+
+        verify(ghRepositoryMock).listRefs();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenResolveNull_thenThrowNullPointerException() throws Exception {
+        assertThrows(NullPointerException.class, () -> this.refResolver.resolve(null));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenResolveAgainstLargeRepository_thenCountRequests() throws Exception {
+        var requests = fakeLargeRepository();
+
+        // Branch: one probe.
+        assertThat(this.refResolver.resolve("branch-25000")).isPresent();
+        assertThat(requests.getAndSet(0)).isEqualTo(1);
+
+        // Tag: two probes.
+        assertThat(this.refResolver.resolve("tag-99999")).isPresent();
+        assertThat(requests.getAndSet(0)).isEqualTo(2);
+
+        // Full ref: one probe.
+        assertThat(this.refResolver.resolve("refs/heads/branch-0")).isPresent();
+        assertThat(requests.getAndSet(0)).isEqualTo(1);
+
+        // Case-insensitive match: two probes then the scan up to the page holding the match.
+        assertThat(this.refResolver.resolve("BRANCH-25000")).isPresent();
+        assertThat(requests.getAndSet(0)).isEqualTo(2 + 25_000 / SCAN_PAGE_SIZE + 1);
+
+        // Case-insensitive miss: two probes then the full scan.
+        assertThat(this.refResolver.resolve("BRANCH-99999")).isEmpty();
+        assertThat(requests.getAndSet(0)).isEqualTo(2 + FAKE_REPOSITORY_REFS / SCAN_PAGE_SIZE);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenBranchRefNamePresent_thenReturnRefValue() {
+        assertThat(RefResolver.branchRef("branch-name")).isEqualTo("refs/heads/branch-name");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenBranchRefNameNull_thenThrowNullPointerException() throws Exception {
+        assertThrows(NullPointerException.class, () -> RefResolver.branchRef(null));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenTagRefNamePresent_thenReturnRefValue() {
+        assertThat(RefResolver.tagRef("1.0.0")).isEqualTo("refs/tags/1.0.0");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenTagRefNameNull_thenThrowNullPointerException() throws Exception {
+        assertThrows(NullPointerException.class, () -> RefResolver.tagRef(null));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenCommitRefNamePresent_thenReturnRefValue() {
+        assertThat(RefResolver.commitRef("123456")).isEqualTo("refs/commits/123456");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenCommitRefNameNull_thenThrowNullPointerException() throws Exception {
+        assertThrows(NullPointerException.class, () -> RefResolver.commitRef(null));
+    }
+
+    // ------------------------------------------ Utility methods.
+
+    /**
+     * Backs the repository mock with a fake repository holding {@value #FAKE_REPOSITORY_REFS} refs, half branches and
+     * half tags, counting each request made against it as GitHub would.
+     * @return the request counter.
+     * @throws IOException if an error occurs.
+     */
+    private AtomicInteger fakeLargeRepository() throws IOException {
+        var requests = new AtomicInteger();
+
+        // Refs are listed in order, branches first.
+        var refs = new LinkedHashMap<String, GHRef>();
+        for (int i = 0; i < FAKE_REPOSITORY_REFS / 2; i++) {
+            putGHRef(refs, RefResolver.branchRef("branch-" + i));
+        }
+        for (int i = FAKE_REPOSITORY_REFS / 2; i < FAKE_REPOSITORY_REFS; i++) {
+            putGHRef(refs, RefResolver.tagRef("tag-" + i));
+        }
+
+        when(ghRepositoryMock.getRef(anyString())).thenAnswer(invocation -> {
+            requests.incrementAndGet();
+            var ghRef = refs.get(invocation.<String>getArgument(0));
+            if (ghRef == null) {
+                throw new GHFileNotFoundException();
+            }
+            return ghRef;
+        });
+        when(ghRepositoryMock.listRefs()).thenAnswer(invocation -> {
+            var pages = new ArrayList<List<GHRef>>();
+            var values = List.copyOf(refs.values());
+            for (int i = 0; i < values.size(); i += SCAN_PAGE_SIZE) {
+                pages.add(values.subList(i, Math.min(i + SCAN_PAGE_SIZE, values.size())));
+            }
+            var pagedIterable = pagedRefs(pages);
+            var pagedIterator = pagedIterable.iterator();
+            doAnswer(nextPage -> {
+                        requests.incrementAndGet();
+                        return pages.remove(0);
+                    })
+                    .when(pagedIterator)
+                    .nextPage();
+            return pagedIterable;
+        });
+
+        return requests;
+    }
+
+    /**
+     * Creates a {@link PagedIterable} serving the given pages of refs.
+     * @param pages the pages of refs.
+     * @return the {@link PagedIterable}.
+     */
+    @SafeVarargs
+    private static PagedIterable<GHRef> pagedRefs(List<GHRef>... pages) {
+        return pagedRefs(new ArrayList<>(List.of(pages)));
+    }
+
+    /**
+     * Creates a {@link PagedIterable} serving the given pages of refs.
+     * @param pages the pages of refs, consumed as they are served.
+     * @return the {@link PagedIterable}.
+     */
+    @SuppressWarnings("unchecked")
+    private static PagedIterable<GHRef> pagedRefs(List<List<GHRef>> pages) {
+        PagedIterable<GHRef> pagedIterable = Mockito.mock(PagedIterable.class, Mockito.withSettings().lenient());
+        PagedIterator<GHRef> pagedIterator = Mockito.mock(PagedIterator.class, Mockito.withSettings().lenient());
+        when(pagedIterable.withPageSize(Mockito.anyInt())).thenReturn(pagedIterable);
+        when(pagedIterable.iterator()).thenReturn(pagedIterator);
+        when(pagedIterator.hasNext()).thenAnswer(invocation -> !pages.isEmpty());
+        when(pagedIterator.nextPage()).thenAnswer(invocation -> pages.remove(0));
+        return pagedIterable;
+    }
+
+    /**
+     * Puts a {@link GHRef} for the given ref in the given map.
+     * @param refs the map of refs.
+     * @param ref the ref name.
+     * @throws IOException if an error occurs.
+     */
+    private static void putGHRef(Map<String, GHRef> refs, String ref) throws IOException {
+        var node = JsonNodeFactory.instance.objectNode();
+        node.put("ref", ref);
+        node.putObject("object").put("type", "commit").put("sha", "0123456789abcdef0123456789abcdef01234567");
+        refs.put(ref, GitHub.getMappingObjectReader().forType(GHRef.class).readValue(node));
+    }
+}
@@ -0,0 +1,242 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test class for {@link ResponseCache} class. <br>
+ * @author Julb.
+ */
+class ResponseCacheTest {
+
+    /**
+     * The cache directory.
+     */
+    @TempDir
+    Path directory;
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenPutThenGet_thenReturnEntry() throws Exception {
+        var responseCache = new ResponseCache(directory, 1024 * 1024);
+
+        responseCache.put("key", entry("\"etag\"", "{\"sha\":\"123456\"}"));
+
+        var entry = responseCache.get("key");
+        assertThat(entry).isPresent();
+        assertThat(entry.get().getEtag()).isEqualTo("\"etag\"");
+        assertThat(entry.get().getHeaders()).containsEntry("X-Test", List.of("value"));
+        assertThat(new String(entry.get().getBody(), StandardCharsets.UTF_8)).isEqualTo("{\"sha\":\"123456\"}");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetNotCached_thenReturnEmpty() throws Exception {
+        var responseCache = new ResponseCache(directory.resolve("not-created"), 1024 * 1024);
+
+        assertThat(responseCache.get("key")).isEmpty();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetCorruptedEntry_thenReturnEmptyAndDeleteIt() throws Exception {
+        var responseCache = new ResponseCache(directory, 1024 * 1024);
+        var file = directory.resolve("key" + ResponseCache.ENTRY_SUFFIX);
+        Files.writeString(file, "{not json");
+
+        assertThat(responseCache.get("key")).isEmpty();
+        assertThat(file).doesNotExist();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenCacheExceedsMaxSize_thenEvictLeastRecentlyUsedEntries() throws Exception {
+        var responseCache = new ResponseCache(directory, Long.MAX_VALUE);
+        var body = "x".repeat(1000);
+        responseCache.put("a", entry("\"a\"", body));
+        responseCache.put("b", entry("\"b\"", body));
+        responseCache.put("c", entry("\"c\"", body));
+
+        // a is the most recently used, then c, then b.
+        var now = Instant.now();
+        touch("b", now.minus(Duration.ofMinutes(3)));
+        touch("c", now.minus(Duration.ofMinutes(2)));
+        touch("a", now.minus(Duration.ofMinutes(1)));
+
+        var entrySize = Files.size(directory.resolve("a" + ResponseCache.ENTRY_SUFFIX));
+        new ResponseCache(directory, entrySize * 2).evict();
+
+        assertThat(responseCache.get("a")).isPresent();
+        assertThat(responseCache.get("b")).isEmpty();
+        assertThat(responseCache.get("c")).isPresent();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenEvictWithLeftOverTemporaryFile_thenDeleteIt() throws Exception {
+        var responseCache = new ResponseCache(directory, 1024 * 1024);
+        var oldTemporaryFile = Files.createFile(directory.resolve("old.tmp"));
+        Files.setLastModifiedTime(oldTemporaryFile, FileTime.from(Instant.now().minus(Duration.ofHours(2))));
+        var recentTemporaryFile = Files.createFile(directory.resolve("recent.tmp"));
+
+        responseCache.evict();
+
+        assertThat(oldTemporaryFile).doesNotExist();
+        assertThat(recentTemporaryFile).exists();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenPutUnderMaxSize_thenListDirectoryOnlyOnFirstPut() throws Exception {
+        var body = "x".repeat(1000);
+        new ResponseCache(directory, Long.MAX_VALUE).put("a", entry("\"a\"", body));
+        var entrySize = Files.size(directory.resolve("a" + ResponseCache.ENTRY_SUFFIX));
+        var responseCache = new ResponseCache(directory, entrySize * 3);
+        responseCache.put("a", entry("\"a\"", body));
+
+        // Left over temporary files are only deleted when the directory is listed.
+        var oldTemporaryFile = Files.createFile(directory.resolve("old.tmp"));
+        Files.setLastModifiedTime(oldTemporaryFile, FileTime.from(Instant.now().minus(Duration.ofHours(2))));
+        for (int i = 0; i < 100; i++) {
+            responseCache.put("a", entry("\"a\"", body));
+            responseCache.put("b", entry("\"b\"", body));
+        }
+        assertThat(oldTemporaryFile).exists();
+
+        // Over the maximum size.
+        responseCache.put("c", entry("\"c\"", body));
+        responseCache.put("d", entry("\"d\"", body));
+        assertThat(oldTemporaryFile).doesNotExist();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenPutOverMaxSize_thenEvictLeastRecentlyUsedEntries() throws Exception {
+        var body = "x".repeat(1000);
+        var responseCache = new ResponseCache(directory, Long.MAX_VALUE);
+        responseCache.put("a", entry("\"a\"", body));
+        var entrySize = Files.size(directory.resolve("a" + ResponseCache.ENTRY_SUFFIX));
+
+        var boundedCache = new ResponseCache(directory, entrySize * 2);
+        boundedCache.put("b", entry("\"b\"", body));
+        touch("a", Instant.now().minus(Duration.ofMinutes(2)));
+        touch("b", Instant.now().minus(Duration.ofMinutes(1)));
+        boundedCache.put("c", entry("\"c\"", body));
+
+        assertThat(responseCache.get("a")).isEmpty();
+        assertThat(responseCache.get("b")).isPresent();
+        assertThat(responseCache.get("c")).isPresent();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenPutAndGetConcurrently_thenAlwaysReadCompleteEntries() throws Exception {
+        var body = "x".repeat(10000);
+        var tasks = new ArrayList<Callable<Boolean>>();
+        for (var i = 0; i < 200; i++) {
+            // Each task uses its own instance, as separate processes would.
+            var responseCache = new ResponseCache(directory, 50000);
+            var key = "key-" + (i % 8);
+            if (i % 2 == 0) {
+                tasks.add(() -> {
+                    responseCache.put(key, entry("\"etag\"", body));
+                    return true;
+                });
+            } else {
+                tasks.add(() -> responseCache
+                        .get(key)
+                        .map(entry -> new String(entry.getBody(), StandardCharsets.UTF_8).equals(body))
+                        .orElse(true));
+            }
+        }
+
+        var executor = Executors.newFixedThreadPool(8);
+        try {
+            for (Future<Boolean> future : executor.invokeAll(tasks)) {
+                assertThat(future.get()).isTrue();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        try (var files = Files.list(directory)) {
+            assertThat(files.filter(f -> f.toString().endsWith(".tmp"))).isEmpty();
+        }
+    }
+
+    // ------------------------------------------ Utility methods.
+
+    /**
+     * Creates a cache entry.
+     * @param etag the entity tag.
+     * @param body the body.
+     * @return the cache entry.
+     */
+    private static ResponseCache.Entry entry(String etag, String body) {
+        return new ResponseCache.Entry(
+                etag, Map.of("X-Test", List.of("value")), body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Sets the last access time of an entry.
+     * @param key the entry key.
+     * @param lastAccessTime the last access time.
+     * @throws Exception if an error occurs.
+     */
+    private void touch(String key, Instant lastAccessTime) throws Exception {
+        Files.setLastModifiedTime(directory.resolve(key + ResponseCache.ENTRY_SUFFIX), FileTime.from(lastAccessTime));
+    }
+}
@@ -0,0 +1,233 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.kohsuke.github.HttpException;
+import org.kohsuke.github.connector.GitHubConnector;
+
+import me.julb.sdk.github.actions.kit.GitHubActionsKit;
+
+/**
+ * Test class for {@link TargetDiscovery} class. <br>
+ * @author Julb.
+ */
+class TargetDiscoveryTest {
+
+    /**
+     * The repository.
+     */
+    private static final String REPOSITORY = "octocat/hello-world";
+
+    /**
+     * The fake GitHub API.
+     */
+    private FakeGitHubServer server;
+
+    /**
+     * The class under test.
+     */
+    private TargetDiscovery targetDiscovery;
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new FakeGitHubServer(REPOSITORY);
+        targetDiscovery = new TargetDiscovery(
+                mock(GitHubActionsKit.class), GitHubConnector.DEFAULT, server.getApiUrl(), "token", REPOSITORY);
+    }
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @AfterEach
+    void tearDown() throws Exception {
+        server.close();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenIsGlob_thenDetectWildcards() {
+        assertThat(TargetDiscovery.isGlob("release/*")).isTrue();
+        assertThat(TargetDiscovery.isGlob("hotfix/**")).isTrue();
+        assertThat(TargetDiscovery.isGlob("v?")).isTrue();
+        assertThat(TargetDiscovery.isGlob("release/[12].x")).isTrue();
+        assertThat(TargetDiscovery.isGlob("release/1.x")).isFalse();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenLiteralPrefix_thenStopAtFirstWildcard() {
+        assertThat(TargetDiscovery.literalPrefix("release/*")).isEqualTo("release/");
+        assertThat(TargetDiscovery.literalPrefix("hotfix/**/fix?")).isEqualTo("hotfix/");
+        assertThat(TargetDiscovery.literalPrefix("*")).isEmpty();
+        assertThat(TargetDiscovery.literalPrefix("main")).isEqualTo("main");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenToPattern_thenMatchLikeGlob() {
+        var release = TargetDiscovery.toPattern("release/*");
+        assertThat(release.matcher("release/1.x").matches()).isTrue();
+        assertThat(release.matcher("release/1.x/rc").matches()).isFalse();
+        assertThat(release.matcher("releases/1.x").matches()).isFalse();
+
+        var hotfix = TargetDiscovery.toPattern("hotfix/**");
+        assertThat(hotfix.matcher("hotfix/1.x").matches()).isTrue();
+        assertThat(hotfix.matcher("hotfix/1.x/rc").matches()).isTrue();
+
+        var version = TargetDiscovery.toPattern("v[12].?");
+        assertThat(version.matcher("v1.0").matches()).isTrue();
+        assertThat(version.matcher("v3.0").matches()).isFalse();
+        assertThat(version.matcher("v1.10").matches()).isFalse();
+
+        var negated = TargetDiscovery.toPattern("v[!1].x");
+        assertThat(negated.matcher("v2.x").matches()).isTrue();
+        assertThat(negated.matcher("v1.x").matches()).isFalse();
+
+        assertThat(TargetDiscovery.toPattern("a+b.c").matcher("a+b.c").matches()).isTrue();
+        assertThat(TargetDiscovery.toPattern("a+b.c").matcher("aab-c").matches()).isFalse();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenDiscover_thenListMatchingBranchesWithPrefix() throws Exception {
+        server.createBranch("main");
+        server.createBranch("release/2.x");
+        server.createBranch("release/1.x");
+        server.createBranch("release/1.x/rc");
+        server.createBranch("releases");
+        server.createTag("release/3.x", server.getBranchSha("main").orElseThrow());
+
+        assertThat(targetDiscovery.discover("release/*")).containsExactly("release/1.x", "release/2.x");
+        assertThat(targetDiscovery.discover("release/**")).containsExactly(
+                "release/1.x", "release/1.x/rc", "release/2.x");
+        assertThat(targetDiscovery.discover("hotfix/*")).isEmpty();
+        assertThat(server.getRequests()).allMatch(
+                request -> request.startsWith("GET /repos/" + REPOSITORY + "/git/matching-refs/heads/"));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenDiscoverInRefIndex_thenListMatchingBranchesWithoutRequest() throws Exception {
+        var names = List.of(
+                "refs/heads/main",
+                "refs/heads/release/2.x",
+                "refs/heads/Release/1.x",
+                "refs/heads/release/1.x",
+                "refs/heads/release/1.x/rc",
+                "refs/heads/releases",
+                "refs/tags/release/3.x");
+        var shas = Collections.nCopies(names.size(), "7fd1a60b01f91b314f59955a4e4d4e80d8edf11d");
+        var types = Collections.nCopies(names.size(), "commit");
+        var refIndex = new RefIndex(null, names, shas, types);
+
+        assertThat(targetDiscovery.discover("release/*", refIndex)).containsExactly("release/1.x", "release/2.x");
+        assertThat(targetDiscovery.discover("release/**", refIndex)).containsExactly(
+                "release/1.x", "release/1.x/rc", "release/2.x");
+        assertThat(targetDiscovery.discover("hotfix/*", refIndex)).isEmpty();
+        assertThat(server.getRequests()).isEmpty();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenEncodePath_thenEncodeEachSegment() {
+        assertThat(TargetDiscovery.encodePath("release/")).isEqualTo("release/");
+        assertThat(TargetDiscovery.encodePath("fix#")).isEqualTo("fix%23");
+        assertThat(TargetDiscovery.encodePath("team a/50%+1?")).isEqualTo("team%20a/50%25%2B1%3F");
+        assertThat(TargetDiscovery.encodePath("")).isEmpty();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenDiscoverWithReservedCharactersInPrefix_thenEncodePrefix() throws Exception {
+        server.createBranch("fix#1");
+        server.createBranch("fix#2");
+        server.createBranch("fixed");
+
+        assertThat(targetDiscovery.discover("fix#*")).containsExactly("fix#1", "fix#2");
+        assertThat(server.getRequests()).containsExactly(
+                "GET /repos/" + REPOSITORY + "/git/matching-refs/heads/fix%23?per_page=100");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenDiscoverManyBranches_thenFollowPages() throws Exception {
+        for (int i = 0; i < 250; i++) {
+            server.createBranch(String.format("release/%03d", i));
+        }
+        server.createBranch("main");
+
+        var branches = targetDiscovery.discover("release/*");
+
+        assertThat(branches).hasSize(250).startsWith("release/000").endsWith("release/249");
+        // @formatter:off
+        assertThat(server.getRequests())
+                .hasSize(3)
+                .last()
+                .asString()
+                .endsWith("page=3");
+        // @formatter:on
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenDiscoverFails_thenThrowHttpException() throws Exception {
+        server.failNext("GET", 500, 1);
+
+        var e = assertThrows(HttpException.class, () -> targetDiscovery.discover("release/*"));
+
+        assertThat(e.getResponseCode()).isEqualTo(500);
+        assertThat(e.getUrl()).contains("/git/matching-refs/heads/release/");
+    }
+}